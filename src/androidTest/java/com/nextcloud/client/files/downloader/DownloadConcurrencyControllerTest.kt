@@ -0,0 +1,186 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.files.downloader
+
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+class DownloadConcurrencyControllerTest {
+
+    companion object {
+        const val WINDOW_MS = 1000L
+        const val LARGE_FILE = 100L * 1024L * 1024L
+        const val MIN_SLOTS = 1
+        const val MAX_SLOTS = 4
+        const val INITIAL_SLOTS = 2
+    }
+
+    private var now = 0L
+    private var notifications = 0
+    private lateinit var controller: DownloadConcurrencyController
+
+    @Before
+    fun setUp() {
+        now = 0L
+        notifications = 0
+        controller = DownloadConcurrencyController(
+            minSlots = MIN_SLOTS,
+            maxSlots = MAX_SLOTS,
+            initialSlots = INITIAL_SLOTS,
+            windowMs = WINDOW_MS,
+            time = { now }
+        )
+    }
+
+    private fun window(bytes: Long) {
+        controller.onBytesTransferred(0)
+        now += WINDOW_MS
+        controller.onBytesTransferred(bytes)
+    }
+
+    @Test
+    fun slots_are_split_evenly_between_active_owners() {
+        // GIVEN
+        //      3 registered owners, 2 of them active
+        val first = Any()
+        val second = Any()
+        val idle = Any()
+        controller.register(first) { notifications++ }
+        controller.register(second) { notifications++ }
+        controller.register(idle) { notifications++ }
+        controller.setActive(first, true)
+        controller.setActive(second, true)
+
+        // THEN
+        //      active owners share slots
+        //      idle owner can start a download
+        assertEquals(1, controller.limitFor(first))
+        assertEquals(1, controller.limitFor(second))
+        assertEquals(INITIAL_SLOTS, controller.limitFor(idle))
+        assertEquals(2, controller.status.activeOwners)
+    }
+
+    @Test
+    fun every_active_owner_gets_at_least_one_slot() {
+        val owners = (0 until INITIAL_SLOTS + 1).map { Any() }
+        owners.forEach {
+            controller.register(it) { notifications++ }
+            controller.setActive(it, true)
+        }
+        owners.forEach { assertEquals(1, controller.limitFor(it)) }
+    }
+
+    @Test
+    fun owners_are_notified_when_share_changes() {
+        // GIVEN
+        //      2 active owners
+        val first = Any()
+        val second = Any()
+        controller.register(first) { notifications++ }
+        controller.register(second) { notifications++ }
+        controller.setActive(first, true)
+        controller.setActive(second, true)
+        notifications = 0
+
+        // WHEN
+        //      one owner becomes idle
+        controller.setActive(second, false)
+
+        // THEN
+        //      all owners are notified
+        //      remaining owner gets all slots
+        assertEquals(2, notifications)
+        assertEquals(INITIAL_SLOTS, controller.limitFor(first))
+    }
+
+    @Test
+    fun slots_are_raised_while_throughput_increases() {
+        // WHEN
+        //      throughput grows in every window
+        window(1000)
+        window(2000)
+        window(4000)
+
+        // THEN
+        //      slots are raised up to the maximum
+        assertEquals(MAX_SLOTS, controller.slots)
+        assertEquals("throughput increased", controller.status.decisions.last().reason)
+    }
+
+    @Test
+    fun direction_is_reversed_when_throughput_drops() {
+        // GIVEN
+        //      slots were raised
+        window(1000)
+        assertEquals(INITIAL_SLOTS + 1, controller.slots)
+
+        // WHEN
+        //      throughput drops
+        window(500)
+
+        // THEN
+        //      slots are lowered
+        assertEquals(INITIAL_SLOTS, controller.slots)
+        assertEquals("throughput decreased", controller.status.decisions.last().reason)
+    }
+
+    @Test
+    fun stable_throughput_keeps_slots() {
+        window(1000)
+        val slots = controller.slots
+        window(1000)
+        assertEquals(slots, controller.slots)
+        assertEquals("throughput stable", controller.status.decisions.last().reason)
+    }
+
+    @Test
+    fun small_files_raise_slots() {
+        // WHEN
+        //      mostly small files are downloaded in a window
+        //      with decreasing throughput
+        window(1000)
+        controller.onTransferFinished(1024)
+        controller.onTransferFinished(1024)
+        controller.onTransferFinished(LARGE_FILE)
+        window(100)
+
+        // THEN
+        //      slots are raised anyway
+        assertEquals(INITIAL_SLOTS + 2, controller.slots)
+        assertEquals("mostly small files", controller.status.decisions.last().reason)
+    }
+
+    @Test
+    fun slots_stay_within_bounds() {
+        repeat(MAX_SLOTS * 2) { window(1000L shl it) }
+        assertEquals(MAX_SLOTS, controller.slots)
+
+        val tooLow = DownloadConcurrencyController(minSlots = MIN_SLOTS, maxSlots = MAX_SLOTS, initialSlots = 0)
+        assertEquals(MIN_SLOTS, tooLow.slots)
+        val tooHigh = DownloadConcurrencyController(minSlots = MIN_SLOTS, maxSlots = MAX_SLOTS, initialSlots = 10)
+        assertEquals(MAX_SLOTS, tooHigh.slots)
+    }
+
+    @Test
+    fun decisions_are_limited() {
+        repeat(DownloadConcurrencyController.MAX_DECISIONS * 2) { window(1000) }
+        assertEquals(DownloadConcurrencyController.MAX_DECISIONS, controller.status.decisions.size)
+    }
+}
@@ -21,6 +21,7 @@ package com.nextcloud.client.files.downloader
 
 import com.nextcloud.client.account.User
 import com.owncloud.android.datamodel.OCFile
+import com.owncloud.android.lib.common.utils.Log_OC
 import io.mockk.CapturingSlot
 import io.mockk.MockKAnnotations
 import io.mockk.clearAllMocks
@@ -46,7 +47,10 @@ import java.util.UUID
     RegistryTest.Progress::class,
     RegistryTest.Complete::class,
     RegistryTest.GetTransfers::class,
-    RegistryTest.IsRunning::class
+    RegistryTest.IsRunning::class,
+    RegistryTest.ProgressCoalescing::class,
+    RegistryTest.CompletedLimit::class,
+    RegistryTest.ManyTransfers::class
 )
 class RegistryTest {
 
@@ -70,14 +74,28 @@ class RegistryTest {
 
         internal lateinit var registry: Registry
 
+        /**
+         * Progress flushes scheduled by registry, with their delays.
+         */
+        val flushes = mutableListOf<Pair<Long, () -> Unit>>()
+
         @Before
         fun setUpBase() {
             MockKAnnotations.init(this, relaxed = true)
             file = OCFile("/test/path")
-            registry = Registry(onTransferStart, onTransferChanged, MAX_TRANSFER_THREADS)
+            registry = Registry(
+                onTransferStart,
+                onTransferChanged,
+                MAX_TRANSFER_THREADS,
+                scheduleFlush = ::scheduleFlush
+            )
             resetMocks()
         }
 
+        fun scheduleFlush(delayMs: Long, flush: () -> Unit) {
+            flushes.add(delayMs to flush)
+        }
+
         fun resetMocks() {
             clearAllMocks()
             every { onTransferStart(any(), any()) } answers {}
@@ -516,4 +534,227 @@ class RegistryTest {
             assertFalse(registry.isRunning)
         }
     }
+
+    class ProgressCoalescing : Base() {
+
+        companion object {
+            const val UPDATE_PERIOD_MS = 100L
+            const val LATE_UPDATE_MS = 30L
+            const val UPDATES_COUNT = 10
+        }
+
+        var now = 0L
+        lateinit var uuid: UUID
+
+        @Before
+        fun setUp() {
+            registry = Registry(
+                onTransferStart,
+                onTransferChanged,
+                MAX_TRANSFER_THREADS,
+                progressUpdatePeriodMs = UPDATE_PERIOD_MS,
+                time = { now },
+                scheduleFlush = ::scheduleFlush
+            )
+            uuid = registry.add(Request(user, file))
+            registry.startNext()
+            resetMocks()
+        }
+
+        @Test
+        fun frequent_updates_are_coalesced() {
+            // GIVEN
+            //      a transfer is running
+
+            // WHEN
+            //      progress is updated many times within update period
+            for (i in 1..UPDATES_COUNT) {
+                registry.progress(uuid, i)
+            }
+
+            // THEN
+            //      only first update triggers callback
+            //      latest progress is available
+            val transfers = mutableListOf<Transfer>()
+            verify(exactly = 1) { onTransferChanged(capture(transfers)) }
+            assertEquals(1, transfers.first().progress)
+            assertEquals(UPDATES_COUNT, registry.getTransfer(uuid)?.progress)
+            assertEquals(UPDATES_COUNT, registry.running.first().progress)
+        }
+
+        @Test
+        fun update_is_published_after_update_period() {
+            // GIVEN
+            //      progress was published recently
+            registry.progress(uuid, PROGRESS_HALF)
+            registry.progress(uuid, PROGRESS_HALF + 1)
+
+            // WHEN
+            //      progress is updated after update period
+            now += UPDATE_PERIOD_MS
+            registry.progress(uuid, PROGRESS_FULL)
+
+            // THEN
+            //      update is published
+            val transfers = mutableListOf<Transfer>()
+            verify(exactly = 2) { onTransferChanged(capture(transfers)) }
+            assertEquals(PROGRESS_FULL, transfers.last().progress)
+        }
+
+        @Test
+        fun single_late_update_is_published_when_update_period_ends() {
+            // GIVEN
+            //      progress was published recently
+            registry.progress(uuid, PROGRESS_HALF)
+
+            // WHEN
+            //      one more update arrives within update period
+            //      no further updates arrive
+            now += LATE_UPDATE_MS
+            registry.progress(uuid, PROGRESS_FULL)
+
+            // THEN
+            //      flush is scheduled once for the end of update period
+            //      flush publishes the update
+            assertEquals(1, flushes.size)
+            assertEquals(UPDATE_PERIOD_MS - LATE_UPDATE_MS, flushes.first().first)
+            now += UPDATE_PERIOD_MS - LATE_UPDATE_MS
+            flushes.first().second.invoke()
+            val transfers = mutableListOf<Transfer>()
+            verify(exactly = 2) { onTransferChanged(capture(transfers)) }
+            assertEquals(PROGRESS_FULL, transfers.last().progress)
+        }
+
+        @Test
+        fun flush_after_completion_is_ignored() {
+            // GIVEN
+            //      progress update is deferred
+            registry.progress(uuid, PROGRESS_HALF)
+            registry.progress(uuid, PROGRESS_FULL)
+
+            // WHEN
+            //      transfer completes before flush
+            registry.complete(uuid, true)
+            flushes.first().second.invoke()
+
+            // THEN
+            //      only progress and completion are published
+            verify(exactly = 2) { onTransferChanged(any()) }
+        }
+
+        @Test
+        fun completed_transfer_has_latest_progress() {
+            // GIVEN
+            //      progress update is not published yet
+            registry.progress(uuid, PROGRESS_HALF)
+            registry.progress(uuid, PROGRESS_FULL)
+
+            // WHEN
+            //      transfer is completed
+            registry.complete(uuid, true)
+
+            // THEN
+            //      completed transfer carries latest progress
+            assertEquals(PROGRESS_FULL, registry.getTransfer(uuid)?.progress)
+        }
+    }
+
+    class CompletedLimit : Base() {
+
+        companion object {
+            const val MAX_COMPLETED = 3
+            const val TRANSFERS_COUNT = 5
+        }
+
+        @Test
+        fun oldest_completed_transfers_are_dropped() {
+            // GIVEN
+            //      registry retains limited number of completed transfers
+            registry = Registry(
+                onTransferStart,
+                onTransferChanged,
+                MAX_TRANSFER_THREADS,
+                MAX_COMPLETED,
+                scheduleFlush = ::scheduleFlush
+            )
+            val files = (0 until TRANSFERS_COUNT).map { OCFile("/file/$it") }
+
+            // WHEN
+            //      more transfers are completed
+            val ids = files.map {
+                val id = registry.add(Request(user, it))
+                registry.startNext()
+                registry.complete(id, true)
+                id
+            }
+
+            // THEN
+            //      only most recent transfers are retained
+            //      dropped transfers cannot be found by id or path
+            assertEquals(ids.takeLast(MAX_COMPLETED), registry.completed.map { it.uuid })
+            assertNull(registry.getTransfer(ids.first()))
+            assertNull(registry.getTransfer(files.first()))
+            assertEquals(ids.last(), registry.getTransfer(files.last())?.uuid)
+        }
+    }
+
+    class ManyTransfers : Base() {
+
+        companion object {
+            const val TRANSFERS_COUNT = 100_000
+            const val LOOKUPS_COUNT = 10_000
+        }
+
+        @Before
+        fun setUp() {
+            // mocks would record every callback
+            registry = Registry({ _, _ -> }, {}, MAX_TRANSFER_THREADS, scheduleFlush = ::scheduleFlush)
+        }
+
+        @Test
+        fun lookup_by_path_in_large_queue() {
+            // GIVEN
+            //      100k transfers are queued
+            val files = (0 until TRANSFERS_COUNT).map { OCFile("/path/file_$it") }
+            val ids = files.map { registry.add(Request(user, it)) }
+            registry.startNext()
+
+            // WHEN
+            //      transfers are searched by path
+            val start = System.currentTimeMillis()
+            for (i in 0 until LOOKUPS_COUNT) {
+                val index = TRANSFERS_COUNT - 1 - i
+                assertEquals(ids[index], registry.getTransfer(files[index])?.uuid)
+            }
+            val duration = System.currentTimeMillis() - start
+            Log_OC.d(javaClass.simpleName, "$LOOKUPS_COUNT lookups by path in $TRANSFERS_COUNT transfers: $duration ms")
+
+            // THEN
+            //      all transfers are tracked
+            assertEquals(TRANSFERS_COUNT - MAX_TRANSFER_THREADS, registry.pending.size)
+            assertEquals(MAX_TRANSFER_THREADS, registry.running.size)
+        }
+
+        @Test
+        fun completed_transfers_are_bounded() {
+            // GIVEN
+            //      100k transfers are queued
+            val ids = (0 until TRANSFERS_COUNT).map { registry.add(Request(user, OCFile("/path/file_$it"))) }
+
+            // WHEN
+            //      all transfers complete
+            registry.startNext()
+            ids.forEach {
+                registry.complete(it, true)
+                registry.startNext()
+            }
+
+            // THEN
+            //      registry is not running
+            //      number of retained transfers is bounded
+            assertFalse(registry.isRunning)
+            assertEquals(Registry.MAX_COMPLETED, registry.completed.size)
+            assertEquals(ids.last(), registry.completed.last().uuid)
+        }
+    }
 }
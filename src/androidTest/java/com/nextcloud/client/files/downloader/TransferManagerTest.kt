@@ -213,18 +213,16 @@ class TransferManagerTest {
             runner.runOne()
 
             // THEN
-            //      listener receives 6 status updates
+            //      listener receives 3 status updates
             //          transition to running
-            //          4 progress updates
-            //          completion
-            assertEquals(6, downloadUpdates.size)
-            if (downloadUpdates.size >= 6) {
+            //          first progress update, later ones are coalesced
+            //          completion with latest progress
+            assertEquals(3, downloadUpdates.size)
+            if (downloadUpdates.size >= 3) {
                 assertEquals(TransferState.RUNNING, downloadUpdates[0].state)
                 assertEquals(25, downloadUpdates[1].progress)
-                assertEquals(50, downloadUpdates[2].progress)
-                assertEquals(75, downloadUpdates[3].progress)
-                assertEquals(100, downloadUpdates[4].progress)
-                assertEquals(TransferState.COMPLETED, downloadUpdates[5].state)
+                assertEquals(TransferState.COMPLETED, downloadUpdates[2].state)
+                assertEquals(100, downloadUpdates[2].progress)
             }
         }
 
@@ -0,0 +1,196 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.OwnCloudClientFactory;
+import com.owncloud.android.lib.common.OwnCloudCredentialsFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal HTTP/1.1 server on the loopback interface, standing in for a WebDAV server in tests. Request bodies are
+ * read and discarded, the response to each request is decided by the given {@link RequestHandler}.
+ */
+public class FakeWebDavServer implements Closeable {
+
+    /**
+     * Status code returned by a {@link RequestHandler} to drop the connection without a response.
+     */
+    public static final int DISCONNECT = -1;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Called concurrently for requests on different connections.
+     */
+    public interface RequestHandler {
+        /**
+         * @param received length of the request body
+         * @return status code of the response, {@link #DISCONNECT} to drop the connection
+         */
+        int handle(String method, String path, long received);
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final RequestHandler handler;
+
+    public FakeWebDavServer(RequestHandler handler) throws IOException {
+        this.handler = handler;
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        connections.execute(this::accept);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return client connecting to this server with basic credentials of user "user"
+     */
+    public OwnCloudClient createClient(Context context) {
+        OwnCloudClient client = OwnCloudClientFactory.createOwnCloudClient(Uri.parse("http://127.0.0.1:" + getPort()),
+                                                                           context,
+                                                                           true);
+        client.setCredentials(OwnCloudCredentialsFactory.newBasicCredentials("user", "password"));
+        client.setUserId("user");
+        return client;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            }
+        } catch (IOException e) {
+            // server closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket) {
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            OutputStream out = connection.getOutputStream();
+            String requestLine = readLine(in);
+            while (requestLine != null && !requestLine.isEmpty()) {
+                long contentLength = 0;
+                boolean chunked = false;
+                for (String header = readLine(in); header != null && !header.isEmpty(); header = readLine(in)) {
+                    String lowerCaseHeader = header.toLowerCase(Locale.ROOT);
+                    if (lowerCaseHeader.startsWith("content-length:")) {
+                        contentLength = Long.parseLong(header.substring(header.indexOf(':') + 1).trim());
+                    } else if (lowerCaseHeader.startsWith("transfer-encoding:") &&
+                        lowerCaseHeader.contains("chunked")) {
+                        chunked = true;
+                    } else if (lowerCaseHeader.startsWith("expect:") &&
+                        lowerCaseHeader.contains("100-continue")) {
+                        out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                    }
+                }
+                long received = chunked ? skipChunked(in) : skip(in, contentLength);
+
+                String[] request = requestLine.split(" ");
+                int status = handler.handle(request[0], request[1], received);
+                if (status == DISCONNECT) {
+                    return;
+                }
+                out.write(("HTTP/1.1 " + status + " Status\r\nContent-Length: 0\r\n\r\n")
+                              .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+
+                requestLine = readLine(in);
+            }
+        } catch (IOException e) {
+            // connection closed by client
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b = in.read();
+        if (b == -1) {
+            return null;
+        }
+        while (b != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+            b = in.read();
+        }
+        return line.toString(StandardCharsets.US_ASCII.name());
+    }
+
+    private static long skip(InputStream in, long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new IOException("Unexpected end of request body");
+            }
+            remaining -= read;
+        }
+        return length;
+    }
+
+    private static long skipChunked(InputStream in) throws IOException {
+        long total = 0;
+        while (true) {
+            String sizeLine = readLine(in);
+            if (sizeLine == null) {
+                throw new IOException("Unexpected end of request body");
+            }
+            int extension = sizeLine.indexOf(';');
+            long size = Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+            if (size == 0) {
+                for (String trailer = readLine(in); trailer != null && !trailer.isEmpty(); trailer = readLine(in)) {
+                    // ignore trailers
+                }
+                return total;
+            }
+            total += skip(in, size);
+            readLine(in);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import android.content.ContentValues;
 
 import com.owncloud.android.AbstractOnServerIT;
 import com.owncloud.android.db.ProviderMeta;
+import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.resources.files.CreateFolderRemoteOperation;
 import com.owncloud.android.lib.resources.files.SearchRemoteOperation;
@@ -35,6 +36,7 @@ import com.owncloud.android.lib.resources.status.CapabilityBooleanType;
 import com.owncloud.android.lib.resources.status.OCCapability;
 import com.owncloud.android.operations.RefreshFolderOperation;
 import com.owncloud.android.utils.FileStorageUtils;
+import com.owncloud.android.utils.MimeType;
 
 import junit.framework.TestCase;
 
@@ -45,11 +47,13 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static com.owncloud.android.lib.resources.files.SearchRemoteOperation.SearchType.GALLERY_SEARCH;
 import static com.owncloud.android.lib.resources.files.SearchRemoteOperation.SearchType.PHOTO_SEARCH;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -344,6 +348,208 @@ abstract public class FileDataStorageManagerIT extends AbstractOnServerIT {
         sut.saveNewFile(newFile);
     }
 
+    @Test
+    public void testSaveFolderWithManyChildren() {
+        for (int count : new int[]{1000, 10000, 50000}) {
+            sut.deleteAllFiles();
+
+            OCFile folder = new OCFile("/bulk/");
+            folder.setMimeType(MimeType.DIRECTORY);
+            folder.setParentId(sut.getFileByPath("/").getFileId());
+            sut.saveFile(folder);
+            folder = sut.getFileByPath("/bulk/");
+
+            List<OCFile> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                OCFile child = new OCFile("/bulk/file" + i + ".txt");
+                child.setRemoteId(String.valueOf(i));
+                children.add(child);
+            }
+
+            long start = System.currentTimeMillis();
+            sut.saveFolder(folder, children, new ArrayList<>());
+            long inserted = System.currentTimeMillis();
+            long firstId = sut.getFileByPath("/bulk/file0.txt").getFileId();
+
+            // previous implementation resolved every child with its own existence query before the batch
+            long legacyStart = System.currentTimeMillis();
+            for (OCFile child : children) {
+                assertTrue(sut.fileExists(child.getRemotePath()));
+            }
+            long legacyLookups = System.currentTimeMillis() - legacyStart;
+
+            // second run updates all children: ids must be resolved without creating duplicates
+            List<OCFile> updated = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                OCFile child = new OCFile("/bulk/file" + i + ".txt");
+                child.setRemoteId(String.valueOf(i));
+                child.setEtag("etag" + i);
+                updated.add(child);
+            }
+            long updateStart = System.currentTimeMillis();
+            sut.saveFolder(folder, updated, new ArrayList<>());
+            long update = System.currentTimeMillis() - updateStart;
+
+            Log_OC.d(this, "saveFolder with " + count + " children: insert " + (inserted - start) +
+                " ms, update with bulk id lookup " + update + " ms, per child lookups of the previous " +
+                "implementation alone " + legacyLookups + " ms");
+
+            assertEquals(count, sut.getFolderContent(folder, false).size());
+            // root, folder and children, no duplicates
+            assertEquals(count + 2, sut.getAllFiles().size());
+            assertEquals(firstId, sut.getFileByPath("/bulk/file0.txt").getFileId());
+            assertEquals("etag0", sut.getFileByPath("/bulk/file0.txt").getEtag());
+        }
+    }
+
+    @Test
+    public void testRemoveFolderWithDescendants() {
+        int depth = 5;
+        int filesPerFolder = 100;
+
+        OCFile sibling = new OCFile("/sibling.txt");
+        sibling.setRemoteId("sibling");
+        sut.saveFolder(sut.getFileByPath("/"), Collections.singletonList(sibling), new ArrayList<>());
+
+        OCFile top = null;
+        OCFile parent = sut.getFileByPath("/");
+        String path = "/";
+        for (int level = 0; level < depth; level++) {
+            path = path + "level" + level + "/";
+            OCFile folder = new OCFile(path);
+            folder.setMimeType(MimeType.DIRECTORY);
+            folder.setRemoteId("folder" + level);
+            folder.setParentId(parent.getFileId());
+            sut.saveFile(folder);
+            folder = sut.getFileByPath(path);
+
+            List<OCFile> children = new ArrayList<>(filesPerFolder);
+            for (int i = 0; i < filesPerFolder; i++) {
+                OCFile child = new OCFile(path + "file" + i + ".txt");
+                child.setRemoteId(level + "_" + i);
+                children.add(child);
+            }
+            sut.saveFolder(folder, children, new ArrayList<>());
+
+            if (top == null) {
+                top = folder;
+            }
+            parent = folder;
+        }
+        int stored = sut.getAllFiles().size();
+
+        long start = System.currentTimeMillis();
+        assertTrue(sut.removeFolder(top, true, false));
+        Log_OC.d(this, "removed folder with " + depth * (filesPerFolder + 1) + " files in " +
+            (System.currentTimeMillis() - start) + " ms");
+
+        assertEquals(stored - depth * (filesPerFolder + 1), sut.getAllFiles().size());
+        assertNull(sut.getFileByPath("/level0/"));
+        assertNull(sut.getFileByPath(path + "file0.txt"));
+        assertTrue(sut.getFileByPath("/sibling.txt").fileExists());
+    }
+
+    @Test
+    public void testMoveFolderWithDescendants() {
+        int filesPerFolder = 100;
+        String savePath = FileStorageUtils.getSavePath(account.name);
+
+        OCFile root = sut.getFileByPath("/");
+        OCFile target = saveFolder(root, "/target/", "target");
+        OCFile archive = saveFolder(root, "/archive/", "archive");
+        OCFile year = saveFolder(archive, "/archive/2021/", "2021");
+        saveFolder(root, "/archive2/", "archive2");
+
+        OCFile similar = new OCFile("/archive.txt");
+        similar.setRemoteId("similar");
+        sut.saveFolder(root, Collections.singletonList(similar), new ArrayList<>());
+
+        List<OCFile> children = new ArrayList<>(filesPerFolder);
+        for (int i = 0; i < filesPerFolder; i++) {
+            OCFile child = new OCFile("/archive/2021/photo" + i + ".jpg");
+            child.setRemoteId("photo" + i);
+            child.setMimeType("image/jpeg");
+            child.setStoragePath(savePath + child.getRemotePath());
+            children.add(child);
+        }
+        sut.saveFolder(year, children, new ArrayList<>());
+
+        long start = System.currentTimeMillis();
+        sut.moveLocalFile(archive, "/target/archive/", "/target/");
+        Log_OC.d(this, "moved folder with " + (filesPerFolder + 2) + " files in " +
+            (System.currentTimeMillis() - start) + " ms");
+
+        assertNull(sut.getFileByPath("/archive/"));
+        assertNull(sut.getFileByPath("/archive/2021/photo0.jpg"));
+
+        OCFile movedArchive = sut.getFileByPath("/target/archive/");
+        assertEquals(archive.getFileId(), movedArchive.getFileId());
+        assertEquals(target.getFileId(), movedArchive.getParentId());
+        assertEquals(year.getFileId(), sut.getFileByPath("/target/archive/2021/").getFileId());
+
+        OCFile movedPhoto = sut.getFileByPath("/target/archive/2021/photo" + (filesPerFolder - 1) + ".jpg");
+        assertEquals(year.getFileId(), movedPhoto.getParentId());
+        assertEquals(savePath + movedPhoto.getRemotePath(), movedPhoto.getStoragePath());
+        assertEquals(filesPerFolder,
+                     sut.getFolderContent(sut.getFileByPath("/target/archive/2021/"), false).size());
+
+        // paths sharing the prefix of the moved folder are not affected
+        assertTrue(sut.getFileByPath("/archive2/").fileExists());
+        assertTrue(sut.getFileByPath("/archive.txt").fileExists());
+    }
+
+    @Test
+    public void testUpdateSharedFilesTouchesChangedRowsOnly() {
+        int files = 1000;
+        OCFile root = sut.getFileByPath("/");
+        List<OCFile> children = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            OCFile child = new OCFile("/file" + i + ".txt");
+            child.setRemoteId("file" + i);
+            child.setSharedViaLink(i < 10);
+            children.add(child);
+        }
+        sut.saveFolder(root, children, new ArrayList<>());
+
+        // file0 stays, file1 gets shared with a sharee too, file2 to file9 are not shared anymore
+        List<OCFile> shared = new ArrayList<>();
+        shared.add(sharedFile("/file0.txt", true, false));
+        shared.add(sharedFile("/file1.txt", true, true));
+        shared.add(sharedFile("/file10.txt", false, true));
+        shared.add(sharedFile("/new.txt", true, false));
+
+        assertEquals(1 + 8 + 1 + 1, sut.updateSharedFiles(shared));
+        assertEquals(0, sut.updateSharedFiles(shared));
+
+        assertTrue(sut.getFileByPath("/file0.txt").isSharedViaLink());
+        assertTrue(sut.getFileByPath("/file1.txt").isSharedWithSharee());
+        assertFalse(sut.getFileByPath("/file2.txt").isSharedViaLink());
+        assertTrue(sut.getFileByPath("/file10.txt").isSharedWithSharee());
+        assertFalse(sut.getFileByPath("/file11.txt").isSharedWithSharee());
+        assertTrue(sut.getFileByPath("/new.txt").isSharedViaLink());
+
+        assertEquals(4, sut.updateSharedFiles(new ArrayList<>()));
+        assertFalse(sut.getFileByPath("/file0.txt").isSharedViaLink());
+    }
+
+    private OCFile sharedFile(String path, boolean sharedViaLink, boolean sharedWithSharee) {
+        OCFile file = new OCFile(path);
+        file.setRemoteId(path);
+        file.setParentId(sut.getFileByPath("/").getFileId());
+        file.setSharedViaLink(sharedViaLink);
+        file.setSharedWithSharee(sharedWithSharee);
+        return file;
+    }
+
+    private OCFile saveFolder(OCFile parent, String path, String remoteId) {
+        OCFile folder = new OCFile(path);
+        folder.setMimeType(MimeType.DIRECTORY);
+        folder.setRemoteId(remoteId);
+        folder.setParentId(parent.getFileId());
+        sut.saveFile(folder);
+        return sut.getFileByPath(path);
+    }
+
     @Test
     public void testOCCapability() {
         OCCapability capability = new OCCapability();
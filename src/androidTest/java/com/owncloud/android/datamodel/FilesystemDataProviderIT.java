@@ -0,0 +1,238 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.files.services.FileUploader;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilesystemDataProviderIT extends AbstractIT {
+
+    private static final int FOLDERS = 50;
+    private static final int FILES_PER_FOLDER = 1000;
+    private static final int LEGACY_FILES = 5000;
+    private static final long SYNCED_FOLDER_ID = 4711;
+    private static final int CORPUS_FILES = 50;
+    private static final long CORPUS_FILE_SIZE = 100L * 1024 * 1024;
+    private static final int PARALLEL_CHECKSUM_WORKERS = 4;
+    private static final int MULTI_BUFFER_FILE_SIZE = 1024 * 1024 + 7;
+
+    private FilesystemDataProvider sut;
+    private SyncedFolder syncedFolder;
+    private File root;
+
+    @Before
+    public void before() {
+        sut = new FilesystemDataProvider(targetContext.getContentResolver());
+        root = new File(targetContext.getCacheDir(), "filesystemDataProviderIT");
+        assertTrue(root.mkdirs() || root.isDirectory());
+
+        syncedFolder = new SyncedFolder(root.getAbsolutePath(),
+                                        "/instantUpload",
+                                        false,
+                                        false,
+                                        true,
+                                        false,
+                                        account.name,
+                                        0,
+                                        FileUploader.NameCollisionPolicy.ASK_USER.serialize(),
+                                        true,
+                                        0,
+                                        MediaFolderType.CUSTOM,
+                                        false);
+        syncedFolder.setId(SYNCED_FOLDER_ID);
+    }
+
+    @After
+    public void after() {
+        sut.deleteAllEntriesForSyncedFolder(Long.toString(SYNCED_FOLDER_ID));
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void indexerDetectsChanges() throws IOException {
+        File unchanged = createFile(root, "unchanged.txt", "a");
+        File changed = createFile(root, "changed.txt", "b");
+
+        index(unchanged, changed);
+        for (String path : sut.getFilesForUpload(root.getAbsolutePath(), Long.toString(SYNCED_FOLDER_ID))) {
+            sut.updateFilesystemFileAsSentForUpload(path, Long.toString(SYNCED_FOLDER_ID));
+        }
+
+        // content and modification date changed, file must be uploaded again
+        createFile(root, "changed.txt", "c");
+        assertTrue(changed.setLastModified(changed.lastModified() + 1000));
+        File added = createFile(root, "added.txt", "d");
+        index(unchanged, changed, added);
+
+        List<String> expected = new ArrayList<>();
+        expected.add(changed.getAbsolutePath());
+        expected.add(added.getAbsolutePath());
+        List<String> actual = new ArrayList<>(sut.getFilesForUpload(root.getAbsolutePath(),
+                                                                    Long.toString(SYNCED_FOLDER_ID)));
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.containsAll(expected));
+    }
+
+    @Test
+    public void indexerForKnownFiles() throws IOException {
+        File first = createFile(root, "first.txt", "a");
+        File second = createFile(root, "second.txt", "b");
+        index(first, second);
+        for (String path : sut.getFilesForUpload(root.getAbsolutePath(), Long.toString(SYNCED_FOLDER_ID))) {
+            sut.updateFilesystemFileAsSentForUpload(path, Long.toString(SYNCED_FOLDER_ID));
+        }
+
+        // only entry of second file is loaded, unchanged file must not be inserted again
+        File added = createFile(root, "added.txt", "c");
+        List<String> paths = new ArrayList<>();
+        paths.add(second.getAbsolutePath());
+        paths.add(added.getAbsolutePath());
+        FilesystemDataProvider.Indexer indexer = sut.createIndexer(syncedFolder, paths);
+        indexer.storeOrUpdateFileValue(second.getAbsolutePath(), second.lastModified(), false);
+        indexer.storeOrUpdateFileValue(added.getAbsolutePath(), added.lastModified(), false);
+        assertTrue(indexer.flush());
+
+        List<String> actual = new ArrayList<>(sut.getFilesForUpload(root.getAbsolutePath(),
+                                                                    Long.toString(SYNCED_FOLDER_ID)));
+        assertEquals(1, actual.size());
+        assertEquals(added.getAbsolutePath(), actual.get(0));
+    }
+
+    /**
+     * Indexes a synthetic tree of 50k files, indexes it again unchanged and compares it with storing files one by
+     * one. Both implementations insert into a table without entries of the synced folder.
+     */
+    @Test
+    public void benchmark() throws IOException {
+        List<File> files = new ArrayList<>(FOLDERS * FILES_PER_FOLDER);
+        for (int f = 0; f < FOLDERS; f++) {
+            File folder = new File(root, "folder" + f);
+            assertTrue(folder.mkdirs() || folder.isDirectory());
+            for (int i = 0; i < FILES_PER_FOLDER; i++) {
+                files.add(createFile(folder, "file" + i + ".jpg", Integer.toString(i)));
+            }
+        }
+
+        sut.deleteAllEntriesForSyncedFolder(Long.toString(SYNCED_FOLDER_ID));
+        long start = System.currentTimeMillis();
+        for (File file : files.subList(0, LEGACY_FILES)) {
+            sut.storeOrUpdateFileValue(file.getAbsolutePath(), file.lastModified(), false, syncedFolder);
+        }
+        long legacyDuration = System.currentTimeMillis() - start;
+        assertEquals(LEGACY_FILES, sut.getFilesForUpload(root.getAbsolutePath(),
+                                                         Long.toString(SYNCED_FOLDER_ID)).size());
+
+        sut.deleteAllEntriesForSyncedFolder(Long.toString(SYNCED_FOLDER_ID));
+        start = System.currentTimeMillis();
+        index(files.toArray(new File[0]));
+        long initialDuration = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        index(files.toArray(new File[0]));
+        long rescanDuration = System.currentTimeMillis() - start;
+
+        Log_OC.d(this, files.size() + " files: initial index " + initialDuration + " ms, rescan " + rescanDuration +
+            " ms, one by one " + legacyDuration * files.size() / LEGACY_FILES + " ms (extrapolated from " +
+            LEGACY_FILES + " files)");
+
+        assertEquals(files.size(), sut.getFilesForUpload(root.getAbsolutePath(),
+                                                         Long.toString(SYNCED_FOLDER_ID)).size());
+    }
+
+    @Test
+    public void checksum() throws IOException {
+        File file = createFile(root, "checksum.txt", "a");
+        File bigFile = new File(root, "big.bin");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(bigFile, "rw")) {
+            randomAccessFile.setLength(MULTI_BUFFER_FILE_SIZE);
+        }
+
+        CRC32 expected = new CRC32();
+        expected.update(new byte[MULTI_BUFFER_FILE_SIZE]);
+
+        assertEquals(0xe8b7be43L, FilesystemDataProvider.getFileChecksum(file.getAbsolutePath()));
+        assertEquals(expected.getValue(), FilesystemDataProvider.getFileChecksum(bigFile.getAbsolutePath()));
+        assertEquals(-1, FilesystemDataProvider.getFileChecksum(new File(root, "missing").getAbsolutePath()));
+    }
+
+    /**
+     * Indexes a synthetic corpus of 5 GB in sparse files, computing checksums on one and on multiple threads.
+     */
+    @Test
+    public void checksumBenchmark() throws IOException {
+        File[] files = new File[CORPUS_FILES];
+        for (int i = 0; i < CORPUS_FILES; i++) {
+            files[i] = new File(root, "video" + i + ".mp4");
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(files[i], "rw")) {
+                randomAccessFile.setLength(CORPUS_FILE_SIZE);
+            }
+        }
+
+        sut = new FilesystemDataProvider(targetContext.getContentResolver(), 1);
+        long start = System.currentTimeMillis();
+        index(files);
+        long singleDuration = System.currentTimeMillis() - start;
+
+        sut.deleteAllEntriesForSyncedFolder(Long.toString(SYNCED_FOLDER_ID));
+        sut = new FilesystemDataProvider(targetContext.getContentResolver(), PARALLEL_CHECKSUM_WORKERS);
+        start = System.currentTimeMillis();
+        index(files);
+        long parallelDuration = System.currentTimeMillis() - start;
+
+        Log_OC.d(this, CORPUS_FILES * CORPUS_FILE_SIZE / (1024 * 1024) + " MB: 1 checksum worker " + singleDuration +
+            " ms, " + PARALLEL_CHECKSUM_WORKERS + " checksum workers " + parallelDuration + " ms");
+
+        assertEquals(CORPUS_FILES, sut.getFilesForUpload(root.getAbsolutePath(),
+                                                         Long.toString(SYNCED_FOLDER_ID)).size());
+    }
+
+    private void index(File... files) {
+        FilesystemDataProvider.Indexer indexer = sut.createIndexer(syncedFolder);
+        for (File file : files) {
+            indexer.storeOrUpdateFileValue(file.getAbsolutePath(), file.lastModified(), false);
+        }
+        assertTrue(indexer.flush());
+    }
+
+    private static File createFile(File folder, String name, String content) throws IOException {
+        File file = new File(folder, name);
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes());
+        }
+        return file;
+    }
+}
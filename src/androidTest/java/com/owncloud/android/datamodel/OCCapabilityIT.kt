@@ -22,13 +22,21 @@
 
 package com.owncloud.android.datamodel
 
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule
 import com.owncloud.android.AbstractIT
 import com.owncloud.android.lib.resources.status.CapabilityBooleanType
 import com.owncloud.android.lib.resources.status.OCCapability
 import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertNull
+import org.junit.Rule
 import org.junit.Test
 
 class OCCapabilityIT : AbstractIT() {
+    @get:Rule
+    val rule = InstantTaskExecutorRule()
+
     @Test
     fun saveCapability() {
         val fileDataStorageManager = FileDataStorageManager(account, targetContext.contentResolver)
@@ -46,4 +54,43 @@ class OCCapabilityIT : AbstractIT() {
         assertEquals(capability.userStatus, newCapability.userStatus)
         assertEquals(capability.userStatusSupportsEmoji, newCapability.userStatusSupportsEmoji)
     }
+
+    @Test
+    fun readsReturnCopies() {
+        val fileDataStorageManager = FileDataStorageManager(account, targetContext.contentResolver)
+
+        val capability = OCCapability()
+        capability.etag = "123"
+        fileDataStorageManager.saveCapabilities(capability)
+
+        val first = fileDataStorageManager.getCapability(account.name)
+        first.etag = "modified"
+        val second = fileDataStorageManager.getCapability(account.name)
+
+        assertNotSame(first, second)
+        assertEquals("123", second.etag)
+
+        val observed = fileDataStorageManager.getCapabilityLiveData(account.name).value
+        assertNotNull(observed)
+        assertNotSame(second, observed)
+        assertEquals("123", observed?.etag)
+    }
+
+    @Test
+    fun observersReceiveSavedCapabilitiesAndNullOnAccountRemoval() {
+        val fileDataStorageManager = FileDataStorageManager(account, targetContext.contentResolver)
+
+        val capability = OCCapability()
+        capability.etag = "123"
+        fileDataStorageManager.saveCapabilities(capability)
+        val observable = fileDataStorageManager.getCapabilityLiveData(account.name)
+        assertEquals("123", observable.value?.etag)
+
+        capability.etag = "456"
+        fileDataStorageManager.saveCapabilities(capability)
+        assertEquals("456", observable.value?.etag)
+
+        FileDataStorageManager.removeCachedCapability(account.name)
+        assertNull(observable.value)
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.database.MatrixCursor;
+
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.lib.resources.shares.ShareType;
+import com.owncloud.android.lib.resources.shares.ShareeUser;
+import com.owncloud.android.utils.MimeType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OCFileCursorMapperTest {
+
+    private static final String ACCOUNT_NAME = "test@https://nextcloud.localhost";
+    private static final int ROWS = 100000;
+
+    private static final String SHAREES = OCFileCursorMapper.shareesToJson(
+        Collections.singletonList(new ShareeUser("admin", "Admin", ShareType.USER)));
+
+    @Test
+    public void mapAllColumns() {
+        MatrixCursor cursor = createCursor(1);
+        cursor.moveToFirst();
+
+        OCFile file = new OCFileCursorMapper(cursor, ACCOUNT_NAME).map();
+
+        assertEquals(0, file.getFileId());
+        assertEquals("/folder/file0.txt", file.getRemotePath());
+        assertEquals("text/plain", file.getMimeType());
+        assertEquals(1024, file.getFileLength());
+        assertEquals("etag0", file.getEtag());
+        assertTrue(file.isFavorite());
+        assertEquals(1, file.getSharees().size());
+        assertEquals("admin", file.getSharees().get(0).getUserId());
+    }
+
+    @Test
+    public void mapSlimProjection() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+            ProviderTableMeta._ID,
+            ProviderTableMeta.FILE_PATH,
+            ProviderTableMeta.FILE_CONTENT_TYPE
+        });
+        cursor.addRow(new Object[]{42L, "/folder/", MimeType.DIRECTORY});
+        cursor.moveToFirst();
+
+        OCFile file = new OCFileCursorMapper(cursor, ACCOUNT_NAME).map();
+
+        assertEquals(42, file.getFileId());
+        assertEquals("/folder/", file.getRemotePath());
+        assertTrue(file.isFolder());
+        assertNull(file.getEtag());
+        assertEquals(0, file.getSharees().size());
+    }
+
+    @Test
+    public void projectionIsAcceptedByFileContentProvider() {
+        for (String column : OCFileCursorMapper.PROJECTION) {
+            assertTrue(column, ProviderTableMeta.FILE_ALL_COLUMNS.contains(column));
+        }
+    }
+
+    @Test
+    public void benchmark() {
+        MatrixCursor cursor = createCursor(ROWS);
+
+        // resolving columns for each row, as done before the mapper was reused per cursor
+        long start = System.currentTimeMillis();
+        List<OCFile> perRow = new ArrayList<>(ROWS);
+        while (cursor.moveToNext()) {
+            perRow.add(new OCFileCursorMapper(cursor, ACCOUNT_NAME).map());
+        }
+        long perRowDuration = System.currentTimeMillis() - start;
+
+        cursor.moveToPosition(-1);
+        start = System.currentTimeMillis();
+        List<OCFile> reused = new ArrayList<>(ROWS);
+        OCFileCursorMapper mapper = new OCFileCursorMapper(cursor, ACCOUNT_NAME);
+        while (cursor.moveToNext()) {
+            reused.add(mapper.map());
+        }
+        long reusedDuration = System.currentTimeMillis() - start;
+
+        Log_OC.d(this, "Mapping " + ROWS + " rows: per row " + perRowDuration + " ms, reused " + reusedDuration + " ms");
+
+        assertEquals(ROWS, perRow.size());
+        assertEquals(ROWS, reused.size());
+        assertEquals(perRow.get(ROWS - 1).getRemotePath(), reused.get(ROWS - 1).getRemotePath());
+    }
+
+    private MatrixCursor createCursor(int rows) {
+        List<String> columns = ProviderTableMeta.FILE_ALL_COLUMNS;
+        MatrixCursor cursor = new MatrixCursor(columns.toArray(new String[0]), rows);
+
+        for (int i = 0; i < rows; i++) {
+            MatrixCursor.RowBuilder row = cursor.newRow();
+            row.add(ProviderTableMeta._ID, (long) i);
+            row.add(ProviderTableMeta.FILE_PARENT, 1L);
+            row.add(ProviderTableMeta.FILE_NAME, "file" + i + ".txt");
+            row.add(ProviderTableMeta.FILE_PATH, "/folder/file" + i + ".txt");
+            row.add(ProviderTableMeta.FILE_PATH_DECRYPTED, "/folder/file" + i + ".txt");
+            row.add(ProviderTableMeta.FILE_CONTENT_TYPE, "text/plain");
+            row.add(ProviderTableMeta.FILE_CONTENT_LENGTH, 1024L);
+            row.add(ProviderTableMeta.FILE_STORAGE_PATH, "/storage/folder/file" + i + ".txt");
+            row.add(ProviderTableMeta.FILE_ACCOUNT_OWNER, ACCOUNT_NAME);
+            row.add(ProviderTableMeta.FILE_ETAG, "etag" + i);
+            row.add(ProviderTableMeta.FILE_FAVORITE, 1);
+            row.add(ProviderTableMeta.FILE_MOUNT_TYPE, 0);
+            row.add(ProviderTableMeta.FILE_SHAREES, SHAREES);
+        }
+
+        return cursor;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ThumbnailMemoryCacheTest {
+
+    private static final int SIDE = 10;
+    private static final int BITMAP_BYTES = SIDE * SIDE * 4;
+
+    private Bitmap createBitmap() {
+        return Bitmap.createBitmap(SIDE, SIDE, Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void hitAndMiss() {
+        ThumbnailMemoryCache sut = new ThumbnailMemoryCache(10 * BITMAP_BYTES);
+        Bitmap bitmap = createBitmap();
+
+        assertNull(sut.get("t1"));
+        sut.put("t1", bitmap);
+        assertSame(bitmap, sut.get("t1"));
+
+        assertEquals(1, sut.hitCount());
+        assertEquals(1, sut.missCount());
+        assertEquals(BITMAP_BYTES, sut.size());
+    }
+
+    @Test
+    public void evictsBySize() {
+        ThumbnailMemoryCache sut = new ThumbnailMemoryCache(2 * BITMAP_BYTES);
+
+        sut.put("t1", createBitmap());
+        sut.put("t2", createBitmap());
+        sut.put("t3", createBitmap());
+
+        assertNull(sut.get("t1"));
+        assertEquals(1, sut.evictionCount());
+        assertEquals(2 * BITMAP_BYTES, sut.size());
+    }
+
+    @Test
+    public void putDropsSizedVariants() {
+        ThumbnailMemoryCache sut = new ThumbnailMemoryCache(10 * BITMAP_BYTES);
+        Bitmap scaled = createBitmap();
+
+        sut.put("r1", 100, 200, scaled);
+        assertSame(scaled, sut.get("r1", 100, 200));
+        assertNull(sut.get("r1", 200, 100));
+
+        sut.put("r1", createBitmap());
+        assertNull(sut.get("r1", 100, 200));
+    }
+
+    @Test
+    public void recycledBitmapIsMiss() {
+        ThumbnailMemoryCache sut = new ThumbnailMemoryCache(10 * BITMAP_BYTES);
+        Bitmap bitmap = createBitmap();
+
+        sut.put("t1", bitmap);
+        bitmap.recycle();
+
+        assertNull(sut.get("t1"));
+        assertEquals(0, sut.size());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.graphics.Bitmap;
+
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ThumbnailsCacheManagerIT {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 500;
+    private static final int KEYS = 100;
+    private static final String KEY_PREFIX = "stressTest";
+
+    @Before
+    public void before() {
+        new ThumbnailsCacheManager.InitDiskCacheTask().doInBackground();
+    }
+
+    /**
+     * The disk cache is shared with the app, so entries written by the tests must not stay in it.
+     */
+    @After
+    public void after() {
+        for (int i = 0; i < KEYS; i++) {
+            ThumbnailsCacheManager.removeBitmapFromCache(KEY_PREFIX + i);
+        }
+        ThumbnailsCacheManager.removeBitmapFromCache(ThumbnailsCacheManager.PREFIX_THUMBNAIL + KEY_PREFIX);
+        ThumbnailsCacheManager.removeBitmapFromCache(ThumbnailsCacheManager.PREFIX_RESIZED_IMAGE + KEY_PREFIX);
+    }
+
+    /**
+     * 8 threads read and write thumbnails concurrently, every 4th operation is a write. The memory tier is cleared
+     * regularly, so reads go to the disk cache as well.
+     */
+    @Test
+    public void concurrentReadWrite() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Callable<Integer>> workers = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            workers.add(() -> {
+                Random random = new Random(seed);
+                Bitmap bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+                int hits = 0;
+
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    String key = KEY_PREFIX + random.nextInt(KEYS);
+                    if (i % 4 == 0) {
+                        ThumbnailsCacheManager.addBitmapToCache(key, bitmap);
+                    } else if (ThumbnailsCacheManager.getBitmapFromDiskCache(key) != null) {
+                        hits++;
+                    }
+
+                    if (i % 50 == 0) {
+                        ThumbnailsCacheManager.getMemoryCache().clear();
+                    }
+                }
+                return hits;
+            });
+        }
+
+        long start = System.currentTimeMillis();
+        List<Future<Integer>> results = executor.invokeAll(workers);
+        int hits = 0;
+        for (Future<Integer> result : results) {
+            hits += result.get();
+        }
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+        executor.shutdown();
+
+        int operations = THREADS * OPERATIONS_PER_THREAD;
+        Log_OC.d(this, operations + " operations with " + THREADS + " threads in " + duration + " ms ("
+            + operations * 1000L / duration + " ops/s, " + hits + " hits)");
+
+        ThumbnailsCacheManager.getMemoryCache().clear();
+        for (int i = 0; i < KEYS; i++) {
+            String key = KEY_PREFIX + i;
+            if (ThumbnailsCacheManager.containsBitmap(key)) {
+                assertNotNull(ThumbnailsCacheManager.getBitmapFromDiskCache(key));
+            }
+        }
+    }
+
+    @Test
+    public void resizedImagesDoNotTakeThumbnailMemory() {
+        Bitmap thumbnail = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        Bitmap resized = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        String thumbnailKey = ThumbnailsCacheManager.PREFIX_THUMBNAIL + KEY_PREFIX;
+        String resizedKey = ThumbnailsCacheManager.PREFIX_RESIZED_IMAGE + KEY_PREFIX;
+
+        ThumbnailsCacheManager.addBitmapToCache(thumbnailKey, thumbnail);
+        ThumbnailsCacheManager.addBitmapToCache(resizedKey, resized);
+
+        assertSame(thumbnail, ThumbnailsCacheManager.getMemoryCache().get(thumbnailKey));
+        assertNull(ThumbnailsCacheManager.getMemoryCache().get(resizedKey));
+        assertSame(resized, ThumbnailsCacheManager.getResizedImageMemoryCache().get(resizedKey));
+        assertSame(resized, ThumbnailsCacheManager.getBitmapFromDiskCache(resizedKey));
+    }
+}
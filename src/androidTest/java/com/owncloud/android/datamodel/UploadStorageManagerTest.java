@@ -15,6 +15,7 @@ import com.owncloud.android.db.OCUpload;
 import com.owncloud.android.db.UploadResult;
 import com.owncloud.android.files.services.FileUploader;
 import com.owncloud.android.lib.common.accounts.AccountUtils;
+import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.operations.UploadFileOperation;
 
 import net.bytebuddy.utility.RandomString;
@@ -26,6 +27,7 @@ import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import androidx.test.core.app.ApplicationProvider;
@@ -114,6 +116,72 @@ public class UploadStorageManagerTest extends AbstractIT {
         }
     }
 
+    @Test
+    public void storeUploadsInBulk() {
+        int size = 10000;
+        ArrayList<OCUpload> uploads = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            uploads.add(createUpload(account));
+        }
+
+        deleteAllUploads();
+
+        long start = System.currentTimeMillis();
+        long[] ids = uploadsStorageManager.storeUploads(uploads);
+        long duration = System.currentTimeMillis() - start;
+        Log_OC.d(this, "Stored " + size + " uploads in " + duration + " ms");
+
+        assertEquals(size, ids.length);
+        assertEquals(size, uploadsStorageManager.getAllStoredUploads().length);
+        for (int i = 0; i < size; i++) {
+            assertTrue(ids[i] > 0);
+            assertEquals(ids[i], uploads.get(i).getUploadId());
+        }
+        assertTrue(uploads.get(size - 1).isSame(uploadsStorageManager.getUploadById(ids[size - 1])));
+    }
+
+    @Test
+    public void finishedUploadsArePaged() {
+        int size = 250;
+        int pageSize = 30;
+        int currentUploads = 10;
+
+        deleteAllUploads();
+        for (int i = 0; i < size; i++) {
+            OCUpload upload = createUpload(account);
+            upload.setUploadStatus(UploadsStorageManager.UploadStatus.UPLOAD_SUCCEEDED);
+            upload.setLastResult(UploadResult.UPLOADED);
+            // several uploads end at the same time
+            upload.setUploadEndTimestamp(1000L + i / 3);
+            uploadsStorageManager.storeUpload(upload);
+        }
+        insertUploads(account, currentUploads);
+        OCUpload otherAccountUpload = createUpload(account2);
+        otherAccountUpload.setUploadStatus(UploadsStorageManager.UploadStatus.UPLOAD_SUCCEEDED);
+        otherAccountUpload.setLastResult(UploadResult.UPLOADED);
+        uploadsStorageManager.storeUpload(otherAccountUpload);
+
+        List<OCUpload> pagedUploads = new ArrayList<>();
+        List<OCUpload> page = uploadsStorageManager.getFinishedUploadsPage(account.name, null, pageSize);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= pageSize);
+            pagedUploads.addAll(page);
+            page = uploadsStorageManager.getFinishedUploadsPage(account.name, page.get(page.size() - 1), pageSize);
+        }
+
+        assertEquals(size, pagedUploads.size());
+        assertEquals(size, uploadsStorageManager.countFinishedUploads(account.name));
+        assertEquals(currentUploads, uploadsStorageManager.countCurrentAndPendingUploads(account.name));
+        for (int i = 1; i < size; i++) {
+            OCUpload previous = pagedUploads.get(i - 1);
+            OCUpload current = pagedUploads.get(i);
+            // strictly ordered, so no upload is returned twice
+            assertTrue(previous.getUploadEndTimestamp() > current.getUploadEndTimestamp() ||
+                           previous.getUploadEndTimestamp() == current.getUploadEndTimestamp() &&
+                               previous.getUploadId() < current.getUploadId());
+        }
+    }
+
     @Test
     public void testIsSame() {
         OCUpload upload1 = new OCUpload("/test", "/test", account.name);
@@ -164,6 +232,20 @@ public class UploadStorageManagerTest extends AbstractIT {
         assertEquals(upload.getFolderUnlockToken(), newUpload.getFolderUnlockToken());
     }
 
+    @Test
+    public void chunkStateIsStored() {
+        long id = uploadsStorageManager.storeUpload(createUpload(account));
+
+        uploadsStorageManager.updateChunkState(id, "chunking-1", 1024, 3, 1600000000000L);
+        OCUpload upload = uploadsStorageManager.getUploadById(id);
+
+        assertNotNull(upload);
+        assertEquals("chunking-1", upload.getChunkedUploadId());
+        assertEquals(1024, upload.getChunkSize());
+        assertEquals(3, upload.getConfirmedChunks());
+        assertEquals(1600000000000L, upload.getChunkedSourceLastModified());
+    }
+
     @Test
     public void getByIdNull() {
         OCUpload newUpload = uploadsStorageManager.getUploadById(-1);
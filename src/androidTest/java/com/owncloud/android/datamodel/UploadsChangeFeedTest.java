@@ -0,0 +1,147 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadsChangeFeedTest {
+
+    private static final int BATCHES_PER_SECOND = 5;
+    private static final long TIMEOUT_MS = 5000;
+    private static final int UPDATES = 1000;
+
+    private HandlerThread thread;
+    private Handler handler;
+    private UploadsChangeFeed sut;
+    private final LinkedBlockingQueue<UploadsChangeFeed.Change> changes = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        thread = new HandlerThread("UploadsChangeFeedTest");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        sut = new UploadsChangeFeed(handler, BATCHES_PER_SECOND);
+        sut.addListener(changes::add);
+    }
+
+    @After
+    public void tearDown() {
+        thread.quitSafely();
+    }
+
+    /**
+     * Blocks the handler thread until the returned latch is released, so no batch is dispatched in between
+     * regardless of the timing of the test thread.
+     */
+    private CountDownLatch holdDispatch() {
+        CountDownLatch release = new CountDownLatch(1);
+        handler.post(() -> {
+            try {
+                release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return release;
+    }
+
+    @Test
+    public void burstOfChangesIsDeliveredAsOneBatch() throws InterruptedException {
+        // first batch starts the interval
+        sut.onUpdated(1);
+        assertNotNull(changes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < UPDATES; i++) {
+            sut.onUpdated(i % 10);
+        }
+        UploadsChangeFeed.Change change = changes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertNotNull(change);
+        assertEquals(10, change.getUpdated().size());
+        assertTrue(System.currentTimeMillis() - start >= 1000 / BATCHES_PER_SECOND / 2);
+        assertNull(changes.poll(2000 / BATCHES_PER_SECOND, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void changesOfOneUploadAreMerged() throws InterruptedException {
+        CountDownLatch release = holdDispatch();
+        sut.onInserted(1);
+        sut.onUpdated(1);
+        sut.onInserted(2);
+        sut.onRemoved(2);
+        sut.onUpdated(3);
+        sut.onRemoved(3);
+        sut.onUpdated(4);
+        release.countDown();
+
+        UploadsChangeFeed.Change change = changes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertNotNull(change);
+        assertFalse(change.isReloadAll());
+        assertEquals(Collections.singleton(1L), change.getInserted());
+        assertEquals(Collections.singleton(4L), change.getUpdated());
+        assertEquals(Collections.singleton(3L), change.getRemoved());
+    }
+
+    @Test
+    public void bulkChangeReloadsAll() throws InterruptedException {
+        CountDownLatch release = holdDispatch();
+        sut.onUpdated(1);
+        sut.onChangedAll();
+        sut.onInserted(2);
+        release.countDown();
+
+        UploadsChangeFeed.Change change = changes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertNotNull(change);
+        assertTrue(change.isReloadAll());
+        assertTrue(change.getInserted().isEmpty());
+
+        // next batch is described by ids again
+        release = holdDispatch();
+        sut.onRemoved(5);
+        sut.onRemoved(6);
+        release.countDown();
+        change = changes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        assertNotNull(change);
+        assertFalse(change.isReloadAll());
+        assertEquals(new HashSet<>(Arrays.asList(5L, 6L)), change.getRemoved());
+    }
+}
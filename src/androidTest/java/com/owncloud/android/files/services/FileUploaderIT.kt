@@ -504,4 +504,45 @@ class FileUploaderIT : AbstractOnServerIT() {
 
         assertEquals(file.length(), (result2.data[0] as RemoteFile).length)
     }
+
+    /**
+     * uploads several files into a new folder at once, runs them in parallel, check all of them
+     */
+    @Test
+    fun testParallelUploadsStatic() {
+        val file = getDummyFile("/chunkedFile.txt")
+        val remotePaths = Array(PARALLEL_FILES) { "/parallel/testFile$it.txt" }
+
+        FileUploader.uploadNewFile(
+            targetContext,
+            account,
+            Array(PARALLEL_FILES) { file.absolutePath },
+            remotePaths,
+            null,
+            FileUploader.LOCAL_BEHAVIOUR_COPY,
+            true,
+            UploadFileOperation.CREATED_BY_USER,
+            false,
+            false,
+            FileUploader.NameCollisionPolicy.DEFAULT
+        )
+
+        longSleep()
+        var waits = 0
+        while (uploadsStorageManager!!.currentAndPendingUploadsForCurrentAccount.isNotEmpty() && waits < MAX_WAITS) {
+            shortSleep()
+            waits++
+        }
+
+        for (remotePath in remotePaths) {
+            val result = ReadFileRemoteOperation(remotePath).execute(client)
+            assertTrue(remotePath, result.isSuccess)
+            assertEquals(file.length(), (result.data[0] as RemoteFile).length)
+        }
+    }
+
+    companion object {
+        private const val PARALLEL_FILES = 10
+        private const val MAX_WAITS = 30
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import android.os.SystemClock;
+
+import com.nextcloud.client.network.Connectivity;
+import com.nextcloud.client.network.ConnectivityService;
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.FakeWebDavServer;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.lib.resources.files.UploadFileRemoteOperation;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadSchedulerIT extends AbstractIT {
+
+    private static final int FILES = 1000;
+    private static final int FILE_SIZE = 200 * 1024;
+    private static final long SERVER_LATENCY_MS = 20;
+    private static final long TIMEOUT_MINUTES = 5;
+    private static final long TASK_DURATION_MS = 10;
+
+    private Connectivity connectivity = Connectivity.CONNECTED_WIFI;
+    private final ConnectivityService connectivityService = new ConnectivityService() {
+        @Override
+        public boolean isInternetWalled() {
+            return false;
+        }
+
+        @Override
+        public Connectivity getConnectivity() {
+            return connectivity;
+        }
+    };
+
+    private final Semaphore idle = new Semaphore(0);
+    private UploadScheduler sut;
+    private File root;
+
+    @Before
+    public void before() {
+        root = new File(targetContext.getCacheDir(), "uploadSchedulerIT");
+        assertTrue(root.mkdirs() || root.isDirectory());
+    }
+
+    @After
+    public void after() {
+        if (sut != null) {
+            sut.shutdown();
+        }
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void uploadsWithSameOrderingKeyRunOneAfterAnother() throws InterruptedException {
+        sut = new UploadScheduler(connectivityService, 4, 4, idle::release);
+        List<Integer> started = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            final int index = i;
+            sut.schedule(account.name, "folder", () -> {
+                started.add(index);
+                updateMax(maxRunning, running.incrementAndGet());
+                SystemClock.sleep(TASK_DURATION_MS);
+                running.decrementAndGet();
+            });
+        }
+        awaitIdle();
+
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < started.size(); i++) {
+            assertEquals(i, (int) started.get(i));
+        }
+    }
+
+    @Test
+    public void accountsShareUploads() throws InterruptedException {
+        sut = new UploadScheduler(connectivityService, 2, 2, idle::release);
+        List<String> finished = Collections.synchronizedList(new ArrayList<>());
+
+        for (int i = 0; i < 50; i++) {
+            sut.schedule("busy", null, () -> {
+                SystemClock.sleep(TASK_DURATION_MS);
+                finished.add("busy");
+            });
+        }
+        for (int i = 0; i < 5; i++) {
+            sut.schedule("other", null, () -> {
+                SystemClock.sleep(TASK_DURATION_MS);
+                finished.add("other");
+            });
+        }
+        awaitIdle();
+
+        // other account does not wait for the queue of the busy one
+        assertEquals(55, finished.size());
+        assertTrue(finished.lastIndexOf("other") < 20);
+    }
+
+    @Test
+    public void fewerUploadsOnMeteredNetwork() throws InterruptedException {
+        connectivity = new Connectivity(true, true, false, true);
+        sut = new UploadScheduler(connectivityService, 4, 2, idle::release);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            sut.schedule(account.name, null, () -> {
+                updateMax(maxRunning, running.incrementAndGet());
+                SystemClock.sleep(TASK_DURATION_MS);
+                running.decrementAndGet();
+            });
+        }
+        awaitIdle();
+
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void parallelUploadsCanBeChanged() throws InterruptedException {
+        sut = new UploadScheduler(connectivityService, 4, 4, idle::release);
+        sut.setParallelUploads(1, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            sut.schedule(account.name, null, () -> {
+                updateMax(maxRunning, running.incrementAndGet());
+                SystemClock.sleep(TASK_DURATION_MS);
+                running.decrementAndGet();
+            });
+        }
+        awaitIdle();
+
+        assertEquals(1, maxRunning.get());
+    }
+
+    /**
+     * Uploads 1000 files of 200 KB to a local WebDAV server answering after 20 ms, one by one and in parallel.
+     */
+    @Test
+    public void throughput() throws IOException, InterruptedException {
+        File file = new File(root, "photo.jpg");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(FILE_SIZE);
+        }
+
+        AtomicInteger uploads = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        // accepts every request after a fixed delay, as a WebDAV server does for uploaded files
+        FakeWebDavServer.RequestHandler handler = (method, path, received) -> {
+            SystemClock.sleep(SERVER_LATENCY_MS);
+            if ("PUT".equals(method)) {
+                uploads.incrementAndGet();
+                bytes.addAndGet(received);
+            }
+            return 201;
+        };
+
+        try (FakeWebDavServer server = new FakeWebDavServer(handler)) {
+            long sequentialDuration = uploadAll(server, file, 1);
+            long parallelDuration = uploadAll(server, file, UploadScheduler.DEFAULT_UNMETERED_UPLOADS);
+
+            Log_OC.d(this, FILES + " x " + FILE_SIZE / 1024 + " KB: 1 upload " + sequentialDuration + " ms (" +
+                FILES * 1000L / sequentialDuration + " files/s), " + UploadScheduler.DEFAULT_UNMETERED_UPLOADS +
+                " uploads " + parallelDuration + " ms (" + FILES * 1000L / parallelDuration + " files/s)");
+
+            assertEquals(2 * FILES, uploads.get());
+            assertEquals(2L * FILES * FILE_SIZE, bytes.get());
+            assertTrue(parallelDuration < sequentialDuration);
+        }
+    }
+
+    private long uploadAll(FakeWebDavServer server, File file, int parallelUploads) throws InterruptedException {
+        OwnCloudClient client = server.createClient(targetContext);
+
+        if (sut != null) {
+            sut.shutdown();
+        }
+        sut = new UploadScheduler(connectivityService, parallelUploads, parallelUploads, idle::release);
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < FILES; i++) {
+            final String remotePath = "/photos/photo" + i + ".jpg";
+            sut.schedule(account.name, null, () -> {
+                boolean success = new UploadFileRemoteOperation(file.getAbsolutePath(),
+                                                                remotePath,
+                                                                "image/jpeg",
+                                                                String.valueOf(System.currentTimeMillis() / 1000))
+                    .execute(client)
+                    .isSuccess();
+                if (!success) {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+        awaitIdle();
+
+        assertEquals(0, failed.get());
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Waits until all scheduled uploads are done; the scheduler might have been idle before all were scheduled.
+     */
+    private void awaitIdle() throws InterruptedException {
+        while (!sut.isIdle()) {
+            assertTrue(idle.tryAcquire(TIMEOUT_MINUTES, TimeUnit.MINUTES));
+        }
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        synchronized (max) {
+            max.set(Math.max(max.get(), value));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.operations;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.FakeWebDavServer;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResumableChunkedUploadOperationIT extends AbstractIT {
+
+    private static final long CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS = 10;
+    private static final long FILE_SIZE = CHUNKS * CHUNK_SIZE - 1000;
+    private static final int CONFIRMED_BEFORE_DISCONNECT = 4;
+    private static final String REMOTE_PATH = "/videos/video.mp4";
+
+    private File root;
+    private File file;
+    private String chunkedUploadId;
+    private long confirmedChunks;
+
+    @Before
+    public void before() throws IOException {
+        root = new File(targetContext.getCacheDir(), "resumableChunkedUploadIT");
+        assertTrue(root.mkdirs() || root.isDirectory());
+        file = new File(root, "video.mp4");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(FILE_SIZE);
+        }
+        chunkedUploadId = null;
+        confirmedChunks = 0;
+    }
+
+    @After
+    public void after() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Test
+    public void parallelChunksAreAssembled() throws IOException {
+        ChunkingProtocol protocol = new ChunkingProtocol();
+        try (FakeWebDavServer server = new FakeWebDavServer(protocol)) {
+            assertTrue(upload(server, null, 0, ResumableChunkedUploadOperation.DEFAULT_PARALLEL_CHUNKS).isSuccess());
+
+            assertEquals(CHUNKS, protocol.puts.size());
+            assertEquals(FILE_SIZE, protocol.assembledLength.get());
+            assertNull(chunkedUploadId);
+            assertEquals(0, confirmedChunks);
+        }
+    }
+
+    @Test
+    public void interruptedUploadIsResumed() throws IOException {
+        ChunkingProtocol protocol = new ChunkingProtocol();
+        try (FakeWebDavServer server = new FakeWebDavServer(protocol)) {
+            // connection is lost after some chunks
+            protocol.disconnectAfterPuts.set(CONFIRMED_BEFORE_DISCONNECT);
+            assertFalse(upload(server, null, 0, 1).isSuccess());
+            assertEquals(CONFIRMED_BEFORE_DISCONNECT, confirmedChunks);
+            assertEquals(-1, protocol.assembledLength.get());
+
+            // only the missing chunks are sent again
+            protocol.disconnectAfterPuts.set(Integer.MAX_VALUE);
+            protocol.puts.clear();
+            String interruptedUploadId = chunkedUploadId;
+            assertTrue(upload(server, interruptedUploadId, confirmedChunks, 1).isSuccess());
+
+            assertEquals(CHUNKS - CONFIRMED_BEFORE_DISCONNECT, protocol.puts.size());
+            for (int i = 0; i < protocol.puts.size(); i++) {
+                assertEquals(chunkName(interruptedUploadId, CONFIRMED_BEFORE_DISCONNECT + i), protocol.puts.get(i));
+            }
+            assertEquals(FILE_SIZE, protocol.assembledLength.get());
+            assertNull(chunkedUploadId);
+        }
+    }
+
+    @Test
+    public void expiredUploadStartsOver() throws IOException {
+        ChunkingProtocol protocol = new ChunkingProtocol();
+        try (FakeWebDavServer server = new FakeWebDavServer(protocol)) {
+            // upload folder was cleaned up by the server
+            assertTrue(upload(server, "expired", CONFIRMED_BEFORE_DISCONNECT, 1).isSuccess());
+
+            assertEquals(CHUNKS, protocol.puts.size());
+            assertEquals(chunkName("expired", 0), protocol.puts.get(0));
+            assertEquals(FILE_SIZE, protocol.assembledLength.get());
+        }
+    }
+
+    @Test
+    public void unchangedSourceIsAssembled() throws IOException {
+        ChunkingProtocol protocol = new ChunkingProtocol();
+        try (FakeWebDavServer server = new FakeWebDavServer(protocol)) {
+            UploadStaging.Snapshot snapshot = UploadStaging.Snapshot.of(file);
+            ResumableChunkedUploadOperation sut = createOperation(null, 0, 1);
+            sut.setSourceCheck(() -> snapshot.matches(file));
+
+            assertTrue(sut.execute(server.createClient(targetContext)).isSuccess());
+
+            assertFalse(sut.isSourceChanged());
+            assertEquals(FILE_SIZE, protocol.assembledLength.get());
+        }
+    }
+
+    @Test
+    public void sourceChangedDuringUploadIsNotAssembled() throws IOException {
+        ChunkingProtocol protocol = new ChunkingProtocol();
+        try (FakeWebDavServer server = new FakeWebDavServer((method, path, received) -> {
+            if ("PUT".equals(method) && protocol.puts.size() == CONFIRMED_BEFORE_DISCONNECT) {
+                // file is written to while it is uploaded
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                    randomAccessFile.setLength(FILE_SIZE + 1);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return protocol.handle(method, path, received);
+        })) {
+            UploadStaging.Snapshot snapshot = UploadStaging.Snapshot.of(file);
+            ResumableChunkedUploadOperation sut = createOperation(null, 0, 1);
+            sut.setSourceCheck(() -> snapshot.matches(file));
+
+            assertFalse(sut.execute(server.createClient(targetContext)).isSuccess());
+
+            assertTrue(sut.isSourceChanged());
+            assertEquals(-1, protocol.assembledLength.get());
+            assertTrue(protocol.uploadFolders.isEmpty());
+            // torn chunks are not resumed
+            assertNull(chunkedUploadId);
+            assertEquals(0, confirmedChunks);
+        }
+    }
+
+    private RemoteOperationResult upload(FakeWebDavServer server, String uploadId, long confirmed,
+                                         int parallelChunks) {
+        return createOperation(uploadId, confirmed, parallelChunks).execute(server.createClient(targetContext));
+    }
+
+    private ResumableChunkedUploadOperation createOperation(String uploadId, long confirmed, int parallelChunks) {
+        ResumableChunkedUploadOperation sut = new ResumableChunkedUploadOperation(file.getAbsolutePath(),
+                                                                                  REMOTE_PATH,
+                                                                                  "video/mp4",
+                                                                                  null,
+                                                                                  "1234567890",
+                                                                                  uploadId,
+                                                                                  CHUNK_SIZE,
+                                                                                  confirmed,
+                                                                                  parallelChunks);
+        sut.setChunkStateListener((id, chunkSize, confirmedCount) -> {
+            assertEquals(CHUNK_SIZE, chunkSize);
+            chunkedUploadId = id;
+            confirmedChunks = confirmedCount;
+        });
+        return sut;
+    }
+
+    private static String chunkName(String uploadId, int chunk) {
+        return "/remote.php/dav/uploads/user/" + uploadId + "/" + String.format(Locale.ROOT, "%08d", chunk);
+    }
+
+    /**
+     * Chunked upload protocol: MKCOL creates an upload folder, PUT stores a chunk in it, MOVE of its .file
+     * assembles the chunks and DELETE drops them. Connections can be dropped after a number of chunks.
+     */
+    private static class ChunkingProtocol implements FakeWebDavServer.RequestHandler {
+        private static final String ASSEMBLED_FILE = "/.file";
+
+        private final Map<String, Map<String, Long>> uploadFolders = new HashMap<>();
+        private final List<String> puts = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger disconnectAfterPuts = new AtomicInteger(Integer.MAX_VALUE);
+        private final AtomicLong assembledLength = new AtomicLong(-1);
+
+        @Override
+        public synchronized int handle(String method, String path, long received) {
+            switch (method) {
+                case "MKCOL":
+                    if (uploadFolders.containsKey(path)) {
+                        return 405;
+                    }
+                    uploadFolders.put(path, new HashMap<>());
+                    return 201;
+
+                case "PUT":
+                    Map<String, Long> chunks = uploadFolders.get(path.substring(0, path.lastIndexOf('/')));
+                    if (chunks == null) {
+                        return 404;
+                    }
+                    if (disconnectAfterPuts.getAndDecrement() <= 0) {
+                        return FakeWebDavServer.DISCONNECT;
+                    }
+                    chunks.put(path, received);
+                    puts.add(path);
+                    return 201;
+
+                case "MOVE":
+                    if (!path.endsWith(ASSEMBLED_FILE)) {
+                        return 400;
+                    }
+                    Map<String, Long> assembled = uploadFolders.remove(path.substring(0, path.length() -
+                        ASSEMBLED_FILE.length()));
+                    if (assembled == null) {
+                        return 404;
+                    }
+                    long length = 0;
+                    for (long chunkLength : assembled.values()) {
+                        length += chunkLength;
+                    }
+                    assembledLength.set(length);
+                    return 201;
+
+                case "DELETE":
+                    return uploadFolders.remove(path) == null ? 404 : 204;
+
+                default:
+                    return 405;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.providers;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.FilesystemDataProvider;
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.lib.resources.shares.ShareType;
+import com.owncloud.android.utils.MimeType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * Runs the queries issued by the storage managers with enabled query plan check, so that any query which needs a full
+ * table scan on files, shares or filesystem table fails.
+ */
+public class FileContentProviderQueryPlanIT extends AbstractIT {
+
+    private FileDataStorageManager sut;
+
+    @Before
+    public void before() {
+        FileContentProvider.setQueryPlanCheckEnabled(true);
+        sut = new FileDataStorageManager(account, targetContext.getContentResolver());
+    }
+
+    @After
+    public void after() {
+        FileContentProvider.setQueryPlanCheckEnabled(false);
+        sut.deleteAllFiles();
+    }
+
+    @Test
+    public void fileQueries() {
+        OCFile root = sut.getFileByPath(OCFile.ROOT_PATH);
+
+        OCFile folder = new OCFile("/folder/");
+        folder.setMimeType(MimeType.DIRECTORY);
+        folder.setParentId(root.getFileId());
+        sut.saveFile(folder);
+
+        ArrayList<OCFile> children = new ArrayList<>();
+        OCFile child = new OCFile("/folder/file.txt");
+        child.setRemoteId("1");
+        children.add(child);
+        sut.saveFolder(folder, children, new ArrayList<>());
+
+        sut.getFileById(child.getFileId());
+        sut.getFileByDecryptedRemotePath("/folder/file.txt");
+        sut.getFileByLocalPath("/storage/file.txt");
+        sut.getFileByRemoteId("1");
+        sut.getFolderContent(folder, false);
+        sut.getAllFiles();
+        sut.moveLocalFile(folder, "/moved/", OCFile.ROOT_PATH);
+    }
+
+    @Test
+    public void shareQueries() {
+        sut.getSharesByPathAndType("/folder/", ShareType.PUBLIC_LINK, "");
+        sut.getSharesWithForAFile("/folder/", account.name);
+        sut.getShareById(1);
+    }
+
+    @Test
+    public void filesystemQueries() {
+        new FilesystemDataProvider(targetContext.getContentResolver()).getFilesForUpload("/storage/DCIM", "1");
+    }
+}
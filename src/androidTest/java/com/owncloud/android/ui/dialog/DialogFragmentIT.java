@@ -348,6 +348,7 @@ public class DialogFragmentIT extends AbstractIT {
         capability.setRichDocuments(CapabilityBooleanType.TRUE);
         capability.setRichDocumentsDirectEditing(CapabilityBooleanType.TRUE);
         capability.setRichDocumentsTemplatesAvailable(CapabilityBooleanType.TRUE);
+        fda.getStorageManager().saveCapabilities(capability);
 
         OCFileListBottomSheetDialog sut = new OCFileListBottomSheetDialog(fda,
                                                                           action,
@@ -42,6 +42,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
@@ -79,6 +80,7 @@ import static com.owncloud.android.utils.EncryptionUtils.verifySHA512;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 @RunWith(AndroidJUnit4.class)
 public class EncryptionTestIT {
@@ -274,6 +276,97 @@ public class EncryptionTestIT {
         assertTrue(cryptFile("ia7OEEEyXMoRa1QWQk8r", "78f42172166f9dc8fd1a7156b1753353", key, iv, authTag));
     }
 
+    @Test
+    public void streamCryptFile() throws Exception {
+        byte[] key = decodeStringToBase64Bytes("WANM0gRv+DhaexIsI0T3Lg==");
+        byte[] iv = decodeStringToBase64Bytes("gKm3n+mJzeY26q4OfuZEqg==");
+
+        File file = getFile("ia7OEEEyXMoRa1QWQk8r");
+        File encryptedFile = File.createTempFile("file", "enc");
+        File decryptedFile = File.createTempFile("file", "dec");
+
+        String authTag = encryptFile(file, encryptedFile, key, iv);
+        assertEquals("PboI9tqHHX3QeAA22PIu4w==", authTag);
+
+        // streaming encryption must be compatible with in-memory decryption
+        assertTrue(Arrays.equals(FileUtils.readFileToByteArray(file),
+                                 decryptFile(encryptedFile, key, iv, decodeStringToBase64Bytes(authTag))));
+
+        decryptFile(encryptedFile, decryptedFile, key, iv, decodeStringToBase64Bytes(authTag));
+        assertEquals("78f42172166f9dc8fd1a7156b1753353", getMD5Sum(decryptedFile));
+    }
+
+    @Test
+    public void streamCryptFileWrongContent() throws Exception {
+        byte[] key = generateKey();
+        byte[] iv = randomBytes(ivLength);
+
+        File file = getFile("ia7OEEEyXMoRa1QWQk8r");
+        File encryptedFile = File.createTempFile("file", "enc");
+        File decryptedFile = File.createTempFile("file", "dec");
+
+        String authTag = encryptFile(file, encryptedFile, key, iv);
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(encryptedFile, "rw")) {
+            randomAccessFile.seek(0);
+            int first = randomAccessFile.read();
+            randomAccessFile.seek(0);
+            randomAccessFile.write(first ^ 0xff);
+        }
+
+        try {
+            decryptFile(encryptedFile, decryptedFile, key, iv, decodeStringToBase64Bytes(authTag));
+            fail("Modified content must not be decrypted");
+        } catch (IOException e) {
+            assertFalse(decryptedFile.exists());
+        }
+    }
+
+    /**
+     * Round trip of a file larger than the heap, which fails if the content is held in memory
+     */
+    @Test
+    public void streamCryptBigFile() throws Exception {
+        byte[] key = generateKey();
+        byte[] iv = randomBytes(ivLength);
+        long size = 1024L * 1024 * 1024;
+
+        File file = File.createTempFile("file", "big");
+        File encryptedFile = File.createTempFile("file", "enc");
+        File decryptedFile = File.createTempFile("file", "dec");
+
+        try {
+            // sparse file with some content at start and end
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(size);
+                randomAccessFile.write(randomBytes(4096));
+                randomAccessFile.seek(size - 4096);
+                randomAccessFile.write(randomBytes(4096));
+            }
+
+            Log_OC.d(this, "Max memory: " + Runtime.getRuntime().maxMemory() + ", file size: " + size);
+
+            long start = System.currentTimeMillis();
+            String authTag = encryptFile(file, encryptedFile, key, iv);
+            long encryptDuration = System.currentTimeMillis() - start;
+
+            assertEquals(size + 16, encryptedFile.length());
+
+            start = System.currentTimeMillis();
+            decryptFile(encryptedFile, decryptedFile, key, iv, decodeStringToBase64Bytes(authTag));
+            long decryptDuration = System.currentTimeMillis() - start;
+
+            Log_OC.d(this, "Encryption: " + encryptDuration + " ms, decryption: " + decryptDuration + " ms");
+
+            assertEquals(size, decryptedFile.length());
+            assertEquals(getMD5Sum(file), getMD5Sum(decryptedFile));
+        } finally {
+            file.delete();
+            encryptedFile.delete();
+            decryptedFile.delete();
+        }
+    }
+
     @Test
     public void cryptFileWithMetadata() throws Exception {
         DecryptedFolderMetadata metadata = generateFolderMetadata();
@@ -68,4 +68,13 @@ interface AsyncRunner {
         onError: OnErrorCallback? = null,
         onProgress: OnProgressCallback<PROGRESS>? = null
     ): Cancellable
+
+    /**
+     * Post a callback to be called on main thread after given delay and return immediately.
+     *
+     * @param delayMs Delay in milliseconds.
+     * @param callback Callback called on main thread.
+     * @return Cancellable interface, allowing cancellation of a pending callback.
+     */
+    fun postDelayed(delayMs: Long, callback: () -> Unit): Cancellable
 }
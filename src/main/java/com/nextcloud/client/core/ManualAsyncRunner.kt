@@ -61,6 +61,13 @@ class ManualAsyncRunner : AsyncRunner {
         return taskWrapper
     }
 
+    /**
+     * Delay is not simulated, callback is enqueued like a task and called when run.
+     */
+    override fun postDelayed(delayMs: Long, callback: () -> Unit): Cancellable {
+        return postQuickTask(task = {}, onResult = { callback.invoke() })
+    }
+
     val size: Int get() = queue.size
     val isEmpty: Boolean get() = queue.size == 0
 
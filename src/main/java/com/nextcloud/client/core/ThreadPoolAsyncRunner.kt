@@ -68,4 +68,14 @@ internal class ThreadPoolAsyncRunner(
         executor.execute(taskWrapper)
         return taskWrapper
     }
+
+    override fun postDelayed(delayMs: Long, callback: () -> Unit): Cancellable {
+        val runnable = Runnable { callback.invoke() }
+        uiThreadHandler.postDelayed(runnable, delayMs)
+        return object : Cancellable {
+            override fun cancel() {
+                uiThreadHandler.removeCallbacks(runnable)
+            }
+        }
+    }
 }
@@ -31,10 +31,13 @@ import androidx.lifecycle.ViewModel
 import com.nextcloud.client.account.User
 import com.nextcloud.client.account.UserAccountManager
 import com.nextcloud.client.etm.pages.EtmAccountsFragment
+import com.nextcloud.client.etm.pages.EtmArbitraryDataCacheFragment
 import com.nextcloud.client.etm.pages.EtmBackgroundJobsFragment
 import com.nextcloud.client.etm.pages.EtmDownloaderFragment
 import com.nextcloud.client.etm.pages.EtmMigrations
 import com.nextcloud.client.etm.pages.EtmPreferencesFragment
+import com.nextcloud.client.etm.pages.EtmThumbnailCacheFragment
+import com.nextcloud.client.etm.pages.EtmUploadStagingFragment
 import com.nextcloud.client.files.downloader.TransferManagerConnection
 import com.nextcloud.client.jobs.BackgroundJobManager
 import com.nextcloud.client.jobs.JobInfo
@@ -42,6 +45,10 @@ import com.nextcloud.client.migrations.MigrationInfo
 import com.nextcloud.client.migrations.MigrationsDb
 import com.nextcloud.client.migrations.MigrationsManager
 import com.owncloud.android.R
+import com.owncloud.android.datamodel.AccountCache
+import com.owncloud.android.datamodel.ArbitraryDataProvider
+import com.owncloud.android.datamodel.ThumbnailMemoryCache
+import com.owncloud.android.datamodel.ThumbnailsCacheManager
 import com.owncloud.android.lib.common.accounts.AccountUtils
 import javax.inject.Inject
 
@@ -107,6 +114,21 @@ class EtmViewModel @Inject constructor(
             iconRes = R.drawable.ic_download_grey600,
             titleRes = R.string.etm_downloader,
             pageClass = EtmDownloaderFragment::class
+        ),
+        EtmMenuEntry(
+            iconRes = R.drawable.ic_image_grey600,
+            titleRes = R.string.etm_thumbnail_cache,
+            pageClass = EtmThumbnailCacheFragment::class
+        ),
+        EtmMenuEntry(
+            iconRes = R.drawable.ic_action_upload,
+            titleRes = R.string.etm_upload_staging,
+            pageClass = EtmUploadStagingFragment::class
+        ),
+        EtmMenuEntry(
+            iconRes = R.drawable.ic_sd,
+            titleRes = R.string.etm_arbitrary_data_cache,
+            pageClass = EtmArbitraryDataCacheFragment::class
         )
     )
     val downloaderConnection = TransferManagerConnection(context, accountManager.user)
@@ -144,6 +166,18 @@ class EtmViewModel @Inject constructor(
         return migrationsDb.lastMigratedVersion
     }
 
+    val thumbnailMemoryCache: ThumbnailMemoryCache get() {
+        return ThumbnailsCacheManager.getMemoryCache()
+    }
+
+    val resizedImageMemoryCache: ThumbnailMemoryCache get() {
+        return ThumbnailsCacheManager.getResizedImageMemoryCache()
+    }
+
+    val arbitraryDataCache: AccountCache<*> get() {
+        return ArbitraryDataProvider.getCache()
+    }
+
     init {
         (currentPage as MutableLiveData).apply {
             value = null
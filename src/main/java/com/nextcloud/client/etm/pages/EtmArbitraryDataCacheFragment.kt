@@ -0,0 +1,65 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.etm.pages
+
+import android.os.Bundle
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import com.nextcloud.client.etm.EtmBaseFragment
+import com.owncloud.android.databinding.FragmentEtmArbitraryDataCacheBinding
+
+class EtmArbitraryDataCacheFragment : EtmBaseFragment() {
+    private var _binding: FragmentEtmArbitraryDataCacheBinding? = null
+    private val binding get() = _binding!!
+
+    override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
+        _binding = FragmentEtmArbitraryDataCacheBinding.inflate(inflater, container, false)
+
+        return binding.root
+    }
+
+    override fun onResume() {
+        super.onResume()
+        showStatus()
+    }
+
+    private fun showStatus() {
+        val cache = vm.arbitraryDataCache
+        val hits = cache.hitCount
+        val misses = cache.missCount
+        val hitRate = if (hits + misses > 0) hits * PERCENT / (hits + misses) else 0L
+        val builder = StringBuilder()
+        builder.append("Accounts loaded: ${cache.accountCount}\n")
+        builder.append("Hits: $hits\n")
+        builder.append("Misses: $misses\n")
+        builder.append("Hit rate: $hitRate %\n")
+        binding.etmArbitraryDataCacheText.text = builder.toString()
+    }
+
+    override fun onDestroyView() {
+        super.onDestroyView()
+
+        _binding = null
+    }
+
+    companion object {
+        private const val PERCENT = 100
+    }
+}
@@ -1,6 +1,7 @@
 package com.nextcloud.client.etm.pages
 
 import android.os.Bundle
+import android.text.format.DateFormat
 import android.view.LayoutInflater
 import android.view.Menu
 import android.view.MenuInflater
@@ -13,6 +14,7 @@ import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.nextcloud.client.etm.EtmBaseFragment
 import com.nextcloud.client.files.downloader.Direction
+import com.nextcloud.client.files.downloader.DownloadConcurrencyController
 import com.nextcloud.client.files.downloader.Transfer
 import com.nextcloud.client.files.downloader.TransferManager
 import com.nextcloud.client.files.downloader.Request
@@ -23,6 +25,8 @@ class EtmDownloaderFragment : EtmBaseFragment() {
 
     companion object {
         private const val TEST_DOWNLOAD_DUMMY_PATH = "/test/dummy_file.txt"
+        private const val DECISION_TIME_FORMAT = "HH:mm:ss"
+        private const val BYTES_PER_KB = 1024
     }
 
     class Adapter(private val inflater: LayoutInflater) : RecyclerView.Adapter<Adapter.ViewHolder>() {
@@ -82,6 +86,7 @@ class EtmDownloaderFragment : EtmBaseFragment() {
 
     private lateinit var adapter: Adapter
     private lateinit var list: RecyclerView
+    private lateinit var concurrency: TextView
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -92,6 +97,7 @@ class EtmDownloaderFragment : EtmBaseFragment() {
         val view = inflater.inflate(R.layout.fragment_etm_downloader, container, false)
         adapter = Adapter(inflater)
         list = view.findViewById(R.id.etm_download_list)
+        concurrency = view.findViewById(R.id.etm_download_concurrency)
         list.layoutManager = LinearLayoutManager(context)
         list.addItemDecoration(DividerItemDecoration(context, DividerItemDecoration.VERTICAL))
         list.adapter = adapter
@@ -135,5 +141,23 @@ class EtmDownloaderFragment : EtmBaseFragment() {
 
     private fun onDownloaderStatusChanged(status: TransferManager.Status) {
         adapter.setStatus(status)
+        val concurrencyStatus = status.concurrency
+        if (concurrencyStatus != null) {
+            concurrency.visibility = View.VISIBLE
+            concurrency.text = formatConcurrency(concurrencyStatus)
+        } else {
+            concurrency.visibility = View.GONE
+        }
+    }
+
+    private fun formatConcurrency(status: DownloadConcurrencyController.Status): String {
+        val builder = StringBuilder()
+        builder.append("Slots: ${status.slots}, active accounts: ${status.activeOwners}, ")
+        builder.append("throughput: ${status.throughput / BYTES_PER_KB} kB/s\n")
+        status.decisions.reversed().forEach {
+            val time = DateFormat.format(DECISION_TIME_FORMAT, it.timestamp)
+            builder.append("$time slots=${it.slots} ${it.throughput / BYTES_PER_KB} kB/s ${it.reason}\n")
+        }
+        return builder.toString().trimEnd()
     }
 }
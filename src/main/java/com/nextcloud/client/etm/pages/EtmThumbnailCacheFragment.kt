@@ -0,0 +1,69 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.etm.pages
+
+import android.os.Bundle
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import com.nextcloud.client.etm.EtmBaseFragment
+import com.owncloud.android.databinding.FragmentEtmThumbnailCacheBinding
+import com.owncloud.android.datamodel.ThumbnailMemoryCache
+
+class EtmThumbnailCacheFragment : EtmBaseFragment() {
+    private var _binding: FragmentEtmThumbnailCacheBinding? = null
+    private val binding get() = _binding!!
+
+    override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
+        _binding = FragmentEtmThumbnailCacheBinding.inflate(inflater, container, false)
+
+        return binding.root
+    }
+
+    override fun onResume() {
+        super.onResume()
+        showStatus()
+    }
+
+    private fun showStatus() {
+        val builder = StringBuilder()
+        appendStatus(builder, "Thumbnails", vm.thumbnailMemoryCache)
+        builder.append("\n")
+        appendStatus(builder, "Resized images", vm.resizedImageMemoryCache)
+        binding.etmThumbnailCacheText.text = builder.toString()
+    }
+
+    private fun appendStatus(builder: StringBuilder, title: String, cache: ThumbnailMemoryCache) {
+        builder.append("$title\n")
+        builder.append("Memory cache size: ${cache.size() / KILOBYTE} / ${cache.maxSize() / KILOBYTE} kB\n")
+        builder.append("Hits: ${cache.hitCount()}\n")
+        builder.append("Misses: ${cache.missCount()}\n")
+        builder.append("Evictions: ${cache.evictionCount()}\n")
+    }
+
+    override fun onDestroyView() {
+        super.onDestroyView()
+
+        _binding = null
+    }
+
+    companion object {
+        private const val KILOBYTE = 1024
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.etm.pages
+
+import android.os.Bundle
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import com.nextcloud.client.etm.EtmBaseFragment
+import com.owncloud.android.databinding.FragmentEtmUploadStagingBinding
+import com.owncloud.android.operations.UploadStaging
+
+class EtmUploadStagingFragment : EtmBaseFragment() {
+    private var _binding: FragmentEtmUploadStagingBinding? = null
+    private val binding get() = _binding!!
+
+    override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
+        _binding = FragmentEtmUploadStagingBinding.inflate(inflater, container, false)
+
+        return binding.root
+    }
+
+    override fun onResume() {
+        super.onResume()
+        showStatus()
+    }
+
+    private fun showStatus() {
+        val builder = StringBuilder()
+        UploadStaging.Mode.values().forEach { mode ->
+            val uploads = UploadStaging.getUploadCount(mode)
+            val kilobytes = UploadStaging.getUploadedBytes(mode) / KILOBYTE
+            builder.append("$mode: $uploads uploads, $kilobytes kB\n")
+        }
+        binding.etmUploadStagingText.text = builder.toString()
+    }
+
+    override fun onDestroyView() {
+        super.onDestroyView()
+
+        _binding = null
+    }
+
+    companion object {
+        private const val KILOBYTE = 1024
+    }
+}
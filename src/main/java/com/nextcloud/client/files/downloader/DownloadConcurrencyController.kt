@@ -0,0 +1,205 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.files.downloader
+
+import java.util.ArrayDeque
+import kotlin.math.max
+
+/**
+ * Decides how many downloads run in parallel.
+ *
+ * Number of download slots is adapted using measured throughput. After each measurement
+ * window, throughput is compared with the previous window: slots keep moving in the same
+ * direction while throughput improves and the direction is reversed when it drops.
+ * Transfers of small files are dominated by request latency rather than bandwidth, so
+ * slots are raised while mostly small files are downloaded.
+ *
+ * Slots are split evenly between transfer managers with queued transfers, which
+ * gives every account a fair share.
+ *
+ * This class is not thread-safe. It shall be used on main thread, same as transfer managers.
+ *
+ * @property minSlots minimum number of parallel downloads
+ * @property maxSlots maximum number of parallel downloads
+ * @property windowMs duration of throughput measurement window
+ * @property time current time source in milliseconds
+ */
+class DownloadConcurrencyController(
+    private val minSlots: Int = MIN_SLOTS,
+    private val maxSlots: Int = MAX_SLOTS,
+    initialSlots: Int = INITIAL_SLOTS,
+    private val windowMs: Long = WINDOW_MS,
+    private val time: () -> Long = System::currentTimeMillis
+) {
+    companion object {
+        const val MIN_SLOTS = 1
+        const val MAX_SLOTS = 6
+        const val INITIAL_SLOTS = 2
+        const val WINDOW_MS = 5000L
+        const val SMALL_FILE_SIZE = 1024L * 1024L
+        const val MIN_THROUGHPUT_CHANGE = 1.1
+        const val MAX_DECISIONS = 20
+        private const val MILLIS_PER_SECOND = 1000L
+    }
+
+    /**
+     * @property timestamp time of decision in milliseconds
+     * @property slots number of slots after decision
+     * @property throughput throughput measured in last window, bytes per second
+     * @property reason human readable reason of decision
+     */
+    data class Decision(val timestamp: Long, val slots: Int, val throughput: Long, val reason: String)
+
+    /**
+     * @property slots number of parallel downloads shared by all accounts
+     * @property activeOwners number of transfer managers with queued transfers
+     * @property throughput throughput measured in last window, bytes per second
+     * @property decisions most recent decisions, latest last
+     */
+    data class Status(val slots: Int, val activeOwners: Int, val throughput: Long, val decisions: List<Decision>)
+
+    private class Owner(val onLimitChanged: () -> Unit, var active: Boolean = false)
+
+    private val owners = LinkedHashMap<Any, Owner>()
+    private val decisions = ArrayDeque<Decision>()
+    private var direction = 1
+    private var previousThroughput = -1L
+    private var windowStart = -1L
+    private var windowBytes = 0L
+    private var windowTransfers = 0
+    private var windowSmallTransfers = 0
+
+    var slots: Int = initialSlots.coerceIn(minSlots, maxSlots)
+        private set
+
+    val status: Status
+        get() = Status(slots, owners.values.count { it.active }, max(0, previousThroughput), decisions.toList())
+
+    fun register(owner: Any, onLimitChanged: () -> Unit) {
+        owners[owner] = Owner(onLimitChanged)
+    }
+
+    fun unregister(owner: Any) {
+        if (owners.remove(owner)?.active == true) {
+            notifyOwners()
+        }
+    }
+
+    /**
+     * Mark transfer manager as having queued transfers or being idle. Share of other active managers
+     * changes accordingly.
+     */
+    fun setActive(owner: Any, active: Boolean) {
+        val registered = owners[owner] ?: return
+        if (registered.active != active) {
+            registered.active = active
+            if (owners.values.none { it.active }) {
+                windowStart = -1L
+            }
+            notifyOwners()
+        }
+    }
+
+    /**
+     * Number of parallel downloads allowed for a given transfer manager. Slots are split
+     * evenly between active managers and every active manager can run at least 1 download.
+     */
+    fun limitFor(owner: Any): Int {
+        val active = owners.filter { it.value.active }.keys.toList()
+        val position = active.indexOf(owner)
+        if (position < 0) {
+            return max(1, slots)
+        }
+        val share = slots / active.size
+        val remainder = slots % active.size
+        return max(1, if (position < remainder) share + 1 else share)
+    }
+
+    fun onBytesTransferred(bytes: Long) {
+        startWindowIfNeeded()
+        windowBytes += max(0, bytes)
+        evaluateIfWindowElapsed()
+    }
+
+    fun onTransferFinished(fileSize: Long) {
+        startWindowIfNeeded()
+        windowTransfers++
+        if (fileSize < SMALL_FILE_SIZE) {
+            windowSmallTransfers++
+        }
+        evaluateIfWindowElapsed()
+    }
+
+    private fun startWindowIfNeeded() {
+        if (windowStart < 0) {
+            windowStart = time.invoke()
+            windowBytes = 0
+            windowTransfers = 0
+            windowSmallTransfers = 0
+        }
+    }
+
+    private fun evaluateIfWindowElapsed() {
+        val now = time.invoke()
+        val elapsed = now - windowStart
+        if (elapsed < windowMs) {
+            return
+        }
+
+        val throughput = windowBytes * MILLIS_PER_SECOND / elapsed
+        val reason = when {
+            windowTransfers > 0 && windowSmallTransfers * 2 > windowTransfers -> {
+                direction = 1
+                "mostly small files"
+            }
+            previousThroughput < 0 -> "probing"
+            throughput >= previousThroughput * MIN_THROUGHPUT_CHANGE -> "throughput increased"
+            throughput * MIN_THROUGHPUT_CHANGE <= previousThroughput -> {
+                direction = -direction
+                "throughput decreased"
+            }
+            else -> null
+        }
+
+        val newSlots = if (reason != null) (slots + direction).coerceIn(minSlots, maxSlots) else slots
+        record(Decision(now, newSlots, throughput, reason ?: "throughput stable"))
+
+        previousThroughput = throughput
+        windowStart = now
+        windowBytes = 0
+        windowTransfers = 0
+        windowSmallTransfers = 0
+
+        if (newSlots != slots) {
+            slots = newSlots
+            notifyOwners()
+        }
+    }
+
+    private fun record(decision: Decision) {
+        decisions.addLast(decision)
+        while (decisions.size > MAX_DECISIONS) {
+            decisions.removeFirst()
+        }
+    }
+
+    private fun notifyOwners() {
+        owners.values.toList().forEach { it.onLimitChanged.invoke() }
+    }
+}
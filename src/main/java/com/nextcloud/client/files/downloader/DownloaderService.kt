@@ -80,6 +80,7 @@ class DownloaderService : Service() {
     val isRunning: Boolean get() = downloaders.any { it.value.isRunning }
 
     private val downloaders: MutableMap<String, TransferManagerImpl> = mutableMapOf()
+    private val concurrency = DownloadConcurrencyController()
 
     override fun onCreate() {
         AndroidInjection.inject(this)
@@ -146,7 +147,7 @@ class DownloaderService : Service() {
                 { clientFactory.create(user) },
                 contentResolver
             )
-            val newDownloader = TransferManagerImpl(runner, downloadTaskFactory)
+            val newDownloader = TransferManagerImpl(runner, downloadTaskFactory, concurrency = concurrency)
             newDownloader.registerTransferListener(this::onDownloadUpdate)
             downloaders[user.accountName] = newDownloader
             newDownloader
@@ -33,26 +33,57 @@ import kotlin.math.min
  *
  * No listener registration mechanism is provided at this level.
  *
+ * Only [maxCompleted] most recently finished transfers are retained. Progress
+ * updates of a running transfer are coalesced, so change callback is triggered
+ * at most once per [progressUpdatePeriodMs] for each transfer. Progress received
+ * within that period is published by a flush scheduled for its end. Latest progress
+ * is always available via [running] and [getTransfer].
+ *
  * This class is not thread-safe. All access from multiple threads shall
  * be lock protected.
  *
  * @property onStartTransfer callback triggered when transfer is switched into running state
  * @property onTransferChanged callback triggered whenever transfer status update
- * @property maxRunning maximum number of allowed simultaneous transfers
+ * @property maxRunning maximum number of allowed simultaneous transfers; lowering it does not stop running transfers
+ * @property maxCompleted maximum number of retained finished transfers
+ * @property progressUpdatePeriodMs minimum time between progress change callbacks of a transfer
+ * @property time current time source in milliseconds
+ * @property scheduleFlush schedules a call after given delay in milliseconds, on the thread accessing this registry
  */
+@Suppress("LongParameterList")
 internal class Registry(
     private val onStartTransfer: (UUID, Request) -> Unit,
     private val onTransferChanged: (Transfer) -> Unit,
-    private val maxRunning: Int = 2
+    var maxRunning: Int = 2,
+    private val maxCompleted: Int = MAX_COMPLETED,
+    private val progressUpdatePeriodMs: Long = PROGRESS_UPDATE_PERIOD_MS,
+    private val time: () -> Long = System::currentTimeMillis,
+    private val scheduleFlush: (delayMs: Long, flush: () -> Unit) -> Unit
 ) {
+    companion object {
+        const val MAX_COMPLETED = 1000
+        const val PROGRESS_UPDATE_PERIOD_MS = 250L
+    }
+
+    /**
+     * Progress of a running transfer not yet published via change callback.
+     */
+    private class ProgressUpdate(
+        var lastPublished: Long,
+        var progress: Int? = null,
+        var flushScheduled: Boolean = false
+    )
+
     private val pendingQueue = LinkedHashMap<UUID, Transfer>()
     private val runningQueue = LinkedHashMap<UUID, Transfer>()
     private val completedQueue = LinkedHashMap<UUID, Transfer>()
+    private val progressUpdates = HashMap<UUID, ProgressUpdate>()
+    private val pathIndex = HashMap<String, MutableList<UUID>>()
 
     val isRunning: Boolean get() = pendingQueue.size > 0 || runningQueue.size > 0
 
     val pending: List<Transfer> get() = pendingQueue.map { it.value }
-    val running: List<Transfer> get() = runningQueue.map { it.value }
+    val running: List<Transfer> get() = runningQueue.map { withLatestProgress(it.value) }
     val completed: List<Transfer> get() = completedQueue.map { it.value }
 
     /**
@@ -69,6 +100,7 @@ internal class Registry(
             request = request
         )
         pendingQueue[transfer.uuid] = transfer
+        pathIndex.getOrPut(request.file.remotePath) { ArrayList(1) }.add(transfer.uuid)
         return transfer.uuid
     }
 
@@ -90,16 +122,53 @@ internal class Registry(
 
     /**
      * Update progress for a given transfer. If no transfer of a given id is currently running,
-     * update is ignored.
+     * update is ignored. If change callback has been triggered for this transfer recently,
+     * callback is deferred until the update period ends.
      *
      * @param uuid ID of the transfer to update
      * @param progress progress 0-100%
      */
     fun progress(uuid: UUID, progress: Int) {
+        val transfer = runningQueue[uuid] ?: return
+        val now = time.invoke()
+        val update = progressUpdates[uuid]
+        when {
+            update == null -> progressUpdates[uuid] = ProgressUpdate(now)
+            now - update.lastPublished < progressUpdatePeriodMs -> {
+                update.progress = progress
+                if (!update.flushScheduled) {
+                    update.flushScheduled = true
+                    scheduleFlush(update.lastPublished + progressUpdatePeriodMs - now) { flushProgress(uuid, update) }
+                }
+                return
+            }
+            else -> {
+                update.lastPublished = now
+                update.progress = null
+            }
+        }
+        publishProgress(transfer, progress)
+    }
+
+    /**
+     * Publish progress deferred by [progress], unless it has been published or the transfer is over.
+     */
+    private fun flushProgress(uuid: UUID, update: ProgressUpdate) {
+        update.flushScheduled = false
         val transfer = runningQueue[uuid]
-        if (transfer != null) {
+        val progress = update.progress
+        if (transfer == null || progressUpdates[uuid] !== update || progress == null) {
+            return
+        }
+        update.lastPublished = time.invoke()
+        update.progress = null
+        publishProgress(transfer, progress)
+    }
+
+    private fun publishProgress(transfer: Transfer, progress: Int) {
+        if (transfer.progress != progress) {
             val runningTransfer = transfer.copy(progress = progress)
-            runningQueue[uuid] = runningTransfer
+            runningQueue[transfer.uuid] = runningTransfer
             onTransferChanged(runningTransfer)
         }
     }
@@ -120,14 +189,16 @@ internal class Registry(
             } else {
                 TransferState.FAILED
             }
-            val completedTransfer = transfer.copy(state = status, file = file ?: transfer.file)
+            val completedTransfer = withLatestProgress(transfer).copy(state = status, file = file ?: transfer.file)
+            progressUpdates.remove(uuid)
             completedQueue[uuid] = completedTransfer
+            trimCompleted()
             onTransferChanged(completedTransfer)
         }
     }
 
     /**
-     * Search for a transfer by file path. It traverses
+     * Search for a transfer by file path. It searches
      * through all queues in order of pending, running and completed
      * transfers and returns first transfer status matching
      * file path.
@@ -136,10 +207,12 @@ internal class Registry(
      * @return transfer status if found, null otherwise
      */
     fun getTransfer(file: OCFile): Transfer? {
+        val uuids = pathIndex[file.remotePath] ?: return null
         arrayOf(pendingQueue, runningQueue, completedQueue).forEach { queue ->
-            queue.forEach { entry ->
-                if (entry.value.request.file.remotePath == file.remotePath) {
-                    return entry.value
+            uuids.forEach { uuid ->
+                val transfer = queue[uuid]
+                if (transfer != null) {
+                    return if (queue === runningQueue) withLatestProgress(transfer) else transfer
                 }
             }
         }
@@ -156,6 +229,27 @@ internal class Registry(
      * @return transfer status if found, null otherwise
      */
     fun getTransfer(uuid: UUID): Transfer? {
-        return pendingQueue[uuid] ?: runningQueue[uuid] ?: completedQueue[uuid]
+        return pendingQueue[uuid] ?: runningQueue[uuid]?.let { withLatestProgress(it) } ?: completedQueue[uuid]
+    }
+
+    private fun withLatestProgress(transfer: Transfer): Transfer {
+        val progress = progressUpdates[transfer.uuid]?.progress
+        return if (progress != null && progress != transfer.progress) transfer.copy(progress = progress) else transfer
+    }
+
+    private fun trimCompleted() {
+        val iterator = completedQueue.values.iterator()
+        while (completedQueue.size > maxCompleted && iterator.hasNext()) {
+            val evicted = iterator.next()
+            iterator.remove()
+            val path = evicted.request.file.remotePath
+            val uuids = pathIndex[path]
+            if (uuids != null) {
+                uuids.remove(evicted.uuid)
+                if (uuids.isEmpty()) {
+                    pathIndex.remove(path)
+                }
+            }
+        }
     }
 }
@@ -30,7 +30,8 @@ interface TransferManager {
     data class Status(
         val pending: List<Transfer>,
         val running: List<Transfer>,
-        val completed: List<Transfer>
+        val completed: List<Transfer>,
+        val concurrency: DownloadConcurrencyController.Status? = null
     ) {
         companion object {
             val EMPTY = Status(emptyList(), emptyList(), emptyList())
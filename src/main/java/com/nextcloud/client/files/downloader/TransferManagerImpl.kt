@@ -34,13 +34,15 @@ import java.util.UUID
  *
  * @param runner Background task runner. It is important to provide runner that is not shared with UI code.
  * @param taskFactory Download task factory
- * @param threads maximum number of concurrent transfer processes
+ * @param threads maximum number of concurrent transfer processes; ignored if [concurrency] is provided
+ * @param concurrency optional controller adapting number of concurrent transfers, shared by all transfer managers
  */
 @Suppress("LongParameterList") // transfer operations requires those resources
 class TransferManagerImpl(
     private val runner: AsyncRunner,
     private val taskFactory: DownloadTask.Factory,
-    threads: Int = 1
+    threads: Int = 1,
+    private val concurrency: DownloadConcurrencyController? = null
 ) : TransferManager {
 
     companion object {
@@ -52,10 +54,16 @@ class TransferManagerImpl(
     private val registry = Registry(
         onStartTransfer = this::onStartTransfer,
         onTransferChanged = this::onTransferUpdate,
-        maxRunning = threads
+        maxRunning = threads,
+        scheduleFlush = { delayMs, flush -> runner.postDelayed(delayMs, flush) }
     )
     private val transferListeners: MutableSet<(Transfer) -> Unit> = mutableSetOf()
     private val statusListeners: MutableSet<(TransferManager.Status) -> Unit> = mutableSetOf()
+    private val transferProgress: MutableMap<UUID, Int> = mutableMapOf()
+
+    init {
+        concurrency?.register(this, this::onConcurrencyChanged)
+    }
 
     override val isRunning: Boolean get() = registry.isRunning
 
@@ -63,7 +71,8 @@ class TransferManagerImpl(
         get() = TransferManager.Status(
             pending = registry.pending,
             running = registry.running,
-            completed = registry.completed
+            completed = registry.completed,
+            concurrency = concurrency?.status
         )
 
     override fun registerTransferListener(listener: (Transfer) -> Unit) {
@@ -84,7 +93,7 @@ class TransferManagerImpl(
 
     override fun enqueue(request: Request) {
         registry.add(request)
-        registry.startNext()
+        startNext()
     }
 
     override fun getTransfer(uuid: UUID): Transfer? = registry.getTransfer(uuid)
@@ -98,12 +107,58 @@ class TransferManagerImpl(
         }
         runner.postTask(
             task = transferTask,
-            onProgress = { progress: Int -> registry.progress(uuid, progress) },
-            onResult = { result -> registry.complete(uuid, result.success, result.file); registry.startNext() },
-            onError = { registry.complete(uuid, false); registry.startNext() }
+            onProgress = { progress: Int -> onTransferProgress(uuid, request, progress) },
+            onResult = { result ->
+                onTransferFinished(uuid, request, result.success)
+                registry.complete(uuid, result.success, result.file)
+                startNext()
+            },
+            onError = {
+                onTransferFinished(uuid, request, false)
+                registry.complete(uuid, false)
+                startNext()
+            }
         )
     }
 
+    private fun startNext() {
+        if (concurrency != null) {
+            concurrency.setActive(this, registry.isRunning)
+            registry.maxRunning = concurrency.limitFor(this)
+        }
+        registry.startNext()
+    }
+
+    private fun onConcurrencyChanged() {
+        if (concurrency != null) {
+            registry.maxRunning = concurrency.limitFor(this)
+            registry.startNext()
+        }
+    }
+
+    private fun onTransferProgress(uuid: UUID, request: Request, progress: Int) {
+        if (concurrency != null) {
+            val previous = transferProgress.put(uuid, progress) ?: PROGRESS_PERCENTAGE_MIN
+            concurrency.onBytesTransferred(transferredBytes(request, previous, progress))
+        }
+        registry.progress(uuid, progress)
+    }
+
+    private fun onTransferFinished(uuid: UUID, request: Request, success: Boolean) {
+        if (concurrency != null) {
+            val previous = transferProgress.remove(uuid) ?: PROGRESS_PERCENTAGE_MIN
+            if (success) {
+                // account bytes not reported by progress updates
+                concurrency.onBytesTransferred(transferredBytes(request, previous, PROGRESS_PERCENTAGE_MAX))
+            }
+            concurrency.onTransferFinished(request.file.fileLength)
+        }
+    }
+
+    private fun transferredBytes(request: Request, fromProgress: Int, toProgress: Int): Long {
+        return request.file.fileLength * (toProgress - fromProgress) / PROGRESS_PERCENTAGE_MAX
+    }
+
     private fun createDownloadTask(request: Request): TaskFunction<DownloadTask.Result, Int> {
         return if (request.test) {
             { progress: OnProgressCallback<Int>, isCancelled: IsCancelled ->
@@ -100,6 +100,8 @@ class AccountRemovalWork(
         removeFiles(user, storageManager)
         // delete all database entries
         storageManager.deleteAllFiles()
+        // drop cached capabilities
+        FileDataStorageManager.removeCachedCapability(user.accountName)
         // disable daily backup
         arbitraryDataProvider.storeOrUpdateKeyValue(
             user.accountName,
@@ -154,9 +156,10 @@ class AccountRemovalWork(
     }
 
     private fun remoceSyncedFolders(context: Context, account: Account, clock: Clock) {
+        val preferences = AppPreferencesImpl.fromContext(context)
         val syncedFolderProvider = SyncedFolderProvider(
             context.contentResolver,
-            AppPreferencesImpl.fromContext(context),
+            preferences,
             clock
         )
         val syncedFolders = syncedFolderProvider.syncedFolders
@@ -170,6 +173,7 @@ class AccountRemovalWork(
         val filesystemDataProvider = FilesystemDataProvider(context.contentResolver)
         for (syncedFolderId in syncedFolderIds) {
             filesystemDataProvider.deleteAllEntriesForSyncedFolder(java.lang.Long.toString(syncedFolderId))
+            preferences.resetMediaScanState(syncedFolderId)
         }
     }
 
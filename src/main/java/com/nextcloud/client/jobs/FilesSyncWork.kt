@@ -129,52 +129,50 @@ class FilesSyncWork(
         sFormatter: SimpleDateFormat,
         syncedFolder: SyncedFolder
     ) {
-        var remotePath: String?
-        var subfolderByDate: Boolean
-        var uploadAction: Int?
-        var needsCharging: Boolean
-        var needsWifi: Boolean
-        var file: File
+        val remotePath: String?
+        val subfolderByDate: Boolean
+        val uploadAction: Int?
+        val needsCharging: Boolean
+        val needsWifi: Boolean
         val accountName = syncedFolder.account
         val optionalUser = userAccountManager.getUser(accountName)
         if (!optionalUser.isPresent) {
             return
         }
         val user = optionalUser.get()
-        val arbitraryDataProvider = if (lightVersion) {
-            ArbitraryDataProvider(contentResolver)
+        if (lightVersion) {
+            val arbitraryDataProvider = ArbitraryDataProvider(contentResolver)
+            needsCharging = resources.getBoolean(R.bool.syncedFolder_light_on_charging)
+            needsWifi = arbitraryDataProvider.getBooleanValue(
+                accountName,
+                SettingsActivity.SYNCED_FOLDER_LIGHT_UPLOAD_ON_WIFI
+            )
+            val uploadActionString = resources.getString(R.string.syncedFolder_light_upload_behaviour)
+            uploadAction = getUploadAction(uploadActionString)
+            subfolderByDate = resources.getBoolean(R.bool.syncedFolder_light_use_subfolders)
+            remotePath = resources.getString(R.string.syncedFolder_remote_folder)
         } else {
-            null
+            needsCharging = syncedFolder.isChargingOnly
+            needsWifi = syncedFolder.isWifiOnly
+            uploadAction = syncedFolder.uploadAction
+            subfolderByDate = syncedFolder.isSubfolderByDate
+            remotePath = syncedFolder.remotePath
         }
         val paths = filesystemDataProvider.getFilesForUpload(
             syncedFolder.localPath,
             java.lang.Long.toString(syncedFolder.id)
-        )
+        ).toList()
+        if (paths.isEmpty()) {
+            return
+        }
+        val localPaths = ArrayList<String>(paths.size)
+        val remotePaths = ArrayList<String>(paths.size)
+        val mimeTypes = ArrayList<String>(paths.size)
         for (path in paths) {
-            file = File(path)
+            val file = File(path)
             val lastModificationTime = calculateLastModificationTime(file, syncedFolder, sFormatter)
-            val mimeType = MimeTypeUtil.getBestMimeTypeByFilename(file.absolutePath)
-            if (lightVersion) {
-                needsCharging = resources.getBoolean(R.bool.syncedFolder_light_on_charging)
-                needsWifi = arbitraryDataProvider!!.getBooleanValue(
-                    accountName,
-                    SettingsActivity.SYNCED_FOLDER_LIGHT_UPLOAD_ON_WIFI
-                )
-                val uploadActionString = resources.getString(R.string.syncedFolder_light_upload_behaviour)
-                uploadAction = getUploadAction(uploadActionString)
-                subfolderByDate = resources.getBoolean(R.bool.syncedFolder_light_use_subfolders)
-                remotePath = resources.getString(R.string.syncedFolder_remote_folder)
-            } else {
-                needsCharging = syncedFolder.isChargingOnly
-                needsWifi = syncedFolder.isWifiOnly
-                uploadAction = syncedFolder.uploadAction
-                subfolderByDate = syncedFolder.isSubfolderByDate
-                remotePath = syncedFolder.remotePath
-            }
-            FileUploader.uploadNewFile(
-                context,
-                user.toPlatformAccount(),
-                file.absolutePath,
+            localPaths.add(file.absolutePath)
+            remotePaths.add(
                 FileStorageUtils.getInstantUploadFilePath(
                     file,
                     currentLocale,
@@ -182,20 +180,27 @@ class FilesSyncWork(
                     syncedFolder.localPath,
                     lastModificationTime,
                     subfolderByDate
-                ),
-                uploadAction!!,
-                mimeType,
-                true, // create parent folder if not existent
-                UploadFileOperation.CREATED_AS_INSTANT_PICTURE,
-                needsWifi,
-                needsCharging,
-                syncedFolder.nameCollisionPolicy
-            )
-            filesystemDataProvider.updateFilesystemFileAsSentForUpload(
-                path,
-                java.lang.Long.toString(syncedFolder.id)
+                )
             )
+            mimeTypes.add(MimeTypeUtil.getBestMimeTypeByFilename(file.absolutePath))
         }
+        FileUploader.uploadNewFile(
+            context,
+            user.toPlatformAccount(),
+            localPaths.toTypedArray(),
+            remotePaths.toTypedArray(),
+            mimeTypes.toTypedArray(),
+            uploadAction!!,
+            true, // create parent folder if not existent
+            UploadFileOperation.CREATED_AS_INSTANT_PICTURE,
+            needsWifi,
+            needsCharging,
+            syncedFolder.nameCollisionPolicy
+        )
+        filesystemDataProvider.updateFilesystemFilesAsSentForUpload(
+            paths,
+            java.lang.Long.toString(syncedFolder.id)
+        )
     }
 
     private fun hasExif(file: File): Boolean {
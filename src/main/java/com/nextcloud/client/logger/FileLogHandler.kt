@@ -19,6 +19,7 @@
  */
 package com.nextcloud.client.logger
 
+import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileNotFoundException
 import java.io.FileOutputStream
@@ -35,13 +36,28 @@ import java.nio.charset.Charset
 internal class FileLogHandler(private val logDir: File, private val logFilename: String, private val maxSize: Long) {
 
     data class RawLogs(val lines: List<String>, val logSize: Long)
+    data class RawLogsPage(
+        val lines: List<String>,
+        val first: LogPosition,
+        val hasPrevious: Boolean,
+        val totalLines: Int,
+        val logSize: Long
+    )
 
     companion object {
         const val ROTATED_LOGS_COUNT = 3
+        const val BUFFER_SIZE = 8192
     }
 
-    private var writer: FileOutputStream? = null
+    private var writer: BufferedOutputStream? = null
+    private val indexes = mutableMapOf<String, LogFileIndex>()
     private var size: Long = 0
+
+    /**
+     * Generation of the current log file, increased on every rotation.
+     */
+    private var generation = 0L
+    private val rotationLock = Any()
     private val rotationList = listOf(
         "$logFilename.2",
         "$logFilename.1",
@@ -61,13 +77,17 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
 
     val maxLogFilesCount get() = rotationList.size
 
+    /**
+     * Opens log file for appending. Writes are buffered and reach the file
+     * once buffer fills up, on [flush] or on [close].
+     */
     fun open() {
         try {
-            writer = FileOutputStream(logFile, true)
+            writer = BufferedOutputStream(FileOutputStream(logFile, true), BUFFER_SIZE)
             size = logFile.length()
         } catch (ex: FileNotFoundException) {
             logFile.parentFile.mkdirs()
-            writer = FileOutputStream(logFile, true)
+            writer = BufferedOutputStream(FileOutputStream(logFile, true), BUFFER_SIZE)
             size = logFile.length()
         }
     }
@@ -81,6 +101,10 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
         }
     }
 
+    fun flush() {
+        writer?.flush()
+    }
+
     fun close() {
         writer?.close()
         writer = null
@@ -88,9 +112,17 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
     }
 
     fun deleteAll() {
-        rotationList
-            .map { File(logDir, it) }
-            .forEach { it.delete() }
+        if (isOpened) {
+            close()
+        }
+        synchronized(rotationLock) {
+            rotationList
+                .map { File(logDir, it) }
+                .forEach { it.delete() }
+            // positions in deleted files must not match new files
+            generation += rotationList.size
+        }
+        indexes.clear()
     }
 
     fun rotateLogs() {
@@ -99,13 +131,23 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
             close()
         }
 
-        val existingLogFiles = logDir.listFiles().associate { it.name to it }
-        existingLogFiles[rotationList.first()]?.delete()
+        synchronized(rotationLock) {
+            val existingLogFiles = logDir.listFiles().associate { it.name to it }
+            existingLogFiles[rotationList.first()]?.delete()
 
+            for (i in 0 until rotationList.size - 1) {
+                val nextFile = File(logDir, rotationList[i])
+                val previousFile = existingLogFiles[rotationList[i + 1]]
+                previousFile?.renameTo(nextFile)
+            }
+            generation++
+        }
+
+        // indexes follow renamed files
+        val previousIndexes = indexes.toMap()
+        indexes.clear()
         for (i in 0 until rotationList.size - 1) {
-            val nextFile = File(logDir, rotationList[i])
-            val previousFile = existingLogFiles[rotationList[i + 1]]
-            previousFile?.renameTo(nextFile)
+            previousIndexes[rotationList[i + 1]]?.let { indexes[rotationList[i]] = it }
         }
 
         if (rotatatingOpenedLog) {
@@ -117,6 +159,7 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
         if (rotated < 0) {
             throw IllegalArgumentException("Negative index")
         }
+        flush()
         val allLines = mutableListOf<String>()
         var size = 0L
         for (i in 0..Math.min(rotated, rotationList.size - 1)) {
@@ -132,4 +175,137 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
         }
         return RawLogs(lines = allLines, logSize = size)
     }
+
+    /**
+     * Load a page of log lines. Lines are addressed by [LogPosition], so a position
+     * keeps pointing to the same line when logs are rotated.
+     *
+     * Line offsets of each log file are indexed and the index is updated
+     * incrementally, so only requested lines are read.
+     *
+     * This method must be called on the thread writing logs.
+     *
+     * @param before position of the line following the page; null loads the latest page
+     * @param count maximum number of lines in page
+     */
+    fun loadLogPage(before: LogPosition?, count: Int): RawLogsPage {
+        if (count <= 0) {
+            throw IllegalArgumentException("Page size must be positive")
+        }
+        flush()
+
+        val files = indexLogFiles()
+        // lines of all files are numbered consecutively, oldest first
+        val firstLines = IntArray(files.size + 1)
+        for (i in files.indices) {
+            firstLines[i + 1] = firstLines[i] + files[i].index.lineCount
+        }
+        val totalLines = firstLines[files.size]
+
+        val end = if (before == null) totalLines else findLine(files, firstLines, before)
+        val start = maxOf(0, end - count)
+
+        val lines = ArrayList<String>(end - start)
+        for (i in files.indices) {
+            val from = maxOf(start, firstLines[i])
+            val to = minOf(end, firstLines[i + 1])
+            if (from < to) {
+                try {
+                    lines.addAll(files[i].index.readLines(files[i].file, from - firstLines[i], to - firstLines[i]))
+                } catch (ex: IOException) {
+                    // ignore failing file
+                }
+            }
+        }
+
+        val startFile = (files.size - 1 downTo 0).firstOrNull { firstLines[it] <= start }
+        val first = when (startFile) {
+            null -> before ?: LogPosition(generation, 0)
+            else -> LogPosition(files[startFile].generation, start - firstLines[startFile])
+        }
+        return RawLogsPage(
+            lines = lines,
+            first = first,
+            hasPrevious = start > 0,
+            totalLines = totalLines,
+            logSize = files.sumOf { it.file.length() }
+        )
+    }
+
+    private class IndexedLogFile(val file: File, val index: LogFileIndex, val generation: Long)
+
+    /**
+     * Update indexes of all existing log files.
+     *
+     * @return indexed log files, oldest first
+     */
+    private fun indexLogFiles(): List<IndexedLogFile> {
+        val files = mutableListOf<IndexedLogFile>()
+        for ((i, name) in rotationList.withIndex()) {
+            val file = File(logDir, name)
+            if (!file.exists()) {
+                indexes.remove(name)
+                continue
+            }
+            val index = indexes.getOrPut(name) { LogFileIndex() }
+            try {
+                index.update(file)
+                files.add(IndexedLogFile(file, index, generation - (rotationList.size - 1 - i)))
+            } catch (ex: IOException) {
+                // ignore failing file
+                indexes.remove(name)
+            }
+        }
+        return files
+    }
+
+    /**
+     * @return number of the line at given position, counting lines of all files; lines
+     * rotated out are placed before the oldest line
+     */
+    private fun findLine(files: List<IndexedLogFile>, firstLines: IntArray, position: LogPosition): Int {
+        val file = files.indexOfFirst { it.generation >= position.generation }
+        return when {
+            file < 0 -> firstLines[files.size]
+            files[file].generation == position.generation ->
+                firstLines[file] + position.line.coerceIn(0, files[file].index.lineCount)
+            else -> firstLines[file]
+        }
+    }
+
+    /**
+     * Lazily read lines of all log files, oldest first. Files are read while the
+     * sequence is iterated, so logs are never loaded into memory at once.
+     *
+     * All log files are opened when iteration starts, so logs rotated while
+     * iterating are read as they were at that time.
+     *
+     * This method can be called from any thread, but lines written after last
+     * [flush] are not visible.
+     */
+    fun streamLogLines(): Sequence<String> = sequence {
+        val readers = synchronized(rotationLock) {
+            rotationList.mapNotNull { name ->
+                try {
+                    File(logDir, name).bufferedReader(Charsets.UTF_8)
+                } catch (ex: IOException) {
+                    // file does not exist
+                    null
+                }
+            }
+        }
+        for (reader in readers) {
+            try {
+                reader.use {
+                    var line = it.readLine()
+                    while (line != null) {
+                        yield(line)
+                        line = it.readLine()
+                    }
+                }
+            } catch (ex: IOException) {
+                // ignore failing file
+            }
+        }
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.logger
+
+import java.io.File
+import java.io.RandomAccessFile
+
+/**
+ * Start offsets of lines in a log file, allowing to read any range of lines
+ * without scanning the file.
+ *
+ * Index is updated incrementally: [update] scans only content appended since
+ * the last update. If the file shrinks, index is rebuilt from scratch.
+ *
+ * This class is not thread-safe.
+ */
+internal class LogFileIndex {
+
+    private companion object {
+        const val INITIAL_CAPACITY = 1024
+        const val BUFFER_SIZE = 64 * 1024
+        const val NEW_LINE = '\n'.toByte()
+    }
+
+    private var offsets = LongArray(INITIAL_CAPACITY)
+    private var terminatedLines = 0
+    private var lastLineStart = 0L
+    private var indexedLength = 0L
+
+    /**
+     * Number of indexed lines, including last line if it is not terminated.
+     */
+    val lineCount: Int
+        get() {
+            return if (indexedLength > lastLineStart) terminatedLines + 1 else terminatedLines
+        }
+
+    fun update(file: File) {
+        val length = file.length()
+        if (length < indexedLength) {
+            reset()
+        }
+        if (length == indexedLength) {
+            return
+        }
+
+        RandomAccessFile(file, "r").use { input ->
+            input.seek(indexedLength)
+            val buffer = ByteArray(BUFFER_SIZE)
+            var position = indexedLength
+            while (position < length) {
+                val read = input.read(buffer, 0, minOf(buffer.size.toLong(), length - position).toInt())
+                if (read < 0) {
+                    break
+                }
+                for (i in 0 until read) {
+                    if (buffer[i] == NEW_LINE) {
+                        addLine(lastLineStart)
+                        lastLineStart = position + i + 1
+                    }
+                }
+                position += read
+            }
+            indexedLength = position
+        }
+    }
+
+    /**
+     * Read lines from indexed file.
+     *
+     * @param from index of first line, inclusive
+     * @param to index of last line, exclusive
+     */
+    fun readLines(file: File, from: Int, to: Int): List<String> {
+        require(from in 0..to && to <= lineCount) { "Invalid line range $from - $to" }
+        if (from == to) {
+            return emptyList()
+        }
+
+        val start = lineStart(from)
+        val end = lineEnd(to - 1)
+        val bytes = ByteArray((end - start).toInt())
+        RandomAccessFile(file, "r").use { input ->
+            input.seek(start)
+            input.readFully(bytes)
+        }
+        return String(bytes, Charsets.UTF_8).split(NEW_LINE.toChar())
+    }
+
+    private fun lineStart(line: Int): Long = if (line < terminatedLines) offsets[line] else lastLineStart
+
+    /**
+     * @return offset of the line end, excluding new line character
+     */
+    private fun lineEnd(line: Int): Long = when {
+        line < terminatedLines - 1 -> offsets[line + 1] - 1
+        line == terminatedLines - 1 -> lastLineStart - 1
+        else -> indexedLength
+    }
+
+    private fun addLine(offset: Long) {
+        if (terminatedLines == offsets.size) {
+            offsets = offsets.copyOf(offsets.size * 2)
+        }
+        offsets[terminatedLines++] = offset
+    }
+
+    private fun reset() {
+        offsets = LongArray(INITIAL_CAPACITY)
+        terminatedLines = 0
+        lastLineStart = 0L
+        indexedLength = 0L
+    }
+}
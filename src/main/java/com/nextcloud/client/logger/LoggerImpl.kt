@@ -23,12 +23,21 @@ import android.os.Handler
 import android.util.Log
 import com.nextcloud.client.core.Clock
 import java.util.Date
-import java.util.concurrent.BlockingQueue
-import java.util.concurrent.LinkedBlockingQueue
+import java.util.Queue
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
 
+/**
+ * Logger writing entries to log file on a background thread.
+ *
+ * Logging never blocks the caller: entries are put into a bounded [RingBuffer]
+ * and dropped if it is full. The writer thread keeps the log file opened
+ * while entries are coming in, flushes it every [FLUSH_INTERVAL_MS] and closes
+ * it once there is nothing to write for the same period.
+ */
 @Suppress("TooManyFunctions")
 internal class LoggerImpl(
     private val clock: Clock,
@@ -37,13 +46,24 @@ internal class LoggerImpl(
     queueCapacity: Int
 ) : Logger, LogsRepository {
 
+    companion object {
+        const val FLUSH_INTERVAL_MS = 500L
+    }
+
     data class Load(val onResult: (List<LogEntry>, Long) -> Unit)
+    data class LoadPage(val before: LogPosition?, val count: Int, val onResult: OnLogsPageLoaded)
     class Delete
 
     private val looper = ThreadLoop()
-    private val eventQueue: BlockingQueue<Any> = LinkedBlockingQueue(queueCapacity)
+    private val eventQueue = RingBuffer<LogEntry>(queueCapacity)
+    private val controlEvents: Queue<Any> = ConcurrentLinkedQueue()
 
-    private val processedEvents = mutableListOf<Any>()
+    @Volatile
+    private var writerThread: Thread? = null
+    private val writerWaiting = AtomicBoolean()
+    private var lastFlush = 0L
+
+    private val processedEvents = mutableListOf<LogEntry>()
     private val otherEvents = mutableListOf<Any>()
     private val missedLogs = AtomicBoolean()
     private val missedLogsCount = AtomicLong()
@@ -57,6 +77,13 @@ internal class LoggerImpl(
         looper.start(this::eventLoop)
     }
 
+    /**
+     * Stops the writer thread and waits for it to finish. Entries still queued are not written.
+     */
+    fun stop() {
+        looper.stop()
+    }
+
     override fun v(tag: String, message: String) {
         Log.v(tag, message)
         enqueue(Level.VERBOSE, tag, message)
@@ -68,8 +95,8 @@ internal class LoggerImpl(
     }
 
     override fun d(tag: String, message: String, t: Throwable) {
-        Log.d(tag, message)
-        enqueue(Level.DEBUG, tag, message)
+        Log.d(tag, message, t)
+        enqueue(Level.DEBUG, tag, withStackTrace(message, t))
     }
 
     override fun i(tag: String, message: String) {
@@ -88,87 +115,170 @@ internal class LoggerImpl(
     }
 
     override fun e(tag: String, message: String, t: Throwable) {
-        Log.e(tag, message)
-        enqueue(Level.ERROR, tag, message)
+        Log.e(tag, message, t)
+        enqueue(Level.ERROR, tag, withStackTrace(message, t))
     }
 
     override fun load(onLoaded: (entries: List<LogEntry>, totalLogSize: Long) -> Unit) {
-        eventQueue.put(Load(onLoaded))
+        controlEvents.add(Load(onLoaded))
+        wakeUpWriter()
+    }
+
+    override fun loadPage(before: LogPosition?, count: Int, onLoaded: OnLogsPageLoaded) {
+        controlEvents.add(LoadPage(before, count, onLoaded))
+        wakeUpWriter()
+    }
+
+    override fun readEntries(): Iterable<LogEntry> {
+        return handler.streamLogLines().mapNotNull { LogEntry.parse(it) }.asIterable()
     }
 
     override fun deleteAll() {
-        eventQueue.put(Delete())
+        controlEvents.add(Delete())
+        wakeUpWriter()
+    }
+
+    private fun withStackTrace(message: String, t: Throwable): String {
+        return message + "\n" + t.stackTraceToString()
     }
 
     private fun enqueue(level: Level, tag: String, message: String) {
-        try {
-            val entry = LogEntry(timestamp = clock.currentDate, level = level, tag = tag, message = message)
-            val enqueued = eventQueue.offer(entry, 1, TimeUnit.SECONDS)
-            if (!enqueued) {
-                missedLogs.set(true)
-                missedLogsCount.incrementAndGet()
+        val entry = LogEntry(timestamp = clock.currentDate, level = level, tag = tag, message = message)
+        if (eventQueue.offer(entry)) {
+            wakeUpWriter()
+        } else {
+            missedLogs.set(true)
+            missedLogsCount.incrementAndGet()
+        }
+    }
+
+    private fun wakeUpWriter() {
+        if (writerWaiting.get() && writerWaiting.compareAndSet(true, false)) {
+            LockSupport.unpark(writerThread)
+        }
+    }
+
+    private val hasEvents: Boolean
+        get() {
+            return !eventQueue.isEmpty || controlEvents.isNotEmpty()
+        }
+
+    /**
+     * Parks writer thread until new events are posted. If log file is opened,
+     * waiting is limited to [FLUSH_INTERVAL_MS].
+     *
+     * @return true if there are events to process
+     */
+    private fun awaitEvents(): Boolean {
+        if (!hasEvents) {
+            writerWaiting.set(true)
+            if (!hasEvents) {
+                if (handler.isOpened) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS))
+                } else {
+                    LockSupport.park(this)
+                }
+            }
+            writerWaiting.set(false)
+            if (Thread.interrupted()) {
+                throw InterruptedException()
             }
-        } catch (ex: InterruptedException) {
-            // since interrupted flag is consumed now, we need to re-set the flag so
-            // the caller can continue handling the thread interruption in it's own way
-            Thread.currentThread().interrupt()
         }
+        return hasEvents
     }
 
     private fun eventLoop() {
         try {
+            writerThread = Thread.currentThread()
+
+            if (!awaitEvents()) {
+                // nothing logged for a while
+                if (handler.isOpened) {
+                    handler.close()
+                }
+                return
+            }
+
             processedEvents.clear()
             otherEvents.clear()
 
-            processedEvents.add(eventQueue.take())
+            // take control events first, so all entries logged before them are drained below
+            var controlEvent = controlEvents.poll()
+            while (controlEvent != null) {
+                otherEvents.add(controlEvent)
+                controlEvent = controlEvents.poll()
+            }
             eventQueue.drainTo(processedEvents)
 
             // process all writes in bulk - this is most frequest use case and we can
             // assume handler must be opened 99.999% of time; anything that is not a log
             // write should be deferred
-            handler.open()
-            for (event in processedEvents) {
-                if (event is LogEntry) {
+            if (processedEvents.isNotEmpty()) {
+                openHandler()
+                for (event in processedEvents) {
                     handler.write(event.toString() + "\n")
-                } else {
-                    otherEvents.add(event)
                 }
             }
-            handler.close()
+            checkAndLogLostMessages()
 
-            // Those events are very sporadic and we don't have to be clever here
-            for (event in otherEvents) {
-                when (event) {
-                    is Load -> {
-                        val loaded = handler.loadLogFiles()
-                        val entries = loaded.lines.mapNotNull { LogEntry.parse(it) }
-                        mainThreadHandler.post {
-                            event.onResult(entries, loaded.logSize)
-                        }
-                    }
-                    is Delete -> handler.deleteAll()
-                }
+            val now = clock.currentTime
+            if (handler.isOpened && now - lastFlush >= FLUSH_INTERVAL_MS) {
+                handler.flush()
+                lastFlush = now
             }
 
-            checkAndLogLostMessages()
+            // Those events are very sporadic and we don't have to be clever here
+            otherEvents.forEach(this::processControlEvent)
         } catch (ex: InterruptedException) {
             handler.close()
             throw ex
         }
     }
 
+    private fun processControlEvent(event: Any) {
+        when (event) {
+            is Load -> {
+                val loaded = handler.loadLogFiles()
+                val entries = loaded.lines.mapNotNull { LogEntry.parse(it) }
+                mainThreadHandler.post {
+                    event.onResult(entries, loaded.logSize)
+                }
+            }
+            is LoadPage -> {
+                val loaded = handler.loadLogPage(event.before, event.count)
+                val page = LogsPage(
+                    entries = loaded.lines.mapNotNull { LogEntry.parse(it) },
+                    first = loaded.first,
+                    hasPrevious = loaded.hasPrevious,
+                    totalLines = loaded.totalLines,
+                    logSize = loaded.logSize
+                )
+                mainThreadHandler.post {
+                    event.onResult(page)
+                }
+            }
+            is Delete -> handler.deleteAll()
+        }
+    }
+
+    private fun openHandler() {
+        if (!handler.isOpened) {
+            handler.open()
+            lastFlush = clock.currentTime
+        }
+    }
+
     private fun checkAndLogLostMessages() {
         val lastMissedLogsCount = missedLogsCount.getAndSet(0)
         if (lastMissedLogsCount > 0) {
-            handler.open()
+            openHandler()
             val warning = LogEntry(
                 timestamp = Date(),
                 level = Level.WARNING,
                 tag = "Logger",
                 message = "Logger queue overflow. Approx $lastMissedLogsCount entries lost. You write too much."
             ).toString()
-            handler.write(warning)
-            handler.close()
+            handler.write(warning + "\n")
         }
     }
 }
@@ -20,6 +20,32 @@
 package com.nextcloud.client.logger
 
 typealias OnLogsLoaded = (entries: List<LogEntry>, totalLogSize: Long) -> Unit
+typealias OnLogsPageLoaded = (page: LogsPage) -> Unit
+
+/**
+ * Position of a line in log files. Log rotation does not move positions.
+ *
+ * @property generation generation of the log file, increased whenever logs are rotated
+ * @property line number of the line in the log file
+ */
+data class LogPosition(val generation: Long, val line: Int)
+
+/**
+ * Page of log entries.
+ *
+ * @property entries log entries, oldest first
+ * @property first position of the first line in page
+ * @property hasPrevious true if there are older lines than the page
+ * @property totalLines number of lines in all log files
+ * @property logSize size of all log files in bytes
+ */
+data class LogsPage(
+    val entries: List<LogEntry>,
+    val first: LogPosition,
+    val hasPrevious: Boolean,
+    val totalLines: Int,
+    val logSize: Long
+)
 
 /**
  * This interface provides safe, read only access to application
@@ -43,6 +69,23 @@ interface LogsRepository {
      */
     fun load(onLoaded: OnLogsLoaded)
 
+    /**
+     * Asynchronously load a page of logs. Load can be scheduled on any thread,
+     * but the listener will be called on main thread.
+     *
+     * @param before position of the line following requested page, as returned in [LogsPage.first];
+     * null requests the latest page
+     * @param count maximum number of lines in page
+     * @param onLoaded callback with loaded page; called on main thread
+     */
+    fun loadPage(before: LogPosition?, count: Int, onLoaded: OnLogsPageLoaded)
+
+    /**
+     * Lazily read all log entries, oldest first. Log files are read while iterating,
+     * so this should not be iterated on main thread.
+     */
+    fun readEntries(): Iterable<LogEntry>
+
     /**
      * Asynchronously delete logs.
      */
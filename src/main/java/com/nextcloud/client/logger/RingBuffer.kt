@@ -0,0 +1,103 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.logger
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Bounded, lock-free multi-producer single-consumer queue.
+ *
+ * Every slot carries a sequence number telling whether it can be written by a producer
+ * or read by the consumer, so producers only contend on a single CAS and never block.
+ *
+ * [offer] is thread safe, [poll], [drainTo] and [isEmpty] must be called from a single consumer thread.
+ */
+internal class RingBuffer<T : Any>(val capacity: Int) {
+
+    private val items = AtomicReferenceArray<T?>(capacity)
+    private val sequences = AtomicLongArray(capacity)
+    private val producerPosition = AtomicLong()
+    private var consumerPosition = 0L
+
+    init {
+        require(capacity > 0) { "Capacity must be positive" }
+        for (i in 0 until capacity) {
+            sequences.set(i, i.toLong())
+        }
+    }
+
+    /**
+     * Inserts an item if there is free space.
+     *
+     * @return false if buffer is full
+     */
+    fun offer(item: T): Boolean {
+        var position = producerPosition.get()
+        while (true) {
+            val index = indexOf(position)
+            val difference = sequences.get(index) - position
+            when {
+                difference == 0L -> if (producerPosition.compareAndSet(position, position + 1)) {
+                    items.lazySet(index, item)
+                    sequences.set(index, position + 1)
+                    return true
+                } else {
+                    position = producerPosition.get()
+                }
+                difference < 0L -> return false
+                else -> position = producerPosition.get()
+            }
+        }
+    }
+
+    fun poll(): T? {
+        val index = indexOf(consumerPosition)
+        if (sequences.get(index) != consumerPosition + 1) {
+            return null
+        }
+        val item = items.get(index)
+        items.lazySet(index, null)
+        sequences.set(index, consumerPosition + capacity)
+        consumerPosition++
+        return item
+    }
+
+    /**
+     * Moves all available items to [destination].
+     *
+     * @return number of moved items
+     */
+    fun drainTo(destination: MutableCollection<in T>): Int {
+        var count = 0
+        while (true) {
+            val item = poll() ?: return count
+            destination.add(item)
+            count++
+        }
+    }
+
+    val isEmpty: Boolean
+        get() {
+            return sequences.get(indexOf(consumerPosition)) != consumerPosition + 1
+        }
+
+    private fun indexOf(position: Long): Int = (position % capacity).toInt()
+}
@@ -39,6 +39,10 @@ import javax.inject.Inject
 
 class LogsActivity : ToolbarActivity() {
 
+    private companion object {
+        const val LOAD_MORE_THRESHOLD = 50
+    }
+
     @Inject
     protected lateinit var viewModelFactory: ViewModelFactory
     private lateinit var vm: LogsViewModel
@@ -56,6 +60,18 @@ class LogsActivity : ToolbarActivity() {
         }
     }
 
+    /**
+     * Newest entries are displayed on top, so older entries are loaded when scrolling to the bottom.
+     */
+    private val loadMoreListener = object : RecyclerView.OnScrollListener() {
+        override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+            val layoutManager = recyclerView.layoutManager as LinearLayoutManager
+            if (layoutManager.findLastVisibleItemPosition() >= logsAdapter.itemCount - LOAD_MORE_THRESHOLD) {
+                vm.loadMore()
+            }
+        }
+    }
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         vm = ViewModelProvider(this, viewModelFactory).get(LogsViewModel::class.java)
@@ -72,6 +88,7 @@ class LogsActivity : ToolbarActivity() {
         findViewById<RecyclerView>(R.id.logsList).apply {
             layoutManager = LinearLayoutManager(this@LogsActivity)
             adapter = logsAdapter
+            addOnScrollListener(loadMoreListener)
         }
 
         vm.entries.observe(this, Observer { logsAdapter.entries = it })
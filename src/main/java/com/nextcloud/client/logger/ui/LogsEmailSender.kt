@@ -43,7 +43,7 @@ class LogsEmailSender(private val context: Context, private val clock: Clock, pr
 
     private class Task(
         private val context: Context,
-        private val logs: List<LogEntry>,
+        private val logs: Iterable<LogEntry>,
         private val file: File,
         private val tz: TimeZone
     ) : Function0<Uri?> {
@@ -62,7 +62,7 @@ class LogsEmailSender(private val context: Context, private val clock: Clock, pr
 
     private var task: Cancellable? = null
 
-    fun send(logs: List<LogEntry>) {
+    fun send(logs: Iterable<LogEntry>) {
         if (task == null) {
             val outFile = File(context.cacheDir, "attachments/logs.txt")
             task = runner.postQuickTask(Task(context, logs, outFile, clock.tz), onResult = { task = null; send(it) })
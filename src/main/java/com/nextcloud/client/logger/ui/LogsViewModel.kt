@@ -26,6 +26,8 @@ import androidx.lifecycle.ViewModel
 import com.nextcloud.client.core.AsyncRunner
 import com.nextcloud.client.core.Clock
 import com.nextcloud.client.logger.LogEntry
+import com.nextcloud.client.logger.LogPosition
+import com.nextcloud.client.logger.LogsPage
 import com.nextcloud.client.logger.LogsRepository
 import com.owncloud.android.R
 import javax.inject.Inject
@@ -39,11 +41,16 @@ class LogsViewModel @Inject constructor(
 
     private companion object {
         const val KILOBYTE = 1024L
+        const val PAGE_SIZE = 500
     }
 
     private val asyncFilter = AsyncFilter(asyncRunner)
     private val sender = LogsEmailSender(context, clock, asyncRunner)
-    private var allEntries = emptyList<LogEntry>()
+    private var loadedEntries = emptyList<LogEntry>()
+    private var firstLoadedPosition: LogPosition? = null
+    private var hasMore = false
+    private var isLoadingMore = false
+    private var totalLines = 0
     private var logsSize = -1L
     private var filterDurationMs = 0L
     private var isFiltered = false
@@ -53,48 +60,100 @@ class LogsViewModel @Inject constructor(
     val entries: LiveData<List<LogEntry>> = MutableLiveData<List<LogEntry>>().apply { value = emptyList() }
     val status: LiveData<String> = MutableLiveData<String>().apply { value = "" }
 
+    /**
+     * Send filtered entries or, if logs are not filtered, all logs.
+     */
     fun send() {
-        entries.value?.let {
-            sender.send(it)
+        if (isFiltered) {
+            entries.value?.let {
+                sender.send(it)
+            }
+        } else {
+            sender.send(logsRepository.readEntries())
         }
     }
 
+    /**
+     * Load latest page of logs.
+     */
     fun load() {
         if (isLoading.value != true) {
-            logsRepository.load(this::onLoaded)
+            logsRepository.loadPage(null, PAGE_SIZE, this::onLoaded)
             (isLoading as MutableLiveData).value = true
         }
     }
 
-    private fun onLoaded(entries: List<LogEntry>, logsSize: Long) {
+    /**
+     * Load page of logs preceding already loaded entries. Filtered results
+     * already cover all logs, so this no-ops while logs are filtered.
+     */
+    fun loadMore() {
+        if (isLoading.value == false && !isLoadingMore && !isFiltered && hasMore) {
+            isLoadingMore = true
+            logsRepository.loadPage(firstLoadedPosition, PAGE_SIZE, this::onMoreLoaded)
+        }
+    }
+
+    private fun onLoaded(page: LogsPage) {
         this.entries as MutableLiveData
         this.isLoading as MutableLiveData
         this.status as MutableLiveData
 
-        this.entries.value = entries
-        this.allEntries = entries
-        this.logsSize = logsSize
+        this.entries.value = page.entries
+        onPageLoaded(page, page.entries)
         isLoading.value = false
+        isLoadingMore = false
         this.status.value = formatStatus()
     }
 
+    private fun onMoreLoaded(page: LogsPage) {
+        if (!isLoadingMore) {
+            // logs were reloaded or deleted in the meantime
+            return
+        }
+        isLoadingMore = false
+        onPageLoaded(page, page.entries + loadedEntries)
+        if (!isFiltered) {
+            (entries as MutableLiveData).value = loadedEntries
+        }
+        (status as MutableLiveData).value = formatStatus()
+    }
+
+    private fun onPageLoaded(page: LogsPage, entries: List<LogEntry>) {
+        loadedEntries = entries
+        firstLoadedPosition = page.first
+        hasMore = page.hasPrevious
+        totalLines = page.totalLines
+        logsSize = page.logSize
+    }
+
     fun deleteAll() {
         logsRepository.deleteAll()
+        loadedEntries = emptyList()
+        firstLoadedPosition = null
+        hasMore = false
+        isLoadingMore = false
+        totalLines = 0
         (entries as MutableLiveData).value = emptyList()
     }
 
+    /**
+     * Filter all logs, not only loaded pages. Log files are read while filtering,
+     * so entries are never loaded into memory at once.
+     */
     fun filter(pattern: String) {
         if (isLoading.value == false) {
             isFiltered = pattern.isNotEmpty()
-            val predicate = when (isFiltered) {
-                true -> { it: LogEntry -> it.tag.contains(pattern, true) || it.message.contains(pattern, true) }
-                false -> { _ -> true }
+            if (isFiltered) {
+                asyncFilter.filter(
+                    collection = logsRepository.readEntries(),
+                    predicate = { it.tag.contains(pattern, true) || it.message.contains(pattern, true) },
+                    onResult = this::onFiltered
+                )
+            } else {
+                (entries as MutableLiveData).value = loadedEntries
+                (status as MutableLiveData).value = formatStatus()
             }
-            asyncFilter.filter(
-                collection = allEntries,
-                predicate = predicate,
-                onResult = this::onFiltered
-            )
         }
     }
 
@@ -104,13 +163,17 @@ class LogsViewModel @Inject constructor(
     }
 
     private fun onFiltered(filtered: List<LogEntry>, filterDurationMs: Long) {
+        if (!isFiltered) {
+            // filter was cleared while filtering
+            return
+        }
         (entries as MutableLiveData).value = filtered
         this.filterDurationMs = filterDurationMs
         (status as MutableLiveData).value = formatStatus()
     }
 
     private fun formatStatus(): String {
-        val displayedEntries = entries.value?.size ?: allEntries.size
+        val displayedEntries = entries.value?.size ?: loadedEntries.size
         val sizeKb = logsSize / KILOBYTE
         return when {
             isLoading.value == true -> context.getString(R.string.logs_status_loading)
@@ -118,7 +181,7 @@ class LogsViewModel @Inject constructor(
                 R.string.logs_status_filtered,
                 sizeKb,
                 displayedEntries,
-                allEntries.size,
+                totalLines,
                 filterDurationMs
             )
             !isFiltered -> context.getString(R.string.logs_status_not_filtered, sizeKb)
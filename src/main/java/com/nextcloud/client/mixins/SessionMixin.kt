@@ -53,8 +53,8 @@ class SessionMixin constructor(
         private set
     var storageManager: FileDataStorageManager? = null
         private set
-    var capabilities: OCCapability? = null
-        private set
+    val capabilities: OCCapability?
+        get() = currentAccount?.let { storageManager?.getCapability(it.name) }
 
     fun setAccount(account: Account?) {
         val validAccount = account != null && accountManager.setCurrentOwnCloudAccount(account.name)
@@ -65,9 +65,7 @@ class SessionMixin constructor(
         }
 
         currentAccount?.let {
-            val storageManager = FileDataStorageManager(currentAccount, contentResolver)
-            this.storageManager = storageManager
-            this.capabilities = storageManager.getCapability(it.name)
+            this.storageManager = FileDataStorageManager(it, contentResolver)
         }
     }
 
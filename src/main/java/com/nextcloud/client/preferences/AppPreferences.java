@@ -352,6 +352,45 @@ public interface AppPreferences {
 
     long getPhotoSearchTimestamp();
 
+    /**
+     * Gets media store scan watermark of a synced folder. Media added or modified before the watermark have been
+     * indexed already.
+     *
+     * @param syncedFolderId id of the synced folder
+     * @return watermark in seconds, as used by media store dates, 0 if folder has not been scanned
+     */
+    long getMediaScanWatermark(long syncedFolderId);
+
+    void setMediaScanWatermark(long syncedFolderId, long watermark);
+
+    /**
+     * Gets time of last full media store scan of a synced folder.
+     *
+     * @param syncedFolderId id of the synced folder
+     * @return timestamp in milliseconds, 0 if folder has not been scanned
+     */
+    long getMediaFullScanTimestamp(long syncedFolderId);
+
+    void setMediaFullScanTimestamp(long syncedFolderId, long timestamp);
+
+    /**
+     * Removes media store scan state of a synced folder, so that the next scan is a full scan.
+     *
+     * @param syncedFolderId id of the synced folder
+     */
+    void resetMediaScanState(long syncedFolderId);
+
+    /**
+     * Gets the number of uploads run in parallel on unmetered networks. Metered networks use at most
+     * {@link com.owncloud.android.files.services.FileUploader#DEFAULT_METERED_PARALLEL_UPLOADS}.
+     *
+     * @return number of parallel uploads, default
+     * {@link com.owncloud.android.files.services.FileUploader#DEFAULT_PARALLEL_UPLOADS}
+     */
+    int getParallelUploads();
+
+    void setParallelUploads(int parallelUploads);
+
     boolean isPowerCheckDisabled();
 
     void setPowerCheckDisabled(boolean value);
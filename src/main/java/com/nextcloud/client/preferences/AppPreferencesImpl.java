@@ -31,6 +31,7 @@ import com.nextcloud.client.account.UserAccountManagerImpl;
 import com.owncloud.android.datamodel.ArbitraryDataProvider;
 import com.owncloud.android.datamodel.FileDataStorageManager;
 import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.files.services.FileUploader;
 import com.owncloud.android.ui.activity.PassCodeActivity;
 import com.owncloud.android.ui.activity.SettingsActivity;
 import com.owncloud.android.utils.FileSortOrder;
@@ -88,6 +89,9 @@ public final class AppPreferencesImpl implements AppPreferences {
     private static final String PREF__SELECTED_ACCOUNT_NAME = "select_oc_account";
     private static final String PREF__MIGRATED_USER_ID = "migrated_user_id";
     private static final String PREF__PHOTO_SEARCH_TIMESTAMP = "photo_search_timestamp";
+    private static final String PREF__MEDIA_SCAN_WATERMARK = "media_scan_watermark_";
+    private static final String PREF__MEDIA_FULL_SCAN_TIMESTAMP = "media_full_scan_timestamp_";
+    private static final String PREF__PARALLEL_UPLOADS = "parallel_uploads";
     private static final String PREF__POWER_CHECK_DISABLED = "power_check_disabled";
     private static final String PREF__PIN_BRUTE_FORCE_COUNT = "pin_brute_force_count";
 
@@ -579,6 +583,44 @@ public final class AppPreferencesImpl implements AppPreferences {
         return preferences.getLong(PREF__PHOTO_SEARCH_TIMESTAMP, 0);
     }
 
+    @Override
+    public long getMediaScanWatermark(long syncedFolderId) {
+        return preferences.getLong(PREF__MEDIA_SCAN_WATERMARK + syncedFolderId, 0);
+    }
+
+    @Override
+    public void setMediaScanWatermark(long syncedFolderId, long watermark) {
+        preferences.edit().putLong(PREF__MEDIA_SCAN_WATERMARK + syncedFolderId, watermark).apply();
+    }
+
+    @Override
+    public long getMediaFullScanTimestamp(long syncedFolderId) {
+        return preferences.getLong(PREF__MEDIA_FULL_SCAN_TIMESTAMP + syncedFolderId, 0);
+    }
+
+    @Override
+    public void setMediaFullScanTimestamp(long syncedFolderId, long timestamp) {
+        preferences.edit().putLong(PREF__MEDIA_FULL_SCAN_TIMESTAMP + syncedFolderId, timestamp).apply();
+    }
+
+    @Override
+    public int getParallelUploads() {
+        return preferences.getInt(PREF__PARALLEL_UPLOADS, FileUploader.DEFAULT_PARALLEL_UPLOADS);
+    }
+
+    @Override
+    public void setParallelUploads(int parallelUploads) {
+        preferences.edit().putInt(PREF__PARALLEL_UPLOADS, parallelUploads).apply();
+    }
+
+    @Override
+    public void resetMediaScanState(long syncedFolderId) {
+        preferences.edit()
+            .remove(PREF__MEDIA_SCAN_WATERMARK + syncedFolderId)
+            .remove(PREF__MEDIA_FULL_SCAN_TIMESTAMP + syncedFolderId)
+            .apply();
+    }
+
     /**
      * Get preference value for a folder.
      * If folder is not set itself, it finds an ancestor that is set.
@@ -598,15 +640,10 @@ public final class AppPreferencesImpl implements AppPreferences {
             return defaultValue;
         }
 
-        ArbitraryDataProvider dataProvider = new ArbitraryDataProvider(context.getContentResolver());
-        FileDataStorageManager storageManager = new FileDataStorageManager(user.toPlatformAccount(), context.getContentResolver());
-
-        String value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, folder));
-        OCFile prefFolder = folder;
-        while (prefFolder != null && value.isEmpty()) {
-            prefFolder = storageManager.getFileById(prefFolder.getParentId());
-            value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, prefFolder));
-        }
+        String value = FolderPreferenceCache.getInstance().get(new FolderPreferenceStore(context, user),
+                                                               user.getAccountName(),
+                                                               preferenceName,
+                                                               folder);
         return value.isEmpty() ? defaultValue : value;
     }
 
@@ -624,14 +661,42 @@ public final class AppPreferencesImpl implements AppPreferences {
                                             @Nullable final OCFile folder,
                                             final String value) {
         ArbitraryDataProvider dataProvider = new ArbitraryDataProvider(context.getContentResolver());
-        dataProvider.storeOrUpdateKeyValue(user.getAccountName(), getKeyFromFolder(preferenceName, folder), value);
+        dataProvider.storeOrUpdateKeyValue(user.getAccountName(),
+                                           FolderPreferenceCache.getKey(preferenceName, folder),
+                                           value);
     }
 
-    private static String getKeyFromFolder(String preferenceName, @Nullable OCFile folder) {
-        final String folderIdString = String.valueOf(folder != null ? folder.getFileId() :
-            FileDataStorageManager.ROOT_PARENT_ID);
+    /**
+     * Reads folder preferences from arbitrary data and the folder tree from the file list of the user.
+     */
+    private static class FolderPreferenceStore implements FolderPreferenceCache.Store {
+        private final Context context;
+        private final User user;
+        private ArbitraryDataProvider dataProvider;
+        private FileDataStorageManager storageManager;
+
+        FolderPreferenceStore(Context context, User user) {
+            this.context = context;
+            this.user = user;
+        }
+
+        @Override
+        public String getValue(String accountName, String key) {
+            if (dataProvider == null) {
+                dataProvider = new ArbitraryDataProvider(context.getContentResolver());
+            }
+            return dataProvider.getValue(accountName, key);
+        }
 
-        return preferenceName + "_" + folderIdString;
+        @Nullable
+        @Override
+        public Long getParentId(String accountName, long fileId) {
+            if (storageManager == null) {
+                storageManager = new FileDataStorageManager(user.toPlatformAccount(), context.getContentResolver());
+            }
+            OCFile file = storageManager.getFileById(fileId);
+            return file != null ? file.getParentId() : null;
+        }
     }
 
     @Override
@@ -0,0 +1,214 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.client.preferences;
+
+import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Resolves folder preferences, keeping the ancestors of the resolved folders in memory.
+ *
+ * A folder without a value of its own inherits the value of its closest ancestor having one. Values are read from
+ * arbitrary data, which is held in memory once loaded, so the cost of resolving a preference lies in looking up the
+ * parent of every folder level. The ancestors of a folder are therefore looked up once and shared by all preferences;
+ * they are dropped when one of them is moved.
+ */
+public final class FolderPreferenceCache {
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private static final FolderPreferenceCache INSTANCE = new FolderPreferenceCache();
+
+    /**
+     * Storage of folder preferences and of the folder tree.
+     */
+    interface Store {
+        /**
+         * @return value of the preference key, empty if not set
+         */
+        String getValue(String accountName, String key);
+
+        /**
+         * @return id of the parent of the file, null if the file does not exist
+         */
+        @Nullable
+        Long getParentId(String accountName, long fileId);
+    }
+
+    private static final class Key {
+        private final String accountName;
+        private final long folderId;
+
+        Key(String accountName, long folderId) {
+            this.accountName = accountName;
+            this.folderId = folderId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return folderId == key.folderId && accountName.equals(key.accountName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * accountName.hashCode() + (int) (folderId ^ (folderId >>> 32));
+        }
+    }
+
+    /**
+     * Folder ids from a folder up to the root, ending with {@link FileDataStorageManager#ROOT_PARENT_ID}, by folder.
+     */
+    private final Map<Key, long[]> ancestors = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Incremented on every invalidation, so ancestors looked up concurrently with it are not cached.
+     */
+    private long generation;
+
+    @VisibleForTesting
+    FolderPreferenceCache() {
+        // use shared instance
+    }
+
+    public static FolderPreferenceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param folder folder to resolve the preference for, null for the root folder
+     * @return value of the preference for the folder, or the value inherited from its closest ancestor having one,
+     * empty if neither has a value
+     */
+    String get(Store store, String accountName, String preferenceName, @Nullable OCFile folder) {
+        long[] folderIds = folder != null ?
+            getAncestors(store, accountName, folder) : new long[]{FileDataStorageManager.ROOT_PARENT_ID};
+        for (long folderId : folderIds) {
+            String value = store.getValue(accountName, getKey(preferenceName, folderId));
+            if (!value.isEmpty()) {
+                return value;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Drops the ancestors of all folders affected by moving the given folder to another parent.
+     */
+    public synchronized void invalidateMovedFolder(String accountName, long folderId) {
+        generation++;
+        Iterator<Map.Entry<Key, long[]>> iterator = ancestors.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, long[]> entry = iterator.next();
+            if (entry.getKey().accountName.equals(accountName) && contains(entry.getValue(), folderId)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    static String getKey(String preferenceName, @Nullable OCFile folder) {
+        return getKey(preferenceName, folder != null ? folder.getFileId() : FileDataStorageManager.ROOT_PARENT_ID);
+    }
+
+    private static String getKey(String preferenceName, long folderId) {
+        return preferenceName + "_" + folderId;
+    }
+
+    /**
+     * Looks up the ancestors of a folder, stopping at the first ancestor whose own ancestors are known.
+     */
+    private long[] getAncestors(Store store, String accountName, OCFile folder) {
+        long lookupGeneration;
+        synchronized (this) {
+            long[] folderIds = ancestors.get(new Key(accountName, folder.getFileId()));
+            if (folderIds != null) {
+                return folderIds;
+            }
+            lookupGeneration = generation;
+        }
+
+        List<Long> visited = new ArrayList<>();
+        visited.add(folder.getFileId());
+        long[] known = null;
+        Long parentId = folder.getParentId();
+        while (parentId != null) {
+            synchronized (this) {
+                known = ancestors.get(new Key(accountName, parentId));
+            }
+            if (known != null) {
+                break;
+            }
+            Long grandParentId = store.getParentId(accountName, parentId);
+            visited.add(grandParentId != null ? parentId : FileDataStorageManager.ROOT_PARENT_ID);
+            parentId = grandParentId;
+        }
+
+        int visitedCount = visited.size();
+        long[] folderIds = new long[visitedCount + (known != null ? known.length : 0)];
+        for (int i = 0; i < visitedCount; i++) {
+            folderIds[i] = visited.get(i);
+        }
+        if (known != null) {
+            System.arraycopy(known, 0, folderIds, visitedCount, known.length);
+        }
+
+        synchronized (this) {
+            if (generation == lookupGeneration) {
+                // every visited folder but a missing root shares the tail of the looked up ancestors
+                int cachedCount = known != null ? visitedCount : visitedCount - 1;
+                for (int i = 0; i < cachedCount; i++) {
+                    ancestors.put(new Key(accountName, folderIds[i]),
+                                  Arrays.copyOfRange(folderIds, i, folderIds.length));
+                }
+            }
+        }
+        return folderIds;
+    }
+
+    private static boolean contains(long[] folderIds, long folderId) {
+        for (long id : folderIds) {
+            if (id == folderId) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Keeps a value loaded from the database for every account in memory.
+ *
+ * Writers change the database first and invalidate the account afterwards, so the next read loads the value again.
+ * Every invalidation starts a new generation of the account: a value whose load started in an older generation may
+ * miss a write and is returned, but not kept.
+ *
+ * Values are never modified once loaded. If the value type is mutable, a {@link Copier} hands out copies of them.
+ *
+ * @param <V> type of the value of an account
+ */
+public final class AccountCache<V> {
+
+    /**
+     * Loads the value of an account from the database.
+     */
+    public interface Loader<V> {
+        @NonNull
+        V load(String accountName);
+    }
+
+    /**
+     * Copies cached values before they are handed out.
+     */
+    public interface Copier<V> {
+        @NonNull
+        V copy(@NonNull V value);
+    }
+
+    private final Copier<V> copier;
+    private final Map<String, V> values = new ConcurrentHashMap<>();
+    private final Map<String, Long> generations = new HashMap<>();
+    private final Map<String, MutableLiveData<V>> observables = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache of immutable values.
+     */
+    public AccountCache() {
+        this(value -> value);
+    }
+
+    public AccountCache(Copier<V> copier) {
+        this.copier = copier;
+    }
+
+    /**
+     * @return value of the account, loaded with the given loader if not in memory
+     */
+    @NonNull
+    public V get(String accountName, Loader<V> loader) {
+        V value = values.get(accountName);
+        if (value != null) {
+            hits.incrementAndGet();
+            return copier.copy(value);
+        }
+
+        misses.incrementAndGet();
+        long generation = getGeneration(accountName);
+        value = loader.load(accountName);
+        synchronized (this) {
+            if (getGeneration(accountName) == generation) {
+                values.put(accountName, value);
+                MutableLiveData<V> observable = observables.get(accountName);
+                if (observable != null) {
+                    observable.postValue(copier.copy(value));
+                }
+            }
+        }
+        return copier.copy(value);
+    }
+
+    /**
+     * Drops the value of the account, to be called after it was changed in the database.
+     */
+    public synchronized void invalidate(String accountName) {
+        generations.put(accountName, getGeneration(accountName) + 1);
+        values.remove(accountName);
+    }
+
+    /**
+     * Drops the value of a removed account. Observers receive null.
+     */
+    public synchronized void remove(String accountName) {
+        invalidate(accountName);
+        MutableLiveData<V> observable = observables.remove(accountName);
+        if (observable != null) {
+            observable.postValue(null);
+        }
+    }
+
+    /**
+     * @return observable value of the account, updated whenever the value is loaded after an invalidation; null until
+     * it is loaded
+     */
+    public synchronized LiveData<V> observe(String accountName) {
+        MutableLiveData<V> observable = observables.get(accountName);
+        if (observable == null) {
+            V value = values.get(accountName);
+            observable = new MutableLiveData<>(value != null ? copier.copy(value) : null);
+            observables.put(accountName, observable);
+        }
+        return observable;
+    }
+
+    /**
+     * @return number of reads served from memory
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of reads which loaded the value of an account
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of accounts whose values are in memory
+     */
+    public int getAccountCount() {
+        return values.size();
+    }
+
+    private synchronized long getGeneration(String accountName) {
+        Long generation = generations.get(accountName);
+        return generation != null ? generation : 0;
+    }
+}
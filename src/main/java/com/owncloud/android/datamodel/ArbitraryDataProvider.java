@@ -30,11 +30,18 @@ import com.nextcloud.client.account.User;
 import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 /**
  * Database provider for handling the persistence aspects of arbitrary data table.
+ *
+ * Reads are served from the values of the account held in memory. Writes go to the database and then drop these
+ * values, so concurrent writers can not leave an outdated value behind.
  */
 public class ArbitraryDataProvider {
     public static final String DIRECT_EDITING = "DIRECT_EDITING";
@@ -44,6 +51,8 @@ public class ArbitraryDataProvider {
     private static final String TAG = ArbitraryDataProvider.class.getSimpleName();
     private static final String TRUE = "true";
 
+    private static final AccountCache<Map<String, String>> CACHE = new AccountCache<>();
+
     private ContentResolver contentResolver;
 
     public ArbitraryDataProvider(ContentResolver contentResolver) {
@@ -54,12 +63,14 @@ public class ArbitraryDataProvider {
     }
 
     public int deleteKeyForAccount(String account, String key) {
-        return contentResolver.delete(
+        int count = contentResolver.delete(
             ProviderMeta.ProviderTableMeta.CONTENT_URI_ARBITRARY_DATA,
             ProviderMeta.ProviderTableMeta.ARBITRARY_DATA_CLOUD_ID + " = ? AND " +
                 ProviderMeta.ProviderTableMeta.ARBITRARY_DATA_KEY + "= ?",
             new String[]{account, key}
                                      );
+        CACHE.invalidate(account);
+        return count;
     }
 
     public void storeOrUpdateKeyValue(String accountName, String key, long newValue) {
@@ -113,6 +124,7 @@ public class ArbitraryDataProvider {
                     + " value: " + value);
             }
         }
+        CACHE.invalidate(accountName);
     }
 
     Long getLongValue(String accountName, String key) {
@@ -182,6 +194,51 @@ public class ArbitraryDataProvider {
     }
 
     public String getValue(String accountName, String key) {
+        if (accountName == null || key == null) {
+            return queryValue(accountName, key);
+        }
+        String value = CACHE.get(accountName, this::loadValues).get(key);
+        return value != null ? value : "";
+    }
+
+    /**
+     * @return in-memory values of all accounts, for diagnostics
+     */
+    public static AccountCache<?> getCache() {
+        return CACHE;
+    }
+
+    /**
+     * Loads all values stored for the account.
+     */
+    @NonNull
+    private Map<String, String> loadValues(String accountName) {
+        Map<String, String> values = new HashMap<>();
+        Cursor cursor = contentResolver.query(
+            ProviderMeta.ProviderTableMeta.CONTENT_URI_ARBITRARY_DATA,
+            new String[]{
+                ProviderMeta.ProviderTableMeta.ARBITRARY_DATA_KEY,
+                ProviderMeta.ProviderTableMeta.ARBITRARY_DATA_VALUE
+            },
+            ProviderMeta.ProviderTableMeta.ARBITRARY_DATA_CLOUD_ID + " = ?",
+            new String[]{accountName},
+            null
+                                             );
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                String value = cursor.getString(1);
+                values.put(cursor.getString(0), value != null ? value : "");
+            }
+            cursor.close();
+        } else {
+            Log_OC.e(TAG, "DB error restoring arbitrary values.");
+        }
+
+        return Collections.unmodifiableMap(values);
+    }
+
+    private String queryValue(String accountName, String key) {
         Cursor cursor = contentResolver.query(
             ProviderMeta.ProviderTableMeta.CONTENT_URI_ARBITRARY_DATA,
             null,
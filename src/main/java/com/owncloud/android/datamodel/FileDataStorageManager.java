@@ -30,28 +30,28 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.RemoteException;
 import android.provider.MediaStore;
 import android.text.TextUtils;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.nextcloud.client.account.User;
+import com.nextcloud.client.preferences.FolderPreferenceCache;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
-import com.owncloud.android.lib.common.network.WebdavEntry;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.files.ReadFileRemoteOperation;
 import com.owncloud.android.lib.resources.files.model.RemoteFile;
 import com.owncloud.android.lib.resources.shares.OCShare;
 import com.owncloud.android.lib.resources.shares.ShareType;
-import com.owncloud.android.lib.resources.shares.ShareeUser;
 import com.owncloud.android.lib.resources.status.CapabilityBooleanType;
 import com.owncloud.android.lib.resources.status.OCCapability;
 import com.owncloud.android.operations.RemoteOperationFailedException;
+import com.owncloud.android.providers.FileContentProvider;
 import com.owncloud.android.utils.FileStorageUtils;
 import com.owncloud.android.utils.MimeType;
 import com.owncloud.android.utils.MimeTypeUtil;
@@ -61,15 +61,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.LiveData;
 
 
 public class FileDataStorageManager {
@@ -80,6 +83,16 @@ public class FileDataStorageManager {
     private static final String SENDING_TO_FILECONTENTPROVIDER_MSG = "Sending %d operations to FileContentProvider";
     private static final String EXCEPTION_MSG = "Exception in batch of operations ";
 
+    /**
+     * SQLite limits the number of host parameters per statement to 999 on older devices
+     */
+    private static final int MAX_SELECTION_ARGS = 900;
+    private static final int SHARED_VIA_LINK_FLAG = 1;
+    private static final int SHARED_WITH_SHAREE_FLAG = 2;
+
+    private static final AccountCache<OCCapability> CAPABILITIES =
+        new AccountCache<>(FileDataStorageManager::copyCapability);
+
     public static final int ROOT_PARENT_ID = 0;
     public static final String NULL_STRING = "null";
 
@@ -242,7 +255,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, ocFile.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, ocFile.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, ocFile.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(ocFile.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, OCFileCursorMapper.shareesToJson(ocFile.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, ocFile.getRichWorkspace());
         cv.put(ProviderTableMeta.FILE_HAS_PREVIEW, ocFile.isPreviewAvailable() ? 1 : 0);
 
@@ -269,6 +282,11 @@ public class FileDataStorageManager {
                     Log_OC.e(TAG, FAILED_TO_INSERT_MSG + e.getMessage(), e);
                 }
             }
+
+            if (!sameRemotePath && ocFile.isFolder()) {
+                // renamed or moved, folders below it inherit preferences from new ancestors
+                FolderPreferenceCache.getInstance().invalidateMovedFolder(account.name, ocFile.getFileId());
+            }
         } else {
             Uri result_uri = null;
             if (getContentResolver() != null) {
@@ -366,16 +384,29 @@ public class FileDataStorageManager {
 
         ArrayList<ContentProviderOperation> operations = new ArrayList<>(updatedFiles.size());
 
+        // resolve ids of already stored files in bulk instead of querying once per child
+        Map<String, Long> existingIds = getExistingFileIds(folder, updatedFiles);
+        Set<Long> knownIds = new HashSet<>(existingIds.values());
+        List<Long> movedFolderIds = new ArrayList<>();
+
         // prepare operations to insert or update files to save in the given folder
         for (OCFile ocFile : updatedFiles) {
             ContentValues contentValues = createContentValueForFile(ocFile, folder);
 
-            if (fileExists(ocFile.getFileId()) || fileExists(ocFile.getRemotePath())) {
+            Long existingId = existingIds.get(ocFile.getRemotePath());
+            boolean exists = existingId != null || knownIds.contains(ocFile.getFileId()) ||
+                (ocFile.getFileId() != -1 && fileExists(ocFile.getFileId()));
+
+            if (exists) {
                 long fileId;
                 if (ocFile.getFileId() != -1) {
                     fileId = ocFile.getFileId();
                 } else {
-                    fileId = getFileByPath(ocFile.getRemotePath()).getFileId();
+                    fileId = existingId;
+                }
+                if (existingId == null && ocFile.isFolder()) {
+                    // stored under another path, e.g. moved on the server
+                    movedFolderIds.add(fileId);
                 }
                 // updating an existing file
                 operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
@@ -445,6 +476,11 @@ public class FileDataStorageManager {
             Log_OC.e(TAG, EXCEPTION_MSG + e.getMessage(), e);
         }
 
+        // folders below moved ones inherit preferences from their new ancestors
+        for (Long movedFolderId : movedFolderIds) {
+            FolderPreferenceCache.getInstance().invalidateMovedFolder(account.name, movedFolderId);
+        }
+
         // update new id in file objects for insertions
         if (results != null) {
             long newId;
@@ -466,6 +502,86 @@ public class FileDataStorageManager {
         }
     }
 
+    /**
+     * Loads path to id mapping of all stored files which are either children of the given folder or share a remote
+     * path with one of the given files. Uses one query for the folder content and chunked queries for remaining paths.
+     *
+     * @param folder folder whose children are looked up
+     * @param files  files which are about to be saved in the folder
+     * @return map of remote path to file id of already stored files
+     */
+    private Map<String, Long> getExistingFileIds(OCFile folder, Collection<OCFile> files) {
+        Map<String, Long> existingIds = new HashMap<>(files.size());
+
+        if (folder.fileExists()) {
+            Uri folderUri = Uri.withAppendedPath(ProviderTableMeta.CONTENT_URI_DIR,
+                                                 String.valueOf(folder.getFileId()));
+            collectFileIds(folderUri,
+                           ProviderTableMeta.FILE_PARENT + "=?",
+                           new String[]{String.valueOf(folder.getFileId())},
+                           existingIds);
+        }
+
+        List<String> missingPaths = new ArrayList<>();
+        for (OCFile file : files) {
+            if (!existingIds.containsKey(file.getRemotePath())) {
+                missingPaths.add(file.getRemotePath());
+            }
+        }
+
+        // files might be stored with another parent, e.g. when found by search before
+        collectFileIdsByPath(missingPaths, existingIds);
+
+        return existingIds;
+    }
+
+    /**
+     * Loads ids of stored files of the account by their remote paths, using chunked queries.
+     */
+    private void collectFileIdsByPath(List<String> paths, Map<String, Long> target) {
+        for (int start = 0; start < paths.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = paths.subList(start, Math.min(start + MAX_SELECTION_ARGS, paths.size()));
+            String[] selectionArgs = new String[chunk.size() + 1];
+            selectionArgs[0] = account.name;
+            StringBuilder placeholders = new StringBuilder();
+            for (int i = 0; i < chunk.size(); i++) {
+                placeholders.append(i == 0 ? "?" : ",?");
+                selectionArgs[i + 1] = chunk.get(i);
+            }
+
+            collectFileIds(ProviderTableMeta.CONTENT_URI,
+                           ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PATH +
+                               " IN (" + placeholders + ")",
+                           selectionArgs,
+                           target);
+        }
+    }
+
+    private void collectFileIds(Uri uri, String selection, String[] selectionArgs, Map<String, Long> target) {
+        String[] projection = new String[]{ProviderTableMeta._ID, ProviderTableMeta.FILE_PATH};
+        Cursor cursor;
+
+        if (getContentResolver() != null) {
+            cursor = getContentResolver().query(uri, projection, selection, selectionArgs, null);
+        } else {
+            try {
+                cursor = getContentProviderClient().query(uri, projection, selection, selectionArgs, null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not get file ids: " + e.getMessage(), e);
+                return;
+            }
+        }
+
+        if (cursor != null) {
+            int idColumn = cursor.getColumnIndex(ProviderTableMeta._ID);
+            int pathColumn = cursor.getColumnIndex(ProviderTableMeta.FILE_PATH);
+            while (cursor.moveToNext()) {
+                target.put(cursor.getString(pathColumn), cursor.getLong(idColumn));
+            }
+            cursor.close();
+        }
+    }
+
     private ContentValues createContentValueForFile(OCFile folder) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_MODIFIED, folder.getModificationTimestamp());
@@ -495,7 +611,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, folder.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, folder.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, folder.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(folder.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, OCFileCursorMapper.shareesToJson(folder.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, folder.getRichWorkspace());
 
         return cv;
@@ -534,7 +650,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, file.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, file.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, file.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(file.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, OCFileCursorMapper.shareesToJson(file.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, file.getRichWorkspace());
 
         return cv;
@@ -593,11 +709,14 @@ public class FileDataStorageManager {
     public boolean removeFolder(OCFile folder, boolean removeDBData, boolean removeLocalContent) {
         boolean success = true;
         if (folder != null && folder.isFolder()) {
+            // downloaded files are looked up before their rows are deleted, to clean up after them
+            List<OCFile> downloadedFiles = removeLocalContent ? getDownloadedFilesInFolder(folder) :
+                new ArrayList<>();
             if (removeDBData && folder.getFileId() != -1) {
                 success = removeFolderInDb(folder);
             }
             if (removeLocalContent && success) {
-                success = removeLocalFolder(folder);
+                success = removeLocalFolder(folder, downloadedFiles, !removeDBData);
             }
         } else {
             success = false;
@@ -624,26 +743,76 @@ public class FileDataStorageManager {
         return deleted > 0;
     }
 
-    private boolean removeLocalFolder(OCFile folder) {
+    /**
+     * @return downloaded files anywhere below the folder, read with a single query
+     */
+    private List<OCFile> getDownloadedFilesInFolder(OCFile folder) {
+        List<OCFile> files = new ArrayList<>();
+        // exact range instead of LIKE, which ignores case and takes '_' and '%' in the path as wildcards;
+        // all paths starting with the folder path sort between it and the path having '/' replaced by '0'
+        String folderPath = folder.getRemotePath();
+        String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + AND + ProviderTableMeta.FILE_PATH + ">=? AND " +
+            ProviderTableMeta.FILE_PATH + "<? AND " + ProviderTableMeta.FILE_STORAGE_PATH + " IS NOT NULL AND " +
+            ProviderTableMeta.FILE_CONTENT_TYPE + " != ?";
+        String[] selectionArgs = new String[]{
+            account.name,
+            folderPath,
+            folderPath.substring(0, folderPath.length() - 1) + (char) (OCFile.PATH_SEPARATOR.charAt(0) + 1),
+            MimeType.DIRECTORY
+        };
+
+        Cursor cursor = null;
+        if (getContentProviderClient() != null) {
+            try {
+                cursor = getContentProviderClient().query(ProviderTableMeta.CONTENT_URI,
+                                                          OCFileCursorMapper.PROJECTION,
+                                                          selection,
+                                                          selectionArgs,
+                                                          null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, e.getMessage(), e);
+            }
+        } else {
+            cursor = getContentResolver().query(ProviderTableMeta.CONTENT_URI,
+                                                OCFileCursorMapper.PROJECTION,
+                                                selection,
+                                                selectionArgs,
+                                                null);
+        }
+
+        if (cursor != null) {
+            OCFileCursorMapper mapper = new OCFileCursorMapper(cursor, account.name);
+            while (cursor.moveToNext()) {
+                files.add(mapper.map());
+            }
+            cursor.close();
+        }
+        return files;
+    }
+
+    /**
+     * @param downloadedFiles downloaded files below the folder, see {@link #getDownloadedFilesInFolder(OCFile)}
+     * @param updateDBData    true to clear the local paths of the removed files in the database
+     */
+    private boolean removeLocalFolder(OCFile folder, List<OCFile> downloadedFiles, boolean updateDBData) {
         boolean success = true;
         String localFolderPath = FileStorageUtils.getDefaultSavePathFor(account.name, folder);
         File localFolder = new File(localFolderPath);
 
         if (localFolder.exists()) {
-            // stage 1: remove the local files already registered in the files database
-            List<OCFile> files = getFolderContent(folder.getFileId(), false);
-            for (OCFile ocFile : files) {
-                if (ocFile.isFolder()) {
-                    success &= removeLocalFolder(ocFile);
-                } else if (ocFile.isDown()) {
+            // stage 1: remove the local files registered in the files database
+            for (OCFile ocFile : downloadedFiles) {
+                if (ocFile.isDown()) {
                     File localFile = new File(ocFile.getStoragePath());
                     success &= localFile.delete();
 
                     if (success) {
                         // notify MediaScanner about removed file
                         deleteFileInMediaScan(ocFile.getStoragePath());
-                        ocFile.setStoragePath(null);
-                        saveFile(ocFile);
+                        if (updateDBData) {
+                            ocFile.setStoragePath(null);
+                            saveFile(ocFile);
+                        }
                     }
                 }
             }
@@ -687,89 +856,55 @@ public class FileDataStorageManager {
                 throw new IllegalStateException("Parent folder of the target path does not exist!!");
             }
 
-            /// 1. get all the descendants of the moved element in a single QUERY
-            Cursor cursor = null;
-            if (getContentProviderClient() != null) {
-                try {
-                    cursor = getContentProviderClient().query(
-                        ProviderTableMeta.CONTENT_URI,
-                        null,
-                        ProviderTableMeta.FILE_ACCOUNT_OWNER + AND + ProviderTableMeta.FILE_PATH + " LIKE ? ",
-                        new String[]{account.name, ocFile.getRemotePath() + "%"},
-                        ProviderTableMeta.FILE_PATH + " ASC "
-                    );
-                } catch (RemoteException e) {
-                    Log_OC.e(TAG, e.getMessage(), e);
-                }
-
-            } else {
-                cursor = getContentResolver().query(
-                    ProviderTableMeta.CONTENT_URI,
-                    null,
-                    ProviderTableMeta.FILE_ACCOUNT_OWNER + AND + ProviderTableMeta.FILE_PATH + " LIKE ? ",
-                    new String[]{account.name, ocFile.getRemotePath() + "%"},
-                    ProviderTableMeta.FILE_PATH + " ASC "
-                );
-            }
-
-            /// 2. prepare a batch of update operations to change all the descendants
-            ArrayList<ContentProviderOperation> operations = new ArrayList<>(cursor.getCount());
+            /// 1. rewrite the paths of the moved element and all its descendants in a single statement
             String defaultSavePath = FileStorageUtils.getSavePath(account.name);
-            List<String> originalPathsToTriggerMediaScan = new ArrayList<>();
-            List<String> newPathsToTriggerMediaScan = new ArrayList<>();
-
-            if (cursor.moveToFirst()) {
-                int lengthOfOldPath = ocFile.getRemotePath().length();
-                int lengthOfOldStoragePath = defaultSavePath.length() + lengthOfOldPath;
-                do {
-                    ContentValues contentValues = new ContentValues(); // keep construction in the loop
-                    OCFile childFile = createFileInstance(cursor);
-                    contentValues.put(
-                        ProviderTableMeta.FILE_PATH,
-                        targetPath + childFile.getRemotePath().substring(lengthOfOldPath)
-                    );
-
-                    if (childFile.getStoragePath() != null && childFile.getStoragePath().startsWith(defaultSavePath)) {
-                        // update link to downloaded content - but local move is not done here!
-                        String targetLocalPath = defaultSavePath + targetPath +
-                            childFile.getStoragePath().substring(lengthOfOldStoragePath);
-
-                        contentValues.put(ProviderTableMeta.FILE_STORAGE_PATH, targetLocalPath);
-
-                        if (MimeTypeUtil.isMedia(childFile.getMimeType())) {
-                            originalPathsToTriggerMediaScan.add(childFile.getStoragePath());
-                            newPathsToTriggerMediaScan.add(targetLocalPath);
-                        }
-
-                    }
-
-                    if (childFile.getRemotePath().equals(ocFile.getRemotePath())) {
-                        contentValues.put(ProviderTableMeta.FILE_PARENT, targetParent.getFileId());
-                    }
-
-                    operations.add(
-                        ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
-                            .withValues(contentValues)
-                            .withSelection(ProviderTableMeta._ID + " = ?", new String[]{String.valueOf(childFile.getFileId())})
-                            .build());
+            String originalStoragePath = defaultSavePath + ocFile.getRemotePath();
+            String targetStoragePath = defaultSavePath + targetPath;
 
-                } while (cursor.moveToNext());
-            }
-            cursor.close();
+            Bundle extras = new Bundle();
+            extras.putString(FileContentProvider.EXTRA_ACCOUNT_NAME, account.name);
+            extras.putString(FileContentProvider.EXTRA_PATH, ocFile.getRemotePath());
+            extras.putString(FileContentProvider.EXTRA_TARGET_PATH, targetPath);
+            extras.putString(FileContentProvider.EXTRA_STORAGE_PATH, originalStoragePath);
+            extras.putString(FileContentProvider.EXTRA_TARGET_STORAGE_PATH, targetStoragePath);
+            extras.putLong(FileContentProvider.EXTRA_TARGET_PARENT_ID, targetParent.getFileId());
 
-            /// 3. apply updates in batch
+            List<String> originalPathsToTriggerMediaScan = new ArrayList<>();
             try {
+                Bundle result;
                 if (getContentResolver() != null) {
-                    getContentResolver().applyBatch(MainApp.getAuthority(), operations);
+                    result = getContentResolver().call(ProviderTableMeta.CONTENT_URI,
+                                                       FileContentProvider.METHOD_MOVE_FILES,
+                                                       null,
+                                                       extras);
                 } else {
-                    getContentProviderClient().applyBatch(operations);
+                    result = getContentProviderClient().call(FileContentProvider.METHOD_MOVE_FILES, null, extras);
                 }
 
+                if (result != null) {
+                    List<String> mediaStoragePaths =
+                        result.getStringArrayList(FileContentProvider.RESULT_MEDIA_STORAGE_PATHS);
+                    if (mediaStoragePaths != null) {
+                        originalPathsToTriggerMediaScan.addAll(mediaStoragePaths);
+                    }
+                }
             } catch (Exception e) {
                 Log_OC.e(TAG, "Fail to update " + ocFile.getFileId() + " and descendants in database", e);
             }
 
-            /// 4. move in local file system
+            /// 2. storage paths the moved media files get in the local file system
+            List<String> newPathsToTriggerMediaScan = new ArrayList<>(originalPathsToTriggerMediaScan.size());
+            for (String originalPath : originalPathsToTriggerMediaScan) {
+                newPathsToTriggerMediaScan.add(targetStoragePath +
+                                                   originalPath.substring(originalStoragePath.length()));
+            }
+
+            if (ocFile.isFolder()) {
+                // folders below the moved one inherit preferences from new ancestors
+                FolderPreferenceCache.getInstance().invalidateMovedFolder(account.name, ocFile.getFileId());
+            }
+
+            /// 3. move in local file system
             String originalLocalPath = FileStorageUtils.getDefaultSavePathFor(account.name, ocFile);
             String targetLocalPath = defaultSavePath + targetPath;
             File localFile = new File(originalLocalPath);
@@ -884,7 +1019,7 @@ public class FileDataStorageManager {
             try {
                 cursor = getContentProviderClient().query(
                     requestURI,
-                    null,
+                    OCFileCursorMapper.PROJECTION,
                     ProviderTableMeta.FILE_PARENT + "=?",
                     new String[]{String.valueOf(parentId)},
                     null
@@ -896,7 +1031,7 @@ public class FileDataStorageManager {
         } else {
             cursor = getContentResolver().query(
                 requestURI,
-                null,
+                OCFileCursorMapper.PROJECTION,
                 ProviderTableMeta.FILE_PARENT + "=?",
                 new String[]{String.valueOf(parentId)},
                 null
@@ -905,8 +1040,9 @@ public class FileDataStorageManager {
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
+                OCFileCursorMapper mapper = new OCFileCursorMapper(cursor, account.name);
                 do {
-                    OCFile child = createFileInstance(cursor);
+                    OCFile child = mapper.map();
                     if (!onlyOnDevice || child.existsOnDevice()) {
                         folderContent.add(child);
                     }
@@ -948,7 +1084,7 @@ public class FileDataStorageManager {
         if (getContentResolver() != null) {
             cursor = getContentResolver()
                 .query(ProviderTableMeta.CONTENT_URI,
-                       null,
+                       OCFileCursorMapper.PROJECTION,
                        key + AND
                            + ProviderTableMeta.FILE_ACCOUNT_OWNER
                            + "=?",
@@ -957,7 +1093,7 @@ public class FileDataStorageManager {
             try {
                 cursor = getContentProviderClient().query(
                     ProviderTableMeta.CONTENT_URI,
-                    null,
+                    OCFileCursorMapper.PROJECTION,
                     key + AND + ProviderTableMeta.FILE_ACCOUNT_OWNER
                         + "=?", new String[]{value, account.name},
                     null);
@@ -979,66 +1115,7 @@ public class FileDataStorageManager {
     private OCFile createFileInstance(Cursor cursor) {
         OCFile ocFile = null;
         if (cursor != null) {
-            ocFile = new OCFile(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PATH)));
-            ocFile.setDecryptedRemotePath(getString(cursor, ProviderTableMeta.FILE_PATH_DECRYPTED));
-            ocFile.setFileId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta._ID)));
-            ocFile.setParentId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT)));
-            ocFile.setMimeType(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)));
-            ocFile.setStoragePath(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH)));
-            if (ocFile.getStoragePath() == null) {
-                // try to find existing file and bind it with current account;
-                // with the current update of SynchronizeFolderOperation, this won't be
-                // necessary anymore after a full synchronization of the account
-                File file = new File(FileStorageUtils.getDefaultSavePathFor(account.name, ocFile));
-                if (file.exists()) {
-                    ocFile.setStoragePath(file.getAbsolutePath());
-                    ocFile.setLastSyncDateForData(file.lastModified());
-                }
-            }
-            ocFile.setFileLength(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH)));
-            ocFile.setCreationTimestamp(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_CREATION)));
-            ocFile.setModificationTimestamp(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED)));
-            ocFile.setModificationTimestampAtLastSyncForData(cursor.getLong(
-                cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)));
-            ocFile.setLastSyncDateForProperties(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE)));
-            ocFile.setLastSyncDateForData(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA)));
-            ocFile.setEtag(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG)));
-            ocFile.setEtagOnServer(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER)));
-            ocFile.setSharedViaLink(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK)) == 1);
-            ocFile.setSharedWithSharee(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE)) == 1);
-            ocFile.setPermissions(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS)));
-            ocFile.setRemoteId(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID)));
-            ocFile.setUpdateThumbnailNeeded(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL)) == 1);
-            ocFile.setDownloading(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING)) == 1);
-            ocFile.setEtagInConflict(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT)));
-            ocFile.setFavorite(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_FAVORITE)) == 1);
-            ocFile.setEncrypted(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED)) == 1);
-//            if (ocFile.isEncrypted()) {
-//                ocFile.setFileName(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_NAME)));
-//            }
-            ocFile.setMountType(WebdavEntry.MountType.values()[cursor.getInt(
-                cursor.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE))]);
-            ocFile.setPreviewAvailable(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW)) == 1);
-            ocFile.setUnreadCommentsCount(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT)));
-            ocFile.setOwnerId(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID)));
-            ocFile.setOwnerDisplayName(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME)));
-            ocFile.setNote(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_NOTE)));
-            ocFile.setRichWorkspace(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE)));
-
-            String sharees = cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_SHAREES));
-
-            if (sharees == null || NULL_STRING.equals(sharees) || sharees.isEmpty()) {
-                ocFile.setSharees(new ArrayList<>());
-            } else {
-                try {
-                    ShareeUser[] shareesArray = new Gson().fromJson(sharees, ShareeUser[].class);
-
-                    ocFile.setSharees(new ArrayList<>(Arrays.asList(shareesArray)));
-                } catch (JsonSyntaxException e) {
-                    // ignore saved value due to api change
-                    ocFile.setSharees(new ArrayList<>());
-                }
-            }
+            ocFile = new OCFileCursorMapper(cursor, account.name).map();
         }
 
         return ocFile;
@@ -1298,25 +1375,6 @@ public class FileDataStorageManager {
         return share;
     }
 
-    private void resetShareFlagsInAllFiles() {
-        ContentValues cv = new ContentValues();
-        cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, Boolean.FALSE);
-        cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, Boolean.FALSE);
-        String where = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?";
-        String[] whereArgs = new String[]{account.name};
-
-        if (getContentResolver() != null) {
-            getContentResolver().update(ProviderTableMeta.CONTENT_URI, cv, where, whereArgs);
-
-        } else {
-            try {
-                getContentProviderClient().update(ProviderTableMeta.CONTENT_URI, cv, where, whereArgs);
-            } catch (RemoteException e) {
-                Log_OC.e(TAG, "Exception in resetShareFlagsInAllFiles" + e.getMessage(), e);
-            }
-        }
-    }
-
     private void resetShareFlagsInFolder(OCFile folder) {
         ContentValues contentValues = new ContentValues();
         contentValues.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, Boolean.FALSE);
@@ -1418,84 +1476,204 @@ public class FileDataStorageManager {
         }
     }
 
-    public void updateSharedFiles(Collection<OCFile> sharedFiles) {
-        resetShareFlagsInAllFiles();
+    /**
+     * Reconciles the share flags of the files of the account with the given shared files.
+     *
+     * Only rows whose share state changes are written: flags of stored files are compared with the given ones, files
+     * no longer shared get their flags reset and shared files not stored yet are inserted. All changes are applied in
+     * one transaction.
+     *
+     * @param sharedFiles all files of the account which are shared, with their share flags set
+     * @return number of rows touched
+     */
+    public int updateSharedFiles(Collection<OCFile> sharedFiles) {
+        // share state of the files currently flagged as shared
+        Map<String, Long> storedIds = new HashMap<>();
+        Map<String, Integer> storedFlags = new HashMap<>();
+        collectSharedFiles(storedIds, storedFlags);
 
+        List<String> unknownPaths = new ArrayList<>();
         if (sharedFiles != null) {
-            ArrayList<ContentProviderOperation> operations = new ArrayList<>(sharedFiles.size());
+            for (OCFile file : sharedFiles) {
+                if (!storedIds.containsKey(file.getRemotePath())) {
+                    unknownPaths.add(file.getRemotePath());
+                }
+            }
+        }
+        // files stored without share flags
+        Map<String, Long> unflaggedIds = new HashMap<>(unknownPaths.size());
+        collectFileIdsByPath(unknownPaths, unflaggedIds);
+
+        // ids of the rows to update, by the share flags they get
+        Map<Integer, List<Long>> idsByFlags = new HashMap<>();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        Set<String> reconciledPaths = new HashSet<>();
+        int unchanged = 0;
 
-            // prepare operations to insert or update files to save in the given folder
+        if (sharedFiles != null) {
             for (OCFile file : sharedFiles) {
-                ContentValues cv = new ContentValues();
-                cv.put(ProviderTableMeta.FILE_MODIFIED, file.getModificationTimestamp());
-                cv.put(
-                    ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
-                    file.getModificationTimestampAtLastSyncForData()
-                );
-                cv.put(ProviderTableMeta.FILE_CREATION, file.getCreationTimestamp());
-                cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, file.getFileLength());
-                cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, file.getMimeType());
-                cv.put(ProviderTableMeta.FILE_NAME, file.getFileName());
-                cv.put(ProviderTableMeta.FILE_PARENT, file.getParentId());
-                cv.put(ProviderTableMeta.FILE_PATH, file.getRemotePath());
-                if (!file.isFolder()) {
-                    cv.put(ProviderTableMeta.FILE_STORAGE_PATH, file.getStoragePath());
+                String path = file.getRemotePath();
+                if (!reconciledPaths.add(path)) {
+                    continue;
+                }
+                int flags = getShareFlags(file.isSharedViaLink(), file.isSharedWithSharee());
+                Long id = storedIds.get(path);
+                int currentFlags = id != null ? storedFlags.get(path) : 0;
+                if (id == null) {
+                    id = unflaggedIds.get(path);
                 }
-                cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, account.name);
-                cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, file.getLastSyncDateForProperties());
-                cv.put(
-                    ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA,
-                    file.getLastSyncDateForData()
-                );
-                cv.put(ProviderTableMeta.FILE_ETAG, file.getEtag());
-                cv.put(ProviderTableMeta.FILE_ETAG_ON_SERVER, file.getEtagOnServer());
-                cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, file.isSharedViaLink() ? 1 : 0);
-                cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, file.isSharedWithSharee() ? 1 : 0);
-                cv.put(ProviderTableMeta.FILE_PERMISSIONS, file.getPermissions());
-                cv.put(ProviderTableMeta.FILE_REMOTE_ID, file.getRemoteId());
-                cv.put(ProviderTableMeta.FILE_FAVORITE, file.isFavorite());
-                cv.put(ProviderTableMeta.FILE_UPDATE_THUMBNAIL, file.isUpdateThumbnailNeeded() ? 1 : 0);
-                cv.put(ProviderTableMeta.FILE_IS_DOWNLOADING, file.isDownloading() ? 1 : 0);
-                cv.put(ProviderTableMeta.FILE_ETAG_IN_CONFLICT, file.getEtagInConflict());
-
-                boolean existsByPath = fileExists(file.getRemotePath());
-                if (existsByPath || fileExists(file.getFileId())) {
-                    // updating an existing file
-                    operations.add(
-                        ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI).
-                            withValues(cv).
-                            withSelection(ProviderTableMeta._ID + "=?",
-                                          new String[]{String.valueOf(file.getFileId())})
-                            .build());
 
+                if (id == null) {
+                    operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI)
+                                       .withValues(createContentValueForSharedFile(file))
+                                       .build());
+                } else if (flags != currentFlags) {
+                    addToGroup(idsByFlags, flags, id);
                 } else {
-                    // adding a new file
-                    operations.add(
-                        ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI).
-                            withValues(cv).
-                            build()
-                    );
+                    unchanged++;
                 }
             }
+        }
 
-            // apply operations in batch
-            if (operations.size() > 0) {
-                @SuppressWarnings("unused")
-                ContentProviderResult[] results = null;
-                Log_OC.d(TAG, String.format(Locale.ENGLISH, SENDING_TO_FILECONTENTPROVIDER_MSG, operations.size()));
-                try {
-                    if (getContentResolver() != null) {
-                        results = getContentResolver().applyBatch(MainApp.getAuthority(), operations);
-                    } else {
-                        results = getContentProviderClient().applyBatch(operations);
-                    }
+        // remaining flagged files are not shared anymore
+        for (Map.Entry<String, Long> stored : storedIds.entrySet()) {
+            if (!reconciledPaths.contains(stored.getKey())) {
+                addToGroup(idsByFlags, getShareFlags(false, false), stored.getValue());
+            }
+        }
+
+        for (Map.Entry<Integer, List<Long>> group : idsByFlags.entrySet()) {
+            ContentValues cv = new ContentValues();
+            cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, (group.getKey() & SHARED_VIA_LINK_FLAG) != 0 ? 1 : 0);
+            cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, (group.getKey() & SHARED_WITH_SHAREE_FLAG) != 0 ? 1 : 0);
+
+            List<Long> ids = group.getValue();
+            for (int start = 0; start < ids.size(); start += MAX_SELECTION_ARGS) {
+                List<Long> chunk = ids.subList(start, Math.min(start + MAX_SELECTION_ARGS, ids.size()));
+                String[] selectionArgs = new String[chunk.size()];
+                StringBuilder placeholders = new StringBuilder();
+                for (int i = 0; i < chunk.size(); i++) {
+                    placeholders.append(i == 0 ? "?" : ",?");
+                    selectionArgs[i] = String.valueOf(chunk.get(i));
+                }
+                operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
+                                   .withValues(cv)
+                                   .withSelection(ProviderTableMeta._ID + " IN (" + placeholders + ")", selectionArgs)
+                                   .build());
+            }
+        }
 
-                } catch (OperationApplicationException | RemoteException e) {
-                    Log_OC.e(TAG, EXCEPTION_MSG + e.getMessage(), e);
+        // apply operations in batch
+        int touched = 0;
+        if (operations.size() > 0) {
+            Log_OC.d(TAG, String.format(Locale.ENGLISH, SENDING_TO_FILECONTENTPROVIDER_MSG, operations.size()));
+            try {
+                ContentProviderResult[] results;
+                if (getContentResolver() != null) {
+                    results = getContentResolver().applyBatch(MainApp.getAuthority(), operations);
+                } else {
+                    results = getContentProviderClient().applyBatch(operations);
+                }
+                for (ContentProviderResult result : results) {
+                    // inserts report their uri instead of a count
+                    touched += result.count != null ? result.count : 1;
                 }
+            } catch (OperationApplicationException | RemoteException e) {
+                Log_OC.e(TAG, EXCEPTION_MSG + e.getMessage(), e);
+            }
+        }
+
+        Log_OC.d(TAG, String.format(Locale.ENGLISH,
+                                    "Reconciled share flags: %d rows touched, %d shared files unchanged",
+                                    touched,
+                                    unchanged));
+        return touched;
+    }
+
+    private static int getShareFlags(boolean sharedViaLink, boolean sharedWithSharee) {
+        return (sharedViaLink ? SHARED_VIA_LINK_FLAG : 0) | (sharedWithSharee ? SHARED_WITH_SHAREE_FLAG : 0);
+    }
+
+    private static void addToGroup(Map<Integer, List<Long>> groups, int key, long id) {
+        List<Long> group = groups.get(key);
+        if (group == null) {
+            group = new ArrayList<>();
+            groups.put(key, group);
+        }
+        group.add(id);
+    }
+
+    /**
+     * Loads ids and share flags of the files of the account flagged as shared.
+     */
+    private void collectSharedFiles(Map<String, Long> ids, Map<String, Integer> flags) {
+        String[] projection = new String[]{
+            ProviderTableMeta._ID,
+            ProviderTableMeta.FILE_PATH,
+            ProviderTableMeta.FILE_SHARED_VIA_LINK,
+            ProviderTableMeta.FILE_SHARED_WITH_SHAREE
+        };
+        String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND (" +
+            ProviderTableMeta.FILE_SHARED_VIA_LINK + "=1 OR " + ProviderTableMeta.FILE_SHARED_WITH_SHAREE + "=1)";
+        String[] selectionArgs = new String[]{account.name};
+        Cursor cursor;
+
+        if (getContentResolver() != null) {
+            cursor = getContentResolver().query(ProviderTableMeta.CONTENT_URI, projection, selection, selectionArgs,
+                                                null);
+        } else {
+            try {
+                cursor = getContentProviderClient().query(ProviderTableMeta.CONTENT_URI, projection, selection,
+                                                          selectionArgs, null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not get shared files: " + e.getMessage(), e);
+                return;
+            }
+        }
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(1);
+                ids.put(path, cursor.getLong(0));
+                flags.put(path, getShareFlags(cursor.getInt(2) == 1, cursor.getInt(3) == 1));
             }
+            cursor.close();
         }
+    }
 
+    private ContentValues createContentValueForSharedFile(OCFile file) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.FILE_MODIFIED, file.getModificationTimestamp());
+        cv.put(
+            ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
+            file.getModificationTimestampAtLastSyncForData()
+        );
+        cv.put(ProviderTableMeta.FILE_CREATION, file.getCreationTimestamp());
+        cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, file.getFileLength());
+        cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, file.getMimeType());
+        cv.put(ProviderTableMeta.FILE_NAME, file.getFileName());
+        cv.put(ProviderTableMeta.FILE_PARENT, file.getParentId());
+        cv.put(ProviderTableMeta.FILE_PATH, file.getRemotePath());
+        if (!file.isFolder()) {
+            cv.put(ProviderTableMeta.FILE_STORAGE_PATH, file.getStoragePath());
+        }
+        cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, account.name);
+        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, file.getLastSyncDateForProperties());
+        cv.put(
+            ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA,
+            file.getLastSyncDateForData()
+        );
+        cv.put(ProviderTableMeta.FILE_ETAG, file.getEtag());
+        cv.put(ProviderTableMeta.FILE_ETAG_ON_SERVER, file.getEtagOnServer());
+        cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, file.isSharedViaLink() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, file.isSharedWithSharee() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_PERMISSIONS, file.getPermissions());
+        cv.put(ProviderTableMeta.FILE_REMOTE_ID, file.getRemoteId());
+        cv.put(ProviderTableMeta.FILE_FAVORITE, file.isFavorite());
+        cv.put(ProviderTableMeta.FILE_UPDATE_THUMBNAIL, file.isUpdateThumbnailNeeded() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_IS_DOWNLOADING, file.isDownloading() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_ETAG_IN_CONFLICT, file.getEtagInConflict());
+        return cv;
     }
 
     public void removeShare(OCShare share) {
@@ -1974,10 +2152,14 @@ public class FileDataStorageManager {
                 capability.setAccountName(account.name);
             }
         }
+
+        // reload the stored state for observers, the given instance stays with the caller
+        CAPABILITIES.invalidate(account.name);
+        CAPABILITIES.get(account.name, this::loadCapability);
     }
 
     @NonNull
-    private ContentValues createContentValues(String accountName, OCCapability capability) {
+    private static ContentValues createContentValues(String accountName, OCCapability capability) {
         ContentValues contentValues = new ContentValues();
         contentValues.put(ProviderTableMeta.CAPABILITIES_ACCOUNT_NAME,
                           accountName);
@@ -2113,8 +2295,54 @@ public class FileDataStorageManager {
         return getCapability(user.getAccountName());
     }
 
+    /**
+     * @return copy of the capability of the account, served from memory once loaded
+     */
     @NonNull
     public OCCapability getCapability(String accountName) {
+        return CAPABILITIES.get(accountName, this::loadCapability);
+    }
+
+    /**
+     * @return observable capability of the account, updated whenever capabilities of the account are saved and set
+     * to null once the account is removed; every update is a copy of its own
+     */
+    public LiveData<OCCapability> getCapabilityLiveData(String accountName) {
+        getCapability(accountName);
+        return CAPABILITIES.observe(accountName);
+    }
+
+    /**
+     * Drops the capability of a removed account from memory.
+     */
+    public static void removeCachedCapability(String accountName) {
+        CAPABILITIES.remove(accountName);
+    }
+
+    /**
+     * Copies a capability by the same mapping used to store and load it, so cached instances never leave this class.
+     */
+    @NonNull
+    private static OCCapability copyCapability(@NonNull OCCapability capability) {
+        ContentValues values = createContentValues(capability.getAccountName(), capability);
+        values.put(ProviderTableMeta._ID, capability.getId());
+
+        String[] columns = values.keySet().toArray(new String[0]);
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            row[i] = values.get(columns[i]);
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        cursor.addRow(row);
+        cursor.moveToFirst();
+        OCCapability copy = createCapabilityInstance(cursor);
+        cursor.close();
+
+        return copy;
+    }
+
+    @NonNull
+    private OCCapability loadCapability(String accountName) {
         OCCapability capability;
         Cursor cursor = getCapabilityCursorForAccount(accountName);
 
@@ -2137,7 +2365,7 @@ public class FileDataStorageManager {
         return exists;
     }
 
-    private OCCapability createCapabilityInstance(Cursor cursor) {
+    private static OCCapability createCapabilityInstance(Cursor cursor) {
         OCCapability capability = null;
         if (cursor != null) {
             capability = new OCCapability();
@@ -2355,19 +2583,28 @@ public class FileDataStorageManager {
 
         if (getContentProviderClient() != null) {
             try {
-                cursor = getContentProviderClient().query(requestURI, null, selection, selectionArgs, null);
+                cursor = getContentProviderClient().query(requestURI,
+                                                          OCFileCursorMapper.PROJECTION,
+                                                          selection,
+                                                          selectionArgs,
+                                                          null);
             } catch (RemoteException e) {
                 Log_OC.e(TAG, e.getMessage(), e);
                 return folderContent;
             }
         } else {
-            cursor = getContentResolver().query(requestURI, null, selection, selectionArgs, null);
+            cursor = getContentResolver().query(requestURI,
+                                                OCFileCursorMapper.PROJECTION,
+                                                selection,
+                                                selectionArgs,
+                                                null);
         }
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
+                OCFileCursorMapper mapper = new OCFileCursorMapper(cursor, account.name);
                 do {
-                    folderContent.add(createFileInstance(cursor));
+                    folderContent.add(mapper.map());
                 } while (cursor.moveToNext());
             }
             cursor.close();
@@ -2376,19 +2613,19 @@ public class FileDataStorageManager {
         return folderContent;
     }
 
-    private String getString(Cursor cursor, String columnName) {
+    private static String getString(Cursor cursor, String columnName) {
         return cursor.getString(cursor.getColumnIndex(columnName));
     }
 
-    private int getInt(Cursor cursor, String columnName) {
+    private static int getInt(Cursor cursor, String columnName) {
         return cursor.getInt(cursor.getColumnIndex(columnName));
     }
 
-    private long getLong(Cursor cursor, String columnName) {
+    private static long getLong(Cursor cursor, String columnName) {
         return cursor.getLong(cursor.getColumnIndex(columnName));
     }
 
-    private CapabilityBooleanType getBoolean(Cursor cursor, String columnName) {
+    private static CapabilityBooleanType getBoolean(Cursor cursor, String columnName) {
         return CapabilityBooleanType.fromValue(cursor.getInt(cursor.getColumnIndex(columnName)));
     }
 
@@ -19,24 +19,42 @@
  */
 package com.owncloud.android.datamodel;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 
+import com.owncloud.android.MainApp;
 import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.utils.SyncedFolderUtils;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 
+import androidx.annotation.Nullable;
+
 /**
  * Provider for stored filesystem data.
  */
@@ -44,13 +62,58 @@ public class FilesystemDataProvider {
 
     static private final String TAG = FilesystemDataProvider.class.getSimpleName();
 
+    /**
+     * Maximum number of operations applied in a single transaction.
+     */
+    static final int BATCH_SIZE = 1000;
+
+    /**
+     * Maximum number of arguments in a single statement, below SQLite limit of 999 bound parameters.
+     */
+    static final int MAX_ARGUMENTS_PER_STATEMENT = 500;
+
+    private static final int MAX_DEFAULT_CHECKSUM_WORKERS = 4;
+
+    /**
+     * Default number of threads computing checksums while indexing.
+     */
+    public static final int DEFAULT_CHECKSUM_WORKERS =
+        Math.max(1, Math.min(MAX_DEFAULT_CHECKSUM_WORKERS, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Maximum number of files per worker waiting for their checksum, limits memory used while indexing.
+     */
+    static final int MAX_PENDING_CHECKSUMS_PER_WORKER = 16;
+
+    private static final int CHECKSUM_BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> CHECKSUM_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(CHECKSUM_BUFFER_SIZE);
+        }
+    };
+
     private ContentResolver contentResolver;
+    private final int checksumWorkers;
 
     public FilesystemDataProvider(ContentResolver contentResolver) {
+        this(contentResolver, DEFAULT_CHECKSUM_WORKERS);
+    }
+
+    /**
+     * @param contentResolver content resolver
+     * @param checksumWorkers number of threads computing checksums while indexing with {@link Indexer}
+     */
+    public FilesystemDataProvider(ContentResolver contentResolver, int checksumWorkers) {
         if (contentResolver == null) {
             throw new IllegalArgumentException("Cannot create an instance with a NULL contentResolver");
         }
+        if (checksumWorkers < 1) {
+            throw new IllegalArgumentException("At least one checksum worker is required");
+        }
         this.contentResolver = contentResolver;
+        this.checksumWorkers = checksumWorkers;
     }
 
     public int deleteAllEntriesForSyncedFolder(String syncedFolderId) {
@@ -74,6 +137,36 @@ public class FilesystemDataProvider {
         );
     }
 
+    /**
+     * Marks many files as sent for upload in a single transaction.
+     *
+     * @param paths          local paths of the files
+     * @param syncedFolderId id of the synced folder of all files
+     */
+    public void updateFilesystemFilesAsSentForUpload(Collection<String> paths, String syncedFolderId) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, 1);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (String[] arguments : createPathSelectionArguments(syncedFolderId, paths)) {
+            operations.add(ContentProviderOperation
+                               .newUpdate(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                               .withValues(cv)
+                               .withSelection(createPathSelection(arguments), arguments)
+                               .build());
+        }
+
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        try {
+            contentResolver.applyBatch(MainApp.getAuthority(), operations);
+        } catch (OperationApplicationException | RemoteException e) {
+            Log_OC.e(TAG, "Failed to mark " + paths.size() + " files as sent for upload", e);
+        }
+    }
+
     public Set<String> getFilesForUpload(String localPath, String syncedFolderId) {
         Set<String> localPathsToUpload = new HashSet<>();
 
@@ -120,44 +213,21 @@ public class FilesystemDataProvider {
     public void storeOrUpdateFileValue(String localPath, long modifiedAt, boolean isFolder, SyncedFolder syncedFolder) {
 
         FileSystemDataSet data = getFilesystemDataSet(localPath, syncedFolder);
-
-        int isFolderValue = 0;
-        if (isFolder) {
-            isFolderValue = 1;
-        }
-
-        ContentValues cv = new ContentValues();
-        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY, System.currentTimeMillis());
-        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED, modifiedAt);
+        long foundAt = System.currentTimeMillis();
 
         if (data == null) {
-
-            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH, localPath);
-            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER, isFolderValue);
-            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, Boolean.FALSE);
-            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID, syncedFolder.getId());
-
-            long newCrc32 = getFileChecksum(localPath);
-            if (newCrc32 != -1) {
-                cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
-            }
-
+            ContentValues cv = createInsertValues(localPath, modifiedAt, isFolder, foundAt, syncedFolder);
             Uri result = contentResolver.insert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM, cv);
 
             if (result == null) {
                 Log_OC.v(TAG, "Failed to insert filesystem data with local path: " + localPath);
             }
         } else {
-
-            if (data.getModifiedAt() != modifiedAt) {
-                long newCrc32 = getFileChecksum(localPath);
-                if (data.getCrc32() == null || (newCrc32 != -1 && !data.getCrc32().equals(Long.toString(newCrc32)))) {
-                    cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
-                    cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, 0);
-                }
-            }
-
-
+            ContentValues cv = createUpdateValues(localPath,
+                                                  data.getModifiedAt(),
+                                                  data.getCrc32(),
+                                                  modifiedAt,
+                                                  foundAt);
             int result = contentResolver.update(
                     ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
                     cv,
@@ -171,6 +241,144 @@ public class FilesystemDataProvider {
         }
     }
 
+    /**
+     * Creates an indexer storing many files of a synced folder at once. Use it instead of
+     * {@link #storeOrUpdateFileValue(String, long, boolean, SyncedFolder)} when scanning a whole synced folder.
+     *
+     * @param syncedFolder synced folder of all indexed files
+     * @return indexer, {@link Indexer#flush()} must be called after the last file
+     */
+    public Indexer createIndexer(SyncedFolder syncedFolder) {
+        Map<String, IndexedFile> indexedFiles = new HashMap<>();
+        loadIndexedFiles(ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ?",
+                         new String[]{Long.toString(syncedFolder.getId())},
+                         indexedFiles);
+        return new Indexer(syncedFolder, indexedFiles);
+    }
+
+    /**
+     * Creates an indexer for known files of a synced folder. Only entries of given files are loaded, which is cheaper
+     * than loading all entries of a large synced folder if few files changed.
+     *
+     * @param syncedFolder synced folder of all indexed files
+     * @param localPaths   local paths of all files which will be indexed
+     * @return indexer, {@link Indexer#flush()} must be called after the last file
+     */
+    public Indexer createIndexer(SyncedFolder syncedFolder, Collection<String> localPaths) {
+        Map<String, IndexedFile> indexedFiles = new HashMap<>();
+        for (String[] arguments : createPathSelectionArguments(Long.toString(syncedFolder.getId()), localPaths)) {
+            loadIndexedFiles(createPathSelection(arguments), arguments, indexedFiles);
+        }
+        return new Indexer(syncedFolder, indexedFiles);
+    }
+
+    /**
+     * Splits local paths into selection arguments of statements selecting files of a synced folder by path. First
+     * argument of each statement is the synced folder id.
+     */
+    private static List<String[]> createPathSelectionArguments(String syncedFolderId, Collection<String> localPaths) {
+        List<String[]> argumentsList = new ArrayList<>();
+        List<String> paths = new ArrayList<>(localPaths);
+
+        for (int start = 0; start < paths.size(); start += MAX_ARGUMENTS_PER_STATEMENT - 1) {
+            List<String> chunk = paths.subList(start, Math.min(paths.size(), start + MAX_ARGUMENTS_PER_STATEMENT - 1));
+            String[] arguments = new String[chunk.size() + 1];
+            arguments[0] = syncedFolderId;
+            for (int i = 0; i < chunk.size(); i++) {
+                arguments[i + 1] = chunk.get(i);
+            }
+            argumentsList.add(arguments);
+        }
+
+        return argumentsList;
+    }
+
+    private static String createPathSelection(String[] arguments) {
+        return ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ? AND " +
+            createInSelection(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH, arguments.length - 1);
+    }
+
+    private static String createInSelection(String column, int count) {
+        StringBuilder selection = new StringBuilder(column).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            selection.append(i == 0 ? "?" : ",?");
+        }
+        return selection.append(')').toString();
+    }
+
+    private void loadIndexedFiles(String selection, String[] selectionArgs, Map<String, IndexedFile> indexedFiles) {
+        Cursor cursor = contentResolver.query(
+                ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                new String[]{
+                        ProviderMeta.ProviderTableMeta._ID,
+                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH,
+                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED,
+                        ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32
+                },
+                selection,
+                selectionArgs,
+                null
+        );
+
+        if (cursor != null) {
+            int idIndex = cursor.getColumnIndex(ProviderMeta.ProviderTableMeta._ID);
+            int localPathIndex = cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH);
+            int modifiedIndex = cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED);
+            int crc32Index = cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32);
+
+            while (cursor.moveToNext()) {
+                indexedFiles.put(cursor.getString(localPathIndex),
+                                 new IndexedFile(cursor.getLong(idIndex),
+                                                 cursor.getLong(modifiedIndex),
+                                                 cursor.getString(crc32Index)));
+            }
+            cursor.close();
+        } else {
+            Log_OC.e(TAG, "DB error loading filesystem data");
+        }
+    }
+
+    private ContentValues createInsertValues(String localPath,
+                                             long modifiedAt,
+                                             boolean isFolder,
+                                             long foundAt,
+                                             SyncedFolder syncedFolder) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY, foundAt);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED, modifiedAt);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH, localPath);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER, isFolder ? 1 : 0);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, Boolean.FALSE);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID, syncedFolder.getId());
+
+        long newCrc32 = getFileChecksum(localPath);
+        if (newCrc32 != -1) {
+            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
+        }
+
+        return cv;
+    }
+
+    private ContentValues createUpdateValues(String localPath,
+                                             long storedModifiedAt,
+                                             @Nullable String storedCrc32,
+                                             long modifiedAt,
+                                             long foundAt) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY, foundAt);
+        cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED, modifiedAt);
+
+        if (storedModifiedAt != modifiedAt) {
+            long newCrc32 = getFileChecksum(localPath);
+            if (storedCrc32 == null || (newCrc32 != -1 && !storedCrc32.equals(Long.toString(newCrc32)))) {
+                cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
+                cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, 0);
+            }
+        }
+
+        return cv;
+    }
+
     private FileSystemDataSet getFilesystemDataSet(String localPathParam, SyncedFolder syncedFolder) {
 
         Cursor cursor = contentResolver.query(
@@ -221,13 +429,21 @@ public class FilesystemDataProvider {
         return dataSet;
     }
 
-    private long getFileChecksum(String filepath) {
+    /**
+     * Computes CRC32 checksum of a file. Reads through a file channel into a buffer reused by the calling thread.
+     *
+     * @param filepath path of the file
+     * @return checksum, -1 if file could not be read
+     */
+    static long getFileChecksum(String filepath) {
+        ByteBuffer buffer = CHECKSUM_BUFFER.get();
 
-        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(filepath))){
+        try (FileChannel channel = new FileInputStream(filepath).getChannel()) {
             CRC32 crc = new CRC32();
-            int cnt;
-            while ((cnt = inputStream.read()) != -1) {
-                crc.update(cnt);
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                crc.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+                buffer.clear();
             }
 
             return crc.getValue();
@@ -236,4 +452,196 @@ public class FilesystemDataProvider {
             return -1;
         }
     }
+
+    /**
+     * Stores files of a synced folder in bulk. Existing entries of the synced folder are loaded once when the indexer
+     * is created and compared in memory; changes are written in batches, each applied in a single transaction.
+     * Entries of unchanged files are only marked as found, many of them with a single statement.
+     *
+     * Checksums of new and modified files are computed by a bounded pool of worker threads, overlapping with finding
+     * further files and writing changes. Worker threads are stopped by {@link #flush()}; they are daemon threads, so
+     * an indexer abandoned without flushing does not keep the process alive.
+     *
+     * Not thread-safe.
+     */
+    public final class Indexer {
+
+        private final SyncedFolder syncedFolder;
+        private final Map<String, IndexedFile> indexedFiles;
+        private final long foundAt = System.currentTimeMillis();
+        private final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        private final ArrayDeque<Future<ContentProviderOperation>> pendingOperations = new ArrayDeque<>();
+        private final List<String> unchangedIds = new ArrayList<>();
+        private ExecutorService checksumExecutor;
+        private int insertedCount;
+        private int updatedCount;
+        private int unchangedCount;
+        private boolean failed;
+
+        private Indexer(SyncedFolder syncedFolder, Map<String, IndexedFile> indexedFiles) {
+            this.syncedFolder = syncedFolder;
+            this.indexedFiles = indexedFiles;
+        }
+
+        public void storeOrUpdateFileValue(String localPath, long modifiedAt, boolean isFolder) {
+            IndexedFile indexedFile = indexedFiles.get(localPath);
+
+            if (indexedFile == null) {
+                submit(() -> ContentProviderOperation
+                    .newInsert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                    .withValues(createInsertValues(localPath, modifiedAt, isFolder, foundAt, syncedFolder))
+                    .build());
+                indexedFiles.put(localPath, new IndexedFile(IndexedFile.NOT_STORED_ID, modifiedAt, null));
+                insertedCount++;
+            } else if (indexedFile.id == IndexedFile.NOT_STORED_ID) {
+                // found twice during this scan, insert is already scheduled
+                return;
+            } else if (indexedFile.modifiedAt == modifiedAt) {
+                unchangedIds.add(String.valueOf(indexedFile.id));
+                unchangedCount++;
+                if (unchangedIds.size() >= MAX_ARGUMENTS_PER_STATEMENT) {
+                    addUnchangedOperation();
+                }
+            } else {
+                final long storedModifiedAt = indexedFile.modifiedAt;
+                final String storedCrc32 = indexedFile.crc32;
+                final String id = String.valueOf(indexedFile.id);
+                submit(() -> ContentProviderOperation
+                    .newUpdate(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                    .withValues(createUpdateValues(localPath, storedModifiedAt, storedCrc32, modifiedAt, foundAt))
+                    .withSelection(ProviderMeta.ProviderTableMeta._ID + "=?", new String[]{id})
+                    .build());
+                indexedFile.modifiedAt = modifiedAt;
+                updatedCount++;
+            }
+
+            collectOperations(false);
+        }
+
+        /**
+         * Writes all pending changes.
+         *
+         * @return true if all changes of this indexer have been stored
+         */
+        public boolean flush() {
+            try {
+                addUnchangedOperation();
+                while (!pendingOperations.isEmpty()) {
+                    collectOperations(true);
+                }
+                applyOperations();
+            } finally {
+                if (checksumExecutor != null) {
+                    checksumExecutor.shutdownNow();
+                    checksumExecutor = null;
+                }
+            }
+
+            Log_OC.d(TAG, "Indexed synced folder " + syncedFolder.getLocalPath() + ": " + insertedCount +
+                " inserted, " + updatedCount + " updated, " + unchangedCount + " unchanged");
+            return !failed;
+        }
+
+        /**
+         * Schedules creation of an operation which needs a checksum on a worker thread. Waits for the oldest
+         * scheduled operation if too many are pending.
+         */
+        private void submit(Callable<ContentProviderOperation> task) {
+            if (checksumExecutor == null) {
+                final AtomicInteger threads = new AtomicInteger();
+                checksumExecutor = Executors.newFixedThreadPool(checksumWorkers, runnable -> {
+                    Thread thread = new Thread(runnable, "FilesystemChecksumThread-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            pendingOperations.addLast(checksumExecutor.submit(task));
+
+            if (pendingOperations.size() >= checksumWorkers * MAX_PENDING_CHECKSUMS_PER_WORKER) {
+                collectOperations(true);
+            }
+        }
+
+        /**
+         * Moves created operations to the current batch, in order of scheduling, and applies the batch if it is
+         * full.
+         *
+         * @param waitForOldest wait until the oldest pending operation has been created
+         */
+        private void collectOperations(boolean waitForOldest) {
+            boolean wait = waitForOldest;
+            while (!pendingOperations.isEmpty() && (wait || pendingOperations.peekFirst().isDone())) {
+                ContentProviderOperation operation = getOperation(pendingOperations.removeFirst());
+                if (operation != null) {
+                    operations.add(operation);
+                }
+                wait = false;
+            }
+
+            if (operations.size() >= BATCH_SIZE) {
+                applyOperations();
+            }
+        }
+
+        @Nullable
+        private ContentProviderOperation getOperation(Future<ContentProviderOperation> future) {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Log_OC.e(TAG, "Failed to index file of synced folder " + syncedFolder.getLocalPath(), e);
+            } catch (InterruptedException e) {
+                Log_OC.e(TAG, "Interrupted while indexing synced folder " + syncedFolder.getLocalPath(), e);
+                Thread.currentThread().interrupt();
+            }
+            failed = true;
+            return null;
+        }
+
+        private void addUnchangedOperation() {
+            if (unchangedIds.isEmpty()) {
+                return;
+            }
+
+            ContentValues cv = new ContentValues();
+            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY, foundAt);
+            String selection = createInSelection(ProviderMeta.ProviderTableMeta._ID, unchangedIds.size());
+            operations.add(ContentProviderOperation
+                               .newUpdate(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                               .withValues(cv)
+                               .withSelection(selection, unchangedIds.toArray(new String[0]))
+                               .build());
+            unchangedIds.clear();
+        }
+
+        private void applyOperations() {
+            if (operations.isEmpty()) {
+                return;
+            }
+
+            try {
+                contentResolver.applyBatch(MainApp.getAuthority(), operations);
+            } catch (OperationApplicationException | RemoteException e) {
+                Log_OC.e(TAG, "Failed to store filesystem data of synced folder " + syncedFolder.getLocalPath(), e);
+                failed = true;
+            }
+            operations.clear();
+        }
+    }
+
+    /**
+     * Stored state of an indexed file needed to detect changes.
+     */
+    private static final class IndexedFile {
+        private static final long NOT_STORED_ID = -1;
+
+        private final long id;
+        private long modifiedAt;
+        @Nullable private final String crc32;
+
+        private IndexedFile(long id, long modifiedAt, @Nullable String crc32) {
+            this.id = id;
+            this.modifiedAt = modifiedAt;
+            this.crc32 = crc32;
+        }
+    }
 }
@@ -0,0 +1,237 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.database.Cursor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.lib.common.network.WebdavEntry;
+import com.owncloud.android.lib.resources.shares.ShareeUser;
+import com.owncloud.android.utils.FileStorageUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Maps rows of a file list cursor to {@link OCFile} instances.
+ *
+ * Column indices are resolved once when the mapper is created, so a mapper should be reused for all rows of the same
+ * cursor. Columns missing from the projection are skipped and leave the default value in the created file, which
+ * allows slim projections when only a few properties are needed.
+ */
+class OCFileCursorMapper {
+
+    private static final int MISSING = -1;
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Columns read by {@link #map()}; queries listing files select these instead of all columns of the file list.
+     */
+    static final String[] PROJECTION = {
+        ProviderTableMeta._ID,
+        ProviderTableMeta.FILE_PATH,
+        ProviderTableMeta.FILE_PATH_DECRYPTED,
+        ProviderTableMeta.FILE_PARENT,
+        ProviderTableMeta.FILE_CONTENT_TYPE,
+        ProviderTableMeta.FILE_STORAGE_PATH,
+        ProviderTableMeta.FILE_CONTENT_LENGTH,
+        ProviderTableMeta.FILE_CREATION,
+        ProviderTableMeta.FILE_MODIFIED,
+        ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
+        ProviderTableMeta.FILE_LAST_SYNC_DATE,
+        ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA,
+        ProviderTableMeta.FILE_ETAG,
+        ProviderTableMeta.FILE_ETAG_ON_SERVER,
+        ProviderTableMeta.FILE_SHARED_VIA_LINK,
+        ProviderTableMeta.FILE_SHARED_WITH_SHAREE,
+        ProviderTableMeta.FILE_PERMISSIONS,
+        ProviderTableMeta.FILE_REMOTE_ID,
+        ProviderTableMeta.FILE_UPDATE_THUMBNAIL,
+        ProviderTableMeta.FILE_IS_DOWNLOADING,
+        ProviderTableMeta.FILE_ETAG_IN_CONFLICT,
+        ProviderTableMeta.FILE_FAVORITE,
+        ProviderTableMeta.FILE_IS_ENCRYPTED,
+        ProviderTableMeta.FILE_MOUNT_TYPE,
+        ProviderTableMeta.FILE_HAS_PREVIEW,
+        ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT,
+        ProviderTableMeta.FILE_OWNER_ID,
+        ProviderTableMeta.FILE_OWNER_DISPLAY_NAME,
+        ProviderTableMeta.FILE_NOTE,
+        ProviderTableMeta.FILE_RICH_WORKSPACE,
+        ProviderTableMeta.FILE_SHAREES
+    };
+
+    private final Cursor cursor;
+    private final String accountName;
+
+    private final int id;
+    private final int path;
+    private final int pathDecrypted;
+    private final int parent;
+    private final int contentType;
+    private final int storagePath;
+    private final int contentLength;
+    private final int creation;
+    private final int modified;
+    private final int modifiedAtLastSyncForData;
+    private final int lastSyncDate;
+    private final int lastSyncDateForData;
+    private final int etag;
+    private final int etagOnServer;
+    private final int sharedViaLink;
+    private final int sharedWithSharee;
+    private final int permissions;
+    private final int remoteId;
+    private final int updateThumbnail;
+    private final int isDownloading;
+    private final int etagInConflict;
+    private final int favorite;
+    private final int isEncrypted;
+    private final int mountType;
+    private final int hasPreview;
+    private final int unreadCommentsCount;
+    private final int ownerId;
+    private final int ownerDisplayName;
+    private final int note;
+    private final int richWorkspace;
+    private final int sharees;
+
+    OCFileCursorMapper(Cursor cursor, String accountName) {
+        this.cursor = cursor;
+        this.accountName = accountName;
+
+        id = cursor.getColumnIndex(ProviderTableMeta._ID);
+        path = cursor.getColumnIndex(ProviderTableMeta.FILE_PATH);
+        pathDecrypted = cursor.getColumnIndex(ProviderTableMeta.FILE_PATH_DECRYPTED);
+        parent = cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT);
+        contentType = cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE);
+        storagePath = cursor.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH);
+        contentLength = cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH);
+        creation = cursor.getColumnIndex(ProviderTableMeta.FILE_CREATION);
+        modified = cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED);
+        modifiedAtLastSyncForData = cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA);
+        lastSyncDate = cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE);
+        lastSyncDateForData = cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA);
+        etag = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG);
+        etagOnServer = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER);
+        sharedViaLink = cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK);
+        sharedWithSharee = cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE);
+        permissions = cursor.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS);
+        remoteId = cursor.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID);
+        updateThumbnail = cursor.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL);
+        isDownloading = cursor.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING);
+        etagInConflict = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT);
+        favorite = cursor.getColumnIndex(ProviderTableMeta.FILE_FAVORITE);
+        isEncrypted = cursor.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED);
+        mountType = cursor.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE);
+        hasPreview = cursor.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW);
+        unreadCommentsCount = cursor.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT);
+        ownerId = cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID);
+        ownerDisplayName = cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME);
+        note = cursor.getColumnIndex(ProviderTableMeta.FILE_NOTE);
+        richWorkspace = cursor.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE);
+        sharees = cursor.getColumnIndex(ProviderTableMeta.FILE_SHAREES);
+    }
+
+    /**
+     * Creates a file from the row the cursor is currently positioned at.
+     */
+    OCFile map() {
+        OCFile ocFile = new OCFile(cursor.getString(path));
+        ocFile.setDecryptedRemotePath(getString(pathDecrypted));
+        ocFile.setFileId(getLong(id));
+        ocFile.setParentId(getLong(parent));
+        ocFile.setMimeType(getString(contentType));
+        ocFile.setStoragePath(getString(storagePath));
+        if (ocFile.getStoragePath() == null && storagePath != MISSING) {
+            // try to find existing file and bind it with current account;
+            // with the current update of SynchronizeFolderOperation, this won't be
+            // necessary anymore after a full synchronization of the account
+            File file = new File(FileStorageUtils.getDefaultSavePathFor(accountName, ocFile));
+            if (file.exists()) {
+                ocFile.setStoragePath(file.getAbsolutePath());
+                ocFile.setLastSyncDateForData(file.lastModified());
+            }
+        }
+        ocFile.setFileLength(getLong(contentLength));
+        ocFile.setCreationTimestamp(getLong(creation));
+        ocFile.setModificationTimestamp(getLong(modified));
+        ocFile.setModificationTimestampAtLastSyncForData(getLong(modifiedAtLastSyncForData));
+        ocFile.setLastSyncDateForProperties(getLong(lastSyncDate));
+        if (lastSyncDateForData != MISSING) {
+            ocFile.setLastSyncDateForData(cursor.getLong(lastSyncDateForData));
+        }
+        ocFile.setEtag(getString(etag));
+        ocFile.setEtagOnServer(getString(etagOnServer));
+        ocFile.setSharedViaLink(getInt(sharedViaLink) == 1);
+        ocFile.setSharedWithSharee(getInt(sharedWithSharee) == 1);
+        ocFile.setPermissions(getString(permissions));
+        ocFile.setRemoteId(getString(remoteId));
+        ocFile.setUpdateThumbnailNeeded(getInt(updateThumbnail) == 1);
+        ocFile.setDownloading(getInt(isDownloading) == 1);
+        ocFile.setEtagInConflict(getString(etagInConflict));
+        ocFile.setFavorite(getInt(favorite) == 1);
+        ocFile.setEncrypted(getInt(isEncrypted) == 1);
+        ocFile.setMountType(WebdavEntry.MountType.values()[getInt(mountType)]);
+        ocFile.setPreviewAvailable(getInt(hasPreview) == 1);
+        ocFile.setUnreadCommentsCount(getInt(unreadCommentsCount));
+        ocFile.setOwnerId(getString(ownerId));
+        ocFile.setOwnerDisplayName(getString(ownerDisplayName));
+        ocFile.setNote(getString(note));
+        ocFile.setRichWorkspace(getString(richWorkspace));
+        ocFile.setSharees(parseSharees(getString(sharees)));
+
+        return ocFile;
+    }
+
+    static String shareesToJson(Object sharees) {
+        return GSON.toJson(sharees);
+    }
+
+    private static ArrayList<ShareeUser> parseSharees(String sharees) {
+        if (sharees == null || FileDataStorageManager.NULL_STRING.equals(sharees) || sharees.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            ShareeUser[] shareesArray = GSON.fromJson(sharees, ShareeUser[].class);
+
+            return new ArrayList<>(Arrays.asList(shareesArray));
+        } catch (JsonSyntaxException e) {
+            // ignore saved value due to api change
+            return new ArrayList<>();
+        }
+    }
+
+    private String getString(int index) {
+        return index == MISSING ? null : cursor.getString(index);
+    }
+
+    private long getLong(int index) {
+        return index == MISSING ? 0 : cursor.getLong(index);
+    }
+
+    private int getInt(int index) {
+        return index == MISSING ? 0 : cursor.getInt(index);
+    }
+}
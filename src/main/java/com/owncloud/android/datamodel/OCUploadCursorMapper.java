@@ -0,0 +1,112 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.database.Cursor;
+
+import com.owncloud.android.datamodel.UploadsStorageManager.UploadStatus;
+import com.owncloud.android.db.OCUpload;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.db.UploadResult;
+import com.owncloud.android.files.services.FileUploader;
+
+/**
+ * Maps rows of an uploads cursor to {@link OCUpload} instances.
+ *
+ * Column indices are resolved once when the mapper is created, so a mapper should be reused for all rows of the same
+ * cursor.
+ */
+class OCUploadCursorMapper {
+
+    private final Cursor cursor;
+
+    private final int id;
+    private final int localPath;
+    private final int remotePath;
+    private final int accountName;
+    private final int fileSize;
+    private final int status;
+    private final int localBehaviour;
+    private final int nameCollisionPolicy;
+    private final int isCreateRemoteFolder;
+    private final int uploadEndTimestamp;
+    private final int lastResult;
+    private final int createdBy;
+    private final int isWifiOnly;
+    private final int isWhileChargingOnly;
+    private final int folderUnlockToken;
+    private final int chunkedUploadId;
+    private final int chunkSize;
+    private final int confirmedChunks;
+    private final int chunkedSourceLastModified;
+
+    OCUploadCursorMapper(Cursor cursor) {
+        this.cursor = cursor;
+
+        id = cursor.getColumnIndex(ProviderTableMeta._ID);
+        localPath = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_PATH);
+        remotePath = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_REMOTE_PATH);
+        accountName = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_ACCOUNT_NAME);
+        fileSize = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_FILE_SIZE);
+        status = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_STATUS);
+        localBehaviour = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_BEHAVIOUR);
+        nameCollisionPolicy = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_NAME_COLLISION_POLICY);
+        isCreateRemoteFolder = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_IS_CREATE_REMOTE_FOLDER);
+        uploadEndTimestamp = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP);
+        lastResult = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_LAST_RESULT);
+        createdBy = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_CREATED_BY);
+        isWifiOnly = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_IS_WIFI_ONLY);
+        isWhileChargingOnly = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_IS_WHILE_CHARGING_ONLY);
+        folderUnlockToken = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN);
+        chunkedUploadId = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_CHUNKED_UPLOAD_ID);
+        chunkSize = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_CHUNK_SIZE);
+        confirmedChunks = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_CONFIRMED_CHUNKS);
+        chunkedSourceLastModified = cursor.getColumnIndex(ProviderTableMeta.UPLOADS_CHUNKED_SOURCE_LAST_MODIFIED);
+    }
+
+    /**
+     * Creates an upload from the row the cursor is currently positioned at.
+     */
+    OCUpload map() {
+        OCUpload upload = new OCUpload(cursor.getString(localPath),
+                                       cursor.getString(remotePath),
+                                       cursor.getString(accountName));
+
+        upload.setFileSize(cursor.getLong(fileSize));
+        upload.setUploadId(cursor.getLong(id));
+        upload.setUploadStatus(UploadStatus.fromValue(cursor.getInt(status)));
+        upload.setLocalAction(cursor.getInt(localBehaviour));
+        upload.setNameCollisionPolicy(FileUploader.NameCollisionPolicy.deserialize(
+            cursor.getInt(nameCollisionPolicy)));
+        upload.setCreateRemoteFolder(cursor.getInt(isCreateRemoteFolder) == 1);
+        upload.setUploadEndTimestamp(cursor.getLong(uploadEndTimestamp));
+        upload.setLastResult(UploadResult.fromValue(cursor.getInt(lastResult)));
+        upload.setCreatedBy(cursor.getInt(createdBy));
+        upload.setUseWifiOnly(cursor.getInt(isWifiOnly) == 1);
+        upload.setWhileChargingOnly(cursor.getInt(isWhileChargingOnly) == 1);
+        upload.setFolderUnlockToken(cursor.getString(folderUnlockToken));
+        upload.setChunkState(cursor.getString(chunkedUploadId),
+                             cursor.getLong(chunkSize),
+                             cursor.getLong(confirmedChunks),
+                             cursor.getLong(chunkedSourceLastModified));
+
+        return upload;
+    }
+}
@@ -298,6 +298,7 @@ public class SyncedFolderProvider extends Observable {
      * delete record of synchronized folder with the given id.
      */
     public int deleteSyncedFolder(long id) {
+        preferences.resetMediaScanState(id);
         return mContentResolver.delete(
                 ProviderMeta.ProviderTableMeta.CONTENT_URI_SYNCED_FOLDERS,
                 ProviderMeta.ProviderTableMeta._ID + " = ?",
@@ -316,6 +317,9 @@ public class SyncedFolderProvider extends Observable {
 
         ContentValues cv = createContentValuesFromSyncedFolder(syncedFolder);
 
+        // local path or upload conditions might have changed, media store has to be scanned again
+        preferences.resetMediaScanState(syncedFolder.getId());
+
         return mContentResolver.update(
                 ProviderMeta.ProviderTableMeta.CONTENT_URI_SYNCED_FOLDERS,
                 cv,
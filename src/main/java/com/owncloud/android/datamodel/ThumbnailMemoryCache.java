@@ -0,0 +1,143 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+/**
+ * In-memory LRU cache of decoded thumbnails, bounded by the byte size of the cached bitmaps.
+ *
+ * Bitmaps are stored either under their image key or, if they were decoded for a target size, under image key and
+ * size. Storing a new bitmap for an image key drops all sized variants of this key.
+ *
+ * Cached bitmaps are shared and must not be recycled by callers.
+ */
+public class ThumbnailMemoryCache {
+
+    private static final char SIZE_SEPARATOR = '@';
+
+    private final LruCache<String, Entry> cache;
+
+    public ThumbnailMemoryCache(int maxSizeInBytes) {
+        cache = new LruCache<String, Entry>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(String key, Entry entry) {
+                return entry.byteCount;
+            }
+        };
+    }
+
+    public @Nullable
+    Bitmap get(String key) {
+        return getValid(key);
+    }
+
+    public @Nullable
+    Bitmap get(String key, int width, int height) {
+        return getValid(sizedKey(key, width, height));
+    }
+
+    public void put(String key, Bitmap bitmap) {
+        removeSizedVariants(key);
+        cache.put(key, new Entry(bitmap));
+    }
+
+    public void put(String key, int width, int height, Bitmap bitmap) {
+        cache.put(sizedKey(key, width, height), new Entry(bitmap));
+    }
+
+    public void remove(String key) {
+        cache.remove(key);
+        removeSizedVariants(key);
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return size of all cached bitmaps in bytes
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return maximum size of all cached bitmaps in bytes
+     */
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    private @Nullable
+    Bitmap getValid(String key) {
+        Entry entry = cache.get(key);
+
+        if (entry == null) {
+            return null;
+        } else if (entry.bitmap.isRecycled()) {
+            cache.remove(key);
+            return null;
+        }
+
+        return entry.bitmap;
+    }
+
+    private void removeSizedVariants(String key) {
+        String prefix = key + SIZE_SEPARATOR;
+        for (String cachedKey : cache.snapshot().keySet()) {
+            if (cachedKey.startsWith(prefix)) {
+                cache.remove(cachedKey);
+            }
+        }
+    }
+
+    private static String sizedKey(String key, int width, int height) {
+        return key + SIZE_SEPARATOR + width + 'x' + height;
+    }
+
+    /**
+     * Keeps the size determined when caching, as the size of a recycled bitmap is undefined.
+     */
+    private static final class Entry {
+        private final Bitmap bitmap;
+        private final int byteCount;
+
+        private Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            this.byteCount = bitmap.getAllocationByteCount();
+        }
+    }
+}
@@ -79,6 +79,7 @@ import java.util.List;
 import java.util.Locale;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.content.res.ResourcesCompat;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -99,11 +100,31 @@ public final class ThumbnailsCacheManager {
     private static final String AVATAR_TIMESTAMP = "avatarTimestamp";
     private static final String ETAG = "ETag";
 
+    /**
+     * Guards initialisation of the disk cache only; writes of cached entries are synchronized per key stripe
+     */
     private static final Object mThumbnailsDiskCacheLock = new Object();
-    private static DiskLruImageCache mThumbnailCache;
-    private static boolean mThumbnailCacheStarting = true;
+    private static final int DISK_CACHE_LOCK_STRIPES = 32;
+    private static final Object[] mThumbnailsDiskCacheStripes = new Object[DISK_CACHE_LOCK_STRIPES];
+    private static volatile DiskLruImageCache mThumbnailCache;
+    private static volatile boolean mThumbnailCacheStarting = true;
+
+    static {
+        for (int i = 0; i < DISK_CACHE_LOCK_STRIPES; i++) {
+            mThumbnailsDiskCacheStripes[i] = new Object();
+        }
+    }
 
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 200; // 200MB
+    private static final int MEMORY_CACHE_FRACTION = 8; // 1/8 of max heap
+    private static final ThumbnailMemoryCache mMemoryCache = new ThumbnailMemoryCache(
+        (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_CACHE_FRACTION));
+    /**
+     * Resized images are about screen sized, so they get a budget of their own instead of displacing thumbnails
+     */
+    private static final int RESIZED_IMAGE_MEMORY_CACHE_FRACTION = 16; // 1/16 of max heap
+    private static final ThumbnailMemoryCache mResizedImageMemoryCache = new ThumbnailMemoryCache(
+        (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / RESIZED_IMAGE_MEMORY_CACHE_FRACTION));
     private static final CompressFormat mCompressFormat = CompressFormat.JPEG;
     private static final int mCompressQuality = 70;
     private static OwnCloudClient mClient;
@@ -205,50 +226,115 @@ public final class ThumbnailsCacheManager {
         return thumbnail;
     }
 
+    /**
+     * Waits until the disk cache is initialised, without taking any lock once it is.
+     *
+     * @return disk cache or null if it could not be opened
+     */
+    private static DiskLruImageCache getDiskCache() {
+        if (mThumbnailCacheStarting) {
+            synchronized (mThumbnailsDiskCacheLock) {
+                // Wait while disk cache is started from background thread
+                while (mThumbnailCacheStarting) {
+                    try {
+                        mThumbnailsDiskCacheLock.wait();
+                    } catch (InterruptedException e) {
+                        Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
+                    }
+                }
+            }
+        }
+        return mThumbnailCache;
+    }
+
+    private static Object getDiskCacheLock(String key) {
+        return mThumbnailsDiskCacheStripes[(key.hashCode() & Integer.MAX_VALUE) % DISK_CACHE_LOCK_STRIPES];
+    }
+
     public static void addBitmapToCache(String key, Bitmap bitmap) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            if (mThumbnailCache != null) {
-                mThumbnailCache.put(key, bitmap);
+        getMemoryCache(key).put(key, bitmap);
+
+        // wait for a starting disk cache, the bitmap would not be stored on disk otherwise
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            synchronized (getDiskCacheLock(key)) {
+                diskCache.put(key, bitmap);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static void removeBitmapFromCache(String key) {
+        getMemoryCache(key).remove(key);
+
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            synchronized (getDiskCacheLock(key)) {
+                diskCache.removeKey(key);
             }
         }
     }
 
     public static boolean containsBitmap(String key) {
-        return mThumbnailCache.containsKey(key);
+        if (getMemoryCache(key).get(key) != null) {
+            return true;
+        }
+
+        DiskLruImageCache diskCache = mThumbnailCache;
+        return diskCache != null && diskCache.containsKey(key);
+    }
+
+    /**
+     * @return in-memory tier in front of the thumbnail disk cache
+     */
+    public static ThumbnailMemoryCache getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    /**
+     * @return in-memory tier of resized images, kept apart from thumbnails
+     */
+    public static ThumbnailMemoryCache getResizedImageMemoryCache() {
+        return mResizedImageMemoryCache;
+    }
+
+    private static ThumbnailMemoryCache getMemoryCache(String key) {
+        return key.startsWith(PREFIX_RESIZED_IMAGE) ? mResizedImageMemoryCache : mMemoryCache;
     }
 
     public static Bitmap getScaledBitmapFromDiskCache(String key, int width, int height) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            // Wait while disk cache is started from background thread
-            while (mThumbnailCacheStarting) {
-                try {
-                    mThumbnailsDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                    Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
-                }
-            }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getScaledBitmap(key, width, height);
-            }
+        Bitmap bitmap = getMemoryCache(key).get(key, width, height);
+        if (bitmap != null) {
+            return bitmap;
         }
-        return null;
+
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            // DiskLruCache snapshots stay readable while an entry is rewritten, so no lock is needed for reading
+            bitmap = diskCache.getScaledBitmap(key, width, height);
+        }
+
+        if (bitmap != null) {
+            getMemoryCache(key).put(key, width, height, bitmap);
+        }
+        return bitmap;
     }
 
     public static Bitmap getBitmapFromDiskCache(String key) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            // Wait while disk cache is started from background thread
-            while (mThumbnailCacheStarting) {
-                try {
-                    mThumbnailsDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                    Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
-                }
-            }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getBitmap(key);
-            }
+        Bitmap bitmap = getMemoryCache(key).get(key);
+        if (bitmap != null) {
+            return bitmap;
         }
-        return null;
+
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            bitmap = diskCache.getBitmap(key);
+        }
+
+        if (bitmap != null) {
+            getMemoryCache(key).put(key, bitmap);
+        }
+        return bitmap;
     }
 
     public static class ResizedImageGenerationTask extends AsyncTask<Object, Void, Bitmap> {
@@ -0,0 +1,170 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Collects changes of stored uploads and publishes them to listeners in batches.
+ *
+ * Batches are delivered on the thread of the given handler, at most {@link #setMaxBatchesPerSecond(int)} times per
+ * second, so a burst of progress and status updates results in a single batch.
+ */
+public class UploadsChangeFeed {
+
+    public static final int DEFAULT_BATCHES_PER_SECOND = 10;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    public interface Listener {
+        void onUploadsChanged(Change change);
+    }
+
+    /**
+     * Ids of the uploads inserted, updated and removed since the previous batch. An upload inserted and removed
+     * within one batch is not part of it, an inserted upload is not reported as updated.
+     */
+    public static final class Change {
+        private final Set<Long> inserted;
+        private final Set<Long> updated;
+        private final Set<Long> removed;
+        private final boolean reloadAll;
+
+        Change(Set<Long> inserted, Set<Long> updated, Set<Long> removed, boolean reloadAll) {
+            this.inserted = Collections.unmodifiableSet(inserted);
+            this.updated = Collections.unmodifiableSet(updated);
+            this.removed = Collections.unmodifiableSet(removed);
+            this.reloadAll = reloadAll;
+        }
+
+        public Set<Long> getInserted() {
+            return inserted;
+        }
+
+        public Set<Long> getUpdated() {
+            return updated;
+        }
+
+        public Set<Long> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return true if uploads changed in a way not described by ids, e.g. by a bulk delete; all uploads must be
+         * reloaded
+         */
+        public boolean isReloadAll() {
+            return reloadAll;
+        }
+    }
+
+    private final Handler handler;
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+    private final Runnable dispatch = this::dispatch;
+
+    private Set<Long> inserted = new HashSet<>();
+    private Set<Long> updated = new HashSet<>();
+    private Set<Long> removed = new HashSet<>();
+    private boolean reloadAll;
+    private boolean scheduled;
+    private long intervalMs;
+    private long lastDispatch;
+
+    public UploadsChangeFeed(Handler handler, int maxBatchesPerSecond) {
+        this.handler = handler;
+        setMaxBatchesPerSecond(maxBatchesPerSecond);
+    }
+
+    public final synchronized void setMaxBatchesPerSecond(int maxBatchesPerSecond) {
+        intervalMs = MILLIS_PER_SECOND / Math.max(1, maxBatchesPerSecond);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    synchronized void onInserted(long id) {
+        if (!reloadAll) {
+            removed.remove(id);
+            inserted.add(id);
+        }
+        schedule();
+    }
+
+    synchronized void onUpdated(long id) {
+        if (!reloadAll && !inserted.contains(id)) {
+            updated.add(id);
+        }
+        schedule();
+    }
+
+    synchronized void onRemoved(long id) {
+        if (!reloadAll) {
+            updated.remove(id);
+            if (!inserted.remove(id)) {
+                removed.add(id);
+            }
+        }
+        schedule();
+    }
+
+    synchronized void onChangedAll() {
+        reloadAll = true;
+        inserted.clear();
+        updated.clear();
+        removed.clear();
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            long delay = Math.max(0, lastDispatch + intervalMs - SystemClock.uptimeMillis());
+            handler.postDelayed(dispatch, delay);
+        }
+    }
+
+    private void dispatch() {
+        Change change;
+        synchronized (this) {
+            change = new Change(inserted, updated, removed, reloadAll);
+            inserted = new HashSet<>();
+            updated = new HashSet<>();
+            removed = new HashSet<>();
+            reloadAll = false;
+            scheduled = false;
+            lastDispatch = SystemClock.uptimeMillis();
+        }
+
+        for (Listener listener : listeners) {
+            listener.onUploadsChanged(change);
+        }
+    }
+}
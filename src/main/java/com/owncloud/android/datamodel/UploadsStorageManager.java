@@ -24,13 +24,20 @@
 package com.owncloud.android.datamodel;
 
 import android.accounts.Account;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
 
 import com.nextcloud.client.account.CurrentAccountProvider;
 import com.nextcloud.client.account.User;
+import com.owncloud.android.MainApp;
 import com.owncloud.android.db.OCUpload;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
 import com.owncloud.android.db.UploadResult;
@@ -42,6 +49,8 @@ import com.owncloud.android.operations.UploadFileOperation;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
 import java.util.Observable;
 
@@ -57,6 +66,29 @@ public class UploadsStorageManager extends Observable {
 
     private static final String AND = " AND ";
     private static final int SINGLE_RESULT = 1;
+    private static final int MAX_IDS_PER_QUERY = 500;
+    private static final String DELAYED_RESULTS = "(" +
+        UploadResult.DELAYED_FOR_WIFI.getValue() + ", " +
+        UploadResult.LOCK_FAILED.getValue() + ", " +
+        UploadResult.DELAYED_FOR_CHARGING.getValue() + ", " +
+        UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() + ")";
+
+    /**
+     * Uploads in progress and uploads delayed until their conditions are met. Delayed uploads are stored as failed,
+     * restricting the status first lets the status index narrow down the rows.
+     */
+    private static final String CURRENT_AND_PENDING_SELECTION =
+        ProviderTableMeta.UPLOADS_STATUS + " IN (" + UploadStatus.UPLOAD_IN_PROGRESS.value + ", " +
+            UploadStatus.UPLOAD_FAILED.value + ")" + AND +
+            "(" + ProviderTableMeta.UPLOADS_STATUS + " = " + UploadStatus.UPLOAD_IN_PROGRESS.value +
+            " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT + " IN " + DELAYED_RESULTS + ")";
+    private static final String FAILED_BUT_NOT_DELAYED_SELECTION =
+        ProviderTableMeta.UPLOADS_STATUS + " = " + UploadStatus.UPLOAD_FAILED.value + AND +
+            ProviderTableMeta.UPLOADS_LAST_RESULT + " NOT IN " + DELAYED_RESULTS;
+    private static final String FINISHED_SELECTION =
+        ProviderTableMeta.UPLOADS_STATUS + " = " + UploadStatus.UPLOAD_SUCCEEDED.value;
+
+    private static UploadsChangeFeed changeFeed;
 
     private ContentResolver mContentResolver;
     private CurrentAccountProvider currentAccountProvider;
@@ -81,6 +113,67 @@ public class UploadsStorageManager extends Observable {
     public long storeUpload(OCUpload ocUpload) {
         Log_OC.v(TAG, "Inserting " + ocUpload.getLocalPath() + " with status=" + ocUpload.getUploadStatus());
 
+        ContentValues cv = createInsertValues(ocUpload);
+        Uri result = getDB().insert(ProviderTableMeta.CONTENT_URI_UPLOADS, cv);
+
+        Log_OC.d(TAG, "storeUpload returns with: " + result + " for file: " + ocUpload.getLocalPath());
+        if (result == null) {
+            Log_OC.e(TAG, "Failed to insert item " + ocUpload.getLocalPath() + " into upload db.");
+            return -1;
+        } else {
+            long new_id = Long.parseLong(result.getPathSegments().get(1));
+            ocUpload.setUploadId(new_id);
+            getChangeFeed().onInserted(new_id);
+            return new_id;
+        }
+    }
+
+    /**
+     * Stores new uploads in a single transaction.
+     *
+     * @param ocUploads uploads to store; ids of stored uploads are set
+     * @return ids of stored uploads in order of given uploads, -1 for uploads which could not be stored
+     */
+    public long[] storeUploads(List<OCUpload> ocUploads) {
+        Log_OC.v(TAG, "Inserting " + ocUploads.size() + " uploads");
+
+        long[] ids = new long[ocUploads.size()];
+        Arrays.fill(ids, -1);
+        if (ocUploads.isEmpty()) {
+            return ids;
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(ocUploads.size());
+        for (OCUpload ocUpload : ocUploads) {
+            operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_UPLOADS)
+                               .withValues(createInsertValues(ocUpload))
+                               .build());
+        }
+
+        ContentProviderResult[] results = null;
+        try {
+            results = getDB().applyBatch(MainApp.getAuthority(), operations);
+        } catch (OperationApplicationException | RemoteException e) {
+            Log_OC.e(TAG, "Failed to insert " + ocUploads.size() + " uploads into upload db.", e);
+        }
+
+        if (results != null) {
+            for (int i = 0; i < results.length; i++) {
+                Uri result = results[i].uri;
+                if (result == null) {
+                    Log_OC.e(TAG, "Failed to insert item " + ocUploads.get(i).getLocalPath() + " into upload db.");
+                } else {
+                    ids[i] = Long.parseLong(result.getPathSegments().get(1));
+                    ocUploads.get(i).setUploadId(ids[i]);
+                    getChangeFeed().onInserted(ids[i]);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    private ContentValues createInsertValues(OCUpload ocUpload) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.UPLOADS_LOCAL_PATH, ocUpload.getLocalPath());
         cv.put(ProviderTableMeta.UPLOADS_REMOTE_PATH, ocUpload.getRemotePath());
@@ -91,22 +184,12 @@ public class UploadsStorageManager extends Observable {
         cv.put(ProviderTableMeta.UPLOADS_NAME_COLLISION_POLICY, ocUpload.getNameCollisionPolicy().serialize());
         cv.put(ProviderTableMeta.UPLOADS_IS_CREATE_REMOTE_FOLDER, ocUpload.isCreateRemoteFolder() ? 1 : 0);
         cv.put(ProviderTableMeta.UPLOADS_LAST_RESULT, ocUpload.getLastResult().getValue());
+        cv.put(ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP, ocUpload.getUploadEndTimestamp());
         cv.put(ProviderTableMeta.UPLOADS_CREATED_BY, ocUpload.getCreatedBy());
         cv.put(ProviderTableMeta.UPLOADS_IS_WHILE_CHARGING_ONLY, ocUpload.isWhileChargingOnly() ? 1 : 0);
         cv.put(ProviderTableMeta.UPLOADS_IS_WIFI_ONLY, ocUpload.isUseWifiOnly() ? 1 : 0);
         cv.put(ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN, ocUpload.getFolderUnlockToken());
-        Uri result = getDB().insert(ProviderTableMeta.CONTENT_URI_UPLOADS, cv);
-
-        Log_OC.d(TAG, "storeUpload returns with: " + result + " for file: " + ocUpload.getLocalPath());
-        if (result == null) {
-            Log_OC.e(TAG, "Failed to insert item " + ocUpload.getLocalPath() + " into upload db.");
-            return -1;
-        } else {
-            long new_id = Long.parseLong(result.getPathSegments().get(1));
-            ocUpload.setUploadId(new_id);
-            notifyObserversNow();
-            return new_id;
-        }
+        return cv;
     }
 
     /**
@@ -138,21 +221,48 @@ public class UploadsStorageManager extends Observable {
         if (result != SINGLE_RESULT) {
             Log_OC.e(TAG, "Failed to update item " + ocUpload.getLocalPath() + " into upload db.");
         } else {
-            notifyObserversNow();
+            getChangeFeed().onUpdated(ocUpload.getUploadId());
         }
 
         return result;
     }
 
+    /**
+     * Stores the progress of a chunked upload, without notifying observers.
+     *
+     * @param uploadId           id of the upload
+     * @param chunkedUploadId    id of the upload folder on the server, null once the chunks are not needed anymore
+     * @param chunkSize          size of the chunks
+     * @param confirmedChunks    number of chunks confirmed by the server, counted from the start of the file
+     * @param sourceLastModified modification time of the local file the chunks were read from, in milliseconds
+     */
+    public void updateChunkState(long uploadId, @Nullable String chunkedUploadId, long chunkSize,
+                                 long confirmedChunks, long sourceLastModified) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.UPLOADS_CHUNKED_UPLOAD_ID, chunkedUploadId);
+        cv.put(ProviderTableMeta.UPLOADS_CHUNK_SIZE, chunkSize);
+        cv.put(ProviderTableMeta.UPLOADS_CONFIRMED_CHUNKS, confirmedChunks);
+        cv.put(ProviderTableMeta.UPLOADS_CHUNKED_SOURCE_LAST_MODIFIED, sourceLastModified);
+
+        int result = getDB().update(ProviderTableMeta.CONTENT_URI_UPLOADS,
+                                    cv,
+                                    ProviderTableMeta._ID + "=?",
+                                    new String[]{String.valueOf(uploadId)});
+        if (result != SINGLE_RESULT) {
+            Log_OC.e(TAG, "Failed to store chunk state of upload " + uploadId);
+        }
+    }
+
     private int updateUploadInternal(Cursor c, UploadStatus status, UploadResult result, String remotePath,
                                      String localPath) {
 
         int r = 0;
+        OCUploadCursorMapper mapper = new OCUploadCursorMapper(c);
         while (c.moveToNext()) {
             // read upload object and update
-            OCUpload upload = createOCUploadFromCursor(c);
+            OCUpload upload = mapper.map();
 
-            String path = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_PATH));
+            String path = upload.getLocalPath();
             Log_OC.v(
                     TAG,
                     "Updating " + path + " with status:" + status + " and result:"
@@ -217,12 +327,24 @@ public class UploadsStorageManager extends Observable {
 
     /**
      * Should be called when some value of this DB was changed. All observers
-     * are informed.
+     * are informed, listeners of the {@link #getChangeFeed() change feed} reload all uploads.
      */
     public void notifyObserversNow() {
         Log_OC.d(TAG, "notifyObserversNow");
         setChanged();
         notifyObservers();
+        getChangeFeed().onChangedAll();
+    }
+
+    /**
+     * @return feed of changes made to stored uploads by any instance, delivered on the main thread
+     */
+    public static synchronized UploadsChangeFeed getChangeFeed() {
+        if (changeFeed == null) {
+            changeFeed = new UploadsChangeFeed(new Handler(Looper.getMainLooper()),
+                                               UploadsChangeFeed.DEFAULT_BATCHES_PER_SECOND);
+        }
+        return changeFeed;
     }
 
     /**
@@ -253,7 +375,7 @@ public class UploadsStorageManager extends Observable {
                                    );
         Log_OC.d(TAG, "delete returns " + result + " for upload with id " + id);
         if (result > 0) {
-            notifyObserversNow();
+            getChangeFeed().onRemoved(id);
         }
         return result;
     }
@@ -301,6 +423,38 @@ public class UploadsStorageManager extends Observable {
         return getUploads(null, (String[]) null);
     }
 
+    /**
+     * @return stored uploads with the given ids, in no particular order; ids of removed uploads are skipped
+     */
+    public List<OCUpload> getUploadsByIds(Collection<Long> ids) {
+        List<OCUpload> uploads = new ArrayList<>(ids.size());
+        List<Long> remaining = new ArrayList<>(ids);
+        for (int start = 0; start < remaining.size(); start += MAX_IDS_PER_QUERY) {
+            List<Long> page = remaining.subList(start, Math.min(remaining.size(), start + MAX_IDS_PER_QUERY));
+            StringBuilder selection = new StringBuilder(ProviderTableMeta._ID).append(" IN (");
+            String[] selectionArgs = new String[page.size()];
+            for (int i = 0; i < page.size(); i++) {
+                selection.append(i == 0 ? "?" : ",?");
+                selectionArgs[i] = String.valueOf(page.get(i));
+            }
+            selection.append(')');
+
+            Cursor cursor = getDB().query(ProviderTableMeta.CONTENT_URI_UPLOADS,
+                                          null,
+                                          selection.toString(),
+                                          selectionArgs,
+                                          null);
+            if (cursor != null) {
+                OCUploadCursorMapper mapper = new OCUploadCursorMapper(cursor);
+                while (cursor.moveToNext()) {
+                    uploads.add(mapper.map());
+                }
+                cursor.close();
+            }
+        }
+        return uploads;
+    }
+
     public @Nullable
     OCUpload getUploadById(long id) {
         OCUpload result = null;
@@ -313,8 +467,9 @@ public class UploadsStorageManager extends Observable {
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
-                result = createOCUploadFromCursor(cursor);
+                result = new OCUploadCursorMapper(cursor).map();
             }
+            cursor.close();
         }
         Log_OC.d(TAG, "Retrieve job " + result + " for id " + id);
         return result;
@@ -358,18 +513,13 @@ public class UploadsStorageManager extends Observable {
                                     );
 
             if (c != null) {
-                if (c.moveToFirst()) {
-                    do {
-                        rowsRead++;
-                        rowsTotal++;
-                        lastRowID = c.getLong(c.getColumnIndex(ProviderTableMeta._ID));
-                        OCUpload upload = createOCUploadFromCursor(c);
-                        if (upload == null) {
-                            Log_OC.e(TAG, "OCUpload could not be created from cursor");
-                        } else {
-                            uploads.add(upload);
-                        }
-                    } while (c.moveToNext() && !c.isAfterLast());
+                OCUploadCursorMapper mapper = new OCUploadCursorMapper(c);
+                while (c.moveToNext()) {
+                    rowsRead++;
+                    rowsTotal++;
+                    OCUpload upload = mapper.map();
+                    lastRowID = upload.getUploadId();
+                    uploads.add(upload);
                 }
                 c.close();
                 Log_OC.v(TAG, String.format(Locale.ENGLISH,
@@ -395,40 +545,111 @@ public class UploadsStorageManager extends Observable {
         return uploads.toArray(new OCUpload[0]);
     }
 
-    private OCUpload createOCUploadFromCursor(Cursor c) {
-        OCUpload upload = null;
+    /**
+     * Returns a page of the uploads of an account matching the selection, ordered by status, by descending upload end
+     * timestamp and by id. Pages are addressed by the last upload of the previous page instead of an offset, so
+     * every page is read from the status index without skipping the rows of the previous pages.
+     *
+     * @param after last upload of the previous page, null for the first page
+     */
+    private List<OCUpload> getUploadsPage(String selection, String accountName, @Nullable OCUpload after, int limit) {
+        String pageSelection = "(" + selection + ")" + AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?";
+        String[] pageSelectionArgs;
+        if (after == null) {
+            pageSelectionArgs = new String[]{accountName};
+        } else {
+            pageSelection += AND + "(" + ProviderTableMeta.UPLOADS_STATUS + " > ? OR (" +
+                ProviderTableMeta.UPLOADS_STATUS + " = ?" + AND + "(" +
+                ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " < ? OR (" +
+                ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " = ?" + AND + ProviderTableMeta._ID + " > ?))))";
+            String status = String.valueOf(after.getUploadStatus().getValue());
+            String endTimestamp = String.valueOf(after.getUploadEndTimestamp());
+            pageSelectionArgs = new String[]{
+                accountName,
+                status,
+                status,
+                endTimestamp,
+                endTimestamp,
+                String.valueOf(after.getUploadId())
+            };
+        }
+
+        List<OCUpload> uploads = new ArrayList<>(limit);
+        Cursor c = getDB().query(ProviderTableMeta.CONTENT_URI_UPLOADS,
+                                 null,
+                                 pageSelection,
+                                 pageSelectionArgs,
+                                 String.format(Locale.ENGLISH, "%s ASC, %s DESC, %s ASC LIMIT %d",
+                                               ProviderTableMeta.UPLOADS_STATUS,
+                                               ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP,
+                                               ProviderTableMeta._ID,
+                                               limit));
         if (c != null) {
-            String localPath = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_PATH));
-            String remotePath = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_REMOTE_PATH));
-            String accountName = c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_ACCOUNT_NAME));
-            upload = new OCUpload(localPath, remotePath, accountName);
-
-            upload.setFileSize(c.getLong(c.getColumnIndex(ProviderTableMeta.UPLOADS_FILE_SIZE)));
-            upload.setUploadId(c.getLong(c.getColumnIndex(ProviderTableMeta._ID)));
-            upload.setUploadStatus(
-                    UploadStatus.fromValue(c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_STATUS)))
-            );
-            upload.setLocalAction(c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_LOCAL_BEHAVIOUR)));
-            upload.setNameCollisionPolicy(FileUploader.NameCollisionPolicy.deserialize(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.UPLOADS_NAME_COLLISION_POLICY))));
-            upload.setCreateRemoteFolder(c.getInt(
-                    c.getColumnIndex(ProviderTableMeta.UPLOADS_IS_CREATE_REMOTE_FOLDER)) == 1);
-            upload.setUploadEndTimestamp(c.getLong(c.getColumnIndex(ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP)));
-            upload.setLastResult(UploadResult.fromValue(
-                    c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_LAST_RESULT))));
-            upload.setCreatedBy(c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_CREATED_BY)));
-            upload.setUseWifiOnly(c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_IS_WIFI_ONLY)) == 1);
-            upload.setWhileChargingOnly(c.getInt(c.getColumnIndex(ProviderTableMeta.UPLOADS_IS_WHILE_CHARGING_ONLY))
-                    == 1);
-            upload.setFolderUnlockToken(c.getString(c.getColumnIndex(ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN)));
+            OCUploadCursorMapper mapper = new OCUploadCursorMapper(c);
+            while (c.moveToNext()) {
+                uploads.add(mapper.map());
+            }
+            c.close();
         }
-        return upload;
+        return uploads;
+    }
+
+    private long countUploads(String selection, String accountName) {
+        long count = 0;
+        Cursor c = getDB().query(ProviderTableMeta.CONTENT_URI_UPLOADS,
+                                 new String[]{"count(*)"},
+                                 "(" + selection + ")" + AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
+                                 new String[]{accountName},
+                                 null);
+        if (c != null) {
+            if (c.moveToFirst()) {
+                count = c.getLong(0);
+            }
+            c.close();
+        }
+        return count;
+    }
+
+    /**
+     * @param after last upload of the previous page, null for the first page
+     * @return page of the current and pending uploads of the account, see {@link #getUploadsPage}
+     */
+    public List<OCUpload> getCurrentAndPendingUploadsPage(String accountName, @Nullable OCUpload after, int limit) {
+        return getUploadsPage(CURRENT_AND_PENDING_SELECTION, accountName, after, limit);
+    }
+
+    public long countCurrentAndPendingUploads(String accountName) {
+        return countUploads(CURRENT_AND_PENDING_SELECTION, accountName);
+    }
+
+    /**
+     * @param after last upload of the previous page, null for the first page
+     * @return page of the failed but not delayed uploads of the account, see {@link #getUploadsPage}
+     */
+    public List<OCUpload> getFailedButNotDelayedUploadsPage(String accountName, @Nullable OCUpload after, int limit) {
+        return getUploadsPage(FAILED_BUT_NOT_DELAYED_SELECTION, accountName, after, limit);
+    }
+
+    public long countFailedButNotDelayedUploads(String accountName) {
+        return countUploads(FAILED_BUT_NOT_DELAYED_SELECTION, accountName);
+    }
+
+    /**
+     * @param after last upload of the previous page, null for the first page
+     * @return page of the successfully completed uploads of the account, see {@link #getUploadsPage}
+     */
+    public List<OCUpload> getFinishedUploadsPage(String accountName, @Nullable OCUpload after, int limit) {
+        return getUploadsPage(FINISHED_SELECTION, accountName, after, limit);
+    }
+
+    public long countFinishedUploads(String accountName) {
+        return countUploads(FINISHED_SELECTION, accountName);
     }
 
     public OCUpload[] getCurrentAndPendingUploadsForCurrentAccount() {
         User user = currentAccountProvider.getUser();
 
-        return getUploads(ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_IN_PROGRESS.value +
+        return getUploads("(" + ProviderTableMeta.UPLOADS_STATUS + "==" + UploadStatus.UPLOAD_IN_PROGRESS.value +
                         " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
                         "==" + UploadResult.DELAYED_FOR_WIFI.getValue() +
                         " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
@@ -437,7 +658,7 @@ public class UploadsStorageManager extends Observable {
                         "==" + UploadResult.DELAYED_FOR_CHARGING.getValue() +
                         " OR " + ProviderTableMeta.UPLOADS_LAST_RESULT +
                         "==" + UploadResult.DELAYED_IN_POWER_SAVE_MODE.getValue() +
-                        " AND " + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
+                        ")" + AND + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "== ?",
                         user.getAccountName());
     }
 
@@ -640,18 +861,24 @@ public class UploadsStorageManager extends Observable {
     @VisibleForTesting
     public int removeAllUploads() {
         Log_OC.v(TAG, "Delete all uploads!");
-        return getDB().delete(
+        int result = getDB().delete(
             ProviderTableMeta.CONTENT_URI_UPLOADS,
             "",
             new String[]{});
+        getChangeFeed().onChangedAll();
+        return result;
     }
 
     public int removeAccountUploads(Account account) {
         Log_OC.v(TAG, "Delete all uploads for account " + account.name);
-        return getDB().delete(
+        int result = getDB().delete(
             ProviderTableMeta.CONTENT_URI_UPLOADS,
             ProviderTableMeta.UPLOADS_ACCOUNT_NAME + "=?",
             new String[]{account.name});
+        if (result > 0) {
+            getChangeFeed().onChangedAll();
+        }
+        return result;
     }
 
     public enum UploadStatus {
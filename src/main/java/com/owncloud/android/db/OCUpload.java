@@ -121,6 +121,26 @@ public class OCUpload implements Parcelable {
      */
     private String folderUnlockToken;
 
+    /**
+     * Id of the upload folder on the server holding the chunks of an interrupted chunked upload, null if none
+     */
+    private String chunkedUploadId;
+
+    /**
+     * Size of the chunks of the interrupted chunked upload
+     */
+    private long chunkSize;
+
+    /**
+     * Number of chunks confirmed by the server, counted from the start of the file
+     */
+    private long confirmedChunks;
+
+    /**
+     * Modification time of the local file the confirmed chunks were read from, in milliseconds
+     */
+    private long chunkedSourceLastModified;
+
     /**
      * temporary values, used for sorting
      */
@@ -180,6 +200,10 @@ public class OCUpload implements Parcelable {
         useWifiOnly = true;
         whileChargingOnly = false;
         folderUnlockToken = "";
+        chunkedUploadId = null;
+        chunkSize = 0;
+        confirmedChunks = 0;
+        chunkedSourceLastModified = 0;
     }
 
     public void setDataFixed(FileUploader.FileUploaderBinder binder) {
@@ -298,6 +322,10 @@ public class OCUpload implements Parcelable {
         useWifiOnly = source.readInt() == 1;
         whileChargingOnly = source.readInt() == 1;
         folderUnlockToken = source.readString();
+        chunkedUploadId = source.readString();
+        chunkSize = source.readLong();
+        confirmedChunks = source.readLong();
+        chunkedSourceLastModified = source.readLong();
     }
 
     @Override
@@ -342,6 +370,10 @@ public class OCUpload implements Parcelable {
         dest.writeInt(useWifiOnly ? 1 : 0);
         dest.writeInt(whileChargingOnly ? 1 : 0);
         dest.writeString(folderUnlockToken);
+        dest.writeString(chunkedUploadId);
+        dest.writeLong(chunkSize);
+        dest.writeLong(confirmedChunks);
+        dest.writeLong(chunkedSourceLastModified);
     }
 
     public long getUploadId() {
@@ -404,6 +436,22 @@ public class OCUpload implements Parcelable {
         return this.folderUnlockToken;
     }
 
+    public String getChunkedUploadId() {
+        return this.chunkedUploadId;
+    }
+
+    public long getChunkSize() {
+        return this.chunkSize;
+    }
+
+    public long getConfirmedChunks() {
+        return this.confirmedChunks;
+    }
+
+    public long getChunkedSourceLastModified() {
+        return this.chunkedSourceLastModified;
+    }
+
     public void setUploadId(long uploadId) {
         this.uploadId = uploadId;
     }
@@ -452,5 +500,16 @@ public class OCUpload implements Parcelable {
         this.folderUnlockToken = folderUnlockToken;
     }
 
+    /**
+     * Sets the state of a chunked upload; a null id means no chunks are kept on the server.
+     */
+    public void setChunkState(String chunkedUploadId, long chunkSize, long confirmedChunks,
+                              long chunkedSourceLastModified) {
+        this.chunkedUploadId = chunkedUploadId;
+        this.chunkSize = chunkSize;
+        this.confirmedChunks = confirmedChunks;
+        this.chunkedSourceLastModified = chunkedSourceLastModified;
+    }
+
     enum CanUploadFileNowStatus {NOW, LATER, FILE_GONE, ERROR}
 }
@@ -35,7 +35,7 @@ import java.util.List;
  */
 public class ProviderMeta {
     public static final String DB_NAME = "filelist";
-    public static final int DB_VERSION = 62;
+    public static final int DB_VERSION = 65;
 
     private ProviderMeta() {
         // No instance
@@ -129,6 +129,7 @@ public class ProviderMeta {
             FILE_CONTENT_TYPE,
             FILE_STORAGE_PATH,
             FILE_PATH,
+            FILE_PATH_DECRYPTED,
             FILE_ACCOUNT_OWNER,
             FILE_LAST_SYNC_DATE,
             FILE_LAST_SYNC_DATE_FOR_DATA,
@@ -146,6 +147,9 @@ public class ProviderMeta {
             FILE_MOUNT_TYPE,
             FILE_HAS_PREVIEW,
             FILE_UNREAD_COMMENTS_COUNT,
+            FILE_OWNER_ID,
+            FILE_OWNER_DISPLAY_NAME,
+            FILE_NOTE,
             FILE_SHAREES,
             FILE_RICH_WORKSPACE));
 
@@ -247,6 +251,10 @@ public class ProviderMeta {
         public static final String UPLOADS_IS_WHILE_CHARGING_ONLY = "is_while_charging_only";
         public static final String UPLOADS_IS_WIFI_ONLY = "is_wifi_only";
         public static final String UPLOADS_FOLDER_UNLOCK_TOKEN = "folder_unlock_token";
+        public static final String UPLOADS_CHUNKED_UPLOAD_ID = "chunked_upload_id";
+        public static final String UPLOADS_CHUNK_SIZE = "chunk_size";
+        public static final String UPLOADS_CONFIRMED_CHUNKS = "confirmed_chunks";
+        public static final String UPLOADS_CHUNKED_SOURCE_LAST_MODIFIED = "chunked_source_last_modified";
 
         // Columns of synced folder table
         public static final String SYNCED_FOLDER_LOCAL_PATH = "local_path";
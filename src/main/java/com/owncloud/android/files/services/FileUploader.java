@@ -53,6 +53,7 @@ import com.nextcloud.client.device.BatteryStatus;
 import com.nextcloud.client.device.PowerManagementService;
 import com.nextcloud.client.network.Connectivity;
 import com.nextcloud.client.network.ConnectivityService;
+import com.nextcloud.client.preferences.AppPreferences;
 import com.nextcloud.java.util.Optional;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.R;
@@ -77,14 +78,19 @@ import com.owncloud.android.ui.activity.ConflictsResolveActivity;
 import com.owncloud.android.ui.activity.UploadListActivity;
 import com.owncloud.android.ui.notifications.NotificationUtils;
 import com.owncloud.android.utils.ErrorMessageAdapter;
+import com.owncloud.android.utils.FileStorageUtils;
 import com.owncloud.android.utils.theme.ThemeColorUtils;
 
 import java.io.File;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -105,9 +111,10 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  *
  * Every file passed to this service is uploaded. No filtering is performed. However, Intent keys (e.g., KEY_WIFI_ONLY)
  * are obeyed.
+ *
+ * Several uploads run in parallel, see {@link UploadScheduler}.
  */
-public class FileUploader extends Service
-    implements OnDatatransferProgressListener, OnAccountsUpdateListener, UploadFileOperation.OnRenameListener {
+public class FileUploader extends Service implements OnAccountsUpdateListener {
 
     private static final String TAG = FileUploader.class.getSimpleName();
 
@@ -174,6 +181,22 @@ public class FileUploader extends Service
      */
     public static final String KEY_DISABLE_RETRIES = "DISABLE_RETRIES";
 
+    /**
+     * Maximum number of new files sent to the service in a single intent, keeps intents well below binder
+     * transaction size limit.
+     */
+    public static final int MAX_FILES_PER_INTENT = 500;
+
+    /**
+     * Default number of uploads run in parallel on unmetered networks, see {@link AppPreferences#getParallelUploads()}.
+     */
+    public static final int DEFAULT_PARALLEL_UPLOADS = UploadScheduler.DEFAULT_UNMETERED_UPLOADS;
+
+    /**
+     * Maximum number of uploads run in parallel on metered networks.
+     */
+    public static final int DEFAULT_METERED_PARALLEL_UPLOADS = UploadScheduler.DEFAULT_METERED_UPLOADS;
+
     public static final int LOCAL_BEHAVIOUR_COPY = 0;
     public static final int LOCAL_BEHAVIOUR_MOVE = 1;
     public static final int LOCAL_BEHAVIOUR_FORGET = 2;
@@ -184,33 +207,31 @@ public class FileUploader extends Service
     private Looper mServiceLooper;
     private ServiceHandler mServiceHandler;
     private IBinder mBinder;
-    private OwnCloudClient mUploadClient;
-    private Account mCurrentAccount;
-    private FileDataStorageManager mStorageManager;
+    private UploadScheduler mUploadScheduler;
+    private volatile int mLastStartId;
 
     @Inject UserAccountManager accountManager;
     @Inject UploadsStorageManager mUploadsStorageManager;
     @Inject ConnectivityService connectivityService;
     @Inject PowerManagementService powerManagementService;
     @Inject LocalBroadcastManager localBroadcastManager;
+    @Inject AppPreferences preferences;
 
     private IndexedForest<UploadFileOperation> mPendingUploads = new IndexedForest<>();
 
     /**
-     * {@link UploadFileOperation} object of ongoing upload. Can be null. Note: There can only be one concurrent
-     * upload!
+     * {@link UploadFileOperation} objects of ongoing uploads.
      */
-    private UploadFileOperation mCurrentUpload;
+    private final Set<UploadFileOperation> mCurrentUploads = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
     private NotificationManager mNotificationManager;
     private NotificationCompat.Builder mNotificationBuilder;
-    private int mLastPercent;
+    private final UploadsProgress mUploadsProgress = new UploadsProgress();
 
 
-    @Override
-    public void onRenameUpload() {
-        mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
-        sendBroadcastUploadStarted(mCurrentUpload);
+    private void onRenameUpload(UploadFileOperation upload) {
+        mUploadsStorageManager.updateDatabaseUploadStart(upload);
+        sendBroadcastUploadStarted(upload);
     }
 
     /**
@@ -227,6 +248,11 @@ public class FileUploader extends Service
         mServiceLooper = thread.getLooper();
         mServiceHandler = new ServiceHandler(mServiceLooper, this);
         mBinder = new FileUploaderBinder();
+        int parallelUploads = preferences.getParallelUploads();
+        mUploadScheduler = new UploadScheduler(connectivityService,
+                                               parallelUploads,
+                                               Math.min(parallelUploads, DEFAULT_METERED_PARALLEL_UPLOADS),
+                                               this::onUploadsFinished);
 
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this).setContentTitle(
             getApplicationContext().getResources().getString(R.string.app_name))
@@ -270,6 +296,7 @@ public class FileUploader extends Service
         mBinder = null;
         mServiceHandler = null;
         mServiceLooper.quit();
+        mUploadScheduler.shutdown();
         mServiceLooper = null;
         if (mNotificationManager != null) {
             mNotificationManager.cancel(FOREGROUND_SERVICE_ID);
@@ -295,6 +322,11 @@ public class FileUploader extends Service
 
         startForeground(FOREGROUND_SERVICE_ID, mNotification);
 
+        // setting may have changed since the service was created
+        int parallelUploads = preferences.getParallelUploads();
+        mUploadScheduler.setParallelUploads(parallelUploads,
+                                            Math.min(parallelUploads, DEFAULT_METERED_PARALLEL_UPLOADS));
+
         if (intent == null) {
             Log_OC.e(TAG, "Intent is null");
             return Service.START_NOT_STICKY;
@@ -340,12 +372,13 @@ public class FileUploader extends Service
         }
 
         if (requestedUploads.size() > 0) {
-            Message msg = mServiceHandler.obtainMessage();
+            Message msg = mServiceHandler.obtainMessage(ServiceHandler.MSG_UPLOADS);
             msg.arg1 = startId;
             msg.obj = requestedUploads;
             mServiceHandler.sendMessage(msg);
             sendBroadcastUploadsAdded();
         }
+        mLastStartId = startId;
         return Service.START_NOT_STICKY;
     }
 
@@ -419,10 +452,12 @@ public class FileUploader extends Service
         int createdBy = intent.getIntExtra(KEY_CREATED_BY, UploadFileOperation.CREATED_BY_USER);
         boolean disableRetries = intent.getBooleanExtra(KEY_DISABLE_RETRIES, true);
         try {
+            List<Pair<OCUpload, UploadFileOperation>> newUploads = new ArrayList<>(files.length);
             for (OCFile file : files) {
                 startNewUpload(
                     user,
                     requestedUploads,
+                    newUploads,
                     onWifiOnly,
                     whileChargingOnly,
                     nameCollisionPolicy,
@@ -433,6 +468,7 @@ public class FileUploader extends Service
                     disableRetries
                               );
             }
+            storeNewUploads(newUploads);
         } catch (IllegalArgumentException e) {
             Log_OC.e(TAG, "Not enough information provided in intent: " + e.getMessage());
             return START_NOT_STICKY;
@@ -447,11 +483,12 @@ public class FileUploader extends Service
     }
 
     /**
-     * Start a new {@link UploadFileOperation}.
+     * Start a new {@link UploadFileOperation}. The upload has to be stored by {@link #storeNewUploads(List)}.
      */
     private void startNewUpload(
         User user,
         List<String> requestedUploads,
+        List<Pair<OCUpload, UploadFileOperation>> newUploads,
         boolean onWifiOnly,
         boolean whileChargingOnly,
         NameCollisionPolicy nameCollisionPolicy,
@@ -489,10 +526,7 @@ public class FileUploader extends Service
         if (isCreateRemoteFolder) {
             newUpload.setRemoteFolderToBeCreated();
         }
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
-
-        newUpload.addRenameUploadListener(this);
+        addUploadListeners(newUpload);
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             user.getAccountName(),
@@ -502,10 +536,35 @@ public class FileUploader extends Service
 
         if (putResult != null) {
             requestedUploads.add(putResult.first);
+            newUploads.add(new Pair<>(ocUpload, newUpload));
+        }
+    }
 
-            // Save upload in database
-            long id = mUploadsStorageManager.storeUpload(ocUpload);
-            newUpload.setOCUploadId(id);
+    private void addUploadListeners(final UploadFileOperation upload) {
+        final FileUploaderBinder binder = (FileUploaderBinder) mBinder;
+        upload.addDataTransferProgressListener(
+            (progressRate, totalTransferredSoFar, totalToTransfer, fileName) ->
+                onTransferProgress(upload, totalTransferredSoFar, totalToTransfer)
+        );
+        upload.addDataTransferProgressListener(
+            (progressRate, totalTransferredSoFar, totalToTransfer, fileName) ->
+                binder.onTransferProgress(upload, progressRate, totalTransferredSoFar, totalToTransfer, fileName)
+        );
+        upload.addRenameUploadListener(() -> onRenameUpload(upload));
+    }
+
+    /**
+     * Saves new uploads in database, all of them in a single transaction.
+     */
+    private void storeNewUploads(List<Pair<OCUpload, UploadFileOperation>> newUploads) {
+        List<OCUpload> ocUploads = new ArrayList<>(newUploads.size());
+        for (Pair<OCUpload, UploadFileOperation> newUpload : newUploads) {
+            ocUploads.add(newUpload.first);
+        }
+
+        long[] ids = mUploadsStorageManager.storeUploads(ocUploads);
+        for (int i = 0; i < ids.length; i++) {
+            newUploads.get(i).second.setOCUploadId(ids[i]);
         }
     }
 
@@ -535,10 +594,7 @@ public class FileUploader extends Service
             true
         );
 
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
-
-        newUpload.addRenameUploadListener(this);
+        addUploadListeners(newUpload);
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             user.getAccountName(),
@@ -577,94 +633,147 @@ public class FileUploader extends Service
 
     @Override
     public void onAccountsUpdated(Account[] accounts) {
-        // Review current upload, and cancel it if its account doesn't exist
-        if (mCurrentUpload != null && !accountManager.exists(mCurrentUpload.getAccount())) {
-            mCurrentUpload.cancel(ResultCode.ACCOUNT_NOT_FOUND);
+        // Review current uploads, and cancel them if their account doesn't exist
+        for (UploadFileOperation currentUpload : mCurrentUploads) {
+            if (!accountManager.exists(currentUpload.getAccount())) {
+                currentUpload.cancel(ResultCode.ACCOUNT_NOT_FOUND);
+            }
         }
         // The rest of uploads are cancelled when they try to start
     }
 
     /**
-     * Core upload method: sends the file(s) to upload
+     * Hands the requested uploads over to the {@link UploadScheduler}. Uploads into end-to-end encrypted folders are
+     * ordered per folder, as they need to lock it.
+     *
+     * @param uploadKeys Keys to access the uploads to perform, contained in mPendingUploads
+     */
+    private void scheduleUploads(List<String> uploadKeys) {
+        Map<String, FileDataStorageManager> storageManagers = new HashMap<>();
+        Map<String, Boolean> encryptedFolders = new HashMap<>();
+
+        for (final String uploadKey : uploadKeys) {
+            UploadFileOperation upload = mPendingUploads.get(uploadKey);
+            if (upload == null) {
+                continue;   // cancelled in the meantime
+            }
+
+            String accountName = upload.getAccount().name;
+            FileDataStorageManager storageManager = storageManagers.get(accountName);
+            if (storageManager == null) {
+                storageManager = new FileDataStorageManager(upload.getAccount(), getContentResolver());
+                storageManagers.put(accountName, storageManager);
+            }
+
+            String folderKey = accountName + upload.getFile().getParentRemotePath();
+            Boolean encrypted = encryptedFolders.get(folderKey);
+            if (encrypted == null) {
+                encrypted = isEncryptedFolder(upload.getFile().getParentRemotePath(), storageManager);
+                encryptedFolders.put(folderKey, encrypted);
+            }
+
+            mUploadScheduler.schedule(accountName, encrypted ? folderKey : null, () -> uploadFile(uploadKey));
+        }
+    }
+
+    /**
+     * Checks the folder, or its closest ancestor known locally if it still has to be created.
+     */
+    private static boolean isEncryptedFolder(String remotePath, FileDataStorageManager storageManager) {
+        String path = remotePath;
+        OCFile folder = storageManager.getFileByDecryptedRemotePath(path);
+        while (folder == null && !OCFile.ROOT_PATH.equals(path)) {
+            path = new File(path).getParent();
+            if (!path.endsWith(OCFile.PATH_SEPARATOR)) {
+                path += OCFile.PATH_SEPARATOR;
+            }
+            folder = storageManager.getFileByDecryptedRemotePath(path);
+        }
+        return folder != null && FileStorageUtils.checkEncryptionStatus(folder, storageManager);
+    }
+
+    /**
+     * Called by the {@link UploadScheduler} when all uploads are done.
+     */
+    private void onUploadsFinished() {
+        ServiceHandler serviceHandler = mServiceHandler;
+        if (serviceHandler != null) {
+            Message msg = serviceHandler.obtainMessage(ServiceHandler.MSG_STOP_IF_IDLE);
+            msg.arg1 = mLastStartId;
+            serviceHandler.sendMessage(msg);
+        }
+    }
+
+    /**
+     * Core upload method: sends the file(s) to upload. Called on the threads of the {@link UploadScheduler}.
      *
      * @param uploadKey Key to access the upload to perform, contained in mPendingUploads
      */
     public void uploadFile(String uploadKey) {
-        mCurrentUpload = mPendingUploads.get(uploadKey);
+        UploadFileOperation currentUpload = mPendingUploads.get(uploadKey);
 
-        if (mCurrentUpload != null) {
+        if (currentUpload != null) {
             /// Check account existence
-            if (!accountManager.exists(mCurrentUpload.getAccount())) {
-                Log_OC.w(TAG, "Account " + mCurrentUpload.getAccount().name +
+            if (!accountManager.exists(currentUpload.getAccount())) {
+                Log_OC.w(TAG, "Account " + currentUpload.getAccount().name +
                     " does not exist anymore -> cancelling all its uploads");
-                cancelUploadsForAccount(mCurrentUpload.getAccount());
+                cancelUploadsForAccount(currentUpload.getAccount());
                 return;
             }
 
+            mCurrentUploads.add(currentUpload);
+            Account currentAccount = currentUpload.getAccount();
+            FileDataStorageManager storageManager = new FileDataStorageManager(currentAccount, getContentResolver());
+
             /// OK, let's upload
-            mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
+            mUploadsStorageManager.updateDatabaseUploadStart(currentUpload);
 
-            notifyUploadStart(mCurrentUpload);
+            notifyUploadStart(currentUpload);
 
-            sendBroadcastUploadStarted(mCurrentUpload);
+            sendBroadcastUploadStarted(currentUpload);
 
             RemoteOperationResult uploadResult = null;
 
             try {
-                /// prepare client object to send the request to the ownCloud server
-                if (mCurrentAccount == null || !mCurrentAccount.equals(mCurrentUpload.getAccount())) {
-                    mCurrentAccount = mCurrentUpload.getAccount();
-                    mStorageManager = new FileDataStorageManager(mCurrentAccount, getContentResolver());
-                }   // else, reuse storage manager from previous operation
-
                 // always get client from client manager, to get fresh credentials in case of update
-                OwnCloudAccount ocAccount = new OwnCloudAccount(mCurrentAccount, this);
-                mUploadClient = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, this);
+                OwnCloudAccount ocAccount = new OwnCloudAccount(currentAccount, this);
+                OwnCloudClient uploadClient = OwnCloudClientManagerFactory.getDefaultSingleton()
+                    .getClientFor(ocAccount, this);
 
-
-//                // If parent folder is encrypted, upload file encrypted
-//                OCFile parent = mStorageManager.getFileByPath(mCurrentUpload.getFile().getParentRemotePath());
-
-//                if (parent.isEncrypted()) {
-//                    UploadEncryptedFileOperation uploadEncryptedFileOperation =
-//                            new UploadEncryptedFileOperation(parent, mCurrentUpload);
-//
-//                    uploadResult = uploadEncryptedFileOperation.execute(mUploadClient, mStorageManager);
-//                } else {
                 /// perform the regular upload
-                uploadResult = mCurrentUpload.execute(mUploadClient, mStorageManager);
-//                }
+                uploadResult = currentUpload.execute(uploadClient, storageManager);
             } catch (Exception e) {
                 Log_OC.e(TAG, "Error uploading", e);
                 uploadResult = new RemoteOperationResult(e);
             } finally {
                 Pair<UploadFileOperation, String> removeResult;
-                if (mCurrentUpload.wasRenamed()) {
+                if (currentUpload.wasRenamed()) {
                     removeResult = mPendingUploads.removePayload(
-                        mCurrentAccount.name,
-                        mCurrentUpload.getOldFile().getRemotePath()
+                        currentAccount.name,
+                        currentUpload.getOldFile().getRemotePath()
                     );
-                    // TODO: grant that name is also updated for mCurrentUpload.getOCUploadId
+                    // TODO: grant that name is also updated for currentUpload.getOCUploadId
 
                 } else {
-                    removeResult = mPendingUploads.removePayload(mCurrentAccount.name,
-                                                                 mCurrentUpload.getDecryptedRemotePath());
+                    removeResult = mPendingUploads.removePayload(currentAccount.name,
+                                                                 currentUpload.getDecryptedRemotePath());
                 }
+                mCurrentUploads.remove(currentUpload);
 
-                mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, mCurrentUpload);
+                mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, currentUpload);
 
                 /// notify result
-                notifyUploadResult(mCurrentUpload, uploadResult);
+                notifyUploadResult(currentUpload, uploadResult);
 
-                sendBroadcastUploadFinished(mCurrentUpload, uploadResult, removeResult.second);
+                sendBroadcastUploadFinished(currentUpload, uploadResult, removeResult.second);
             }
 
             // generate new Thumbnail
             final ThumbnailsCacheManager.ThumbnailGenerationTask task =
-                new ThumbnailsCacheManager.ThumbnailGenerationTask(mStorageManager, mCurrentAccount);
+                new ThumbnailsCacheManager.ThumbnailGenerationTask(storageManager, currentAccount);
 
-            File file = new File(mCurrentUpload.getOriginalStoragePath());
-            String remoteId = mCurrentUpload.getFile().getRemoteId();
+            File file = new File(currentUpload.getOriginalStoragePath());
+            String remoteId = currentUpload.getFile().getRemoteId();
 
             task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, remoteId));
         }
@@ -672,29 +781,34 @@ public class FileUploader extends Service
 
 
     /**
-     * Creates a status notification to show the upload progress
+     * Adds an upload to the status notification showing the progress of all ongoing uploads.
      *
      * @param upload Upload operation starting.
      */
-    private void notifyUploadStart(UploadFileOperation upload) {
-        // / create status notification with a progress bar
-        mLastPercent = 0;
-        mNotificationBuilder = NotificationUtils.newNotificationBuilder(this);
-        mNotificationBuilder
-            .setOngoing(true)
-            .setSmallIcon(R.drawable.notification_icon)
-            .setTicker(getString(R.string.uploader_upload_in_progress_ticker))
-            .setContentTitle(getString(R.string.uploader_upload_in_progress_ticker))
-            .setProgress(100, 0, false)
-            .setContentText(
-                String.format(getString(R.string.uploader_upload_in_progress_content), 0, upload.getFileName())
-            );
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            mNotificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+    private synchronized void notifyUploadStart(UploadFileOperation upload) {
+        // automatic uploads are shown once they really start (onTransferProgress is called), so that if they are
+        // discarded due to lack of Wifi, no notification is shown
+        mUploadsProgress.start(upload.getOCUploadId(),
+                               upload.getFileName(),
+                               upload.getFile().getFileLength(),
+                               !upload.isInstantPicture() && !upload.isInstantVideo());
+
+        if (mNotificationBuilder == null) {
+            // / create status notification with a progress bar
+            mNotificationBuilder = NotificationUtils.newNotificationBuilder(this);
+            mNotificationBuilder
+                .setOngoing(true)
+                .setSmallIcon(R.drawable.notification_icon)
+                .setTicker(getString(R.string.uploader_upload_in_progress_ticker))
+                .setContentTitle(getString(R.string.uploader_upload_in_progress_ticker))
+                .setProgress(UploadsProgress.MAX_PERCENT, 0, false);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                mNotificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+            }
         }
 
-        /// includes a pending intent in the notification showing the details
+        /// includes a pending intent in the notification showing the details of the last started upload
         Intent intent = UploadListActivity.createIntent(upload.getFile(),
                                                         upload.getAccount(),
                                                         Intent.FLAG_ACTIVITY_CLEAR_TOP,
@@ -705,39 +819,51 @@ public class FileUploader extends Service
                                                                         0)
                                              );
 
-        if (!upload.isInstantPicture() && !upload.isInstantVideo()) {
-            if (mNotificationManager == null) {
-                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-            }
-
-            mNotificationManager.notify(FOREGROUND_SERVICE_ID, mNotificationBuilder.build());
-        }   // else wait until the upload really start (onTransferProgress is called), so that if it's discarded
-        // due to lack of Wifi, no notification is shown
-        // TODO generalize for automated uploads
+        updateProgressNotification();
     }
 
     /**
      * Callback method to update the progress bar in the status notification
      */
-    @Override
-    public void onTransferProgress(
-        long progressRate,
+    private synchronized void onTransferProgress(
+        UploadFileOperation upload,
         long totalTransferredSoFar,
-        long totalToTransfer,
-        String filePath
+        long totalToTransfer
     ) {
-        int percent = (int) (100.0 * ((double) totalTransferredSoFar) / ((double) totalToTransfer));
-        if (percent != mLastPercent) {
-            mNotificationBuilder.setProgress(100, percent, false);
-            String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
-            String text = String.format(getString(R.string.uploader_upload_in_progress_content), percent, fileName);
-            mNotificationBuilder.setContentText(text);
-            if (mNotificationManager == null) {
-                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-            }
-            mNotificationManager.notify(FOREGROUND_SERVICE_ID, mNotificationBuilder.build());
+        mUploadsProgress.update(upload.getOCUploadId(), totalTransferredSoFar, totalToTransfer);
+        updateProgressNotification();
+    }
+
+    /**
+     * Shows the combined progress of ongoing uploads, if it changed. Only called while holding the lock of this.
+     */
+    private void updateProgressNotification() {
+        if (mNotificationBuilder == null || !mUploadsProgress.showIfChanged()) {
+            return;
+        }
+        int count = mUploadsProgress.getCount();
+        if (count == 0) {
+            return;
         }
-        mLastPercent = percent;
+
+        int percent = mUploadsProgress.getPercent();
+        String text;
+        if (count == 1) {
+            text = String.format(getString(R.string.uploader_upload_in_progress_content),
+                                 percent,
+                                 mUploadsProgress.getFileName());
+        } else {
+            text = getResources().getQuantityString(R.plurals.uploader_upload_in_progress_files_content,
+                                                    count,
+                                                    percent,
+                                                    count);
+        }
+        mNotificationBuilder.setProgress(UploadsProgress.MAX_PERCENT, percent, false);
+        mNotificationBuilder.setContentText(text);
+        if (mNotificationManager == null) {
+            mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+        }
+        mNotificationManager.notify(FOREGROUND_SERVICE_ID, mNotificationBuilder.build());
     }
 
     /**
@@ -747,9 +873,11 @@ public class FileUploader extends Service
      * @param upload       Finished upload operation
      */
     @SuppressFBWarnings("DMI")
-    private void notifyUploadResult(UploadFileOperation upload, RemoteOperationResult uploadResult) {
+    private synchronized void notifyUploadResult(UploadFileOperation upload, RemoteOperationResult uploadResult) {
         Log_OC.d(TAG, "NotifyUploadResult with resultCode: " + uploadResult.getCode());
-        // cancelled operation or success -> silent removal of progress notification
+        // cancelled operation or success -> silent removal from progress notification
+        mUploadsProgress.finish(upload.getOCUploadId());
+        updateProgressNotification();
         if (mNotificationManager == null) {
             mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
         }
@@ -775,13 +903,20 @@ public class FileUploader extends Service
                 tickerId = R.string.uploader_upload_failed_sync_conflict_error;
             }
 
-            mNotificationBuilder
+            // progress notification is shared by ongoing uploads
+            NotificationCompat.Builder notificationBuilder = NotificationUtils.newNotificationBuilder(this);
+            notificationBuilder
+                .setSmallIcon(R.drawable.notification_icon)
                 .setTicker(getString(tickerId))
                 .setContentTitle(getString(tickerId))
                 .setAutoCancel(true)
                 .setOngoing(false)
                 .setProgress(0, 0, false);
 
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                notificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+            }
+
             content = ErrorMessageAdapter.getErrorCauseMessage(uploadResult, upload, getResources());
 
             if (needsToUpdateCredentials) {
@@ -798,7 +933,7 @@ public class FileUploader extends Service
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
                 updateAccountCredentials.addFlags(Intent.FLAG_FROM_BACKGROUND);
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(
+                notificationBuilder.setContentIntent(PendingIntent.getActivity(
                     this,
                     (int) System.currentTimeMillis(),
                     updateAccountCredentials,
@@ -819,16 +954,16 @@ public class FileUploader extends Service
                                                              this);
                 }
 
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this,
-                                                                                (int) System.currentTimeMillis(),
-                                                                                intent,
-                                                                                0)
-                                                     );
+                notificationBuilder.setContentIntent(PendingIntent.getActivity(this,
+                                                                               (int) System.currentTimeMillis(),
+                                                                               intent,
+                                                                               0)
+                                                    );
             }
 
-            mNotificationBuilder.setContentText(content);
+            notificationBuilder.setContentText(content);
             if (!uploadResult.isSuccess()) {
-                mNotificationManager.notify((new SecureRandom()).nextInt(), mNotificationBuilder.build());
+                mNotificationManager.notify((new SecureRandom()).nextInt(), notificationBuilder.build());
             }
 
         }
@@ -939,7 +1074,8 @@ public class FileUploader extends Service
     }
 
     /**
-     * Upload multiple new files
+     * Upload multiple new files. Files are sent to the service in as few intents as possible, see
+     * {@link #MAX_FILES_PER_INTENT}.
      */
     public static void uploadNewFile(
         Context context,
@@ -953,6 +1089,37 @@ public class FileUploader extends Service
         boolean requiresWifi,
         boolean requiresCharging,
         NameCollisionPolicy nameCollisionPolicy
+    ) {
+        for (int start = 0; start < localPaths.length; start += MAX_FILES_PER_INTENT) {
+            int end = Math.min(localPaths.length, start + MAX_FILES_PER_INTENT);
+            startNewUploads(
+                context,
+                account,
+                Arrays.copyOfRange(localPaths, start, end),
+                Arrays.copyOfRange(remotePaths, start, end),
+                mimeTypes != null ? Arrays.copyOfRange(mimeTypes, start, end) : null,
+                behaviour,
+                createRemoteFolder,
+                createdBy,
+                requiresWifi,
+                requiresCharging,
+                nameCollisionPolicy
+            );
+        }
+    }
+
+    private static void startNewUploads(
+        Context context,
+        Account account,
+        String[] localPaths,
+        String[] remotePaths,
+        String[] mimeTypes,
+        Integer behaviour,
+        Boolean createRemoteFolder,
+        int createdBy,
+        boolean requiresWifi,
+        boolean requiresCharging,
+        NameCollisionPolicy nameCollisionPolicy
     ) {
         Intent intent = new Intent(context, FileUploader.class);
 
@@ -1149,12 +1316,12 @@ public class FileUploader extends Service
      *
      * It provides by itself the available operations.
      */
-    public class FileUploaderBinder extends Binder implements OnDatatransferProgressListener {
+    public class FileUploaderBinder extends Binder {
 
         /**
          * Map of listeners that will be reported about progress of uploads from a {@link FileUploaderBinder} instance
          */
-        private Map<String, OnDatatransferProgressListener> mBoundListeners = new HashMap<>();
+        private Map<String, OnDatatransferProgressListener> mBoundListeners = new ConcurrentHashMap<>();
 
         /**
          * Cancels a pending or current upload of a remote file.
@@ -1185,10 +1352,14 @@ public class FileUploader extends Service
         private void cancel(String accountName, String remotePath, @Nullable ResultCode resultCode) {
             Pair<UploadFileOperation, String> removeResult = mPendingUploads.remove(accountName, remotePath);
             UploadFileOperation upload = removeResult.first;
-            if (upload == null && mCurrentUpload != null && mCurrentAccount != null &&
-                mCurrentUpload.getRemotePath().startsWith(remotePath) && accountName.equals(mCurrentAccount.name)) {
-
-                upload = mCurrentUpload;
+            if (upload == null) {
+                for (UploadFileOperation currentUpload : mCurrentUploads) {
+                    if (currentUpload.getRemotePath().startsWith(remotePath) &&
+                        accountName.equals(currentUpload.getAccount().name)) {
+                        upload = currentUpload;
+                        break;
+                    }
+                }
             }
 
             if (upload != null) {
@@ -1212,10 +1383,10 @@ public class FileUploader extends Service
         public void cancel(Account account) {
             Log_OC.d(TAG, "Account= " + account.name);
 
-            if (mCurrentUpload != null) {
-                Log_OC.d(TAG, "Current Upload Account= " + mCurrentUpload.getAccount().name);
-                if (mCurrentUpload.getAccount().name.equals(account.name)) {
-                    mCurrentUpload.cancel(ResultCode.CANCELLED);
+            for (UploadFileOperation currentUpload : mCurrentUploads) {
+                Log_OC.d(TAG, "Current Upload Account= " + currentUpload.getAccount().name);
+                if (currentUpload.getAccount().name.equals(account.name)) {
+                    currentUpload.cancel(ResultCode.CANCELLED);
                 }
             }
 
@@ -1248,11 +1419,16 @@ public class FileUploader extends Service
         }
 
         public boolean isUploadingNow(OCUpload upload) {
-            return upload != null &&
-                mCurrentAccount != null &&
-                mCurrentUpload != null &&
-                upload.getAccountName().equals(mCurrentAccount.name) &&
-                upload.getRemotePath().equals(mCurrentUpload.getRemotePath());
+            if (upload == null) {
+                return false;
+            }
+            for (UploadFileOperation currentUpload : mCurrentUploads) {
+                if (upload.getAccountName().equals(currentUpload.getAccount().name) &&
+                    upload.getRemotePath().equals(currentUpload.getRemotePath())) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         /**
@@ -1335,14 +1511,14 @@ public class FileUploader extends Service
             }
         }
 
-        @Override
-        public void onTransferProgress(
+        private void onTransferProgress(
+            UploadFileOperation upload,
             long progressRate,
             long totalTransferredSoFar,
             long totalToTransfer,
             String fileName
         ) {
-            String key = buildRemoteName(mCurrentUpload.getAccount().name, mCurrentUpload.getFile().getRemotePath());
+            String key = buildRemoteName(upload.getAccount().name, upload.getFile().getRemotePath());
             OnDatatransferProgressListener boundListener = mBoundListeners.get(key);
 
             if (boundListener != null) {
@@ -1353,18 +1529,18 @@ public class FileUploader extends Service
             if (context != null) {
                 ResultCode cancelReason = null;
                 Connectivity connectivity = connectivityService.getConnectivity();
-                if (mCurrentUpload.isWifiRequired() && !connectivity.isWifi()) {
+                if (upload.isWifiRequired() && !connectivity.isWifi()) {
                     cancelReason = ResultCode.DELAYED_FOR_WIFI;
-                } else if (mCurrentUpload.isChargingRequired() && !powerManagementService.getBattery().isCharging()) {
+                } else if (upload.isChargingRequired() && !powerManagementService.getBattery().isCharging()) {
                     cancelReason = ResultCode.DELAYED_FOR_CHARGING;
-                } else if (!mCurrentUpload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
+                } else if (!upload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
                     cancelReason = ResultCode.DELAYED_IN_POWER_SAVE_MODE;
                 }
 
                 if (cancelReason != null) {
                     cancel(
-                        mCurrentUpload.getAccount().name,
-                        mCurrentUpload.getFile().getRemotePath(),
+                        upload.getAccount().name,
+                        upload.getFile().getRemotePath(),
                         cancelReason
                     );
                 }
@@ -1388,11 +1564,14 @@ public class FileUploader extends Service
 
 
     /**
-     * Upload worker. Performs the pending uploads in the order they were requested.
+     * Passes the requested uploads to the {@link UploadScheduler} and stops the service once all of them are done.
      *
      * Created with the Looper of a new thread, started in {@link FileUploader#onCreate()}.
      */
     private static class ServiceHandler extends Handler {
+        private static final int MSG_UPLOADS = 0;
+        private static final int MSG_STOP_IF_IDLE = 1;
+
         // don't make it a final class, and don't remove the static ; lint will
         // warn about a possible memory leak
         private FileUploader mService;
@@ -1410,14 +1589,15 @@ public class FileUploader extends Service
             @SuppressWarnings("unchecked")
             List<String> requestedUploads = (List<String>) msg.obj;
             if (msg.obj != null) {
-                for (String requestedUpload : requestedUploads) {
-                    mService.uploadFile(requestedUpload);
-                }
+                mService.scheduleUploads(requestedUploads);
+            }
+            // later commands either still have their uploads queued here or run them in the scheduler
+            if (mService.mUploadScheduler.isIdle() && msg.arg1 >= mService.mLastStartId && !hasMessages(MSG_UPLOADS)) {
+                Log_OC.d(TAG, "Stopping command after id " + msg.arg1);
+                mService.mNotificationManager.cancel(FOREGROUND_SERVICE_ID);
+                mService.stopForeground(true);
+                mService.stopSelf(msg.arg1);
             }
-            Log_OC.d(TAG, "Stopping command after id " + msg.arg1);
-            mService.mNotificationManager.cancel(FOREGROUND_SERVICE_ID);
-            mService.stopForeground(true);
-            mService.stopSelf(msg.arg1);
         }
     }
 }
@@ -0,0 +1,266 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import android.os.Process;
+
+import com.nextcloud.client.network.Connectivity;
+import com.nextcloud.client.network.ConnectivityService;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Runs uploads on a pool of threads.
+ *
+ * The number of parallel uploads depends on the current network, by default {@link #DEFAULT_UNMETERED_UPLOADS} on
+ * unmetered networks (usually Wi-Fi) and {@link #DEFAULT_METERED_UPLOADS} on metered ones. Accounts with pending uploads are served
+ * round-robin and none of them may take more than its share of the parallel uploads, so a long queue of one account
+ * does not hold back the others.
+ *
+ * Uploads scheduled with the same ordering key never run in parallel and are started in the order they were
+ * scheduled, e.g. uploads into an end-to-end encrypted folder, which need the folder lock and update its metadata.
+ */
+class UploadScheduler {
+
+    private static final String TAG = UploadScheduler.class.getSimpleName();
+
+    static final int DEFAULT_UNMETERED_UPLOADS = 4;
+    static final int DEFAULT_METERED_UPLOADS = 2;
+
+    private final ConnectivityService connectivityService;
+    private volatile int unmeteredUploads;
+    private volatile int meteredUploads;
+    private final Runnable onIdle;
+    private final ExecutorService executor;
+
+    /**
+     * Pending uploads per account; an account is moved to the end whenever one of its uploads is started.
+     */
+    private final LinkedHashMap<String, ArrayDeque<Task>> queues = new LinkedHashMap<>();
+    private final Map<String, Integer> runningPerAccount = new HashMap<>();
+    private final Set<String> runningOrderingKeys = new HashSet<>();
+    private int running;
+
+    /**
+     * @param connectivityService used to choose the number of parallel uploads
+     * @param unmeteredUploads    number of parallel uploads on unmetered networks
+     * @param meteredUploads      number of parallel uploads on metered networks
+     * @param onIdle              called on an upload thread after the last pending upload finished
+     */
+    UploadScheduler(ConnectivityService connectivityService, int unmeteredUploads, int meteredUploads,
+                    Runnable onIdle) {
+        this.connectivityService = connectivityService;
+        this.unmeteredUploads = Math.max(1, unmeteredUploads);
+        this.meteredUploads = Math.max(1, meteredUploads);
+        this.onIdle = onIdle;
+
+        // the number of threads is bounded by the number of running uploads
+        final AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "FileUploaderThread-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Changes the number of parallel uploads. Running uploads are completed, even if there are more of them than
+     * allowed now.
+     *
+     * @param unmeteredUploads number of parallel uploads on unmetered networks
+     * @param meteredUploads   number of parallel uploads on metered networks
+     */
+    void setParallelUploads(int unmeteredUploads, int meteredUploads) {
+        this.unmeteredUploads = Math.max(1, unmeteredUploads);
+        this.meteredUploads = Math.max(1, meteredUploads);
+        dispatch();
+    }
+
+    /**
+     * Queues an upload.
+     *
+     * @param accountName account the upload belongs to
+     * @param orderingKey uploads with equal keys run one after another; null if the upload may run at any time
+     * @param upload      performs the upload
+     */
+    void schedule(String accountName, @Nullable String orderingKey, Runnable upload) {
+        synchronized (this) {
+            ArrayDeque<Task> queue = queues.get(accountName);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(accountName, queue);
+            }
+            queue.add(new Task(accountName, orderingKey, upload));
+        }
+        dispatch();
+    }
+
+    /**
+     * @return true if no upload is pending or running
+     */
+    synchronized boolean isIdle() {
+        return running == 0 && queues.isEmpty();
+    }
+
+    /**
+     * @return number of uploads allowed to run in parallel on the current network
+     */
+    int getMaxRunning() {
+        Connectivity connectivity = connectivityService.getConnectivity();
+        return connectivity.isMetered() ? meteredUploads : unmeteredUploads;
+    }
+
+    /**
+     * Stops accepting uploads. Running uploads are completed, pending ones are dropped.
+     */
+    synchronized void shutdown() {
+        queues.clear();
+        executor.shutdown();
+    }
+
+    private void dispatch() {
+        int maxRunning = getMaxRunning();
+        synchronized (this) {
+            while (running < maxRunning && !executor.isShutdown()) {
+                Task task = pollNext(maxRunning);
+                if (task == null) {
+                    break;
+                }
+                start(task);
+            }
+        }
+    }
+
+    /**
+     * Takes the first startable upload of the first account, in round-robin order, that has not used up its share.
+     * Slots left over because other accounts have nothing startable are given to the remaining accounts.
+     */
+    @Nullable
+    private Task pollNext(int maxRunning) {
+        int accountShare = (maxRunning + activeAccounts() - 1) / activeAccounts();
+        Task task = pollNextWithin(accountShare);
+        if (task == null && accountShare < maxRunning) {
+            task = pollNextWithin(maxRunning);
+        }
+        return task;
+    }
+
+    @Nullable
+    private Task pollNextWithin(int accountShare) {
+        for (Map.Entry<String, ArrayDeque<Task>> account : queues.entrySet()) {
+            String accountName = account.getKey();
+            ArrayDeque<Task> queue = account.getValue();
+            if (getRunning(accountName) >= accountShare) {
+                continue;
+            }
+            Iterator<Task> tasks = queue.iterator();
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                if (task.orderingKey == null || !runningOrderingKeys.contains(task.orderingKey)) {
+                    tasks.remove();
+                    queues.remove(accountName);
+                    if (!queue.isEmpty()) {
+                        queues.put(accountName, queue);
+                    }
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int activeAccounts() {
+        int active = queues.size();
+        for (String accountName : runningPerAccount.keySet()) {
+            if (!queues.containsKey(accountName)) {
+                active++;
+            }
+        }
+        return Math.max(1, active);
+    }
+
+    private int getRunning(String accountName) {
+        Integer count = runningPerAccount.get(accountName);
+        return count == null ? 0 : count;
+    }
+
+    private void start(final Task task) {
+        running++;
+        runningPerAccount.put(task.accountName, getRunning(task.accountName) + 1);
+        if (task.orderingKey != null) {
+            runningOrderingKeys.add(task.orderingKey);
+        }
+        executor.execute(() -> {
+            try {
+                task.upload.run();
+            } catch (RuntimeException e) {
+                Log_OC.e(TAG, "Upload failed unexpectedly", e);
+            } finally {
+                finish(task);
+            }
+        });
+    }
+
+    private void finish(Task task) {
+        synchronized (this) {
+            running--;
+            int accountRunning = getRunning(task.accountName) - 1;
+            if (accountRunning > 0) {
+                runningPerAccount.put(task.accountName, accountRunning);
+            } else {
+                runningPerAccount.remove(task.accountName);
+            }
+            if (task.orderingKey != null) {
+                runningOrderingKeys.remove(task.orderingKey);
+            }
+        }
+        dispatch();
+        if (isIdle()) {
+            onIdle.run();
+        }
+    }
+
+    private static final class Task {
+        private final String accountName;
+        @Nullable private final String orderingKey;
+        private final Runnable upload;
+
+        private Task(String accountName, @Nullable String orderingKey, Runnable upload) {
+            this.accountName = accountName;
+            this.orderingKey = orderingKey;
+            this.upload = upload;
+        }
+    }
+}
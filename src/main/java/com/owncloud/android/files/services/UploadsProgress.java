@@ -0,0 +1,145 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Combined progress of the uploads running in parallel, shown in a single notification.
+ *
+ * Uploads are only counted once they are visible: uploads started by the user are visible right away, automatic
+ * uploads once they transferred data. This class is not thread-safe.
+ */
+class UploadsProgress {
+
+    static final int MAX_PERCENT = 100;
+
+    private static final class Progress {
+        private final String fileName;
+        private long transferred;
+        private long total;
+        private boolean visible;
+
+        private Progress(String fileName, long total, boolean visible) {
+            this.fileName = fileName;
+            this.total = total;
+            this.visible = visible;
+        }
+    }
+
+    private final Map<Long, Progress> uploads = new LinkedHashMap<>();
+
+    private int shownCount;
+    private int shownPercent;
+    @Nullable private String shownFileName;
+
+    /**
+     * @param uploadId id of the started upload
+     * @param fileName name of the uploaded file
+     * @param size     expected size of the upload
+     * @param visible  upload is shown before it transferred data
+     */
+    void start(long uploadId, String fileName, long size, boolean visible) {
+        uploads.put(uploadId, new Progress(fileName, size, visible));
+    }
+
+    /**
+     * Updates the progress of a started upload and makes it visible.
+     */
+    void update(long uploadId, long transferred, long total) {
+        Progress progress = uploads.get(uploadId);
+        if (progress != null) {
+            progress.transferred = transferred;
+            progress.total = total;
+            progress.visible = true;
+        }
+    }
+
+    void finish(long uploadId) {
+        uploads.remove(uploadId);
+    }
+
+    /**
+     * @return number of visible uploads
+     */
+    int getCount() {
+        int count = 0;
+        for (Progress progress : uploads.values()) {
+            if (progress.visible) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return transferred percentage of the total size of visible uploads
+     */
+    int getPercent() {
+        long transferred = 0;
+        long total = 0;
+        for (Progress progress : uploads.values()) {
+            if (progress.visible) {
+                transferred += progress.transferred;
+                total += progress.total;
+            }
+        }
+        return total > 0 ? (int) Math.min(MAX_PERCENT, MAX_PERCENT * transferred / total) : 0;
+    }
+
+    /**
+     * @return name of the uploaded file if exactly one upload is visible, null otherwise
+     */
+    @Nullable
+    String getFileName() {
+        String fileName = null;
+        for (Progress progress : uploads.values()) {
+            if (progress.visible) {
+                if (fileName != null) {
+                    return null;
+                }
+                fileName = progress.fileName;
+            }
+        }
+        return fileName;
+    }
+
+    /**
+     * Checks whether the shown progress is outdated and, if so, marks the current progress as shown.
+     *
+     * @return true if the number of visible uploads, their percentage or the file name changed since last shown
+     */
+    boolean showIfChanged() {
+        int count = getCount();
+        int percent = getPercent();
+        String fileName = getFileName();
+        if (count == shownCount && percent == shownPercent &&
+            (fileName == null ? shownFileName == null : fileName.equals(shownFileName))) {
+            return false;
+        }
+        shownCount = count;
+        shownPercent = percent;
+        shownFileName = fileName;
+        return true;
+    }
+}
@@ -40,7 +40,6 @@ import com.owncloud.android.utils.EncryptionUtils;
 import com.owncloud.android.utils.FileStorageUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -51,6 +50,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class DownloadFileOperation extends RemoteOperation {
     private static final String TAG = DownloadFileOperation.class.getSimpleName();
+    private static final String DECRYPTED_SUFFIX = ".decrypted";
 
     private Account account;
     private OCFile file;
@@ -193,15 +193,17 @@ public class DownloadFileOperation extends RemoteOperation {
                 byte[] authenticationTag = EncryptionUtils.decodeStringToBase64Bytes(metadata.getFiles()
                         .get(file.getEncryptedFileName()).getAuthenticationTag());
 
+                File decryptedFile = new File(tmpFile.getAbsolutePath() + DECRYPTED_SUFFIX);
                 try {
-                    byte[] decryptedBytes = EncryptionUtils.decryptFile(tmpFile, key, iv, authenticationTag);
-
-                    try (FileOutputStream fileOutputStream = new FileOutputStream(tmpFile)) {
-                        fileOutputStream.write(decryptedBytes);
-                    }
+                    EncryptionUtils.decryptFile(tmpFile, decryptedFile, key, iv, authenticationTag);
                 } catch (Exception e) {
                     return new RemoteOperationResult(e);
                 }
+
+                if (!tmpFile.delete()) {
+                    Log_OC.e(TAG, "Unable to delete encrypted file " + tmpFile.getAbsolutePath());
+                }
+                tmpFile = decryptedFile;
             }
             moved = tmpFile.renameTo(newFile);
             newFile.setLastModified(file.getModificationTimestamp());
@@ -0,0 +1,442 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.operations;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.OperationCancelledException;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult.ResultCode;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.jackrabbit.webdav.client.methods.DeleteMethod;
+import org.apache.jackrabbit.webdav.client.methods.MkColMethod;
+import org.apache.jackrabbit.webdav.client.methods.MoveMethod;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Uploads a file in chunks to an upload folder on the server, which assembles them when the upload folder is moved to
+ * the target path.
+ *
+ * Several chunks are sent at once. Whenever the chunks at the start of the file are confirmed by the server, the new
+ * state is passed to the {@link ChunkStateListener}, so a later instance can resume an interrupted upload after the
+ * confirmed chunks. Chunks are named by their index, so chunks sent again replace the ones sent before.
+ *
+ * If a {@link SourceCheck} is set, it is asked after the last chunk whether the file stayed unchanged while it was
+ * read. If not, the chunks are discarded instead of assembled, so the server never stores a torn file.
+ */
+public class ResumableChunkedUploadOperation extends RemoteOperation {
+
+    private static final String TAG = ResumableChunkedUploadOperation.class.getSimpleName();
+
+    public static final int DEFAULT_PARALLEL_CHUNKS = 3;
+
+    private static final String UPLOADS_PATH = "/remote.php/dav/uploads/";
+    private static final String FILES_PATH = "/remote.php/dav/files/";
+    private static final String ASSEMBLED_FILE = ".file";
+    private static final String OC_TOTAL_LENGTH_HEADER = "OC-Total-Length";
+    private static final String OC_X_OC_MTIME_HEADER = "X-OC-Mtime";
+    private static final String IF_MATCH_HEADER = "If-Match";
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int UPLOAD_ID_BYTES = 16;
+
+    /**
+     * Receives the state of the upload, to be stored for resuming it.
+     */
+    public interface ChunkStateListener {
+        /**
+         * @param chunkedUploadId id of the upload folder, null when the upload is finished or has to start over
+         * @param chunkSize       size of the chunks
+         * @param confirmedChunks number of chunks confirmed by the server, counted from the start of the file
+         */
+        void onChunkStateChanged(@Nullable String chunkedUploadId, long chunkSize, long confirmedChunks);
+    }
+
+    /**
+     * Tells whether the uploaded file changed since the upload started.
+     */
+    public interface SourceCheck {
+        boolean isUnchanged();
+    }
+
+    private final String localPath;
+    private final String remotePath;
+    private final String mimeType;
+    private final String etagInConflict;
+    private final String lastModificationTimestamp;
+    private final int parallelChunks;
+
+    private String chunkedUploadId;
+    private long chunkSize;
+    private long confirmedChunks;
+    @Nullable private ChunkStateListener chunkStateListener;
+    @Nullable private SourceCheck sourceCheck;
+    private boolean sourceChanged;
+
+    private final Set<OnDatatransferProgressListener> dataTransferListeners = new HashSet<>();
+    private final Set<HttpMethodBase> runningMethods = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final AtomicBoolean cancellationRequested = new AtomicBoolean(false);
+    private final AtomicLong transferredBytes = new AtomicLong();
+    private volatile ResultCode cancellationReason;
+
+    /**
+     * @param chunkedUploadId id of the upload folder of an interrupted upload, null to start a new upload
+     * @param chunkSize       size of the chunks; the stored one is used when resuming an upload
+     * @param confirmedChunks number of chunks confirmed for the interrupted upload
+     * @param parallelChunks  number of chunks sent at once
+     */
+    public ResumableChunkedUploadOperation(String localPath,
+                                           String remotePath,
+                                           String mimeType,
+                                           String etagInConflict,
+                                           String lastModificationTimestamp,
+                                           @Nullable String chunkedUploadId,
+                                           long chunkSize,
+                                           long confirmedChunks,
+                                           int parallelChunks) {
+        this.localPath = localPath;
+        this.remotePath = remotePath;
+        this.mimeType = mimeType;
+        this.etagInConflict = etagInConflict;
+        this.lastModificationTimestamp = lastModificationTimestamp;
+        this.chunkedUploadId = chunkedUploadId;
+        this.chunkSize = chunkSize;
+        this.confirmedChunks = chunkedUploadId == null ? 0 : confirmedChunks;
+        this.parallelChunks = Math.max(1, parallelChunks);
+    }
+
+    public void setChunkStateListener(@Nullable ChunkStateListener listener) {
+        chunkStateListener = listener;
+    }
+
+    public void setSourceCheck(@Nullable SourceCheck check) {
+        sourceCheck = check;
+    }
+
+    /**
+     * @return true if the upload failed because the {@link SourceCheck} found the file changed
+     */
+    public boolean isSourceChanged() {
+        return sourceChanged;
+    }
+
+    public void addDataTransferProgressListener(OnDatatransferProgressListener listener) {
+        synchronized (dataTransferListeners) {
+            dataTransferListeners.add(listener);
+        }
+    }
+
+    public void removeDataTransferProgressListener(OnDatatransferProgressListener listener) {
+        synchronized (dataTransferListeners) {
+            dataTransferListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Aborts the chunks being sent. Confirmed chunks are kept on the server.
+     *
+     * @param reason reason reported in the result, null for a plain cancellation
+     */
+    public void cancel(@Nullable ResultCode reason) {
+        cancellationReason = reason;
+        cancellationRequested.set(true);
+        for (HttpMethodBase method : runningMethods) {
+            method.abort();
+        }
+    }
+
+    @Override
+    protected RemoteOperationResult run(OwnCloudClient client) {
+        File file = new File(localPath);
+        long length = file.length();
+
+        try {
+            if (chunkedUploadId == null) {
+                chunkedUploadId = createUploadId();
+                confirmedChunks = 0;
+                notifyChunkState();
+            }
+            String uploadFolderUri = client.getBaseUri() + UPLOADS_PATH + Uri.encode(client.getUserId()) + "/" +
+                chunkedUploadId;
+
+            MkColMethod mkCol = new MkColMethod(uploadFolderUri);
+            int status = execute(client, mkCol);
+            if (status == HttpStatus.SC_CREATED && confirmedChunks > 0) {
+                Log_OC.d(TAG, "Upload folder of " + remotePath + " expired, starting over");
+                confirmedChunks = 0;
+                notifyChunkState();
+            } else if (status != HttpStatus.SC_CREATED && status != HttpStatus.SC_METHOD_NOT_ALLOWED) {
+                return new RemoteOperationResult(false, mkCol);
+            }
+
+            long chunkCount = Math.max(1, (length + chunkSize - 1) / chunkSize);
+            RemoteOperationResult result = uploadChunks(client, uploadFolderUri, file, chunkCount);
+            if (result.isSuccess() && sourceCheck != null && !sourceCheck.isUnchanged()) {
+                return discard(client, uploadFolderUri);
+            }
+            if (result.isSuccess()) {
+                result = assemble(client, uploadFolderUri, length);
+            }
+            return result;
+        } catch (Exception e) {
+            return cancellationRequested.get() ? createCancelledResult() : new RemoteOperationResult(e);
+        }
+    }
+
+    private RemoteOperationResult uploadChunks(OwnCloudClient client, String uploadFolderUri, File file,
+                                               long chunkCount) throws InterruptedException {
+        final long firstChunk = confirmedChunks;
+        final AtomicLong nextChunk = new AtomicLong(firstChunk);
+        final AtomicReference<RemoteOperationResult> failure = new AtomicReference<>();
+        final BitSet doneChunks = new BitSet();
+        transferredBytes.set(Math.min(firstChunk * chunkSize, file.length()));
+
+        List<Callable<Void>> workers = new ArrayList<>(parallelChunks);
+        for (int i = 0; i < parallelChunks; i++) {
+            workers.add(() -> {
+                long chunk = nextChunk.getAndIncrement();
+                while (chunk < chunkCount && failure.get() == null && !cancellationRequested.get()) {
+                    RemoteOperationResult result = uploadChunk(client, uploadFolderUri, file, chunk);
+                    if (result.isSuccess()) {
+                        onChunkConfirmed(doneChunks, firstChunk, chunk);
+                        chunk = nextChunk.getAndIncrement();
+                    } else {
+                        failure.compareAndSet(null, result);
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelChunks);
+        try {
+            executor.invokeAll(workers);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (cancellationRequested.get()) {
+            return createCancelledResult();
+        }
+        if (failure.get() != null) {
+            return failure.get();
+        }
+        // a worker might have stopped on an unexpected exception
+        return new RemoteOperationResult(confirmedChunks == chunkCount ? ResultCode.OK : ResultCode.UNKNOWN_ERROR);
+    }
+
+    private RemoteOperationResult uploadChunk(OwnCloudClient client, String uploadFolderUri, File file, long chunk) {
+        long offset = chunk * chunkSize;
+        ChunkRequestEntity entity = new ChunkRequestEntity(file, offset, Math.min(chunkSize, file.length() - offset));
+        PutMethod put = new PutMethod(uploadFolderUri + "/" + String.format(Locale.ROOT, "%08d", chunk));
+        put.setRequestEntity(entity);
+        try {
+            int status = execute(client, put);
+            RemoteOperationResult result = new RemoteOperationResult(status == HttpStatus.SC_CREATED ||
+                                                                         status == HttpStatus.SC_NO_CONTENT, put);
+            if (!result.isSuccess()) {
+                transferredBytes.addAndGet(-entity.sent);
+            }
+            return result;
+        } catch (IOException e) {
+            transferredBytes.addAndGet(-entity.sent);
+            return cancellationRequested.get() ? createCancelledResult() : new RemoteOperationResult(e);
+        }
+    }
+
+    private void onChunkConfirmed(BitSet doneChunks, long firstChunk, long chunk) {
+        synchronized (doneChunks) {
+            doneChunks.set((int) (chunk - firstChunk));
+            long confirmed = firstChunk + doneChunks.nextClearBit(0);
+            if (confirmed > confirmedChunks) {
+                confirmedChunks = confirmed;
+                notifyChunkState();
+            }
+        }
+    }
+
+    private RemoteOperationResult assemble(OwnCloudClient client, String uploadFolderUri, long length)
+        throws IOException {
+        String destinationUri = client.getBaseUri() + FILES_PATH + Uri.encode(client.getUserId()) +
+            WebdavUtils.encodePath(remotePath);
+        MoveMethod move = new MoveMethod(uploadFolderUri + "/" + ASSEMBLED_FILE, destinationUri, true);
+        move.addRequestHeader(OC_TOTAL_LENGTH_HEADER, String.valueOf(length));
+        move.addRequestHeader(OC_X_OC_MTIME_HEADER, lastModificationTimestamp);
+        if (!TextUtils.isEmpty(etagInConflict)) {
+            move.addRequestHeader(IF_MATCH_HEADER, "\"" + etagInConflict + "\"");
+        }
+
+        int status = execute(client, move);
+        RemoteOperationResult result = new RemoteOperationResult(status == HttpStatus.SC_CREATED ||
+                                                                     status == HttpStatus.SC_NO_CONTENT, move);
+        if (result.isSuccess() || status == HttpStatus.SC_NOT_FOUND) {
+            // chunks are gone, either assembled or expired
+            chunkedUploadId = null;
+            confirmedChunks = 0;
+            notifyChunkState();
+        }
+        return result;
+    }
+
+    /**
+     * Drops chunks read from a file which changed meanwhile, they must not be resumed either.
+     */
+    private RemoteOperationResult discard(OwnCloudClient client, String uploadFolderUri) throws IOException {
+        Log_OC.w(TAG, localPath + " changed while its chunks were sent, discarding them");
+        sourceChanged = true;
+        chunkedUploadId = null;
+        confirmedChunks = 0;
+        notifyChunkState();
+        execute(client, new DeleteMethod(uploadFolderUri));
+        return new RemoteOperationResult(ResultCode.UNKNOWN_ERROR);
+    }
+
+    private int execute(OwnCloudClient client, HttpMethodBase method) throws IOException {
+        runningMethods.add(method);
+        try {
+            int status = client.executeMethod(method);
+            client.exhaustResponse(method.getResponseBodyAsStream());
+            return status;
+        } finally {
+            runningMethods.remove(method);
+            method.releaseConnection();
+        }
+    }
+
+    private void notifyChunkState() {
+        if (chunkStateListener != null) {
+            chunkStateListener.onChunkStateChanged(chunkedUploadId, chunkSize, confirmedChunks);
+        }
+    }
+
+    private RemoteOperationResult createCancelledResult() {
+        if (cancellationReason != null) {
+            return new RemoteOperationResult(cancellationReason);
+        }
+        return new RemoteOperationResult(new OperationCancelledException());
+    }
+
+    private static String createUploadId() {
+        byte[] bytes = new byte[UPLOAD_ID_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder id = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            id.append(String.format(Locale.ROOT, "%02x", b));
+        }
+        return id.toString();
+    }
+
+    private void onBytesSent(int bytes, long totalToTransfer) {
+        long transferred = transferredBytes.addAndGet(bytes);
+        synchronized (dataTransferListeners) {
+            for (OnDatatransferProgressListener listener : dataTransferListeners) {
+                listener.onTransferProgress(bytes, transferred, totalToTransfer, localPath);
+            }
+        }
+    }
+
+    /**
+     * Sends a range of the file.
+     */
+    private class ChunkRequestEntity implements RequestEntity {
+        private final File file;
+        private final long offset;
+        private final long length;
+        private long sent;
+
+        ChunkRequestEntity(File file, long offset, long length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public void writeRequest(OutputStream out) throws IOException {
+            long totalToTransfer = file.length();
+            transferredBytes.addAndGet(-sent);
+            sent = 0;
+
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+                randomAccessFile.seek(offset);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long remaining = length;
+                while (remaining > 0) {
+                    if (cancellationRequested.get()) {
+                        throw new IOException("Upload cancelled");
+                    }
+                    int read = randomAccessFile.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException("File shorter than expected: " + localPath);
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                    sent += read;
+                    onBytesSent(read, totalToTransfer);
+                }
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public String getContentType() {
+            return mimeType;
+        }
+    }
+}
@@ -86,6 +86,7 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import androidx.annotation.CheckResult;
+import androidx.annotation.Nullable;
 
 
 /**
@@ -96,6 +97,11 @@ public class UploadFileOperation extends SyncOperation {
 
     private static final String TAG = UploadFileOperation.class.getSimpleName();
 
+    /**
+     * Serializes creation of local folders among uploads running in parallel.
+     */
+    private static final Object LOCAL_FOLDER_LOCK = new Object();
+
     public static final int CREATED_BY_USER = 0;
     public static final int CREATED_AS_INSTANT_PICTURE = 1;
     public static final int CREATED_AS_INSTANT_VIDEO = 2;
@@ -123,6 +129,10 @@ public class UploadFileOperation extends SyncOperation {
 
     private boolean mWasRenamed;
     private long mOCUploadId;
+    /**
+     * Size of the file stored for the previous attempt of this upload, before it is reset for this attempt.
+     */
+    private long mPreviousFileSize;
     /**
      * Local path to file which is to be uploaded (before any possible renaming or moving).
      */
@@ -136,6 +146,7 @@ public class UploadFileOperation extends SyncOperation {
     private Context mContext;
 
     private UploadFileRemoteOperation mUploadOperation;
+    private ResumableChunkedUploadOperation mChunkedUploadOperation;
 
     private RequestEntity mEntity;
 
@@ -342,6 +353,9 @@ public class UploadFileOperation extends SyncOperation {
         if (mUploadOperation != null) {
             mUploadOperation.addDataTransferProgressListener(listener);
         }
+        if (mChunkedUploadOperation != null) {
+            mChunkedUploadOperation.addDataTransferProgressListener(listener);
+        }
     }
 
     public void removeDataTransferProgressListener(OnDatatransferProgressListener listener) {
@@ -354,6 +368,9 @@ public class UploadFileOperation extends SyncOperation {
         if (mUploadOperation != null) {
             mUploadOperation.removeDataTransferProgressListener(listener);
         }
+        if (mChunkedUploadOperation != null) {
+            mChunkedUploadOperation.removeDataTransferProgressListener(listener);
+        }
     }
 
     public UploadFileOperation addRenameUploadListener(OnRenameListener listener) {
@@ -372,12 +389,11 @@ public class UploadFileOperation extends SyncOperation {
         mCancellationRequested.set(false);
         mUploadStarted.set(true);
 
-        for (OCUpload ocUpload : uploadsStorageManager.getAllStoredUploads()) {
-            if (ocUpload.getUploadId() == getOCUploadId()) {
-                ocUpload.setFileSize(0);
-                uploadsStorageManager.updateUpload(ocUpload);
-                break;
-            }
+        OCUpload storedUpload = uploadsStorageManager.getUploadById(getOCUploadId());
+        if (storedUpload != null) {
+            mPreviousFileSize = storedUpload.getFileSize();
+            storedUpload.setFileSize(0);
+            uploadsStorageManager.updateUpload(storedUpload);
         }
 
         String remoteParentPath = new File(getRemotePath()).getParent();
@@ -503,8 +519,6 @@ public class UploadFileOperation extends SyncOperation {
             // IV, always generate new one
             byte[] iv = EncryptionUtils.randomBytes(EncryptionUtils.ivLength);
 
-            EncryptionUtils.EncryptedFile encryptedFile = EncryptionUtils.encryptFile(mFile, key, iv);
-
             // new random file name, check if it exists in metadata
             String encryptedFileName = UUID.randomUUID().toString().replaceAll("-", "");
 
@@ -513,9 +527,10 @@ public class UploadFileOperation extends SyncOperation {
             }
 
             File encryptedTempFile = File.createTempFile("encFile", encryptedFileName);
-            FileOutputStream fileOutputStream = new FileOutputStream(encryptedTempFile);
-            fileOutputStream.write(encryptedFile.encryptedBytes);
-            fileOutputStream.close();
+            String authenticationTag = EncryptionUtils.encryptFile(new File(mFile.getStoragePath()),
+                                                                   encryptedTempFile,
+                                                                   key,
+                                                                   iv);
 
             /***** E2E *****/
 
@@ -550,12 +565,10 @@ public class UploadFileOperation extends SyncOperation {
                 size = new File(mFile.getStoragePath()).length();
             }
 
-            for (OCUpload ocUpload : uploadsStorageManager.getAllStoredUploads()) {
-                if (ocUpload.getUploadId() == getOCUploadId()) {
-                    ocUpload.setFileSize(size);
-                    uploadsStorageManager.updateUpload(ocUpload);
-                    break;
-                }
+            OCUpload storedUpload = uploadsStorageManager.getUploadById(getOCUploadId());
+            if (storedUpload != null) {
+                storedUpload.setFileSize(size);
+                uploadsStorageManager.updateUpload(storedUpload);
             }
 
             /// perform the upload
@@ -611,7 +624,7 @@ public class UploadFileOperation extends SyncOperation {
 
                 decryptedFile.setEncrypted(data);
                 decryptedFile.setInitializationVector(EncryptionUtils.encodeBytesToBase64String(iv));
-                decryptedFile.setAuthenticationTag(encryptedFile.authenticationTag);
+                decryptedFile.setAuthenticationTag(authenticationTag);
 
                 metadata.getFiles().put(encryptedFileName, decryptedFile);
 
@@ -729,6 +742,7 @@ public class UploadFileOperation extends SyncOperation {
         File temporalFile = null;
         File originalFile = new File(mOriginalStoragePath);
         File expectedFile = null;
+        File localCopy = null;
         FileLock fileLock = null;
         long size;
 
@@ -750,38 +764,19 @@ public class UploadFileOperation extends SyncOperation {
             String expectedPath = FileStorageUtils.getDefaultSavePathFor(user.getAccountName(), mFile);
             expectedFile = new File(expectedPath);
 
-            result = copyFile(originalFile, expectedPath);
-            if (!result.isSuccess()) {
-                return result;
-            }
-
             // Get the last modification date of the file from the file system
-            Long timeStampLong = originalFile.lastModified() / 1000;
+            long lastModified = originalFile.lastModified();
+            Long timeStampLong = lastModified / 1000;
             String timeStamp = timeStampLong.toString();
 
+            // upload straight from the original file if it cannot change unnoticed, copying it only as fallback
             FileChannel channel = null;
             try {
                 channel = new RandomAccessFile(mFile.getStoragePath(), "rw").getChannel();
                 fileLock = channel.tryLock();
             } catch (FileNotFoundException e) {
-                // this basically means that the file is on SD card
-                // try to copy file to temporary dir if it doesn't exist
-                String temporalPath = FileStorageUtils.getInternalTemporalPath(user.getAccountName(), mContext) +
-                    mFile.getRemotePath();
-                mFile.setStoragePath(temporalPath);
-                temporalFile = new File(temporalPath);
-
-                Files.deleteIfExists(Paths.get(temporalPath));
-                result = copy(originalFile, temporalFile);
-
-                if (result.isSuccess()) {
-                    if (temporalFile.length() == originalFile.length()) {
-                        channel = new RandomAccessFile(temporalFile.getAbsolutePath(), "rw").getChannel();
-                        fileLock = channel.tryLock();
-                    } else {
-                        result = new RemoteOperationResult(ResultCode.LOCK_FAILED);
-                    }
-                }
+                // this basically means that the file is on SD card and cannot be locked
+                Log_OC.d(TAG, mOriginalStoragePath + " is read only, it cannot be locked");
             }
 
             try {
@@ -790,50 +785,56 @@ public class UploadFileOperation extends SyncOperation {
                 size = new File(mFile.getStoragePath()).length();
             }
 
-            for (OCUpload ocUpload : uploadsStorageManager.getAllStoredUploads()) {
-                if (ocUpload.getUploadId() == getOCUploadId()) {
-                    ocUpload.setFileSize(size);
-                    uploadsStorageManager.updateUpload(ocUpload);
-                    break;
-                }
+            OCUpload storedUpload = uploadsStorageManager.getUploadById(getOCUploadId());
+            if (storedUpload != null) {
+                storedUpload.setFileSize(size);
+                uploadsStorageManager.updateUpload(storedUpload);
             }
 
-            // perform the upload
-            if (size > ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE) {
-                boolean onWifiConnection = connectivityService.getConnectivity().isWifi();
-
-                mUploadOperation = new ChunkedFileUploadRemoteOperation(mFile.getStoragePath(),
-                                                                        mFile.getRemotePath(),
-                                                                        mFile.getMimeType(),
-                                                                        mFile.getEtagInConflict(),
-                                                                        timeStamp,
-                                                                        onWifiConnection,
-                                                                        mDisableRetries);
+            boolean keepCopy = mLocalBehaviour == FileUploader.LOCAL_BEHAVIOUR_COPY &&
+                !mOriginalStoragePath.equals(expectedPath);
+            UploadStaging.Mode stagingMode = UploadStaging.chooseMode(fileLock != null, isChunked(size), keepCopy);
+            if (stagingMode == UploadStaging.Mode.COPY) {
+                temporalFile = createTemporalFile();
+                result = copy(originalFile, temporalFile);
+                if (result.isSuccess()) {
+                    size = temporalFile.length();
+                    result = upload(client, storedUpload, mPreviousFileSize, size, lastModified, timeStamp, null);
+                }
             } else {
-                mUploadOperation = new UploadFileRemoteOperation(mFile.getStoragePath(),
-                                                                 mFile.getRemotePath(),
-                                                                 mFile.getMimeType(),
-                                                                 mFile.getEtagInConflict(),
-                                                                 timeStamp,
-                                                                 mDisableRetries);
-            }
-
-            for (OnDatatransferProgressListener mDataTransferListener : mDataTransferListeners) {
-                mUploadOperation.addDataTransferProgressListener(mDataTransferListener);
+                UploadStaging.Snapshot snapshot = UploadStaging.Snapshot.of(originalFile);
+                ResumableChunkedUploadOperation.SourceCheck sourceCheck =
+                    stagingMode == UploadStaging.Mode.DIRECT_SNAPSHOT ? () -> snapshot.matches(originalFile) : null;
+                result = upload(client, storedUpload, mPreviousFileSize, size, lastModified, timeStamp, sourceCheck);
+
+                if (mChunkedUploadOperation != null && mChunkedUploadOperation.isSourceChanged()) {
+                    Log_OC.w(TAG, mOriginalStoragePath + " changed during upload, uploading a copy");
+                    stagingMode = UploadStaging.Mode.COPY;
+                    lastModified = originalFile.lastModified();
+                    timeStamp = String.valueOf(lastModified / 1000);
+                    temporalFile = createTemporalFile();
+                    result = copy(originalFile, temporalFile);
+                    if (result.isSuccess()) {
+                        size = temporalFile.length();
+                        result = upload(client, null, 0, size, lastModified, timeStamp, null);
+                    }
+                } else if (result.isSuccess() && keepCopy) {
+                    // copy the uploaded content while the file is still locked
+                    if (copy(originalFile, expectedFile).isSuccess()) {
+                        localCopy = expectedFile;
+                    } else {
+                        Log_OC.e(TAG, "Failed to copy " + mOriginalStoragePath + " into the local folder");
+                    }
+                }
             }
 
-            if (mCancellationRequested.get()) {
-                throw new OperationCancelledException();
+            if (result.isSuccess()) {
+                Log_OC.d(TAG, "Uploaded " + mOriginalStoragePath + " using " + stagingMode);
+                UploadStaging.record(stagingMode, size);
             }
 
-            if (result.isSuccess() && mUploadOperation != null) {
-                result = mUploadOperation.execute(client);
-
-                /// move local temporal file or original file to its corresponding
-                // location in the Nextcloud local folder
-                if (!result.isSuccess() && result.getHttpCode() == HttpStatus.SC_PRECONDITION_FAILED) {
-                    result = new RemoteOperationResult(ResultCode.SYNC_CONFLICT);
-                }
+            if (!result.isSuccess() && result.getHttpCode() == HttpStatus.SC_PRECONDITION_FAILED) {
+                result = new RemoteOperationResult(ResultCode.SYNC_CONFLICT);
             }
         } catch (FileNotFoundException e) {
             Log_OC.d(TAG, mOriginalStoragePath + " not exists anymore");
@@ -854,19 +855,20 @@ public class UploadFileOperation extends SyncOperation {
                 }
             }
 
-            if (temporalFile != null && !originalFile.equals(temporalFile)) {
-                temporalFile.delete();
-            }
-
             if (result == null) {
                 result = new RemoteOperationResult(ResultCode.UNKNOWN_ERROR);
             }
 
+            // a copy of an uploaded file is kept, it might be moved into the local folder
+            if (temporalFile != null && !originalFile.equals(temporalFile) && !result.isSuccess()) {
+                temporalFile.delete();
+            }
+
             logResult(result, mOriginalStoragePath, mRemotePath);
         }
 
         if (result.isSuccess()) {
-            handleSuccessfulUpload(temporalFile, expectedFile, originalFile, client);
+            handleSuccessfulUpload(temporalFile == null ? localCopy : temporalFile, expectedFile, originalFile, client);
         } else if (result.getCode() == ResultCode.SYNC_CONFLICT) {
             getStorageManager().saveConflict(mFile, mFile.getEtagInConflict());
         }
@@ -879,6 +881,17 @@ public class UploadFileOperation extends SyncOperation {
         return result;
     }
 
+    /**
+     * Points the storage path of {@link #mFile} to an empty location in the temporal folder.
+     */
+    private File createTemporalFile() throws IOException {
+        String temporalPath = FileStorageUtils.getInternalTemporalPath(user.getAccountName(), mContext) +
+            mFile.getRemotePath();
+        mFile.setStoragePath(temporalPath);
+        Files.deleteIfExists(Paths.get(temporalPath));
+        return new File(temporalPath);
+    }
+
     private void logResult(RemoteOperationResult result, String sourcePath, String targetPath) {
         if (result.isSuccess()) {
             Log_OC.i(TAG, "Upload of " + sourcePath + " to " + targetPath + ": " + result.getLogMessage());
@@ -1027,11 +1040,22 @@ public class UploadFileOperation extends SyncOperation {
         if (!result.isSuccess() && result.getCode() == ResultCode.FILE_NOT_FOUND && mRemoteFolderToBeCreated) {
             SyncOperation syncOp = new CreateFolderOperation(pathToGrant, user, getContext());
             result = syncOp.execute(client, getStorageManager());
+            if (!result.isSuccess()) {
+                // folder may have been created meanwhile by a parallel upload
+                RemoteOperationResult existenceResult = new ExistenceCheckRemoteOperation(pathToGrant, false)
+                    .execute(client);
+                if (existenceResult.isSuccess()) {
+                    result = existenceResult;
+                }
+            }
         }
         if (result.isSuccess()) {
-            OCFile parentDir = getStorageManager().getFileByPath(pathToGrant);
-            if (parentDir == null) {
-                parentDir = createLocalFolder(pathToGrant);
+            OCFile parentDir;
+            synchronized (LOCAL_FOLDER_LOCK) {
+                parentDir = getStorageManager().getFileByPath(pathToGrant);
+                if (parentDir == null) {
+                    parentDir = createLocalFolder(pathToGrant);
+                }
             }
             if (parentDir != null) {
                 result = new RemoteOperationResult(ResultCode.OK);
@@ -1138,13 +1162,108 @@ public class UploadFileOperation extends SyncOperation {
         }
     }
 
+    private static boolean isChunked(long size) {
+        return size > ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE;
+    }
+
+    /**
+     * Uploads the file at the current storage path of {@link #mFile}, in chunks if it is large.
+     *
+     * @param sourceCheck checked before chunks are assembled, ignored if the file is sent in a single request
+     */
+    private RemoteOperationResult upload(OwnCloudClient client,
+                                         @Nullable OCUpload storedUpload,
+                                         long storedSize,
+                                         long size,
+                                         long lastModified,
+                                         String timeStamp,
+                                         @Nullable ResumableChunkedUploadOperation.SourceCheck sourceCheck)
+        throws OperationCancelledException {
+        mUploadOperation = null;
+        mChunkedUploadOperation = null;
+
+        if (isChunked(size)) {
+            mChunkedUploadOperation = createChunkedUploadOperation(storedUpload, storedSize, size, lastModified,
+                                                                   timeStamp);
+            mChunkedUploadOperation.setSourceCheck(sourceCheck);
+            for (OnDatatransferProgressListener mDataTransferListener : mDataTransferListeners) {
+                mChunkedUploadOperation.addDataTransferProgressListener(mDataTransferListener);
+            }
+        } else {
+            mUploadOperation = new UploadFileRemoteOperation(mFile.getStoragePath(),
+                                                             mFile.getRemotePath(),
+                                                             mFile.getMimeType(),
+                                                             mFile.getEtagInConflict(),
+                                                             timeStamp,
+                                                             mDisableRetries);
+            for (OnDatatransferProgressListener mDataTransferListener : mDataTransferListeners) {
+                mUploadOperation.addDataTransferProgressListener(mDataTransferListener);
+            }
+        }
+
+        if (mCancellationRequested.get()) {
+            throw new OperationCancelledException();
+        }
+
+        if (mChunkedUploadOperation != null) {
+            return mChunkedUploadOperation.execute(client);
+        }
+        return mUploadOperation.execute(client);
+    }
+
+    /**
+     * Creates the operation for a chunked upload, resuming the interrupted upload of the same file if there is one.
+     * The stored chunks are dropped if the size or the modification time of the file changed since, as the file may
+     * have been changed in place.
+     */
+    private ResumableChunkedUploadOperation createChunkedUploadOperation(@Nullable OCUpload storedUpload,
+                                                                         long storedSize,
+                                                                         long size,
+                                                                         long lastModified,
+                                                                         String timeStamp) {
+        String chunkedUploadId = null;
+        long chunkSize = connectivityService.getConnectivity().isWifi() ?
+            ChunkedFileUploadRemoteOperation.CHUNK_SIZE_WIFI : ChunkedFileUploadRemoteOperation.CHUNK_SIZE_MOBILE;
+        long confirmedChunks = 0;
+
+        if (storedUpload != null && storedUpload.getChunkedUploadId() != null && storedUpload.getChunkSize() > 0) {
+            if (storedSize == size && storedUpload.getChunkedSourceLastModified() == lastModified) {
+                chunkedUploadId = storedUpload.getChunkedUploadId();
+                chunkSize = storedUpload.getChunkSize();
+                confirmedChunks = storedUpload.getConfirmedChunks();
+                Log_OC.d(TAG, "Resuming upload of " + mRemotePath + " after " + confirmedChunks + " chunks");
+            } else {
+                Log_OC.d(TAG, mOriginalStoragePath + " changed, starting upload over");
+            }
+        }
+
+        ResumableChunkedUploadOperation operation = new ResumableChunkedUploadOperation(
+            mFile.getStoragePath(),
+            mFile.getRemotePath(),
+            mFile.getMimeType(),
+            mFile.getEtagInConflict(),
+            timeStamp,
+            chunkedUploadId,
+            chunkSize,
+            confirmedChunks,
+            ResumableChunkedUploadOperation.DEFAULT_PARALLEL_CHUNKS);
+        operation.setChunkStateListener((id, newChunkSize, newConfirmedChunks) -> {
+            mUpload.setChunkState(id, newChunkSize, newConfirmedChunks, lastModified);
+            uploadsStorageManager.updateChunkState(mOCUploadId, id, newChunkSize, newConfirmedChunks, lastModified);
+        });
+        return operation;
+    }
+
     /**
      * Allows to cancel the actual upload operation. If actual upload operating
      * is in progress it is cancelled, if upload preparation is being performed
      * upload will not take place.
      */
     public void cancel(ResultCode cancellationReason) {
-        if (mUploadOperation == null) {
+        if (mChunkedUploadOperation != null) {
+            Log_OC.d(TAG, "Cancelling chunked upload during actual upload operation.");
+            mChunkedUploadOperation.cancel(cancellationReason);
+        } else if (mUploadOperation == null) {
             if (mUploadStarted.get()) {
                 Log_OC.d(TAG, "Cancelling upload during upload preparations.");
                 mCancellationRequested.set(true);
@@ -0,0 +1,123 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.operations;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How the content of an upload is read, and how often each way was taken.
+ *
+ * Files are uploaded straight from their original location when they cannot change unnoticed before the server
+ * stores them: either they are locked, or they are uploaded in chunks and their size and modification date are
+ * compared before the chunks are assembled. Otherwise they are copied to the temporal folder first and the copy is
+ * uploaded.
+ */
+public final class UploadStaging {
+
+    public enum Mode {
+        /**
+         * Read from the original file while holding a lock on it.
+         */
+        DIRECT_LOCKED,
+        /**
+         * Read from the original file in chunks, which are only assembled if the file is unchanged afterwards.
+         */
+        DIRECT_SNAPSHOT,
+        /**
+         * Read from a copy in the temporal folder.
+         */
+        COPY
+    }
+
+    private static final Map<Mode, AtomicLong> UPLOADS = new EnumMap<>(Mode.class);
+    private static final Map<Mode, AtomicLong> BYTES = new EnumMap<>(Mode.class);
+
+    static {
+        for (Mode mode : Mode.values()) {
+            UPLOADS.put(mode, new AtomicLong());
+            BYTES.put(mode, new AtomicLong());
+        }
+    }
+
+    private UploadStaging() {
+        // utility class
+    }
+
+    /**
+     * Chooses how to read the content of an upload.
+     *
+     * @param locked   a lock on the file is held during the upload
+     * @param chunked  the file is sent in chunks, assembled by the server only after a final request
+     * @param keepCopy a copy of the file is kept in the local folder after the upload
+     */
+    static Mode chooseMode(boolean locked, boolean chunked, boolean keepCopy) {
+        if (locked) {
+            return Mode.DIRECT_LOCKED;
+        }
+        if (keepCopy || !chunked) {
+            // the copy is needed anyway, or a single request cannot be checked before the server stores the file
+            return Mode.COPY;
+        }
+        return Mode.DIRECT_SNAPSHOT;
+    }
+
+    static void record(Mode mode, long size) {
+        UPLOADS.get(mode).incrementAndGet();
+        BYTES.get(mode).addAndGet(size);
+    }
+
+    /**
+     * @return number of uploads read the given way since the app was started
+     */
+    public static long getUploadCount(Mode mode) {
+        return UPLOADS.get(mode).get();
+    }
+
+    /**
+     * @return number of bytes uploaded the given way since the app was started
+     */
+    public static long getUploadedBytes(Mode mode) {
+        return BYTES.get(mode).get();
+    }
+
+    /**
+     * Size and modification date of a file, to detect whether it changed.
+     */
+    static final class Snapshot {
+        private final long size;
+        private final long lastModified;
+
+        private Snapshot(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static Snapshot of(File file) {
+            return new Snapshot(file.length(), file.lastModified());
+        }
+
+        boolean matches(File file) {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
+    }
+}
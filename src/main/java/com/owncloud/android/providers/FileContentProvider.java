@@ -38,8 +38,10 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.os.Binder;
+import android.os.Bundle;
 import android.text.TextUtils;
 
 import com.nextcloud.client.core.Clock;
@@ -54,16 +56,19 @@ import com.owncloud.android.lib.common.accounts.AccountUtils;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.shares.ShareType;
 import com.owncloud.android.utils.FileStorageUtils;
-import com.owncloud.android.utils.MimeType;
+import com.owncloud.android.utils.MimeTypeUtil;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 
 import javax.inject.Inject;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import dagger.android.AndroidInjection;
 
 /**
@@ -72,6 +77,20 @@ import dagger.android.AndroidInjection;
 @SuppressWarnings("PMD.AvoidDuplicateLiterals")
 public class FileContentProvider extends ContentProvider {
 
+    /**
+     * {@link #call(String, String, Bundle)} method moving a file with all its descendants, see
+     * {@link #moveFiles(SQLiteDatabase, Bundle)} for the extras taken.
+     */
+    public static final String METHOD_MOVE_FILES = "moveFiles";
+    public static final String EXTRA_ACCOUNT_NAME = "accountName";
+    public static final String EXTRA_PATH = "path";
+    public static final String EXTRA_TARGET_PATH = "targetPath";
+    public static final String EXTRA_STORAGE_PATH = "storagePath";
+    public static final String EXTRA_TARGET_STORAGE_PATH = "targetStoragePath";
+    public static final String EXTRA_TARGET_PARENT_ID = "targetParentId";
+    public static final String RESULT_COUNT = "count";
+    public static final String RESULT_MEDIA_STORAGE_PATHS = "mediaStoragePaths";
+
     private static final int SINGLE_FILE = 1;
     private static final int DIRECTORY = 2;
     private static final int ROOT_DIRECTORY = 3;
@@ -95,6 +114,14 @@ public class FileContentProvider extends ContentProvider {
     private static final int SINGLE_PATH_SEGMENT = 1;
     public static final int ARBITRARY_DATA_TABLE_INTRODUCTION_VERSION = 20;
     public static final int MINIMUM_PATH_SEGMENTS_SIZE = 1;
+    private static final String FILE_PARENT_INDEX = "filelist_parent_index";
+    private static final String FILE_OWNER_PATH_INDEX = "filelist_owner_path_index";
+    private static final String OCSHARES_OWNER_PATH_INDEX = "ocshares_owner_path_index";
+    private static final String FILESYSTEM_FOLDER_PATH_INDEX = "filesystem_folder_path_index";
+    private static final String UPLOADS_STATUS_ACCOUNT_END_INDEX = "uploads_status_account_end_index";
+    private static final String SUBTREE = "subtree";
+
+    private static boolean queryPlanCheckEnabled;
 
     @Inject protected Clock clock;
     private DataBaseHelper mDbHelper;
@@ -167,41 +194,59 @@ public class FileContentProvider extends ContentProvider {
         return count;
     }
 
+    /**
+     * Deletes a folder with all its descendants. Descendants are found by a recursive query over their parents and
+     * deleted by a single statement.
+     *
+     * Without a folder id in the uri, all folders matching the selection are deleted with their descendants.
+     */
     private int deleteDirectory(SQLiteDatabase db, Uri uri, String where, String... whereArgs) {
-        int count = 0;
-
-        Cursor children = query(uri, null, null, null, null);
-        if (children != null) {
-            if (children.moveToFirst()) {
-                long childId;
-                boolean isDir;
-                while (!children.isAfterLast()) {
-                    childId = children.getLong(children.getColumnIndex(ProviderTableMeta._ID));
-                    isDir = MimeType.DIRECTORY.equals(children.getString(
-                        children.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)
-                    ));
-                    if (isDir) {
-                        count += delete(db, ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, childId),
-                                        null, (String[]) null);
-                    } else {
-                        count += delete(db, ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_FILE, childId),
-                                        null, (String[]) null);
-                    }
-                    children.moveToNext();
-                }
-            }
-            children.close();
+        if (uri.getPathSegments().size() <= MINIMUM_PATH_SEGMENTS_SIZE) {
+            if (TextUtils.isEmpty(where)) {
+                return db.delete(ProviderTableMeta.FILE_TABLE_NAME, null, null);
+            }
+            return deleteSubtrees(db,
+                                  "SELECT " + ProviderTableMeta._ID + " FROM " + ProviderTableMeta.FILE_TABLE_NAME +
+                                      " WHERE " + where,
+                                  whereArgs);
         }
 
-        if (uri.getPathSegments().size() > MINIMUM_PATH_SEGMENTS_SIZE) {
-            count += db.delete(ProviderTableMeta.FILE_TABLE_NAME,
-                               ProviderTableMeta._ID + "=" + uri.getPathSegments().get(1)
-                                   + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : ""), whereArgs);
-        }
+        String folderId = uri.getPathSegments().get(1);
+        int count = deleteSubtrees(db,
+                                   "SELECT " + ProviderTableMeta._ID + " FROM " + ProviderTableMeta.FILE_TABLE_NAME +
+                                       " WHERE " + ProviderTableMeta.FILE_PARENT + "=?",
+                                   folderId);
+        count += db.delete(ProviderTableMeta.FILE_TABLE_NAME,
+                           ProviderTableMeta._ID + "=" + folderId
+                               + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : ""), whereArgs);
 
         return count;
     }
 
+    /**
+     * Deletes the files selected by the given query together with all their descendants.
+     *
+     * @param rootsQuery query selecting the ids of the topmost files to delete
+     * @return number of deleted files
+     */
+    private int deleteSubtrees(SQLiteDatabase db, String rootsQuery, String... rootsArgs) {
+        // UNION instead of UNION ALL stops at files already visited, should the parents ever form a cycle
+        String sql = "WITH RECURSIVE " + SUBTREE + "(" + ProviderTableMeta._ID + ") AS (" + rootsQuery +
+            " UNION SELECT f." + ProviderTableMeta._ID + " FROM " + ProviderTableMeta.FILE_TABLE_NAME + " f, " +
+            SUBTREE + " s WHERE f." + ProviderTableMeta.FILE_PARENT + " = s." + ProviderTableMeta._ID + ")" +
+            " DELETE FROM " + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " + ProviderTableMeta._ID + " IN " + SUBTREE;
+
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            if (rootsArgs != null) {
+                statement.bindAllArgsAsStrings(rootsArgs);
+            }
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+    }
+
     private int deleteSingleFile(SQLiteDatabase db, Uri uri, String where, String... whereArgs) {
         int count = 0;
         Cursor c = query(db, uri, null, where, whereArgs, null);
@@ -611,11 +656,45 @@ public class FileContentProvider extends ContentProvider {
         }
 
         sqlQuery.setStrict(true);
+
+        if (queryPlanCheckEnabled) {
+            checkQueryPlan(db, sqlQuery.buildQuery(projectionArray, selection, null, null, order, null),
+                           selectionArgs);
+        }
+
         Cursor c = sqlQuery.query(db, projectionArray, selection, selectionArgs, null, null, order);
         c.setNotificationUri(mContext.getContentResolver(), uri);
         return c;
     }
 
+    /**
+     * Enables a check of the query plan of every query on the files, shares and filesystem tables. Queries which would
+     * scan the whole table instead of using an index throw an {@link IllegalStateException}. Only meant for tests.
+     */
+    @VisibleForTesting
+    public static void setQueryPlanCheckEnabled(boolean enabled) {
+        queryPlanCheckEnabled = enabled;
+    }
+
+    private void checkQueryPlan(SQLiteDatabase db, String sql, String... selectionArgs) {
+        try (Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs)) {
+            int detailColumn = plan.getColumnIndex("detail");
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailColumn);
+                if (isFullTableScan(detail, ProviderTableMeta.FILE_TABLE_NAME) ||
+                    isFullTableScan(detail, ProviderTableMeta.OCSHARES_TABLE_NAME) ||
+                    isFullTableScan(detail, ProviderTableMeta.FILESYSTEM_TABLE_NAME)) {
+                    throw new IllegalStateException("Full table scan (" + detail + ") for query: " + sql);
+                }
+            }
+        }
+    }
+
+    private static boolean isFullTableScan(String detail, String table) {
+        // older SQLite versions report "SCAN TABLE <table>", newer ones "SCAN <table>"
+        return detail.startsWith("SCAN TABLE " + table) || detail.equals("SCAN " + table);
+    }
+
     @Override
     public int update(@NonNull Uri uri, ContentValues values, String selection, String[] selectionArgs) {
         if (isCallerNotAllowed(uri)) {
@@ -656,6 +735,124 @@ public class FileContentProvider extends ContentProvider {
         }
     }
 
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        if (!METHOD_MOVE_FILES.equals(method) || extras == null) {
+            return super.call(method, arg, extras);
+        }
+        if (isCallerNotOwnPackage()) {
+            return null;
+        }
+
+        Bundle result;
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            result = moveFiles(db, extras);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        mContext.getContentResolver().notifyChange(ProviderTableMeta.CONTENT_URI, null);
+        return result;
+    }
+
+    /**
+     * Moves a file with all its descendants by rewriting the prefix of their paths in a single statement.
+     *
+     * Descendants of a folder are selected by a range over the path, so the owner and path index is used. Storage
+     * paths starting with {@link #EXTRA_STORAGE_PATH} are rewritten the same way, only the database is changed.
+     *
+     * @param extras {@link #EXTRA_ACCOUNT_NAME}, {@link #EXTRA_PATH} and {@link #EXTRA_TARGET_PATH} of the moved file,
+     *               {@link #EXTRA_STORAGE_PATH} and {@link #EXTRA_TARGET_STORAGE_PATH} of its local copy and
+     *               {@link #EXTRA_TARGET_PARENT_ID}
+     * @return {@link #RESULT_COUNT} of moved files and {@link #RESULT_MEDIA_STORAGE_PATHS}, the original storage
+     * paths of the moved media files
+     */
+    private Bundle moveFiles(SQLiteDatabase db, Bundle extras) {
+        String path = extras.getString(EXTRA_PATH);
+        String storagePath = extras.getString(EXTRA_STORAGE_PATH);
+        if (path == null || storagePath == null) {
+            throw new IllegalArgumentException("Missing path of the moved file");
+        }
+
+        String selection;
+        String[] selectionArgs;
+        if (path.endsWith(OCFile.PATH_SEPARATOR)) {
+            // all paths starting with the folder path sort between it and the path having '/' replaced by '0'
+            selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PATH + ">=? AND " +
+                ProviderTableMeta.FILE_PATH + "<?";
+            selectionArgs = new String[]{
+                extras.getString(EXTRA_ACCOUNT_NAME),
+                path,
+                path.substring(0, path.length() - 1) + (char) (OCFile.PATH_SEPARATOR.charAt(0) + 1)
+            };
+        } else {
+            selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.FILE_PATH + "=?";
+            selectionArgs = new String[]{extras.getString(EXTRA_ACCOUNT_NAME), path};
+        }
+        String storagePathPrefixMatches = "substr(" + ProviderTableMeta.FILE_STORAGE_PATH + ", 1, length(?))=?";
+
+        ArrayList<String> mediaStoragePaths = new ArrayList<>();
+        String[] mediaSelectionArgs = Arrays.copyOf(selectionArgs, selectionArgs.length + 2);
+        mediaSelectionArgs[selectionArgs.length] = storagePath;
+        mediaSelectionArgs[selectionArgs.length + 1] = storagePath;
+        Cursor cursor = db.query(ProviderTableMeta.FILE_TABLE_NAME,
+                                 new String[]{ProviderTableMeta.FILE_CONTENT_TYPE, ProviderTableMeta.FILE_STORAGE_PATH},
+                                 selection + " AND " + storagePathPrefixMatches,
+                                 mediaSelectionArgs,
+                                 null,
+                                 null,
+                                 null);
+        try {
+            while (cursor.moveToNext()) {
+                if (MimeTypeUtil.isMedia(cursor.getString(0))) {
+                    mediaStoragePaths.add(cursor.getString(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // right hand sides are evaluated against the values before the update; length() and substr() count
+        // characters alike, so prefixes are replaced correctly for any characters
+        String sql = "UPDATE " + ProviderTableMeta.FILE_TABLE_NAME + " SET " +
+            ProviderTableMeta.FILE_PATH + "=? || substr(" + ProviderTableMeta.FILE_PATH + ", length(?) + 1), " +
+            ProviderTableMeta.FILE_STORAGE_PATH + "=CASE WHEN " + storagePathPrefixMatches +
+            " THEN ? || substr(" + ProviderTableMeta.FILE_STORAGE_PATH + ", length(?) + 1)" +
+            " ELSE " + ProviderTableMeta.FILE_STORAGE_PATH + " END, " +
+            ProviderTableMeta.FILE_PARENT + "=CASE WHEN " + ProviderTableMeta.FILE_PATH + "=?" +
+            " THEN ? ELSE " + ProviderTableMeta.FILE_PARENT + " END" +
+            " WHERE " + selection;
+        String[] updateArgs = new String[]{
+            extras.getString(EXTRA_TARGET_PATH),
+            path,
+            storagePath,
+            storagePath,
+            extras.getString(EXTRA_TARGET_STORAGE_PATH),
+            storagePath,
+            path,
+            String.valueOf(extras.getLong(EXTRA_TARGET_PARENT_ID))
+        };
+        String[] args = Arrays.copyOf(updateArgs, updateArgs.length + selectionArgs.length);
+        System.arraycopy(selectionArgs, 0, args, updateArgs.length, selectionArgs.length);
+
+        int count;
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            statement.bindAllArgsAsStrings(args);
+            count = statement.executeUpdateDelete();
+        } finally {
+            statement.close();
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(RESULT_COUNT, count);
+        result.putStringArrayList(RESULT_MEDIA_STORAGE_PATHS, mediaStoragePaths);
+        return result;
+    }
+
     @NonNull
     @Override
     public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
@@ -819,7 +1016,11 @@ public class FileContentProvider extends ContentProvider {
                        + ProviderTableMeta.UPLOADS_IS_WHILE_CHARGING_ONLY + INTEGER  // boolean
                        + ProviderTableMeta.UPLOADS_IS_WIFI_ONLY + INTEGER // boolean
                        + ProviderTableMeta.UPLOADS_CREATED_BY + INTEGER    // Upload createdBy
-                       + ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN + " TEXT );");
+                       + ProviderTableMeta.UPLOADS_FOLDER_UNLOCK_TOKEN + TEXT
+                       + ProviderTableMeta.UPLOADS_CHUNKED_UPLOAD_ID + TEXT
+                       + ProviderTableMeta.UPLOADS_CHUNK_SIZE + INTEGER
+                       + ProviderTableMeta.UPLOADS_CONFIRMED_CHUNKS + INTEGER
+                       + ProviderTableMeta.UPLOADS_CHUNKED_SOURCE_LAST_MODIFIED + " INTEGER );");
 
         /* before:
         // PRIMARY KEY should always imply NOT NULL. Unfortunately, due to a
@@ -892,6 +1093,25 @@ public class FileContentProvider extends ContentProvider {
         );
     }
 
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + FILE_PARENT_INDEX + " ON " + ProviderTableMeta.FILE_TABLE_NAME
+                       + "(" + ProviderTableMeta.FILE_PARENT + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + FILE_OWNER_PATH_INDEX + " ON " + ProviderTableMeta.FILE_TABLE_NAME
+                       + "(" + ProviderTableMeta.FILE_ACCOUNT_OWNER + ", " + ProviderTableMeta.FILE_PATH + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + OCSHARES_OWNER_PATH_INDEX + " ON "
+                       + ProviderTableMeta.OCSHARES_TABLE_NAME
+                       + "(" + ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + ", " + ProviderTableMeta.OCSHARES_PATH + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + FILESYSTEM_FOLDER_PATH_INDEX + " ON "
+                       + ProviderTableMeta.FILESYSTEM_TABLE_NAME
+                       + "(" + ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + ", "
+                       + ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH + ");");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + UPLOADS_STATUS_ACCOUNT_END_INDEX + " ON "
+                       + ProviderTableMeta.UPLOADS_TABLE_NAME
+                       + "(" + ProviderTableMeta.UPLOADS_STATUS + ", "
+                       + ProviderTableMeta.UPLOADS_ACCOUNT_NAME + ", "
+                       + ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + ");");
+    }
+
     /**
      * Version 10 of database does not modify its scheme. It coincides with the upgrade of the
      * ownCloud account names structure to include in it the path to the server instance. Updating
@@ -1022,8 +1242,7 @@ public class FileContentProvider extends ContentProvider {
             case ARBITRARY_DATA:
             case VIRTUAL:
             case FILESYSTEM:
-                String callingPackage = mContext.getPackageManager().getNameForUid(Binder.getCallingUid());
-                return callingPackage == null || !callingPackage.equals(mContext.getPackageName());
+                return isCallerNotOwnPackage();
 
             case ROOT_DIRECTORY:
             case SINGLE_FILE:
@@ -1033,6 +1252,11 @@ public class FileContentProvider extends ContentProvider {
         }
     }
 
+    private boolean isCallerNotOwnPackage() {
+        String callingPackage = mContext.getPackageManager().getNameForUid(Binder.getCallingUid());
+        return callingPackage == null || !callingPackage.equals(mContext.getPackageName());
+    }
+
     class DataBaseHelper extends SQLiteOpenHelper {
         DataBaseHelper(Context context) {
             super(context, ProviderMeta.DB_NAME, null, ProviderMeta.DB_VERSION);
@@ -1067,6 +1291,9 @@ public class FileContentProvider extends ContentProvider {
 
             // Create filesystem table
             createFileSystemTable(db);
+
+            // Create indexes
+            createIndexes(db);
         }
 
         @Override
@@ -2327,6 +2554,72 @@ public class FileContentProvider extends ContentProvider {
             if (!upgraded) {
                 Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
             }
+
+            if (oldVersion < 63 && newVersion >= 63) {
+                Log_OC.i(SQL, "Entering in the #63 add indexes to files, shares and filesystem table");
+                db.beginTransaction();
+                try {
+                    createIndexes(db);
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 64 && newVersion >= 64) {
+                Log_OC.i(SQL, "Entering in the #64 add chunk state to uploads");
+                db.beginTransaction();
+                try {
+                    // uploads table is re-created by #54
+                    if (!checkIfColumnExists(db, ProviderTableMeta.UPLOADS_TABLE_NAME,
+                                             ProviderTableMeta.UPLOADS_CHUNKED_UPLOAD_ID)) {
+                        db.execSQL(ALTER_TABLE + ProviderTableMeta.UPLOADS_TABLE_NAME +
+                                       ADD_COLUMN + ProviderTableMeta.UPLOADS_CHUNKED_UPLOAD_ID + " TEXT ");
+                        db.execSQL(ALTER_TABLE + ProviderTableMeta.UPLOADS_TABLE_NAME +
+                                       ADD_COLUMN + ProviderTableMeta.UPLOADS_CHUNK_SIZE + " INTEGER ");
+                        db.execSQL(ALTER_TABLE + ProviderTableMeta.UPLOADS_TABLE_NAME +
+                                       ADD_COLUMN + ProviderTableMeta.UPLOADS_CONFIRMED_CHUNKS + " INTEGER ");
+                        db.execSQL(ALTER_TABLE + ProviderTableMeta.UPLOADS_TABLE_NAME + ADD_COLUMN +
+                                       ProviderTableMeta.UPLOADS_CHUNKED_SOURCE_LAST_MODIFIED + " INTEGER ");
+                    }
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
+
+            if (oldVersion < 65 && newVersion >= 65) {
+                Log_OC.i(SQL, "Entering in the #65 add status index to uploads table");
+                db.beginTransaction();
+                try {
+                    // uploads are paged by end timestamp, which was not stored for new uploads
+                    db.execSQL("UPDATE " + ProviderTableMeta.UPLOADS_TABLE_NAME + " SET " +
+                                   ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " = 0 WHERE " +
+                                   ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP + " IS NULL");
+                    createIndexes(db);
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
         }
     }
 }
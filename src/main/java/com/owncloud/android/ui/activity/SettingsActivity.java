@@ -124,6 +124,8 @@ public class SettingsActivity extends ThemedPreferenceActivity
 
     private static final String DAV_PATH = "/remote.php/dav";
 
+    private static final String[] PARALLEL_UPLOADS_VALUES = {"1", "2", "4", "8"};
+
     public static final String SYNCED_FOLDER_LIGHT_UPLOAD_ON_WIFI = "SYNCED_FOLDER_LIGHT_UPLOAD_ON_WIFI";
 
     private Uri serverBaseUri;
@@ -743,6 +745,21 @@ public class SettingsActivity extends ThemedPreferenceActivity
 
             return true;
         });
+
+        setupParallelUploadsPreference();
+    }
+
+    private void setupParallelUploadsPreference() {
+        ListPreference parallelUploadsPref = (ListPreference) findPreference("parallelUploads");
+
+        parallelUploadsPref.setEntries(PARALLEL_UPLOADS_VALUES);
+        parallelUploadsPref.setEntryValues(PARALLEL_UPLOADS_VALUES);
+        parallelUploadsPref.setValue(String.valueOf(preferences.getParallelUploads()));
+
+        parallelUploadsPref.setOnPreferenceChangeListener((preference, newValue) -> {
+            preferences.setParallelUploads(Integer.parseInt((String) newValue));
+            return true;
+        });
     }
 
     private String getAppVersion() {
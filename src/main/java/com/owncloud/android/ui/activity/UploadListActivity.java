@@ -24,11 +24,9 @@
 package com.owncloud.android.ui.activity;
 
 import android.accounts.Account;
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.os.Bundle;
 import android.os.IBinder;
@@ -59,7 +57,6 @@ import com.owncloud.android.utils.theme.ThemeLayoutUtils;
 
 import javax.inject.Inject;
 
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
@@ -72,8 +69,6 @@ public class UploadListActivity extends FileActivity {
 
     private static final String TAG = UploadListActivity.class.getSimpleName();
 
-    private UploadMessagesReceiver uploadMessagesReceiver;
-
     private UploadListAdapter uploadListAdapter;
 
     public SwipeRefreshLayout swipeListRefreshLayout;
@@ -96,9 +91,6 @@ public class UploadListActivity extends FileActivity {
     @Inject
     BackgroundJobManager backgroundJobManager;
 
-    @Inject
-    LocalBroadcastManager localBroadcastManager;
-
     private UploadListLayoutBinding binding;
 
     public static Intent createIntent(OCFile file, Account account, Integer flag, Context context) {
@@ -212,13 +204,8 @@ public class UploadListActivity extends FileActivity {
 
         setDrawerMenuItemChecked(R.id.nav_uploads);
 
-        // Listen for upload messages
-        uploadMessagesReceiver = new UploadMessagesReceiver();
-        IntentFilter uploadIntentFilter = new IntentFilter();
-        uploadIntentFilter.addAction(FileUploader.getUploadsAddedMessage());
-        uploadIntentFilter.addAction(FileUploader.getUploadStartMessage());
-        uploadIntentFilter.addAction(FileUploader.getUploadFinishMessage());
-        localBroadcastManager.registerReceiver(uploadMessagesReceiver, uploadIntentFilter);
+        // Listen for changed uploads
+        uploadListAdapter.startListening();
 
         Log_OC.v(TAG, "onResume() end");
 
@@ -227,10 +214,7 @@ public class UploadListActivity extends FileActivity {
     @Override
     protected void onPause() {
         Log_OC.v(TAG, "onPause() start");
-        if (uploadMessagesReceiver != null) {
-            localBroadcastManager.unregisterReceiver(uploadMessagesReceiver);
-            uploadMessagesReceiver = null;
-        }
+        uploadListAdapter.stopListening();
         super.onPause();
         Log_OC.v(TAG, "onPause() end");
     }
@@ -340,17 +324,4 @@ public class UploadListActivity extends FileActivity {
             }
         }
     }
-
-    /**
-     * Once the file upload has changed its status -> update uploads list view
-     */
-    private class UploadMessagesReceiver extends BroadcastReceiver {
-        /**
-         * {@link BroadcastReceiver} to enable syncing feedback in UI
-         */
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            uploadListAdapter.loadUploadItemsFromDb();
-        }
-    }
 }
@@ -36,6 +36,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DiskLruImageCache {
 
@@ -46,6 +47,11 @@ public class DiskLruImageCache {
     private static final int VALUE_COUNT = 1;
     private static final int IO_BUFFER_SIZE = 8 * 1024;
     private static final String CACHE_TEST_DISK = "cache_test_DISK_";
+    private static final int FLUSH_AFTER_PUTS = 32;
+    private static final long FLUSH_AFTER_MILLIS = 5000;
+
+    private final AtomicInteger mPutsSinceFlush = new AtomicInteger();
+    private volatile long mLastFlush = System.currentTimeMillis();
 
     private static final String TAG = DiskLruImageCache.class.getSimpleName();
 
@@ -79,8 +85,8 @@ public class DiskLruImageCache {
             }
 
             if (writeBitmapToFile(data, editor)) {
-                mDiskCache.flush();
                 editor.commit();
+                flushIfNeeded();
                 if (BuildConfig.DEBUG) {
                     Log_OC.d(CACHE_TEST_DISK, "image put on disk cache " + validKey);
                 }
@@ -104,6 +110,24 @@ public class DiskLruImageCache {
         }
     }
 
+    /**
+     * Flushes the journal only every {@link #FLUSH_AFTER_PUTS} puts or after {@link #FLUSH_AFTER_MILLIS}, as
+     * flushing on every put serializes all writers on the journal. Entries not yet flushed are lost on a crash,
+     * which is acceptable for a cache.
+     */
+    private void flushIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (mPutsSinceFlush.incrementAndGet() >= FLUSH_AFTER_PUTS || now - mLastFlush >= FLUSH_AFTER_MILLIS) {
+            mPutsSinceFlush.set(0);
+            mLastFlush = now;
+            try {
+                mDiskCache.flush();
+            } catch (IOException e) {
+                Log_OC.d(TAG, "Error flushing disk cache", e);
+            }
+        }
+    }
+
     public Bitmap getScaledBitmap(String key, int width, int height) {
         Bitmap bitmap = null;
         DiskLruCache.Snapshot snapshot = null;
@@ -1167,11 +1167,14 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         gridView = bool;
     }
 
-    @VisibleForTesting
     public void setShowShareAvatar(boolean bool) {
         showShareAvatar = bool;
     }
 
+    public boolean isShowShareAvatar() {
+        return showShareAvatar;
+    }
+
     @VisibleForTesting
     public void setCurrentDirectory(OCFile folder) {
         currentDirectory = folder;
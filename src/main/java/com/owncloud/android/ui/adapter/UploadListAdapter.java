@@ -55,6 +55,7 @@ import com.owncloud.android.R;
 import com.owncloud.android.datamodel.FileDataStorageManager;
 import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.datamodel.ThumbnailsCacheManager;
+import com.owncloud.android.datamodel.UploadsChangeFeed;
 import com.owncloud.android.datamodel.UploadsStorageManager;
 import com.owncloud.android.datamodel.UploadsStorageManager.UploadStatus;
 import com.owncloud.android.db.OCUpload;
@@ -72,17 +73,33 @@ import com.owncloud.android.utils.theme.ThemeBarUtils;
 import com.owncloud.android.utils.theme.ThemeColorUtils;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
 /**
  * This Adapter populates a ListView with following types of uploads: pending, active, completed. Filtering possible.
+ *
+ * While listening to the {@link UploadsStorageManager#getChangeFeed() change feed}, only changed uploads are reloaded
+ * and only their rows are rebound, unless uploads move between groups or positions.
+ *
+ * Each group is loaded page by page: the next page is loaded when the end of the loaded uploads is shown.
  */
-public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedViewHolder> {
+public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedViewHolder>
+    implements UploadsChangeFeed.Listener {
     private static final String TAG = UploadListAdapter.class.getSimpleName();
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGE_PREFETCH_DISTANCE = 20;
 
     private ProgressListener progressListener;
     private FileActivity parentActivity;
@@ -94,6 +111,7 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     private Clock clock;
     private UploadGroup[] uploadGroups;
     private boolean showUser;
+    private boolean missedChanges;
 
     @Override
     public int getSectionCount() {
@@ -135,7 +153,7 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
                     FileUploader.FileUploaderBinder uploaderBinder = parentActivity.getFileUploaderBinder();
 
                     if (uploaderBinder != null) {
-                        for (OCUpload upload : group.getItems()) {
+                        for (OCUpload upload : uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount()) {
                             uploaderBinder.cancel(upload);
                         }
                     }
@@ -191,24 +209,39 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
         uploadGroups[0] = new UploadGroup(Type.CURRENT,
                                           parentActivity.getString(R.string.uploads_view_group_current_uploads)) {
             @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getCurrentAndPendingUploadsForCurrentAccount());
+            List<OCUpload> loadPage(String accountName, @Nullable OCUpload after, int limit) {
+                return uploadsStorageManager.getCurrentAndPendingUploadsPage(accountName, after, limit);
+            }
+
+            @Override
+            long count(String accountName) {
+                return uploadsStorageManager.countCurrentAndPendingUploads(accountName);
             }
         };
 
         uploadGroups[1] = new UploadGroup(Type.FAILED,
                                           parentActivity.getString(R.string.uploads_view_group_failed_uploads)) {
             @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getFailedButNotDelayedUploadsForCurrentAccount());
+            List<OCUpload> loadPage(String accountName, @Nullable OCUpload after, int limit) {
+                return uploadsStorageManager.getFailedButNotDelayedUploadsPage(accountName, after, limit);
+            }
+
+            @Override
+            long count(String accountName) {
+                return uploadsStorageManager.countFailedButNotDelayedUploads(accountName);
             }
         };
 
         uploadGroups[2] = new UploadGroup(Type.FINISHED,
                                           parentActivity.getString(R.string.uploads_view_group_finished_uploads)) {
             @Override
-            public void refresh() {
-                fixAndSortItems(uploadsStorageManager.getFinishedUploadsForCurrentAccount());
+            List<OCUpload> loadPage(String accountName, @Nullable OCUpload after, int limit) {
+                return uploadsStorageManager.getFinishedUploadsPage(accountName, after, limit);
+            }
+
+            @Override
+            long count(String accountName) {
+                return uploadsStorageManager.countFinishedUploads(accountName);
             }
         };
 
@@ -221,7 +254,15 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     public void onBindViewHolder(SectionedViewHolder holder, int section, int relativePosition, int absolutePosition) {
         ItemViewHolder itemViewHolder = (ItemViewHolder) holder;
 
-        OCUpload item = uploadGroups[section].getItem(relativePosition);
+        UploadGroup group = uploadGroups[section];
+        OCUpload item = group.getItem(relativePosition);
+
+        if (group.hasMore() && !group.pageRequested &&
+            relativePosition >= group.getItems().length - PAGE_PREFETCH_DISTANCE) {
+            // do not change the data set while the list is laid out
+            group.pageRequested = true;
+            holder.itemView.post(() -> loadNextPage(group));
+        }
 
         itemViewHolder.name.setText(item.getLocalPath());
 
@@ -728,6 +769,115 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
         notifyDataSetChanged();
     }
 
+    private void loadNextPage(UploadGroup group) {
+        group.pageRequested = false;
+        if (group.loadNextPage()) {
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Starts updating the list on changes of stored uploads; reloads all uploads if changes were missed since
+     * {@link #stopListening()}.
+     */
+    public void startListening() {
+        UploadsStorageManager.getChangeFeed().addListener(this);
+        if (missedChanges) {
+            missedChanges = false;
+            loadUploadItemsFromDb();
+        }
+    }
+
+    public void stopListening() {
+        UploadsStorageManager.getChangeFeed().removeListener(this);
+        missedChanges = true;
+    }
+
+    @Override
+    public void onUploadsChanged(UploadsChangeFeed.Change change) {
+        if (change.isReloadAll()) {
+            loadUploadItemsFromDb();
+            return;
+        }
+
+        Set<Long> changedIds = new HashSet<>(change.getInserted());
+        changedIds.addAll(change.getUpdated());
+        String accountName = accountManager.getUser().getAccountName();
+        Map<Long, OCUpload> changedUploads = new HashMap<>();
+        for (OCUpload upload : uploadsStorageManager.getUploadsByIds(changedIds)) {
+            if (accountName.equals(upload.getAccountName())) {
+                changedUploads.put(upload.getUploadId(), upload);
+            }
+        }
+
+        FileUploader.FileUploaderBinder binder = parentActivity.getFileUploaderBinder();
+        boolean moved = false;
+        List<int[]> changedRows = new ArrayList<>();
+        List<List<OCUpload>> groupItems = new ArrayList<>(uploadGroups.length);
+
+        // replace or drop changed uploads in their current group
+        for (int section = 0; section < uploadGroups.length; section++) {
+            UploadGroup group = uploadGroups[section];
+            List<OCUpload> items = new ArrayList<>(Arrays.asList(group.getItems()));
+            for (int i = items.size() - 1; i >= 0; i--) {
+                long id = items.get(i).getUploadId();
+                if (!changedIds.contains(id) && !change.getRemoved().contains(id)) {
+                    continue;
+                }
+                OCUpload upload = changedUploads.get(id);
+                if (upload != null && group.type == Type.of(upload)) {
+                    upload.setDataFixed(binder);
+                    items.set(i, upload);
+                    changedUploads.remove(id);
+                    changedRows.add(new int[]{section, i});
+                } else {
+                    items.remove(i);
+                    moved = true;
+                }
+            }
+            groupItems.add(items);
+        }
+
+        // add new uploads and uploads which changed their group, unless they are part of a page not loaded yet
+        for (OCUpload upload : changedUploads.values()) {
+            Type type = Type.of(upload);
+            for (int section = 0; section < uploadGroups.length; section++) {
+                if (uploadGroups[section].type == type && !uploadGroups[section].isBeyondLoadedPages(upload)) {
+                    upload.setDataFixed(binder);
+                    groupItems.get(section).add(upload);
+                    moved = true;
+                }
+            }
+        }
+
+        // group sizes shown in the headers include uploads not loaded yet
+        if (!changedUploads.isEmpty() || !change.getRemoved().isEmpty()) {
+            for (UploadGroup group : uploadGroups) {
+                moved |= group.recount(accountName);
+            }
+        }
+
+        for (int section = 0; section < uploadGroups.length; section++) {
+            OCUpload[] items = groupItems.get(section).toArray(new OCUpload[0]);
+            OCUpload[] previous = uploadGroups[section].getItems();
+            Arrays.sort(items, new OCUploadComparator());
+            for (int i = 0; !moved && i < items.length; i++) {
+                moved = items[i].getUploadId() != previous[i].getUploadId();
+            }
+            uploadGroups[section].setItems(items);
+        }
+
+        if (moved) {
+            notifyDataSetChanged();
+        } else {
+            for (int[] row : changedRows) {
+                if (isSectionExpanded(row[0])) {
+                    notifyItemChanged(getAbsolutePosition(row[0], row[1]));
+                }
+            }
+        }
+    }
+
     private void onUploadItemClick(OCUpload file) {
         File f = new File(file.getLocalPath());
         if (!f.exists()) {
@@ -812,13 +962,43 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
     }
 
     enum Type {
-        CURRENT, FINISHED, FAILED
+        CURRENT, FINISHED, FAILED;
+
+        /**
+         * @return group of the upload list showing the given upload, matching the queries of the groups
+         */
+        static Type of(OCUpload upload) {
+            switch (upload.getLastResult()) {
+                case DELAYED_FOR_WIFI:
+                case LOCK_FAILED:
+                case DELAYED_FOR_CHARGING:
+                case DELAYED_IN_POWER_SAVE_MODE:
+                    return CURRENT;
+                default:
+                    break;
+            }
+            switch (upload.getUploadStatus()) {
+                case UPLOAD_IN_PROGRESS:
+                    return CURRENT;
+                case UPLOAD_FAILED:
+                    return FAILED;
+                default:
+                    return FINISHED;
+            }
+        }
     }
 
     abstract class UploadGroup implements Refresh {
         private Type type;
         private OCUpload[] items;
         private String name;
+        /**
+         * Last upload read from the database, in the order of the pages; updates of it do not move the next page.
+         */
+        @Nullable private OCUpload lastLoaded;
+        private boolean hasMore;
+        private long totalCount;
+        private boolean pageRequested;
 
         UploadGroup(Type type, String groupName) {
             this.type = type;
@@ -842,6 +1022,90 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
             this.items = items;
         }
 
+        abstract List<OCUpload> loadPage(String accountName, @Nullable OCUpload after, int limit);
+
+        abstract long count(String accountName);
+
+        /**
+         * Reloads the first pages of the group, at least as many uploads as currently loaded.
+         */
+        @Override
+        public void refresh() {
+            String accountName = accountManager.getUser().getAccountName();
+            int limit = Math.max(PAGE_SIZE, items.length);
+            List<OCUpload> page = loadPage(accountName, null, limit);
+
+            lastLoaded = page.isEmpty() ? null : page.get(page.size() - 1);
+            hasMore = page.size() == limit;
+            totalCount = hasMore ? count(accountName) : page.size();
+            fixAndSortItems(page.toArray(new OCUpload[0]));
+        }
+
+        /**
+         * @return true if uploads were added to the group
+         */
+        boolean loadNextPage() {
+            if (!hasMore) {
+                return false;
+            }
+            List<OCUpload> page = loadPage(accountManager.getUser().getAccountName(), lastLoaded, PAGE_SIZE);
+            hasMore = page.size() == PAGE_SIZE;
+            if (page.isEmpty()) {
+                return false;
+            }
+            lastLoaded = page.get(page.size() - 1);
+
+            // uploads changed since they were loaded may be part of the page again
+            Map<Long, OCUpload> merged = new LinkedHashMap<>();
+            for (OCUpload upload : items) {
+                merged.put(upload.getUploadId(), upload);
+            }
+            for (OCUpload upload : page) {
+                if (!merged.containsKey(upload.getUploadId())) {
+                    merged.put(upload.getUploadId(), upload);
+                }
+            }
+            fixAndSortItems(merged.values().toArray(new OCUpload[0]));
+            return true;
+        }
+
+        boolean hasMore() {
+            return hasMore;
+        }
+
+        /**
+         * @return true if the upload belongs to a page of the group which is not loaded yet
+         */
+        boolean isBeyondLoadedPages(OCUpload upload) {
+            if (!hasMore || lastLoaded == null) {
+                return false;
+            }
+            int compareStatus = Integer.compare(upload.getUploadStatus().getValue(),
+                                                lastLoaded.getUploadStatus().getValue());
+            if (compareStatus != 0) {
+                return compareStatus > 0;
+            }
+            int compareEnd = Long.compare(lastLoaded.getUploadEndTimestamp(), upload.getUploadEndTimestamp());
+            if (compareEnd != 0) {
+                return compareEnd > 0;
+            }
+            return upload.getUploadId() > lastLoaded.getUploadId();
+        }
+
+        /**
+         * Counts the uploads of a group with pages not loaded yet.
+         *
+         * @return true if the count changed
+         */
+        boolean recount(String accountName) {
+            if (!hasMore) {
+                return false;
+            }
+            long previous = totalCount;
+            totalCount = count(accountName);
+            return totalCount != previous;
+        }
+
         void fixAndSortItems(OCUpload... array) {
             FileUploader.FileUploaderBinder binder = parentActivity.getFileUploaderBinder();
 
@@ -853,8 +1117,8 @@ public class UploadListAdapter extends SectionedRecyclerViewAdapter<SectionedVie
             setItems(array);
         }
 
-        private int getGroupItemCount() {
-            return items == null ? 0 : items.length;
+        private long getGroupItemCount() {
+            return hasMore ? totalCount : items.length;
         }
     }
 }
@@ -322,6 +322,26 @@ public class OCFileListFragment extends ExtendedListFragment implements
         }
     }
 
+    /**
+     * Shows share avatars as soon as refreshed capabilities of the account support them, not only when the list is
+     * bound to another storage manager.
+     */
+    private void observeCapability() {
+        FileDataStorageManager storageManager = mContainerActivity.getStorageManager();
+        User user = accountManager.getUser();
+        if (storageManager == null || user.isAnonymous()) {
+            return;
+        }
+
+        storageManager.getCapabilityLiveData(user.getAccountName()).observe(getViewLifecycleOwner(), capability -> {
+            boolean showShareAvatar = capability != null && capability.getVersion().isShareesOnDavSupported();
+            if (mAdapter.isShowShareAvatar() != showShareAvatar) {
+                mAdapter.setShowShareAvatar(showShareAvatar);
+                mAdapter.notifyDataSetChanged();
+            }
+        });
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -350,6 +370,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
             isGridViewPreferred(mFile)
         );
         setRecyclerViewAdapter(mAdapter);
+        observeCapability();
 
         mHideFab = args != null && args.getBoolean(ARG_HIDE_FAB, false);
 
@@ -248,7 +248,6 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
                 binding.shimmer.setVisibility(View.VISIBLE);
                 binding.shimmerThumbnail.setImageBitmap(thumbnail);
                 binding.image.setVisibility(View.GONE);
-                bitmap = thumbnail;
             } else {
                 thumbnail = ThumbnailsCacheManager.mDefaultImg;
             }
@@ -262,8 +261,6 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
                     binding.emptyListView.setVisibility(View.GONE);
                     binding.emptyListProgress.setVisibility(View.GONE);
                     binding.image.setBackgroundColor(getResources().getColor(R.color.background_color_inverse));
-
-                    bitmap = resizedImage;
                 } else {
                     // generate new resized image
                     if (ThumbnailsCacheManager.cancelPotentialThumbnailWork(getFile(), binding.image) &&
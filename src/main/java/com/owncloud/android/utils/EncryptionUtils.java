@@ -45,14 +45,25 @@ import com.owncloud.android.operations.UploadException;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.httpclient.HttpStatus;
-
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.io.CipherInputStream;
+import org.bouncycastle.crypto.io.CipherOutputStream;
+import org.bouncycastle.crypto.modes.AEADBlockCipher;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
@@ -115,6 +126,8 @@ public final class EncryptionUtils {
     private static final String AES = "AES";
     private static final String RSA_CIPHER = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
     private static final String RSA = "RSA";
+    private static final int AUTHENTICATION_TAG_LENGTH = 128;
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
 
     private EncryptionUtils() {
         // utility class -> private constructor
@@ -357,6 +370,90 @@ public final class EncryptionUtils {
         return cipher.doFinal(fileBytes);
     }
 
+    /**
+     * Encrypts a file by streaming it through the cipher, so memory usage does not depend on the file size.
+     *
+     * @param file               file to encrypt
+     * @param encryptedFile      target file, gets encrypted content followed by authentication tag
+     * @param encryptionKeyBytes key, either from metadata or {@link EncryptionUtils#generateKey()}
+     * @param iv                 initialization vector, either from metadata or {@link EncryptionUtils#randomBytes(int)}
+     * @return base64 encoded authenticationTag
+     */
+    public static String encryptFile(File file, File encryptedFile, byte[] encryptionKeyBytes, byte[] iv)
+        throws IOException {
+        AEADBlockCipher cipher = createFileCipher(true, encryptionKeyBytes, iv);
+
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream outputStream = new CipherOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(encryptedFile), FILE_BUFFER_SIZE), cipher)) {
+            copyStream(inputStream, outputStream);
+        }
+
+        return encodeBytesToBase64String(cipher.getMac());
+    }
+
+    /**
+     * Decrypts a file by streaming it through the cipher, so memory usage does not depend on the file size. If
+     * decryption fails, e.g. as content does not match authentication tag, target file is deleted.
+     *
+     * @param encryptedFile      encrypted file
+     * @param file               target file for decrypted content
+     * @param encryptionKeyBytes key from metadata
+     * @param iv                 initialization vector from metadata
+     * @param authenticationTag  authenticationTag from metadata
+     */
+    public static void decryptFile(File encryptedFile,
+                                   File file,
+                                   byte[] encryptionKeyBytes,
+                                   byte[] iv,
+                                   byte[] authenticationTag) throws IOException {
+        // check authentication tag before decrypting
+        byte[] extractedAuthenticationTag = new byte[AUTHENTICATION_TAG_LENGTH / 8];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(encryptedFile, "r")) {
+            if (randomAccessFile.length() < extractedAuthenticationTag.length) {
+                throw new SecurityException("Tag not correct");
+            }
+            randomAccessFile.seek(randomAccessFile.length() - extractedAuthenticationTag.length);
+            randomAccessFile.readFully(extractedAuthenticationTag);
+        }
+
+        if (!Arrays.equals(extractedAuthenticationTag, authenticationTag)) {
+            throw new SecurityException("Tag not correct");
+        }
+
+        AEADBlockCipher cipher = createFileCipher(false, encryptionKeyBytes, iv);
+
+        try (InputStream inputStream = new CipherInputStream(
+            new BufferedInputStream(new FileInputStream(encryptedFile), FILE_BUFFER_SIZE), cipher);
+             OutputStream outputStream = new FileOutputStream(file)) {
+            copyStream(inputStream, outputStream);
+        } catch (IOException e) {
+            if (file.exists() && !file.delete()) {
+                Log_OC.e(TAG, "Could not delete partially decrypted file " + file.getAbsolutePath());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Uses the lightweight Bouncy Castle GCM implementation, as the default provider buffers the whole content
+     * until doFinal.
+     */
+    private static AEADBlockCipher createFileCipher(boolean encrypt, byte[] encryptionKeyBytes, byte[] iv) {
+        AEADBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+        cipher.init(encrypt, new AEADParameters(new KeyParameter(encryptionKeyBytes), AUTHENTICATION_TAG_LENGTH, iv));
+
+        return cipher;
+    }
+
+    private static void copyStream(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[FILE_BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+    }
+
     public static class EncryptedFile {
         public byte[] encryptedBytes;
         public String authenticationTag;
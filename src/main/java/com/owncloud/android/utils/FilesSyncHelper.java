@@ -57,6 +57,8 @@ import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.owncloud.android.datamodel.OCFile.PATH_SEPARATOR;
 
@@ -70,31 +72,44 @@ public final class FilesSyncHelper {
 
     public static final int ContentSyncJobId = 315;
 
+    /**
+     * Interval of full media store scans of a synced folder, in between only new or modified media are scanned.
+     */
+    public static final long FULL_MEDIA_SCAN_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+
     private FilesSyncHelper() {
         // utility class -> private constructor
     }
 
-    private static void insertAllDBEntriesForSyncedFolder(SyncedFolder syncedFolder) {
+    private static void insertAllDBEntriesForSyncedFolder(SyncedFolder syncedFolder,
+                                                          AppPreferences preferences,
+                                                          Clock clock) {
         final Context context = MainApp.getAppContext();
         final ContentResolver contentResolver = context.getContentResolver();
 
         final long enabledTimestampMs = syncedFolder.getEnabledTimestampMs();
 
         if (syncedFolder.isEnabled() && (syncedFolder.isExisting() || enabledTimestampMs >= 0)) {
+            FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
+
             MediaFolderType mediaType = syncedFolder.getType();
             if (mediaType == MediaFolderType.IMAGE) {
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.INTERNAL_CONTENT_URI
-                    , syncedFolder);
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                                                    syncedFolder);
+                insertMediaIntoDB(new Uri[]{MediaStore.Images.Media.INTERNAL_CONTENT_URI,
+                                      MediaStore.Images.Media.EXTERNAL_CONTENT_URI},
+                                  syncedFolder,
+                                  filesystemDataProvider,
+                                  preferences,
+                                  clock);
             } else if (mediaType == MediaFolderType.VIDEO) {
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.INTERNAL_CONTENT_URI,
-                                                    syncedFolder);
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                                                    syncedFolder);
+                insertMediaIntoDB(new Uri[]{MediaStore.Video.Media.INTERNAL_CONTENT_URI,
+                                      MediaStore.Video.Media.EXTERNAL_CONTENT_URI},
+                                  syncedFolder,
+                                  filesystemDataProvider,
+                                  preferences,
+                                  clock);
             } else {
+                FilesystemDataProvider.Indexer indexer = filesystemDataProvider.createIndexer(syncedFolder);
                 try {
-                    FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
                     Path path = Paths.get(syncedFolder.getLocalPath());
 
                     Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
@@ -102,9 +117,9 @@ public final class FilesSyncHelper {
                         public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
                             File file = path.toFile();
                             if (syncedFolder.isExisting() || attrs.lastModifiedTime().toMillis() >= enabledTimestampMs) {
-                                filesystemDataProvider.storeOrUpdateFileValue(path.toAbsolutePath().toString(),
-                                                                              attrs.lastModifiedTime().toMillis(),
-                                                                              file.isDirectory(), syncedFolder);
+                                indexer.storeOrUpdateFileValue(path.toAbsolutePath().toString(),
+                                                               attrs.lastModifiedTime().toMillis(),
+                                                               file.isDirectory());
                             }
 
                             return FileVisitResult.CONTINUE;
@@ -117,6 +132,8 @@ public final class FilesSyncHelper {
                     });
                 } catch (IOException e) {
                     Log_OC.e(TAG, "Something went wrong while indexing files for auto upload", e);
+                } finally {
+                    indexer.flush();
                 }
             }
         }
@@ -131,25 +148,79 @@ public final class FilesSyncHelper {
 
         for (SyncedFolder syncedFolder : syncedFolderProvider.getSyncedFolders()) {
             if (syncedFolder.isEnabled() && (!skipCustom || syncedFolder.getType() != MediaFolderType.CUSTOM)) {
-                insertAllDBEntriesForSyncedFolder(syncedFolder);
+                insertAllDBEntriesForSyncedFolder(syncedFolder, preferences, clock);
             }
         }
     }
 
-    private static void insertContentIntoDB(Uri uri, SyncedFolder syncedFolder) {
-        final Context context = MainApp.getAppContext();
-        final ContentResolver contentResolver = context.getContentResolver();
+    /**
+     * Indexes media of a synced folder. Only media added or modified since the last scan are queried from media
+     * store, using a watermark persisted per synced folder. Once per {@link #FULL_MEDIA_SCAN_INTERVAL_MS} all media
+     * of the synced folder are queried to reconcile changes the watermark cannot catch.
+     */
+    private static void insertMediaIntoDB(Uri[] uris,
+                                          SyncedFolder syncedFolder,
+                                          FilesystemDataProvider filesystemDataProvider,
+                                          AppPreferences preferences,
+                                          Clock clock) {
+        final long now = clock.getCurrentTime();
+        final long lastFullScan = preferences.getMediaFullScanTimestamp(syncedFolder.getId());
+        final boolean fullScan = now < lastFullScan || now - lastFullScan >= FULL_MEDIA_SCAN_INTERVAL_MS;
+        final long watermark = fullScan ? 0 : preferences.getMediaScanWatermark(syncedFolder.getId());
+
+        Map<String, Long> media = new LinkedHashMap<>();
+        long newWatermark = watermark;
+        for (Uri uri : uris) {
+            newWatermark = Math.max(newWatermark, queryMedia(uri, syncedFolder, watermark, media));
+        }
+        // media dated in the future must not hide media added until then from incremental scans
+        newWatermark = Math.min(newWatermark, now / 1000);
+
+        FilesystemDataProvider.Indexer indexer;
+        if (fullScan) {
+            indexer = filesystemDataProvider.createIndexer(syncedFolder);
+        } else {
+            indexer = filesystemDataProvider.createIndexer(syncedFolder, media.keySet());
+        }
+        boolean stored;
+        try {
+            for (Map.Entry<String, Long> entry : media.entrySet()) {
+                indexer.storeOrUpdateFileValue(entry.getKey(), entry.getValue(),
+                                               new File(entry.getKey()).isDirectory());
+            }
+        } finally {
+            stored = indexer.flush();
+        }
 
-        Cursor cursor;
-        int column_index_data;
-        int column_index_date_modified;
+        Log_OC.d(TAG, (fullScan ? "Full" : "Incremental") + " media scan of " + syncedFolder.getLocalPath() +
+            ": " + media.size() + " media found");
 
-        final FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
+        if (!stored) {
+            // keep previous watermark, media not stored are queried again by the next scan
+            Log_OC.w(TAG, "Media scan of " + syncedFolder.getLocalPath() + " not stored completely");
+            return;
+        }
+        preferences.setMediaScanWatermark(syncedFolder.getId(), newWatermark);
+        if (fullScan) {
+            preferences.setMediaFullScanTimestamp(syncedFolder.getId(), now);
+        }
+    }
 
-        String contentPath;
-        boolean isFolder;
+    /**
+     * Queries media of a synced folder added or modified at or after given watermark. Media found in the same second
+     * as the watermark are queried again, as media store dates have a resolution of seconds.
+     *
+     * @param media collects modification date of found media by path
+     * @return highest media store date of all found media in seconds, watermark if none found
+     */
+    private static long queryMedia(Uri uri, SyncedFolder syncedFolder, long watermark, Map<String, Long> media) {
+        final Context context = MainApp.getAppContext();
 
-        String[] projection = {MediaStore.MediaColumns.DATA, MediaStore.MediaColumns.DATE_MODIFIED};
+        String[] projection = {
+            MediaStore.MediaColumns.DATA,
+            MediaStore.MediaColumns.DATE_MODIFIED,
+            MediaStore.MediaColumns.DATE_ADDED
+        };
 
         String path = syncedFolder.getLocalPath();
         if (!path.endsWith(PATH_SEPARATOR)) {
@@ -157,25 +228,39 @@ public final class FilesSyncHelper {
         }
         path = path + "%";
 
+        String selection = MediaStore.MediaColumns.DATA + " LIKE ?";
+        String[] selectionArgs;
+        if (watermark > 0) {
+            selection += " AND (" + MediaStore.MediaColumns.DATE_ADDED + " >= ? OR " +
+                MediaStore.MediaColumns.DATE_MODIFIED + " >= ?)";
+            selectionArgs = new String[]{path, Long.toString(watermark), Long.toString(watermark)};
+        } else {
+            selectionArgs = new String[]{path};
+        }
+
         long enabledTimestampMs = syncedFolder.getEnabledTimestampMs();
+        long newWatermark = watermark;
 
-        cursor = context.getContentResolver().query(uri, projection, MediaStore.MediaColumns.DATA + " LIKE ?",
-                                                    new String[]{path}, null);
+        Cursor cursor = context.getContentResolver().query(uri, projection, selection, selectionArgs, null);
 
         if (cursor != null) {
-            column_index_data = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
-            column_index_date_modified = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED);
+            int columnIndexData = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
+            int columnIndexDateModified = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED);
+            int columnIndexDateAdded = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_ADDED);
             while (cursor.moveToNext()) {
-                contentPath = cursor.getString(column_index_data);
-                isFolder = new File(contentPath).isDirectory();
-                if (syncedFolder.isExisting() || cursor.getLong(column_index_date_modified) >= enabledTimestampMs / 1000.0) {
-                    filesystemDataProvider.storeOrUpdateFileValue(contentPath,
-                                                                  cursor.getLong(column_index_date_modified), isFolder,
-                                                                  syncedFolder);
+                String contentPath = cursor.getString(columnIndexData);
+                long dateModified = cursor.getLong(columnIndexDateModified);
+                long dateAdded = cursor.getLong(columnIndexDateAdded);
+                newWatermark = Math.max(newWatermark, Math.max(dateModified, dateAdded));
+
+                if (syncedFolder.isExisting() || dateModified >= enabledTimestampMs / 1000.0) {
+                    media.put(contentPath, dateModified);
                 }
             }
             cursor.close();
         }
+
+        return newWatermark;
     }
 
     public static void restartJobsIfNeeded(final UploadsStorageManager uploadsStorageManager,
@@ -99,6 +99,17 @@ class ManualAsyncRunnerTest {
         assertEquals("Entire queue should be processed", EMPTY, runner.size)
     }
 
+    @Test
+    fun `delayed callbacks are queued`() {
+        var calls = EMPTY
+        runner.postDelayed(TIMEOUT) { calls++ }
+
+        assertEquals("Callback should be enqueued", ONE_TASK, runner.size)
+        assertEquals("Callback should not be called before run", EMPTY, calls)
+        runner.runOne()
+        assertEquals("Callback should be called once run", ONE_TASK, calls)
+    }
+
     @Test
     fun `run one task when queue is empty`() {
         assertFalse("No task should be run", runner.runOne())
@@ -37,6 +37,11 @@ class FileLogHandlerTest {
         const val THREE_LOG_FILES = 3
         const val EXPECTED_LINE_COUNT_6 = 6
         const val EXPECTED_LINE_COUNT_12 = 12
+        const val PAGE_SIZE = 5
+        const val SMALL_PAGE_SIZE = 3
+        const val LINES_BEFORE_ROTATION = 6
+        const val OLDEST_GENERATION = -3L
+        const val PREVIOUS_GENERATION = -1L
     }
 
     private lateinit var logDir: File
@@ -212,6 +217,112 @@ class FileLogHandlerTest {
         assertTrue(lines.logSize > 0)
     }
 
+    @Test
+    fun `load pages of log lines`() {
+        // GIVEN
+        //      multiple log files exist
+        //      log files have lines
+        writeLogFile("log.txt.2", "line1\nline2\nline3")
+        writeLogFile("log.txt.1", "line4\nline5\nline6")
+        writeLogFile("log.txt.0", "line7\nline8\nline9")
+        writeLogFile("log.txt", "line10\nline11\nline12\n")
+        val handler = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+
+        // WHEN
+        //      latest page is loaded
+        //      preceding page is loaded
+        val latest = handler.loadLogPage(null, PAGE_SIZE)
+        val older = handler.loadLogPage(latest.first, PAGE_SIZE)
+
+        // THEN
+        //      pages span multiple files
+        //      pages start at a line of a log file generation
+        assertEquals(listOf("line8", "line9", "line10", "line11", "line12"), latest.lines)
+        assertEquals(LogPosition(PREVIOUS_GENERATION, 1), latest.first)
+        assertTrue(latest.hasPrevious)
+        assertEquals(EXPECTED_LINE_COUNT_12, latest.totalLines)
+        assertEquals(listOf("line3", "line4", "line5", "line6", "line7"), older.lines)
+        assertEquals(LogPosition(OLDEST_GENERATION, 2), older.first)
+        assertTrue(older.hasPrevious)
+    }
+
+    @Test
+    fun `page position is kept when logs are rotated between page loads`() {
+        // GIVEN
+        //      latest page of log lines is loaded
+        val handler = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        handler.open()
+        for (i in 1..LINES_BEFORE_ROTATION) {
+            handler.write("line$i\n")
+        }
+        val latest = handler.loadLogPage(null, SMALL_PAGE_SIZE)
+        assertEquals(listOf("line4", "line5", "line6"), latest.lines)
+
+        // WHEN
+        //      logs are rotated and written
+        //      preceding page is loaded
+        handler.rotateLogs()
+        handler.write("line7\n")
+        val older = handler.loadLogPage(latest.first, SMALL_PAGE_SIZE)
+
+        // THEN
+        //      page precedes the loaded page, no lines are skipped or repeated
+        assertEquals(listOf("line1", "line2", "line3"), older.lines)
+        assertFalse(older.hasPrevious)
+        handler.close()
+    }
+
+    @Test
+    fun `page before rotated out lines is empty`() {
+        // GIVEN
+        //      latest page of log lines is loaded
+        val handler = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        handler.open()
+        handler.write("line1\n")
+        handler.write("line2\n")
+        val latest = handler.loadLogPage(null, 1)
+        assertEquals(listOf("line2"), latest.lines)
+
+        // WHEN
+        //      file of loaded lines is rotated out
+        for (i in 0 until handler.maxLogFilesCount) {
+            handler.rotateLogs()
+            handler.write("new line $i\n")
+        }
+        val older = handler.loadLogPage(latest.first, PAGE_SIZE)
+
+        // THEN
+        //      no lines of newer files are returned
+        assertTrue(older.lines.isEmpty())
+        assertFalse(older.hasPrevious)
+        handler.close()
+    }
+
+    @Test
+    fun `page index follows writes and rotation`() {
+        // GIVEN
+        //      log handler has written and indexed some lines
+        val handler = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        handler.open()
+        handler.write("line1\n")
+        handler.write("line2\n")
+        assertEquals(listOf("line1", "line2"), handler.loadLogPage(null, PAGE_SIZE).lines)
+
+        // WHEN
+        //      more lines are written
+        //      logs are rotated
+        handler.write("line3\n")
+        handler.rotateLogs()
+        handler.write("line4\n")
+
+        // THEN
+        //      index contains all lines
+        val page = handler.loadLogPage(null, PAGE_SIZE)
+        assertEquals(listOf("line1", "line2", "line3", "line4"), page.lines)
+        assertFalse(page.hasPrevious)
+        handler.close()
+    }
+
     @Test(expected = IllegalArgumentException::class)
     fun `load log lines - negative count is illegal`() {
         // WHEN
@@ -32,6 +32,8 @@ import com.nhaarman.mockitokotlin2.spy
 import com.nhaarman.mockitokotlin2.times
 import com.nhaarman.mockitokotlin2.verify
 import com.nhaarman.mockitokotlin2.whenever
+import com.owncloud.android.lib.common.utils.Log_OC
+import org.junit.After
 import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Assert.assertNotEquals
@@ -41,8 +43,10 @@ import org.junit.Before
 import org.junit.Test
 import org.mockito.ArgumentCaptor
 import org.mockito.MockitoAnnotations
+import java.io.File
 import java.nio.file.Files
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
 
 class LoggerTest {
@@ -56,8 +60,13 @@ class LoggerTest {
         const val EMPTY_LONG = 0L
         const val TIMEOUT = 3000L
         const val MESSAGE_COUNT = 3
+        const val PRODUCER_THREADS = 8
+        const val MESSAGES_PER_PRODUCER = 100_000
+        const val MILLIS_PER_SECOND = 1000L
+        const val BENCHMARK_TIMEOUT = 30L
     }
 
+    private lateinit var tempDir: File
     private lateinit var clock: Clock
     private lateinit var logHandler: FileLogHandler
     private lateinit var osHandler: Handler
@@ -66,13 +75,19 @@ class LoggerTest {
     @Before
     fun setUp() {
         MockitoAnnotations.initMocks(this)
-        val tempDir = Files.createTempDirectory("log-test").toFile()
+        tempDir = Files.createTempDirectory("log-test").toFile()
         clock = ClockImpl()
         logHandler = spy(FileLogHandler(tempDir, "log.txt", FILE_SIZE))
         osHandler = mock()
         logger = LoggerImpl(clock, logHandler, osHandler, QUEUE_CAPACITY)
     }
 
+    @After
+    fun tearDown() {
+        logger.stop()
+        tempDir.deleteRecursively()
+    }
+
     @Test
     fun `write is done on background thread`() {
         val callerThreadId = Thread.currentThread().id
@@ -329,4 +344,79 @@ class LoggerTest {
             join(TIMEOUT)
         }
     }
+
+    @Test
+    fun `throwable is logged with message`() {
+        val posted = CountDownLatch(1)
+        whenever(osHandler.post(any())).thenAnswer {
+            (it.arguments[0] as Runnable).run()
+            posted.countDown()
+            true
+        }
+
+        // GIVEN
+        //      logger event loop is running
+        logger.start()
+
+        // WHEN
+        //      messages with throwable are logged
+        logger.d("tag", "debug message", IllegalStateException("debug exception"))
+        logger.e("tag", "error message", IllegalArgumentException("error exception"))
+        val listener: OnLogsLoaded = mock()
+        logger.load(listener)
+        assertTrue("Logs not loaded", posted.await(LATCH_WAIT, TimeUnit.SECONDS))
+
+        // THEN
+        //      throwables are written together with messages
+        verify(listener).invoke(
+            argThat {
+                size == 2 &&
+                    "debug message" in this[0].message &&
+                    "IllegalStateException: debug exception" in this[0].message &&
+                    "error message" in this[1].message &&
+                    "IllegalArgumentException: error exception" in this[1].message
+            },
+            any()
+        )
+    }
+
+    @Test
+    fun `logging does not block producers`() {
+        // GIVEN
+        //      logger event loop is running
+        //      log file is written to disk
+        val benchmarkDir = Files.createTempDirectory("log-benchmark").toFile()
+        val handler = FileLogHandler(benchmarkDir, "log.txt", FILE_SIZE * FILE_SIZE)
+        val sut = LoggerImpl(clock, handler, osHandler, QUEUE_CAPACITY * QUEUE_CAPACITY)
+        sut.start()
+
+        try {
+            // WHEN
+            //      8 threads log as fast as possible
+            val executor = Executors.newFixedThreadPool(PRODUCER_THREADS)
+            val start = System.nanoTime()
+            for (thread in 0 until PRODUCER_THREADS) {
+                executor.execute {
+                    for (i in 0 until MESSAGES_PER_PRODUCER) {
+                        sut.d("producer $thread", "message $i")
+                    }
+                }
+            }
+            executor.shutdown()
+
+            // THEN
+            //      all producers finish, no matter how fast entries are written
+            assertTrue(executor.awaitTermination(BENCHMARK_TIMEOUT, TimeUnit.SECONDS))
+            val durationMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+            val calls = PRODUCER_THREADS * MESSAGES_PER_PRODUCER
+            Log_OC.d(
+                javaClass.simpleName,
+                "$calls log calls from $PRODUCER_THREADS threads in $durationMs ms: " +
+                    "${calls * MILLIS_PER_SECOND / durationMs} calls/s, lost entries: ${sut.lostEntries}"
+            )
+        } finally {
+            sut.stop()
+            benchmarkDir.deleteRecursively()
+        }
+    }
 }
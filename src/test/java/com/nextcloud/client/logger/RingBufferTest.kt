@@ -0,0 +1,88 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.logger
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class RingBufferTest {
+
+    private companion object {
+        const val CAPACITY = 3
+        const val PRODUCERS = 4
+        const val ITEMS_PER_PRODUCER = 10_000
+        const val TIMEOUT = 10L
+    }
+
+    @Test
+    fun `items are polled in order of offers`() {
+        val buffer = RingBuffer<Int>(CAPACITY)
+        assertTrue(buffer.isEmpty)
+
+        assertTrue(buffer.offer(1))
+        assertTrue(buffer.offer(2))
+        assertFalse(buffer.isEmpty)
+
+        assertEquals(1, buffer.poll())
+        assertEquals(2, buffer.poll())
+        assertNull(buffer.poll())
+        assertTrue(buffer.isEmpty)
+    }
+
+    @Test
+    fun `offer fails when buffer is full`() {
+        val buffer = RingBuffer<Int>(CAPACITY)
+        for (i in 0 until CAPACITY) {
+            assertTrue(buffer.offer(i))
+        }
+
+        assertFalse(buffer.offer(CAPACITY))
+
+        // space is reused after consuming
+        assertEquals(0, buffer.poll())
+        assertTrue(buffer.offer(CAPACITY))
+        val drained = mutableListOf<Int>()
+        assertEquals(CAPACITY, buffer.drainTo(drained))
+        assertEquals(listOf(1, 2, CAPACITY), drained)
+    }
+
+    @Test
+    fun `concurrent producers do not lose items`() {
+        val buffer = RingBuffer<Int>(PRODUCERS * ITEMS_PER_PRODUCER)
+        val done = CountDownLatch(PRODUCERS)
+        for (p in 0 until PRODUCERS) {
+            Thread {
+                for (i in 0 until ITEMS_PER_PRODUCER) {
+                    buffer.offer(p * ITEMS_PER_PRODUCER + i)
+                }
+                done.countDown()
+            }.start()
+        }
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS))
+
+        val drained = mutableListOf<Int>()
+        buffer.drainTo(drained)
+        assertEquals((0 until PRODUCERS * ITEMS_PER_PRODUCER).toList(), drained.sorted())
+    }
+}
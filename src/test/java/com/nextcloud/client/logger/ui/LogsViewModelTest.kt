@@ -25,8 +25,11 @@ import com.nextcloud.client.core.Clock
 import com.nextcloud.client.core.ManualAsyncRunner
 import com.nextcloud.client.logger.Level
 import com.nextcloud.client.logger.LogEntry
+import com.nextcloud.client.logger.LogPosition
+import com.nextcloud.client.logger.LogsPage
 import com.nextcloud.client.logger.LogsRepository
 import com.nextcloud.client.logger.OnLogsLoaded
+import com.nextcloud.client.logger.OnLogsPageLoaded
 import com.nhaarman.mockitokotlin2.any
 import com.nhaarman.mockitokotlin2.mock
 import com.nhaarman.mockitokotlin2.whenever
@@ -59,16 +62,46 @@ class LogsViewModelTest {
         )
         val TEST_LOG_SIZE_KILOBYTES = 42L
         val TEST_LOG_SIZE_BYTES = TEST_LOG_SIZE_KILOBYTES * 1024L
+        val TEST_LOG_PAGE = LogsPage(
+            TEST_LOG_ENTRIES,
+            LogPosition(0, 0),
+            false,
+            TEST_LOG_ENTRIES.size,
+            TEST_LOG_SIZE_BYTES
+        )
+        val TEST_OLDER_ENTRIES = listOf(LogEntry(Date(), Level.DEBUG, "test", "entry 0"))
+        val TEST_LATEST_PAGE = LogsPage(
+            TEST_LOG_ENTRIES,
+            LogPosition(1, 0),
+            true,
+            TEST_LOG_ENTRIES.size + 1,
+            TEST_LOG_SIZE_BYTES
+        )
+        val TEST_OLDER_PAGE = LogsPage(
+            TEST_OLDER_ENTRIES,
+            LogPosition(0, 0),
+            false,
+            TEST_LOG_ENTRIES.size + 1,
+            TEST_LOG_SIZE_BYTES
+        )
         const val TOTAL_ENTRY_COUNT = 3
         const val QUERY_TIME = 4
     }
 
     class TestLogRepository : LogsRepository {
         var loadRequestCount = 0
-        var onLoadedCallback: OnLogsLoaded? = null
+        var onLoadedCallback: OnLogsPageLoaded? = null
+        var requestedBefore: LogPosition? = null
 
         override val lostEntries: Boolean = false
-        override fun load(onLoaded: OnLogsLoaded) { this.onLoadedCallback = onLoaded; loadRequestCount++ }
+        override fun load(onLoaded: OnLogsLoaded) { /* no implementation neeeded */
+        }
+        override fun loadPage(before: LogPosition?, count: Int, onLoaded: OnLogsPageLoaded) {
+            this.onLoadedCallback = onLoaded
+            this.requestedBefore = before
+            loadRequestCount++
+        }
+        override fun readEntries(): Iterable<LogEntry> = TEST_LOG_ENTRIES
         override fun deleteAll() { /* no implementation neeeded */
         }
     }
@@ -136,7 +169,7 @@ class LogsViewModelTest {
 
             // WHEN
             //      logs loading finishes
-            repository.onLoadedCallback?.invoke(TEST_LOG_ENTRIES, TEST_LOG_SIZE_BYTES)
+            repository.onLoadedCallback?.invoke(TEST_LOG_PAGE)
 
             // THEN
             //      logs are displayed
@@ -147,6 +180,29 @@ class LogsViewModelTest {
             assertNotNull(vm.status.value)
         }
 
+        @Test
+        fun `older entries are loaded on demand`() {
+            // GIVEN
+            //      latest page is loaded
+            //      there are older entries
+            vm.load()
+            repository.onLoadedCallback?.invoke(TEST_LATEST_PAGE)
+            assertEquals(TEST_LOG_ENTRIES, vm.entries.value)
+
+            // WHEN
+            //      more entries are requested
+            vm.loadMore()
+            assertEquals(TEST_LATEST_PAGE.first, repository.requestedBefore)
+            repository.onLoadedCallback?.invoke(TEST_OLDER_PAGE)
+
+            // THEN
+            //      older entries are prepended
+            //      nothing more is loaded after first line is reached
+            assertEquals(TEST_OLDER_ENTRIES + TEST_LOG_ENTRIES, vm.entries.value)
+            vm.loadMore()
+            assertEquals(2, repository.loadRequestCount)
+        }
+
         @Test
         fun `cannot start loading when loading is in progress`() {
             // GIVEN
@@ -172,7 +228,7 @@ class LogsViewModelTest {
         @Before
         fun setUp() {
             vm.load()
-            repository.onLoadedCallback?.invoke(TEST_LOG_ENTRIES, TEST_LOG_SIZE_BYTES)
+            repository.onLoadedCallback?.invoke(TEST_LOG_PAGE)
             assertFalse(vm.isLoading.value!!)
             assertEquals(TEST_LOG_ENTRIES.size, vm.entries.value?.size)
         }
@@ -210,6 +266,24 @@ class LogsViewModelTest {
             assertEquals(1, runner.size)
         }
 
+        @Test
+        fun `clearing filter restores loaded entries`() {
+            // GIVEN
+            //      logs are filtered
+            vm.filter(TEST_LOG_ENTRIES[0].message)
+            assertEquals(1, runner.runAll())
+            assertEquals(1, vm.entries.value?.size)
+
+            // WHEN
+            //      filter is cleared
+            vm.filter("")
+
+            // THEN
+            //      loaded entries are displayed without filtering
+            assertTrue(runner.isEmpty)
+            assertSame(TEST_LOG_ENTRIES, vm.entries.value)
+        }
+
         @Test
         fun `filtered logs are displayed`() {
             var statusArgs: Array<Any> = emptyArray()
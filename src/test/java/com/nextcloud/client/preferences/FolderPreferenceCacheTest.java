@@ -0,0 +1,169 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.client.preferences;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+
+public class FolderPreferenceCacheTest {
+
+    private static final String ACCOUNT = "user@nextcloud.localhost";
+    private static final String OTHER_ACCOUNT = "other@nextcloud.localhost";
+    private static final String SORT_ORDER = "folder_sort_order";
+    private static final String LAYOUT = "folder_layout";
+
+    private static final long ROOT = 1;
+    private static final long PHOTOS = 2;
+    private static final long YEAR = 3;
+    private static final long MONTH = 4;
+    private static final long DAY = 5;
+    private static final long DOCUMENTS = 6;
+
+    /**
+     * Folder tree and preference values, counting the parent lookups made to resolve preferences.
+     */
+    private static class CountingStore implements FolderPreferenceCache.Store {
+        final Map<String, String> values = new HashMap<>();
+        final Map<Long, Long> parents = new HashMap<>();
+        int parentLookups;
+
+        @Override
+        public String getValue(String accountName, String key) {
+            String value = values.get(key);
+            return value == null ? "" : value;
+        }
+
+        @Nullable
+        @Override
+        public Long getParentId(String accountName, long fileId) {
+            parentLookups++;
+            return parents.get(fileId);
+        }
+    }
+
+    private CountingStore store;
+    private FolderPreferenceCache sut;
+
+    @Before
+    public void setUp() {
+        store = new CountingStore();
+        store.parents.put(ROOT, 0L);
+        store.parents.put(PHOTOS, ROOT);
+        store.parents.put(YEAR, PHOTOS);
+        store.parents.put(MONTH, YEAR);
+        store.parents.put(DAY, MONTH);
+        store.parents.put(DOCUMENTS, ROOT);
+        store.values.put(SORT_ORDER + "_" + PHOTOS, "new_first");
+
+        sut = new FolderPreferenceCache();
+    }
+
+    @Test
+    public void navigationLooksUpEachParentOnce() {
+        // listing a folder resolves its sort order and layout on swap, on setting data and on filtering
+        for (int i = 0; i < 3; i++) {
+            assertEquals("new_first", sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY)));
+            assertEquals("", sut.get(store, ACCOUNT, LAYOUT, folder(DAY)));
+        }
+        // parents of month, year, photos, root folder and of the missing parent of the root folder
+        assertEquals(5, store.parentLookups);
+
+        // going up and back down is served from memory
+        store.parentLookups = 0;
+        assertEquals("new_first", sut.get(store, ACCOUNT, SORT_ORDER, folder(MONTH)));
+        assertEquals("", sut.get(store, ACCOUNT, SORT_ORDER, folder(ROOT)));
+        assertEquals("new_first", sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY)));
+        assertEquals(0, store.parentLookups);
+    }
+
+    @Test
+    public void siblingReusesAncestorsOfItsParent() {
+        sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY));
+        store.parentLookups = 0;
+
+        assertEquals("", sut.get(store, ACCOUNT, SORT_ORDER, null));
+        assertEquals("", sut.get(store, ACCOUNT, SORT_ORDER, folder(DOCUMENTS)));
+        assertEquals(0, store.parentLookups);
+
+        store.values.put(SORT_ORDER + "_0", "a_to_z");
+        assertEquals("a_to_z", sut.get(store, ACCOUNT, SORT_ORDER, folder(DOCUMENTS)));
+    }
+
+    @Test
+    public void settingPreferenceIsSeenByFoldersInheritingIt() {
+        sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY));
+        sut.get(store, ACCOUNT, SORT_ORDER, folder(DOCUMENTS));
+        store.parentLookups = 0;
+
+        store.values.put(SORT_ORDER + "_" + MONTH, "old_first");
+
+        assertEquals("old_first", sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY)));
+        assertEquals("new_first", sut.get(store, ACCOUNT, SORT_ORDER, folder(YEAR)));
+        assertEquals("", sut.get(store, ACCOUNT, SORT_ORDER, folder(DOCUMENTS)));
+        assertEquals(0, store.parentLookups);
+    }
+
+    @Test
+    public void movingFolderInvalidatesItsDescendants() {
+        sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY));
+        sut.get(store, ACCOUNT, SORT_ORDER, folder(DOCUMENTS));
+
+        store.parents.put(YEAR, DOCUMENTS);
+        sut.invalidateMovedFolder(ACCOUNT, YEAR);
+        store.parentLookups = 0;
+
+        assertEquals("", sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY)));
+        // parents of month and year, documents is known
+        assertEquals(2, store.parentLookups);
+
+        store.parentLookups = 0;
+        assertEquals("new_first", sut.get(store, ACCOUNT, SORT_ORDER, folder(PHOTOS)));
+        assertEquals("", sut.get(store, ACCOUNT, SORT_ORDER, folder(DOCUMENTS)));
+        assertEquals(0, store.parentLookups);
+    }
+
+    @Test
+    public void otherAccountsAreNotAffected() {
+        sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY));
+        sut.get(store, OTHER_ACCOUNT, SORT_ORDER, folder(DAY));
+
+        sut.invalidateMovedFolder(OTHER_ACCOUNT, YEAR);
+        store.parentLookups = 0;
+
+        sut.get(store, ACCOUNT, SORT_ORDER, folder(DAY));
+        assertEquals(0, store.parentLookups);
+    }
+
+    private OCFile folder(long id) {
+        OCFile folder = new OCFile("/folder" + id + "/");
+        folder.setFileId(id);
+        folder.setParentId(store.parents.get(id));
+        return folder;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.LiveData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class AccountCacheTest {
+
+    private static final String ACCOUNT = "user@nextcloud.localhost";
+    private static final String OTHER_ACCOUNT = "other@nextcloud.localhost";
+
+    @Rule
+    public InstantTaskExecutorRule rule = new InstantTaskExecutorRule();
+
+    private final Map<String, List<String>> table = new HashMap<>();
+    private final List<String> loadedAccounts = new ArrayList<>();
+    private final AccountCache.Loader<List<String>> loader = accountName -> {
+        loadedAccounts.add(accountName);
+        return read(accountName);
+    };
+
+    private AccountCache<List<String>> sut;
+
+    @Before
+    public void setUp() {
+        table.put(ACCOUNT, Arrays.asList("a", "b"));
+        table.put(OTHER_ACCOUNT, Arrays.asList("c"));
+
+        sut = new AccountCache<>(ArrayList::new);
+    }
+
+    @Test
+    public void accountIsLoadedOnceOnFirstRead() {
+        assertEquals(Arrays.asList("a", "b"), sut.get(ACCOUNT, loader));
+        assertEquals(Arrays.asList("a", "b"), sut.get(ACCOUNT, loader));
+        assertEquals(Arrays.asList("c"), sut.get(OTHER_ACCOUNT, loader));
+
+        assertEquals(Arrays.asList(ACCOUNT, OTHER_ACCOUNT), loadedAccounts);
+        assertEquals(1, sut.getHitCount());
+        assertEquals(2, sut.getMissCount());
+        assertEquals(2, sut.getAccountCount());
+    }
+
+    @Test
+    public void readsReturnCopies() {
+        List<String> first = sut.get(ACCOUNT, loader);
+        first.add("modified");
+
+        List<String> second = sut.get(ACCOUNT, loader);
+        assertEquals(Arrays.asList("a", "b"), second);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void writeIsReadAfterInvalidation() {
+        sut.get(ACCOUNT, loader);
+
+        table.put(ACCOUNT, Arrays.asList("d"));
+        sut.invalidate(ACCOUNT);
+
+        assertEquals(Arrays.asList("d"), sut.get(ACCOUNT, loader));
+        assertEquals(Arrays.asList("c"), sut.get(OTHER_ACCOUNT, loader));
+        assertEquals(Arrays.asList(ACCOUNT, ACCOUNT, OTHER_ACCOUNT), loadedAccounts);
+    }
+
+    @Test
+    public void loadRacingWithWriteIsNotKept() {
+        // a write completes while the values are loaded: the loaded values may miss it
+        AccountCache.Loader<List<String>> racingLoader = accountName -> {
+            List<String> values = read(accountName);
+            table.put(accountName, Arrays.asList("d"));
+            sut.invalidate(accountName);
+            return values;
+        };
+
+        assertEquals(Arrays.asList("a", "b"), sut.get(ACCOUNT, racingLoader));
+        assertEquals(0, sut.getAccountCount());
+
+        assertEquals(Arrays.asList("d"), sut.get(ACCOUNT, loader));
+        assertEquals(Arrays.asList("d"), sut.get(ACCOUNT, loader));
+        assertEquals(Arrays.asList(ACCOUNT), loadedAccounts);
+    }
+
+    @Test
+    public void writesRacingWithEachOtherLeaveNoOutdatedValue() {
+        sut.get(ACCOUNT, loader);
+
+        // two writers change the database, the first one invalidates last
+        table.put(ACCOUNT, Arrays.asList("first"));
+        table.put(ACCOUNT, Arrays.asList("second"));
+        sut.invalidate(ACCOUNT);
+        sut.invalidate(ACCOUNT);
+
+        assertEquals(Arrays.asList("second"), sut.get(ACCOUNT, loader));
+    }
+
+    @Test
+    public void observersReceiveReloadedValues() {
+        LiveData<List<String>> observable = sut.observe(ACCOUNT);
+        assertNull(observable.getValue());
+
+        sut.get(ACCOUNT, loader);
+        assertEquals(Arrays.asList("a", "b"), observable.getValue());
+
+        table.put(ACCOUNT, Arrays.asList("d"));
+        sut.invalidate(ACCOUNT);
+        sut.get(ACCOUNT, loader);
+        assertEquals(Arrays.asList("d"), observable.getValue());
+
+        observable.getValue().add("modified");
+        assertEquals(Arrays.asList("d"), sut.get(ACCOUNT, loader));
+    }
+
+    @Test
+    public void observersReceiveNullWhenAccountIsRemoved() {
+        sut.get(ACCOUNT, loader);
+        LiveData<List<String>> observable = sut.observe(ACCOUNT);
+        assertEquals(Arrays.asList("a", "b"), observable.getValue());
+
+        sut.remove(ACCOUNT);
+
+        assertNull(observable.getValue());
+        assertEquals(0, sut.getAccountCount());
+    }
+
+    private List<String> read(String accountName) {
+        List<String> values = table.get(accountName);
+        return values != null ? values : new ArrayList<>();
+    }
+}
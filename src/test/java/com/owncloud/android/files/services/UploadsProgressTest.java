@@ -0,0 +1,106 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadsProgressTest {
+
+    private UploadsProgress sut;
+
+    @Before
+    public void setUp() {
+        sut = new UploadsProgress();
+    }
+
+    @Test
+    public void singleUploadIsShownWithFileName() {
+        sut.start(1, "photo.jpg", 200, true);
+        sut.update(1, 50, 200);
+
+        assertEquals(1, sut.getCount());
+        assertEquals(25, sut.getPercent());
+        assertEquals("photo.jpg", sut.getFileName());
+    }
+
+    @Test
+    public void parallelUploadsAreCombined() {
+        sut.start(1, "photo.jpg", 100, true);
+        sut.start(2, "video.mp4", 300, true);
+        sut.update(1, 100, 100);
+        sut.update(2, 100, 300);
+
+        assertEquals(2, sut.getCount());
+        assertEquals(50, sut.getPercent());
+        assertNull(sut.getFileName());
+
+        // progress of one upload does not reset the other
+        sut.update(2, 200, 300);
+        assertEquals(75, sut.getPercent());
+
+        sut.finish(1);
+        assertEquals(1, sut.getCount());
+        assertEquals(66, sut.getPercent());
+        assertEquals("video.mp4", sut.getFileName());
+    }
+
+    @Test
+    public void automaticUploadsAreShownOnceTheyTransferData() {
+        sut.start(1, "photo.jpg", 100, false);
+        assertEquals(0, sut.getCount());
+
+        sut.update(1, 10, 100);
+        assertEquals(1, sut.getCount());
+        assertEquals(10, sut.getPercent());
+    }
+
+    @Test
+    public void onlyChangesAreShown() {
+        sut.start(1, "photo.jpg", 100, true);
+        assertTrue(sut.showIfChanged());
+        assertFalse(sut.showIfChanged());
+
+        sut.update(1, 0, 100);
+        assertFalse(sut.showIfChanged());
+
+        sut.update(1, 10, 100);
+        assertTrue(sut.showIfChanged());
+
+        // same percentage, but another upload
+        sut.start(2, "video.mp4", 100, true);
+        sut.update(2, 10, 100);
+        assertTrue(sut.showIfChanged());
+    }
+
+    @Test
+    public void unknownUploadsAreIgnored() {
+        sut.update(1, 10, 100);
+        sut.finish(2);
+
+        assertEquals(0, sut.getCount());
+        assertEquals(0, sut.getPercent());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.operations;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UploadStagingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshotDetectsChanges() throws IOException {
+        File file = folder.newFile("video.mp4");
+        write(file, "abc");
+        assertTrue(file.setLastModified(1_000_000L));
+
+        UploadStaging.Snapshot snapshot = UploadStaging.Snapshot.of(file);
+        assertTrue(snapshot.matches(file));
+
+        // same size, new modification date
+        write(file, "abd");
+        assertTrue(file.setLastModified(2_000_000L));
+        assertFalse(snapshot.matches(file));
+
+        // new size, same modification date
+        snapshot = UploadStaging.Snapshot.of(file);
+        write(file, "abcd");
+        assertTrue(file.setLastModified(2_000_000L));
+        assertFalse(snapshot.matches(file));
+    }
+
+    @Test
+    public void lockedFilesAreReadDirectly() {
+        assertEquals(UploadStaging.Mode.DIRECT_LOCKED, UploadStaging.chooseMode(true, false, false));
+        assertEquals(UploadStaging.Mode.DIRECT_LOCKED, UploadStaging.chooseMode(true, true, false));
+        assertEquals(UploadStaging.Mode.DIRECT_LOCKED, UploadStaging.chooseMode(true, true, true));
+    }
+
+    @Test
+    public void unlockedFilesAreReadDirectlyOnlyIfCheckedBeforeAssembly() {
+        assertEquals(UploadStaging.Mode.DIRECT_SNAPSHOT, UploadStaging.chooseMode(false, true, false));
+
+        // a single request is stored by the server as soon as it is sent
+        assertEquals(UploadStaging.Mode.COPY, UploadStaging.chooseMode(false, false, false));
+    }
+
+    @Test
+    public void unlockedFilesKeptInLocalFolderAreCopiedFirst() {
+        assertEquals(UploadStaging.Mode.COPY, UploadStaging.chooseMode(false, true, true));
+        assertEquals(UploadStaging.Mode.COPY, UploadStaging.chooseMode(false, false, true));
+    }
+
+    @Test
+    public void uploadsAreCountedPerMode() {
+        long uploads = UploadStaging.getUploadCount(UploadStaging.Mode.DIRECT_SNAPSHOT);
+        long bytes = UploadStaging.getUploadedBytes(UploadStaging.Mode.DIRECT_SNAPSHOT);
+        long copies = UploadStaging.getUploadCount(UploadStaging.Mode.COPY);
+
+        UploadStaging.record(UploadStaging.Mode.DIRECT_SNAPSHOT, 100);
+        UploadStaging.record(UploadStaging.Mode.DIRECT_SNAPSHOT, 50);
+
+        assertEquals(uploads + 2, UploadStaging.getUploadCount(UploadStaging.Mode.DIRECT_SNAPSHOT));
+        assertEquals(bytes + 150, UploadStaging.getUploadedBytes(UploadStaging.Mode.DIRECT_SNAPSHOT));
+        assertEquals(copies, UploadStaging.getUploadCount(UploadStaging.Mode.COPY));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes());
+        }
+    }
+}